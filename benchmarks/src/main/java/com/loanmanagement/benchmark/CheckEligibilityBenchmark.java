@@ -0,0 +1,53 @@
+package com.loanmanagement.benchmark;
+
+import com.loanmanagement.dto.EligibilityCheckResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency distribution of single-account checks, split by the kind of account asked about
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CheckEligibilityBenchmark {
+
+    /**
+     * Per-thread position in the sample arrays, so threads do not share a counter
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        String pick(String[] ids) {
+            next = (next + 1) & Integer.MAX_VALUE;
+            return ids[next % ids.length];
+        }
+    }
+
+    @Benchmark
+    public EligibilityCheckResponse eligible(LoadedStore store, Cursor cursor) {
+        return store.fixture.service.checkEligibility(cursor.pick(store.eligible));
+    }
+
+    @Benchmark
+    public EligibilityCheckResponse ineligible(LoadedStore store, Cursor cursor) {
+        return store.fixture.service.checkEligibility(cursor.pick(store.ineligible));
+    }
+
+    @Benchmark
+    public EligibilityCheckResponse unknown(LoadedStore store, Cursor cursor) {
+        return store.fixture.service.checkEligibility(cursor.pick(store.unknown));
+    }
+}
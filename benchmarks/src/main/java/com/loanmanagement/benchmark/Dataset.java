@@ -0,0 +1,223 @@
+package com.loanmanagement.benchmark;
+
+import com.loanmanagement.model.ListType;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Generated list files for a given number of accounts.
+ *
+ * <p>Every account lands on one primary ineligibility list. A "hot" fraction of the
+ * accounts is additionally placed on each other list with a high probability, the
+ * rest with a low one, so overlap between lists is skewed the way real watch lists
+ * are. A share of all (account, list) records is then delisted; accounts whose lists
+ * are all delisted end up eligible.
+ *
+ * <p>Files are cached under {@code java.io.tmpdir} per parameter set, so large
+ * datasets are only generated once. Run {@link #main} to pre-generate one.
+ */
+public final class Dataset {
+
+    static final ListType[] INELIGIBILITY_LISTS = {
+        ListType.STR, ListType.CR, ListType.MULTIPLE_ACCOUNT, ListType.FDM, ListType.SST
+    };
+
+    // Relative weight of each list as an account's primary list
+    private static final double[] PRIMARY_WEIGHTS = {0.35, 0.25, 0.20, 0.12, 0.08};
+
+    private static final String[] REASONS = {
+        "Flagged by transaction monitoring",
+        "Reported by branch compliance officer",
+        "Duplicate national ID across accounts",
+        "Confirmed fraudulent activity",
+        "Referred for special support",
+        "Unusual cash deposits",
+        "Manual review pending",
+        "Regulator request"
+    };
+
+    private static final int SAMPLE_SIZE = 1 << 16;
+    private static final long SEED = 0x5EEDL;
+
+    private final Path directory;
+    private final int accounts;
+
+    private Dataset(Path directory, int accounts) {
+        this.directory = directory;
+        this.accounts = accounts;
+    }
+
+    /**
+     * Return the cached dataset for these parameters, generating it first if needed
+     */
+    public static synchronized Dataset ensure(int accounts, double hotFraction, double overlap, double delistRatio)
+            throws IOException {
+        String name = String.format(Locale.ROOT, "%d-%.3f-%.3f-%.3f", accounts, hotFraction, overlap, delistRatio);
+        Path directory = Paths.get(System.getProperty("java.io.tmpdir"), "loan-eligibility-bench", name);
+        Dataset dataset = new Dataset(directory, accounts);
+        if (!Files.exists(directory.resolve("COMPLETE"))) {
+            dataset.generate(hotFraction, overlap, delistRatio);
+        }
+        return dataset;
+    }
+
+    public static String accountId(long index) {
+        // Fixed width with leading zeros, like real account numbers
+        return String.format("%013d", index);
+    }
+
+    public int getAccounts() {
+        return accounts;
+    }
+
+    public Path listFile(ListType listType) {
+        return directory.resolve(listType.getCode() + ".csv");
+    }
+
+    /**
+     * Sample of account IDs that are eligible after all files are uploaded
+     */
+    public List<String> eligibleSample() throws IOException {
+        return Files.readAllLines(directory.resolve("eligible.txt"));
+    }
+
+    /**
+     * Sample of account IDs that stay on at least one ineligibility list
+     */
+    public List<String> ineligibleSample() throws IOException {
+        return Files.readAllLines(directory.resolve("ineligible.txt"));
+    }
+
+    /**
+     * Account IDs that appear on no list
+     */
+    public List<String> unknownSample() {
+        List<String> unknown = new ArrayList<>(SAMPLE_SIZE);
+        SplittableRandom random = new SplittableRandom(SEED + 1);
+        for (int i = 0; i < SAMPLE_SIZE; i++) {
+            unknown.add(accountId(accounts + random.nextLong(1L << 40)));
+        }
+        return unknown;
+    }
+
+    private void generate(double hotFraction, double overlap, double delistRatio) throws IOException {
+        Files.createDirectories(directory);
+        Map<ListType, Writer> writers = new EnumMap<>(ListType.class);
+        try {
+            for (ListType listType : ListType.values()) {
+                Writer writer = Files.newBufferedWriter(listFile(listType), StandardCharsets.UTF_8);
+                writer.write("AccountID,Reason\n");
+                writers.put(listType, writer);
+            }
+            SplittableRandom random = new SplittableRandom(SEED);
+            Reservoir eligible = new Reservoir(random.split());
+            Reservoir ineligible = new Reservoir(random.split());
+            long hotAccounts = (long) (accounts * hotFraction);
+            double coldOverlap = overlap / 20;
+
+            for (long index = 0; index < accounts; index++) {
+                String accountId = accountId(index);
+                int primary = primaryList(random.nextDouble());
+                double extra = index < hotAccounts ? overlap : coldOverlap;
+                boolean stillIneligible = false;
+                for (int list = 0; list < INELIGIBILITY_LISTS.length; list++) {
+                    if (list != primary && random.nextDouble() >= extra) {
+                        continue;
+                    }
+                    ListType listType = INELIGIBILITY_LISTS[list];
+                    writeRow(writers.get(listType), accountId, random);
+                    if (random.nextDouble() < delistRatio) {
+                        writeRow(writers.get(listType.getDelistType()), accountId, random);
+                    } else {
+                        stillIneligible = true;
+                    }
+                }
+                (stillIneligible ? ineligible : eligible).offer(accountId);
+            }
+
+            eligible.write(directory.resolve("eligible.txt"));
+            ineligible.write(directory.resolve("ineligible.txt"));
+        } finally {
+            for (Writer writer : writers.values()) {
+                writer.close();
+            }
+        }
+        Files.writeString(directory.resolve("COMPLETE"), "");
+    }
+
+    private static int primaryList(double draw) {
+        double cumulative = 0;
+        for (int i = 0; i < PRIMARY_WEIGHTS.length - 1; i++) {
+            cumulative += PRIMARY_WEIGHTS[i];
+            if (draw < cumulative) {
+                return i;
+            }
+        }
+        return PRIMARY_WEIGHTS.length - 1;
+    }
+
+    private static void writeRow(Writer writer, String accountId, SplittableRandom random) throws IOException {
+        writer.write(accountId);
+        writer.write(',');
+        writer.write(REASONS[random.nextInt(REASONS.length)]);
+        writer.write('\n');
+    }
+
+    /**
+     * Uniform sample of a stream of IDs
+     */
+    private static class Reservoir {
+        private final SplittableRandom random;
+        private final List<String> sample = new ArrayList<>(SAMPLE_SIZE);
+        private long seen;
+
+        Reservoir(SplittableRandom random) {
+            this.random = random;
+        }
+
+        void offer(String accountId) {
+            seen++;
+            if (sample.size() < SAMPLE_SIZE) {
+                sample.add(accountId);
+            } else {
+                long slot = random.nextLong(seen);
+                if (slot < SAMPLE_SIZE) {
+                    sample.set((int) slot, accountId);
+                }
+            }
+        }
+
+        void write(Path path) throws IOException {
+            try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+                for (String accountId : sample) {
+                    writer.write(accountId);
+                    writer.write('\n');
+                }
+            }
+        }
+    }
+
+    /**
+     * Pre-generate a dataset: accounts [hotFraction overlap delistRatio]
+     */
+    public static void main(String[] args) throws IOException {
+        int accounts = Integer.parseInt(args[0]);
+        double hotFraction = args.length > 1 ? Double.parseDouble(args[1]) : 0.1;
+        double overlap = args.length > 2 ? Double.parseDouble(args[2]) : 0.3;
+        double delistRatio = args.length > 3 ? Double.parseDouble(args[3]) : 0.2;
+        Dataset dataset = ensure(accounts, hotFraction, overlap, delistRatio);
+        System.out.println("Dataset ready in " + dataset.directory);
+    }
+}
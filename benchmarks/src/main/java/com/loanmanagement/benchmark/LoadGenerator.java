@@ -0,0 +1,288 @@
+package com.loanmanagement.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.loanmanagement.metrics.LatencyHistogram;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Closed-loop HTTP load against a running server: a number of check clients issue
+ * /check-eligibility calls back to back while upload clients keep posting list files,
+ * optionally throttled to mimic slow senders. Prints throughput and latency
+ * percentiles per operation, so serving modes can be compared on the same hardware.
+ *
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.loanmanagement.benchmark.LoadGenerator \
+ *     --check-clients 64 --upload-clients 4 --upload-kbps 256 --duration 60
+ * </pre>
+ *
+ * Options (defaults in brackets): --url [http://localhost:8080/api/loan-eligibility],
+ * --duration seconds [30], --warmup seconds [5], --check-clients [32],
+ * --check-method get|post [get], --accounts ID range [1000000],
+ * --upload-clients [2], --upload-rows per file [20000], --upload-list path [str],
+ * --upload-kbps per client, 0 for unthrottled [0], --json file for the results.
+ * Uploads above 1MB need the server's spring.servlet.multipart limits raised.
+ */
+public class LoadGenerator {
+
+    private static final String BOUNDARY = "load-generator-" + UUID.randomUUID();
+    private static final String[] REASONS = {
+        "Flagged by transaction monitoring", "Manual review pending", "Regulator request"
+    };
+
+    private final Map<String, String> options;
+    private final String baseUrl;
+    private final HttpClient client;
+    private final int accounts;
+    private final Operation checks = new Operation("check");
+    private final Operation uploads = new Operation("upload");
+    private volatile boolean measuring;
+    private volatile boolean stopped;
+
+    private LoadGenerator(Map<String, String> options) {
+        this.options = options;
+        this.baseUrl = option("url", "http://localhost:8080/api/loan-eligibility");
+        this.accounts = Integer.parseInt(option("accounts", "1000000"));
+        this.client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+            }
+            String name = args[i].substring(2);
+            int equals = name.indexOf('=');
+            if (equals >= 0) {
+                options.put(name.substring(0, equals), name.substring(equals + 1));
+            } else if (i + 1 < args.length) {
+                options.put(name, args[++i]);
+            } else {
+                throw new IllegalArgumentException("Missing value for --" + name);
+            }
+        }
+        new LoadGenerator(options).run();
+    }
+
+    private String option(String name, String defaultValue) {
+        return options.getOrDefault(name, defaultValue);
+    }
+
+    private void run() throws Exception {
+        int checkClients = Integer.parseInt(option("check-clients", "32"));
+        int uploadClients = Integer.parseInt(option("upload-clients", "2"));
+        long warmupSeconds = Long.parseLong(option("warmup", "5"));
+        long durationSeconds = Long.parseLong(option("duration", "30"));
+        boolean post = "post".equalsIgnoreCase(option("check-method", "get"));
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < checkClients; i++) {
+            long seed = i;
+            threads.add(start("check-client-" + i, () -> checkLoop(new SplittableRandom(seed), post)));
+        }
+        for (int i = 0; i < uploadClients; i++) {
+            long seed = 1000 + i;
+            threads.add(start("upload-client-" + i, () -> uploadLoop(new SplittableRandom(seed))));
+        }
+
+        System.out.printf(Locale.ROOT, "%d check clients, %d upload clients against %s; warming up for %ds%n",
+            checkClients, uploadClients, baseUrl, warmupSeconds);
+        TimeUnit.SECONDS.sleep(warmupSeconds);
+        measuring = true;
+        long started = System.nanoTime();
+        TimeUnit.SECONDS.sleep(durationSeconds);
+        measuring = false;
+        double elapsedSeconds = (System.nanoTime() - started) / 1e9;
+        stopped = true;
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+
+        System.out.printf(Locale.ROOT, "%n%-8s %10s %8s %10s %9s %9s %9s %9s %9s%n",
+            "op", "requests", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        Map<String, Object> results = new LinkedHashMap<>();
+        results.put("options", options);
+        results.put("elapsedSeconds", elapsedSeconds);
+        for (Operation operation : List.of(checks, uploads)) {
+            results.put(operation.name, operation.report(elapsedSeconds));
+        }
+        String json = options.get("json");
+        if (json != null) {
+            new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(Paths.get(json).toFile(), results);
+            System.out.println("\nResults written to " + json);
+        }
+    }
+
+    private Thread start(String name, Runnable loop) {
+        Thread thread = new Thread(loop, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private void checkLoop(SplittableRandom random, boolean post) {
+        while (!stopped) {
+            String accountId = Dataset.accountId(random.nextInt(accounts));
+            HttpRequest request = post
+                ? HttpRequest.newBuilder(URI.create(baseUrl + "/check-eligibility"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"accountId\":\"" + accountId + "\"}"))
+                    .build()
+                : HttpRequest.newBuilder(URI.create(baseUrl + "/check-eligibility/" + accountId)).GET().build();
+            checks.send(request);
+        }
+    }
+
+    private void uploadLoop(SplittableRandom random) {
+        int rows = Integer.parseInt(option("upload-rows", "20000"));
+        long bytesPerSecond = Long.parseLong(option("upload-kbps", "0")) * 1024;
+        URI uri = URI.create(baseUrl + "/upload/" + option("upload-list", "str"));
+        while (!stopped) {
+            byte[] body = multipartBody(random, rows);
+            HttpRequest.BodyPublisher publisher = bytesPerSecond > 0
+                ? HttpRequest.BodyPublishers.ofInputStream(() -> new ThrottledInputStream(body, bytesPerSecond))
+                : HttpRequest.BodyPublishers.ofByteArray(body);
+            uploads.send(HttpRequest.newBuilder(uri)
+                .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                .POST(publisher)
+                .build());
+        }
+    }
+
+    private byte[] multipartBody(SplittableRandom random, int rows) {
+        StringBuilder body = new StringBuilder(64 * rows + 256);
+        body.append("--").append(BOUNDARY).append("\r\n")
+            .append("Content-Disposition: form-data; name=\"file\"; filename=\"load.csv\"\r\n")
+            .append("Content-Type: text/csv\r\n\r\n")
+            .append("AccountID,Reason\n");
+        for (int i = 0; i < rows; i++) {
+            body.append(Dataset.accountId(random.nextInt(accounts))).append(',')
+                .append(REASONS[random.nextInt(REASONS.length)]).append('\n');
+        }
+        body.append("\r\n--").append(BOUNDARY).append("--\r\n");
+        return body.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Latency and outcome counts of one kind of request, recorded only while measuring
+     */
+    private final class Operation {
+        final String name;
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder errors = new LongAdder();
+
+        Operation(String name) {
+            this.name = name;
+        }
+
+        void send(HttpRequest request) {
+            long started = System.nanoTime();
+            boolean failed;
+            try {
+                HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                failed = response.statusCode() >= 400;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                if (stopped) {
+                    return;
+                }
+                failed = true;
+            }
+            if (measuring) {
+                latency.record(System.nanoTime() - started);
+                if (failed) {
+                    errors.increment();
+                }
+            }
+        }
+
+        Map<String, Object> report(double elapsedSeconds) {
+            Map<String, Object> map = latency.toMap();
+            map.remove("buckets");
+            long count = (Long) map.get("count");
+            map.put("errors", errors.sum());
+            map.put("throughputPerSecond", count / elapsedSeconds);
+            System.out.printf(Locale.ROOT, "%-8s %10d %8d %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                name, count, errors.sum(), count / elapsedSeconds,
+                millis(map, "p50Nanos"), millis(map, "p90Nanos"), millis(map, "p99Nanos"),
+                millis(map, "p999Nanos"), millis(map, "maxNanos"));
+            return map;
+        }
+
+        private double millis(Map<String, Object> map, String key) {
+            return ((Long) map.get(key)) / 1e6;
+        }
+    }
+
+    /**
+     * Request body that trickles out at a fixed rate, like an upload over a slow link
+     */
+    private static final class ThrottledInputStream extends InputStream {
+        private static final int SLICE = 4096;
+
+        private final byte[] data;
+        private final long bytesPerSecond;
+        private final long started = System.nanoTime();
+        private int position;
+
+        ThrottledInputStream(byte[] data, long bytesPerSecond) {
+            this.data = data;
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (position == data.length) {
+                return -1;
+            }
+            long dueNanos = started + position * 1_000_000_000L / bytesPerSecond;
+            long waitNanos = dueNanos - System.nanoTime();
+            if (waitNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(waitNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+            int count = Math.min(Math.min(length, SLICE), data.length - position);
+            System.arraycopy(data, position, buffer, offset, count);
+            position += count;
+            return count;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.loanmanagement.benchmark;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A service loaded with every list of a generated dataset, shared by all benchmark threads.
+ * Sizes from 1M to 50M accounts need a correspondingly large heap (-Xmx).
+ */
+@State(Scope.Benchmark)
+public class LoadedStore {
+
+    @Param({"1000000"})
+    public int accounts;
+
+    // Share of accounts that sit on several lists at once
+    @Param({"0.1"})
+    public double hotFraction;
+
+    // Probability that a hot account is also on each non-primary list
+    @Param({"0.3"})
+    public double overlap;
+
+    // Share of (account, list) records that are later delisted
+    @Param({"0.2"})
+    public double delistRatio;
+
+    Dataset dataset;
+    ServiceFixture fixture;
+    String[] eligible;
+    String[] ineligible;
+    String[] unknown;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataset = Dataset.ensure(accounts, hotFraction, overlap, delistRatio);
+        fixture = new ServiceFixture();
+        fixture.loadAll(dataset);
+        eligible = toArray(dataset.eligibleSample());
+        ineligible = toArray(dataset.ineligibleSample());
+        unknown = toArray(dataset.unknownSample());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixture.close();
+    }
+
+    private static String[] toArray(List<String> ids) {
+        if (ids.isEmpty()) {
+            throw new IllegalStateException("Dataset produced no sample IDs; adjust delistRatio");
+        }
+        return ids.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,52 @@
+package com.loanmanagement.benchmark;
+
+import com.loanmanagement.dto.EligibilityCheckResponse;
+import com.loanmanagement.dto.ListUploadResponse;
+import com.loanmanagement.model.ListType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Check latency while uploads run back to back against the same store. The
+ * "check" and "ingest" results are reported separately within the group.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class ReadWhileIngestBenchmark {
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    @Group("readWhileIngest")
+    @GroupThreads(3)
+    public EligibilityCheckResponse check(LoadedStore store, Cursor cursor) {
+        // Alternate between accounts the uploads touch and accounts they do not
+        cursor.next = (cursor.next + 1) & Integer.MAX_VALUE;
+        String[] ids = (cursor.next & 1) == 0 ? store.ineligible : store.eligible;
+        return store.fixture.service.checkEligibility(ids[(cursor.next >>> 1) % ids.length]);
+    }
+
+    @Benchmark
+    @Group("readWhileIngest")
+    @GroupThreads(1)
+    public ListUploadResponse ingest(LoadedStore store) {
+        return store.fixture.upload(store.dataset, ListType.CR);
+    }
+}
@@ -0,0 +1,68 @@
+package com.loanmanagement.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.loanmanagement.dto.ListUploadResponse;
+import com.loanmanagement.ingest.IngestPipeline;
+import com.loanmanagement.metrics.EligibilityMetrics;
+import com.loanmanagement.model.ListType;
+import com.loanmanagement.persistence.WriteAheadLog;
+import com.loanmanagement.service.EligibilityService;
+import com.loanmanagement.service.VerdictEventService;
+import com.loanmanagement.store.AccountSharding;
+import com.loanmanagement.store.CompactAccountStateStore;
+
+/**
+ * The eligibility service wired by hand with the same defaults as the application,
+ * minus persistence
+ */
+final class ServiceFixture implements AutoCloseable {
+
+    final CompactAccountStateStore store;
+    final IngestPipeline ingestPipeline;
+    final EligibilityService service;
+
+    ServiceFixture() {
+        this(0);
+    }
+
+    /**
+     * @param shards store shards, 0 for one per core
+     */
+    ServiceFixture(int shards) {
+        AccountSharding sharding = new AccountSharding(shards);
+        store = new CompactAccountStateStore(sharding, false, 1_000_000, 10);
+        ingestPipeline = new IngestPipeline(sharding, 0, 1 << 20, 8);
+        service = new EligibilityService(store, ingestPipeline,
+            new WriteAheadLog(false, "data", false), new EligibilityMetrics(true, store),
+            new VerdictEventService(store, new ObjectMapper(), 100_000, 32, 15_000), false, 20, "");
+    }
+
+    /**
+     * Upload a generated list and fail the benchmark if the service rejects it
+     */
+    ListUploadResponse upload(Dataset dataset, ListType listType) {
+        ListUploadResponse response = service.uploadList(listType, new PathMultipartFile(dataset.listFile(listType)));
+        if (!response.isSuccess()) {
+            throw new IllegalStateException(response.getMessage());
+        }
+        return response;
+    }
+
+    /**
+     * Upload every ineligibility list, then every delist, in that order
+     */
+    void loadAll(Dataset dataset) {
+        for (ListType listType : Dataset.INELIGIBILITY_LISTS) {
+            upload(dataset, listType);
+        }
+        for (ListType listType : Dataset.INELIGIBILITY_LISTS) {
+            upload(dataset, listType.getDelistType());
+        }
+    }
+
+    @Override
+    public void close() {
+        ingestPipeline.shutdown();
+        store.shutdown();
+    }
+}
@@ -0,0 +1,110 @@
+package com.loanmanagement.benchmark;
+
+import com.loanmanagement.model.ListType;
+import com.loanmanagement.store.AccountState;
+import com.loanmanagement.store.AccountSharding;
+import com.loanmanagement.store.CompactAccountStateStore;
+import com.loanmanagement.store.Generation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Raw store lookups for known and unknown accounts, without the service around them,
+ * so the effect of key packing and the membership filter is visible on its own
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class StoreLookupBenchmark {
+
+    private static final int SAMPLES = 1 << 16;
+
+    @State(Scope.Benchmark)
+    public static class Store {
+
+        @Param({"1000000"})
+        public int accounts;
+
+        // numeric: 13-digit IDs; alphanumeric: the same digits behind a letter prefix
+        @Param({"numeric", "alphanumeric"})
+        public String idFormat;
+
+        @Param({"true", "false"})
+        public boolean filter;
+
+        CompactAccountStateStore store;
+        Generation generation;
+        char[][] known = new char[SAMPLES][];
+        char[][] unknown = new char[SAMPLES][];
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            store = new CompactAccountStateStore(new AccountSharding(0), filter, accounts, 10);
+            store.beginGeneration();
+            for (int i = 0; i < accounts; i++) {
+                store.update(id(2L * i), state -> state.with(ListType.STR, 1L, "benchmark"));
+            }
+            store.publishGeneration();
+            generation = store.snapshot();
+
+            // Even numbers are stored, odd numbers never are
+            Random random = new Random(42);
+            for (int i = 0; i < SAMPLES; i++) {
+                long n = random.nextInt(accounts);
+                known[i] = id(2 * n).toCharArray();
+                unknown[i] = id(2 * n + 1).toCharArray();
+            }
+        }
+
+        private String id(long n) {
+            String digits = String.format("%013d", n);
+            return "numeric".equals(idFormat) ? digits : "AC" + digits;
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            generation.close();
+            store.shutdown();
+        }
+    }
+
+    /**
+     * Per-thread position in the samples. Each pick is a fresh String, as a request
+     * path would be, so no lookup benefits from a hash code cached by an earlier one.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        String pick(char[][] ids) {
+            next = (next + 1) & (SAMPLES - 1);
+            return new String(ids[next]);
+        }
+    }
+
+    @Benchmark
+    public AccountState known(Store store, Cursor cursor) {
+        return store.generation.get(cursor.pick(store.known));
+    }
+
+    @Benchmark
+    public AccountState unknown(Store store, Cursor cursor) {
+        return store.generation.get(cursor.pick(store.unknown));
+    }
+}
@@ -0,0 +1,99 @@
+package com.loanmanagement.benchmark;
+
+import com.loanmanagement.model.ListType;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end uploadList throughput for one list file: uploads per second, with rows
+ * per second reported as the secondary "rows" metric.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class UploadBenchmark {
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Rows {
+        public long rows;
+    }
+
+    /**
+     * A fresh, empty service for every upload
+     */
+    @State(Scope.Thread)
+    public static class EmptyStore {
+        @Param({"1000000"})
+        public int accounts;
+
+        @Param({"0.1"})
+        public double hotFraction;
+
+        @Param({"0.3"})
+        public double overlap;
+
+        @Param({"0.2"})
+        public double delistRatio;
+
+        // Store shards, 0 for one per core; run with -p shards=1,2,4,8 to measure scaling
+        @Param({"0"})
+        public int shards;
+
+        Dataset dataset;
+        ServiceFixture fixture;
+
+        @Setup(Level.Trial)
+        public void generate() throws IOException {
+            dataset = Dataset.ensure(accounts, hotFraction, overlap, delistRatio);
+        }
+
+        @Setup(Level.Invocation)
+        public void setUp() {
+            fixture = new ServiceFixture(shards);
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown() {
+            fixture.close();
+        }
+    }
+
+    @Benchmark
+    public void uploadIntoEmptyStore(EmptyStore store, Rows rows) {
+        rows.rows += store.fixture.upload(store.dataset, ListType.STR).getProcessedRecords();
+    }
+
+    /**
+     * Re-upload a list into a fully loaded store, so every row replaces an existing record
+     */
+    @Benchmark
+    public void reuploadIntoLoadedStore(LoadedStore store, Rows rows) {
+        rows.rows += store.fixture.upload(store.dataset, ListType.STR).getProcessedRecords();
+    }
+
+    /**
+     * Delist uploads touch accounts that already carry the matching ineligibility record
+     */
+    @Benchmark
+    public void delistIntoLoadedStore(LoadedStore store, Rows rows) {
+        rows.rows += store.fixture.upload(store.dataset, ListType.D_CR).getProcessedRecords();
+    }
+}
@@ -0,0 +1,57 @@
+package com.loanmanagement.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Opt-in serving mode that runs every request on its own virtual thread instead of
+ * Tomcat's bounded worker pool (eligibility.serving.virtual-threads=true).
+ *
+ * <p>A slow multipart upload then holds a cheap virtual thread rather than one of a
+ * fixed number of workers, so bursts of checks are not queued behind it. Async MVC
+ * work (bulk checks, exports) uses the same executor. Virtual threads need Java 21;
+ * on an older runtime the mode logs a warning and the default pool stays in place.
+ */
+@Configuration
+@ConditionalOnProperty(name = "eligibility.serving.virtual-threads", havingValue = "true")
+public class VirtualThreadServingConfiguration implements WebMvcConfigurer {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadServingConfiguration.class);
+
+    // Shared by Tomcat and MVC async handling; null when the runtime has no virtual threads
+    private final ExecutorService executor = VirtualThreads.newPerTaskExecutor();
+
+    public VirtualThreadServingConfiguration() {
+        if (executor == null) {
+            log.warn("eligibility.serving.virtual-threads is set but Java {} has no virtual threads; "
+                + "serving on the platform thread pool", Runtime.version().feature());
+        } else {
+            log.info("Serving requests on virtual threads");
+        }
+    }
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> {
+            if (executor != null) {
+                protocolHandler.setExecutor(executor);
+            }
+        };
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        if (executor != null) {
+            configurer.setTaskExecutor(new TaskExecutorAdapter(executor));
+        }
+    }
+}
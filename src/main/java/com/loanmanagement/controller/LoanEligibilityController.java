@@ -3,17 +3,47 @@ package com.loanmanagement.controller;
 import com.loanmanagement.dto.EligibilityCheckRequest;
 import com.loanmanagement.dto.EligibilityCheckResponse;
 import com.loanmanagement.dto.ListUploadResponse;
+import com.loanmanagement.dto.MembershipPage;
+import com.loanmanagement.dto.RecordPage;
+import com.loanmanagement.dto.UploadJobStatus;
+import com.loanmanagement.ingest.IngestProgress;
+import com.loanmanagement.metrics.EligibilityMetrics;
 import com.loanmanagement.model.EligibilityRecord;
 import com.loanmanagement.model.ListType;
+import com.loanmanagement.model.UploadMode;
+import com.loanmanagement.persistence.PersistenceService;
+import com.loanmanagement.persistence.ReplicationService;
+import com.loanmanagement.service.BulkEligibilityService;
 import com.loanmanagement.service.EligibilityService;
+import com.loanmanagement.service.MembershipService;
+import com.loanmanagement.service.RecordExportService;
+import com.loanmanagement.service.UploadJobService;
+import com.loanmanagement.service.VerdictEventService;
+import com.loanmanagement.store.MembershipQuery;
+import com.loanmanagement.store.SortedAccountIds;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
 
 @RestController
 @RequestMapping("/api/loan-eligibility")
@@ -23,223 +53,260 @@ public class LoanEligibilityController {
     @Autowired
     private EligibilityService eligibilityService;
     
+    @Autowired
+    private BulkEligibilityService bulkEligibilityService;
+    
+    @Autowired
+    private PersistenceService persistenceService;
+    
+    @Autowired
+    private EligibilityMetrics eligibilityMetrics;
+    
+    @Autowired
+    private UploadJobService uploadJobService;
+    
+    @Autowired
+    private RecordExportService recordExportService;
+    
+    @Autowired
+    private ReplicationService replicationService;
+    
+    @Autowired
+    private MembershipService membershipService;
+    
+    @Autowired
+    private VerdictEventService verdictEventService;
+    
     /**
      * Upload STR (Suspicious Activity) list
      */
     @PostMapping("/upload/str")
-    public ResponseEntity<ListUploadResponse> uploadSTR(@RequestParam("file") MultipartFile file) {
-        if (file.isEmpty()) {
-            return ResponseEntity.badRequest().body(
-                new ListUploadResponse(ListType.STR, false, "File is empty")
-            );
-        }
-        
-        try {
-            ListUploadResponse response = eligibilityService.uploadList(ListType.STR, file);
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
-                new ListUploadResponse(ListType.STR, false, "Error: " + e.getMessage())
-            );
-        }
+    public ResponseEntity<?> uploadSTR(@RequestParam("file") MultipartFile file,
+                                       @RequestParam(value = "async", defaultValue = "false") boolean async,
+                                       @RequestParam(value = "mode", defaultValue = "append") String mode) {
+        return upload(ListType.STR, file, async, mode);
     }
     
     /**
      * Upload CR (Control Report) list
      */
     @PostMapping("/upload/cr")
-    public ResponseEntity<ListUploadResponse> uploadCR(@RequestParam("file") MultipartFile file) {
-        if (file.isEmpty()) {
-            return ResponseEntity.badRequest().body(
-                new ListUploadResponse(ListType.CR, false, "File is empty")
-            );
-        }
-        
-        try {
-            ListUploadResponse response = eligibilityService.uploadList(ListType.CR, file);
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
-                new ListUploadResponse(ListType.CR, false, "Error: " + e.getMessage())
-            );
-        }
+    public ResponseEntity<?> uploadCR(@RequestParam("file") MultipartFile file,
+                                      @RequestParam(value = "async", defaultValue = "false") boolean async,
+                                      @RequestParam(value = "mode", defaultValue = "append") String mode) {
+        return upload(ListType.CR, file, async, mode);
     }
     
     /**
      * Upload Multiple Account list
      */
     @PostMapping("/upload/multiple-account")
-    public ResponseEntity<ListUploadResponse> uploadMultipleAccount(@RequestParam("file") MultipartFile file) {
-        if (file.isEmpty()) {
-            return ResponseEntity.badRequest().body(
-                new ListUploadResponse(ListType.MULTIPLE_ACCOUNT, false, "File is empty")
-            );
-        }
-        
-        try {
-            ListUploadResponse response = eligibilityService.uploadList(ListType.MULTIPLE_ACCOUNT, file);
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
-                new ListUploadResponse(ListType.MULTIPLE_ACCOUNT, false, "Error: " + e.getMessage())
-            );
-        }
+    public ResponseEntity<?> uploadMultipleAccount(@RequestParam("file") MultipartFile file,
+                                                   @RequestParam(value = "async", defaultValue = "false") boolean async,
+                                                   @RequestParam(value = "mode", defaultValue = "append") String mode) {
+        return upload(ListType.MULTIPLE_ACCOUNT, file, async, mode);
     }
     
     /**
      * Upload FDM (Fraudulent) list
      */
     @PostMapping("/upload/fdm")
-    public ResponseEntity<ListUploadResponse> uploadFDM(@RequestParam("file") MultipartFile file) {
-        if (file.isEmpty()) {
-            return ResponseEntity.badRequest().body(
-                new ListUploadResponse(ListType.FDM, false, "File is empty")
-            );
-        }
-        
-        try {
-            ListUploadResponse response = eligibilityService.uploadList(ListType.FDM, file);
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
-                new ListUploadResponse(ListType.FDM, false, "Error: " + e.getMessage())
-            );
-        }
+    public ResponseEntity<?> uploadFDM(@RequestParam("file") MultipartFile file,
+                                       @RequestParam(value = "async", defaultValue = "false") boolean async,
+                                       @RequestParam(value = "mode", defaultValue = "append") String mode) {
+        return upload(ListType.FDM, file, async, mode);
     }
     
     /**
      * Upload SST (Special Support Recommendation) list
      */
     @PostMapping("/upload/sst")
-    public ResponseEntity<ListUploadResponse> uploadSST(@RequestParam("file") MultipartFile file) {
-        if (file.isEmpty()) {
-            return ResponseEntity.badRequest().body(
-                new ListUploadResponse(ListType.SST, false, "File is empty")
-            );
-        }
-        
-        try {
-            ListUploadResponse response = eligibilityService.uploadList(ListType.SST, file);
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
-                new ListUploadResponse(ListType.SST, false, "Error: " + e.getMessage())
-            );
-        }
+    public ResponseEntity<?> uploadSST(@RequestParam("file") MultipartFile file,
+                                       @RequestParam(value = "async", defaultValue = "false") boolean async,
+                                       @RequestParam(value = "mode", defaultValue = "append") String mode) {
+        return upload(ListType.SST, file, async, mode);
     }
     
     /**
      * Upload D-STR (Delist STR) list
      */
     @PostMapping("/upload/d-str")
-    public ResponseEntity<ListUploadResponse> uploadDelistSTR(@RequestParam("file") MultipartFile file) {
-        if (file.isEmpty()) {
-            return ResponseEntity.badRequest().body(
-                new ListUploadResponse(ListType.D_STR, false, "File is empty")
-            );
-        }
-        
-        try {
-            ListUploadResponse response = eligibilityService.uploadList(ListType.D_STR, file);
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
-                new ListUploadResponse(ListType.D_STR, false, "Error: " + e.getMessage())
-            );
-        }
+    public ResponseEntity<?> uploadDelistSTR(@RequestParam("file") MultipartFile file,
+                                             @RequestParam(value = "async", defaultValue = "false") boolean async) {
+        return upload(ListType.D_STR, file, async);
     }
     
     /**
      * Upload D-CR (Delist CR) list
      */
     @PostMapping("/upload/d-cr")
-    public ResponseEntity<ListUploadResponse> uploadDelistCR(@RequestParam("file") MultipartFile file) {
-        if (file.isEmpty()) {
-            return ResponseEntity.badRequest().body(
-                new ListUploadResponse(ListType.D_CR, false, "File is empty")
-            );
-        }
-        
-        try {
-            ListUploadResponse response = eligibilityService.uploadList(ListType.D_CR, file);
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
-                new ListUploadResponse(ListType.D_CR, false, "Error: " + e.getMessage())
-            );
-        }
+    public ResponseEntity<?> uploadDelistCR(@RequestParam("file") MultipartFile file,
+                                            @RequestParam(value = "async", defaultValue = "false") boolean async) {
+        return upload(ListType.D_CR, file, async);
     }
     
     /**
      * Upload D-Multiple Account (Delist Multiple Account) list
      */
     @PostMapping("/upload/d-multiple-account")
-    public ResponseEntity<ListUploadResponse> uploadDelistMultipleAccount(@RequestParam("file") MultipartFile file) {
-        if (file.isEmpty()) {
-            return ResponseEntity.badRequest().body(
-                new ListUploadResponse(ListType.D_MULTIPLE_ACCOUNT, false, "File is empty")
-            );
-        }
-        
-        try {
-            ListUploadResponse response = eligibilityService.uploadList(ListType.D_MULTIPLE_ACCOUNT, file);
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
-                new ListUploadResponse(ListType.D_MULTIPLE_ACCOUNT, false, "Error: " + e.getMessage())
-            );
-        }
+    public ResponseEntity<?> uploadDelistMultipleAccount(@RequestParam("file") MultipartFile file,
+                                                         @RequestParam(value = "async", defaultValue = "false") boolean async) {
+        return upload(ListType.D_MULTIPLE_ACCOUNT, file, async);
     }
     
     /**
      * Upload D-FDM (Delist FDM) list
      */
     @PostMapping("/upload/d-fdm")
-    public ResponseEntity<ListUploadResponse> uploadDelistFDM(@RequestParam("file") MultipartFile file) {
-        if (file.isEmpty()) {
+    public ResponseEntity<?> uploadDelistFDM(@RequestParam("file") MultipartFile file,
+                                             @RequestParam(value = "async", defaultValue = "false") boolean async) {
+        return upload(ListType.D_FDM, file, async);
+    }
+    
+    /**
+     * Upload D-SST (Delist SST) list
+     */
+    @PostMapping("/upload/d-sst")
+    public ResponseEntity<?> uploadDelistSST(@RequestParam("file") MultipartFile file,
+                                             @RequestParam(value = "async", defaultValue = "false") boolean async) {
+        return upload(ListType.D_SST, file, async);
+    }
+    
+    /**
+     * Upload any list as the raw request body instead of a multipart form, e.g.
+     * POST /upload/str/stream with Content-Type text/csv. Rows are applied while the
+     * body arrives, without spooling the file first. Bodies may be sent with
+     * Content-Encoding: gzip and are decompressed as they are read.
+     */
+    @PostMapping(value = "/upload/{list}/stream",
+                 consumes = {"text/csv", "text/plain", MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public ResponseEntity<ListUploadResponse> uploadStream(@PathVariable String list,
+                                                           @RequestParam(value = "mode", defaultValue = "append") String mode,
+                                                           @RequestHeader(value = "Content-Encoding", required = false) String encoding,
+                                                           HttpServletRequest request) {
+        ListType listType = listTypeForPath(list);
+        if (listType == null) {
+            return ResponseEntity.notFound().build();
+        }
+        UploadMode uploadMode;
+        try {
+            uploadMode = UploadMode.fromParameter(mode);
+        } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(
-                new ListUploadResponse(ListType.D_FDM, false, "File is empty")
+                new ListUploadResponse(listType, false, "Unknown upload mode: " + mode)
+            );
+        }
+        if (request.getContentLengthLong() == 0) {
+            return ResponseEntity.badRequest().body(
+                new ListUploadResponse(listType, false, "File is empty")
             );
         }
         
         try {
-            ListUploadResponse response = eligibilityService.uploadList(ListType.D_FDM, file);
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
-                new ListUploadResponse(ListType.D_FDM, false, "Error: " + e.getMessage())
+            InputStream body = request.getInputStream();
+            if (encoding != null && (encoding.equalsIgnoreCase("gzip") || encoding.equalsIgnoreCase("x-gzip"))) {
+                body = new GZIPInputStream(body, 1 << 16);
+            } else if (encoding != null && !encoding.equalsIgnoreCase("identity")) {
+                return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).body(
+                    new ListUploadResponse(listType, false, "Unsupported Content-Encoding: " + encoding)
+                );
+            }
+            return ResponseEntity.ok(eligibilityService.uploadList(listType, uploadMode, body, new IngestProgress()));
+        } catch (IOException e) {
+            // The body is not gzip as declared, or could not be read
+            return ResponseEntity.badRequest().body(
+                new ListUploadResponse(listType, false, "Error reading request body: " + e.getMessage())
             );
         }
     }
     
     /**
-     * Upload D-SST (Delist SST) list
+     * The list type for an upload path segment, e.g. "multiple-account" or "d-str"
      */
-    @PostMapping("/upload/d-sst")
-    public ResponseEntity<ListUploadResponse> uploadDelistSST(@RequestParam("file") MultipartFile file) {
+    private static ListType listTypeForPath(String list) {
+        for (ListType listType : ListType.values()) {
+            if (listType.getCode().replace('_', '-').equalsIgnoreCase(list)) {
+                return listType;
+            }
+        }
+        return null;
+    }
+    
+    private ResponseEntity<?> upload(ListType listType, MultipartFile file, boolean async) {
+        return upload(listType, file, async, UploadMode.APPEND.name());
+    }
+    
+    /**
+     * Shared upload handling. With async=true the file is queued as a background job
+     * and 202 Accepted is returned with the job's status. mode=replace treats the file
+     * as the complete list, taking accounts it leaves out off the list.
+     */
+    private ResponseEntity<?> upload(ListType listType, MultipartFile file, boolean async, String mode) {
         if (file.isEmpty()) {
             return ResponseEntity.badRequest().body(
-                new ListUploadResponse(ListType.D_SST, false, "File is empty")
+                new ListUploadResponse(listType, false, "File is empty")
+            );
+        }
+        UploadMode uploadMode;
+        try {
+            uploadMode = UploadMode.fromParameter(mode);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(
+                new ListUploadResponse(listType, false, "Unknown upload mode: " + mode)
             );
         }
         
         try {
-            ListUploadResponse response = eligibilityService.uploadList(ListType.D_SST, file);
+            if (async) {
+                UploadJobStatus status = uploadJobService.submit(listType, uploadMode, file);
+                return ResponseEntity.accepted()
+                    .location(URI.create("/api/loan-eligibility/jobs/" + status.getJobId()))
+                    .body(status);
+            }
+            ListUploadResponse response = eligibilityService.uploadList(listType, uploadMode, file);
             return ResponseEntity.ok(response);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
-                new ListUploadResponse(ListType.D_SST, false, "Error: " + e.getMessage())
+                new ListUploadResponse(listType, false, "Error: " + e.getMessage())
             );
         }
     }
     
     /**
-     * Check eligibility for a specific account
+     * List upload jobs, newest first
+     */
+    @GetMapping("/jobs")
+    public ResponseEntity<List<UploadJobStatus>> listJobs() {
+        return ResponseEntity.ok(uploadJobService.listJobs());
+    }
+    
+    /**
+     * Get progress of an upload job; the final ListUploadResponse is included once it finishes
+     */
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<UploadJobStatus> getJob(@PathVariable String jobId) {
+        UploadJobStatus status = uploadJobService.getStatus(jobId);
+        return status != null ? ResponseEntity.ok(status) : ResponseEntity.notFound().build();
+    }
+    
+    /**
+     * Cancel an upload job. Nothing it staged becomes visible.
+     */
+    @DeleteMapping("/jobs/{jobId}")
+    public ResponseEntity<UploadJobStatus> cancelJob(@PathVariable String jobId) {
+        UploadJobStatus status = uploadJobService.cancel(jobId);
+        return status != null ? ResponseEntity.accepted().body(status) : ResponseEntity.notFound().build();
+    }
+    
+    /**
+     * Check eligibility for a specific account, now or as of an earlier time
      */
     @PostMapping("/check-eligibility")
     public ResponseEntity<EligibilityCheckResponse> checkEligibility(@Valid @RequestBody EligibilityCheckRequest request) {
         try {
-            EligibilityCheckResponse response = eligibilityService.checkEligibility(request.getAccountId());
+            EligibilityCheckResponse response = request.getAsOf() != null
+                ? eligibilityService.checkEligibility(request.getAccountId(), request.getAsOf())
+                : eligibilityService.checkEligibility(request.getAccountId());
             return ResponseEntity.ok(response);
         } catch (Exception e) {
             EligibilityCheckResponse errorResponse = new EligibilityCheckResponse();
@@ -251,13 +318,30 @@ public class LoanEligibilityController {
     }
     
     /**
-     * Check eligibility via GET (for simple URL-based access)
+     * Check eligibility via GET (for simple URL-based access).
+     * Responses carry an ETag and Last-Modified for the account's current state; a
+     * matching If-None-Match or If-Modified-Since gets 304 without building the body.
+     * Caches may store responses but must revalidate them on every use.
+     * With {@code asOf} the answer comes from the account's verdict history and is
+     * not conditional.
      */
     @GetMapping("/check-eligibility/{accountId}")
-    public ResponseEntity<EligibilityCheckResponse> checkEligibilityGet(@PathVariable String accountId) {
+    public ResponseEntity<EligibilityCheckResponse> checkEligibilityGet(
+            @PathVariable String accountId,
+            @RequestParam(value = "asOf", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime asOf,
+            WebRequest webRequest) {
         try {
-            EligibilityCheckResponse response = eligibilityService.checkEligibility(accountId);
-            return ResponseEntity.ok(response);
+            if (asOf != null) {
+                return ResponseEntity.ok().cacheControl(CacheControl.noCache())
+                    .body(eligibilityService.checkEligibility(accountId, asOf));
+            }
+            // Sets the validator headers, and the 304 status when the client's copy is current
+            EligibilityCheckResponse response = eligibilityService.checkEligibility(accountId,
+                validator -> webRequest.checkNotModified(validator.getETag(), validator.getLastModified()));
+            if (response == null) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(CacheControl.noCache()).build();
+            }
+            return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(response);
         } catch (Exception e) {
             EligibilityCheckResponse errorResponse = new EligibilityCheckResponse();
             errorResponse.setAccountId(accountId);
@@ -267,6 +351,55 @@ public class LoanEligibilityController {
         }
     }
     
+    /**
+     * Check eligibility for many accounts in one request.
+     * Accepts a JSON array, newline-delimited IDs or CSV (first column) and streams
+     * results back as NDJSON (default) or CSV while the body is still being read.
+     * With {@code asOf} every account is checked as of that time.
+     */
+    @PostMapping("/check-eligibility/bulk")
+    public ResponseEntity<StreamingResponseBody> checkEligibilityBulk(
+            HttpServletRequest request,
+            @RequestParam(value = "format", required = false) String format,
+            @RequestParam(value = "asOf", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime asOf,
+            @RequestHeader(value = "Accept", required = false) String accept) {
+        BulkEligibilityService.InputFormat inputFormat = bulkInputFormat(request.getContentType());
+        BulkEligibilityService.OutputFormat outputFormat = bulkOutputFormat(format, accept);
+        
+        StreamingResponseBody body = output -> bulkEligibilityService.checkAll(
+            request.getInputStream(), inputFormat, output, outputFormat, asOf);
+        
+        MediaType contentType = outputFormat == BulkEligibilityService.OutputFormat.CSV
+            ? new MediaType("text", "csv")
+            : new MediaType("application", "x-ndjson");
+        return ResponseEntity.ok().contentType(contentType).body(body);
+    }
+    
+    private static BulkEligibilityService.InputFormat bulkInputFormat(String contentType) {
+        if (contentType != null) {
+            String type = contentType.toLowerCase();
+            if (type.startsWith("application/json")) {
+                return BulkEligibilityService.InputFormat.JSON;
+            }
+            if (type.startsWith("text/csv")) {
+                return BulkEligibilityService.InputFormat.CSV;
+            }
+        }
+        return BulkEligibilityService.InputFormat.LINES;
+    }
+    
+    private static BulkEligibilityService.OutputFormat bulkOutputFormat(String format, String accept) {
+        if (format != null) {
+            return "csv".equalsIgnoreCase(format)
+                ? BulkEligibilityService.OutputFormat.CSV
+                : BulkEligibilityService.OutputFormat.NDJSON;
+        }
+        if (accept != null && accept.toLowerCase().contains("text/csv")) {
+            return BulkEligibilityService.OutputFormat.CSV;
+        }
+        return BulkEligibilityService.OutputFormat.NDJSON;
+    }
+    
     /**
      * Get account records for debugging
      */
@@ -280,6 +413,178 @@ public class LoanEligibilityController {
         }
     }
     
+    /**
+     * Stream eligibility for every account whose ID starts with {@code prefix}, or lies
+     * from {@code from} (inclusive) to {@code to} (exclusive), in ID order as NDJSON
+     * (default) or CSV. With {@code eligible} only accounts with that verdict are returned.
+     */
+    @GetMapping("/accounts/search")
+    public ResponseEntity<StreamingResponseBody> searchAccounts(
+            @RequestParam(value = "prefix", required = false) String prefix,
+            @RequestParam(value = "from", required = false) String from,
+            @RequestParam(value = "to", required = false) String to,
+            @RequestParam(value = "eligible", required = false) Boolean eligible,
+            @RequestParam(value = "limit", required = false) Long limit,
+            @RequestParam(value = "format", required = false) String format,
+            @RequestHeader(value = "Accept", required = false) String accept) {
+        if (prefix != null ? prefix.isEmpty() || from != null || to != null : from == null && to == null) {
+            return searchError("Give either a non-empty prefix or a from/to range");
+        }
+        if (limit != null && limit < 1) {
+            return searchError("limit must be positive");
+        }
+        String start = prefix != null ? prefix : from;
+        String end = prefix != null ? SortedAccountIds.prefixEnd(prefix) : to;
+        BulkEligibilityService.OutputFormat outputFormat = bulkOutputFormat(format, accept);
+    
+        StreamingResponseBody body = output -> bulkEligibilityService.checkRange(
+            start, end, eligible, limit != null ? limit : Long.MAX_VALUE, output, outputFormat);
+    
+        MediaType contentType = outputFormat == BulkEligibilityService.OutputFormat.CSV
+            ? new MediaType("text", "csv")
+            : new MediaType("application", "x-ndjson");
+        return ResponseEntity.ok().contentType(contentType).body(body);
+    }
+    
+    private static ResponseEntity<StreamingResponseBody> searchError(String message) {
+        byte[] error = ("{\"error\":\"" + message + "\"}").getBytes(StandardCharsets.UTF_8);
+        return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON).body(output -> output.write(error));
+    }
+    
+    /**
+     * Page through all records of one generation. The first request opens a cursor with
+     * the given filters; pass nextCursor back to continue, the filters are then ignored.
+     */
+    @GetMapping("/records")
+    public ResponseEntity<RecordPage> getRecords(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", defaultValue = "1000") int limit,
+            @RequestParam(value = "listType", required = false) List<ListType> listTypes,
+            @RequestParam(value = "active", required = false) Boolean active,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        if (cursor != null) {
+            RecordPage page = recordExportService.nextPage(cursor, limit);
+            return page != null ? ResponseEntity.ok(page) : ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(recordExportService.openPage(recordFilter(listTypes, active, from, to), limit));
+    }
+    
+    /**
+     * Release a cursor before it is exhausted or times out
+     */
+    @DeleteMapping("/records/cursors/{cursor}")
+    public ResponseEntity<Void> closeRecordCursor(@PathVariable String cursor) {
+        return recordExportService.closeCursor(cursor)
+            ? ResponseEntity.noContent().build()
+            : ResponseEntity.notFound().build();
+    }
+    
+    /**
+     * Stream every matching record of one generation as NDJSON (default) or CSV
+     */
+    @GetMapping("/records/export")
+    public ResponseEntity<StreamingResponseBody> exportRecords(
+            @RequestParam(value = "format", required = false) String format,
+            @RequestHeader(value = "Accept", required = false) String accept,
+            @RequestParam(value = "listType", required = false) List<ListType> listTypes,
+            @RequestParam(value = "active", required = false) Boolean active,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        RecordExportService.Filter filter = recordFilter(listTypes, active, from, to);
+        boolean csv = bulkOutputFormat(format, accept) == BulkEligibilityService.OutputFormat.CSV;
+        RecordExportService.OutputFormat outputFormat = csv
+            ? RecordExportService.OutputFormat.CSV
+            : RecordExportService.OutputFormat.NDJSON;
+        
+        StreamingResponseBody body = output -> recordExportService.export(filter, output, outputFormat);
+        MediaType contentType = csv ? new MediaType("text", "csv") : new MediaType("application", "x-ndjson");
+        return ResponseEntity.ok().contentType(contentType).body(body);
+    }
+    
+    private static RecordExportService.Filter recordFilter(List<ListType> listTypes, Boolean active,
+                                                           LocalDateTime from, LocalDateTime to) {
+        return new RecordExportService.Filter(listTypes != null ? EnumSet.copyOf(listTypes) : null, active, from, to);
+    }
+    
+    /**
+     * Page through the accounts on ineligibility lists: those on all (op=and, the
+     * default) or any (op=or) of the given lists, minus those on an excluded list.
+     * Pass nextCursor back with the same query to continue.
+     */
+    @GetMapping("/membership")
+    public ResponseEntity<?> getMembership(
+            @RequestParam("lists") List<ListType> lists,
+            @RequestParam(value = "op", defaultValue = "and") String op,
+            @RequestParam(value = "exclude", required = false) List<ListType> exclude,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", defaultValue = "1000") int limit) {
+        try {
+            MembershipPage page = membershipService.page(membershipQuery(lists, op, exclude), cursor, limit);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    /**
+     * Count the accounts matching a membership query; without lists, the size of every list
+     */
+    @GetMapping("/membership/count")
+    public ResponseEntity<?> countMembership(
+            @RequestParam(value = "lists", required = false) List<ListType> lists,
+            @RequestParam(value = "op", defaultValue = "and") String op,
+            @RequestParam(value = "exclude", required = false) List<ListType> exclude) {
+        if (lists == null || lists.isEmpty()) {
+            return ResponseEntity.ok(membershipService.listSizes());
+        }
+        try {
+            return ResponseEntity.ok(membershipService.count(membershipQuery(lists, op, exclude)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    private static MembershipQuery membershipQuery(List<ListType> lists, String op, List<ListType> exclude) {
+        if (!"and".equalsIgnoreCase(op) && !"or".equalsIgnoreCase(op)) {
+            throw new IllegalArgumentException("Unknown operator: " + op + " (expected and or or)");
+        }
+        return new MembershipQuery(lists, "and".equalsIgnoreCase(op), exclude);
+    }
+    
+    /**
+     * Subscribe to eligibility changes: one event per upload with every account whose
+     * overall verdict it flipped, as server-sent events (default) or NDJSON. Only uploads
+     * of the given lists (and their delists) are sent; a reconnecting client resumes
+     * after the Last-Event-ID header, or the after parameter, if those events are retained.
+     */
+    @GetMapping("/events/verdicts")
+    public ResponseEntity<StreamingResponseBody> streamVerdictEvents(
+            @RequestParam(value = "lists", required = false) List<ListType> lists,
+            @RequestParam(value = "after", required = false) Long after,
+            @RequestParam(value = "format", required = false) String format,
+            @RequestHeader(value = "Accept", required = false) String accept,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        boolean ndjson = format != null
+            ? "ndjson".equalsIgnoreCase(format)
+            : accept != null && accept.toLowerCase().contains("application/x-ndjson");
+        VerdictEventService.OutputFormat outputFormat = ndjson
+            ? VerdictEventService.OutputFormat.NDJSON
+            : VerdictEventService.OutputFormat.SSE;
+        Set<ListType> listTypes = lists != null && !lists.isEmpty() ? EnumSet.copyOf(lists) : null;
+        Long resumeAfter = lastEventId != null ? lastEventId : after;
+        
+        StreamingResponseBody body = output -> {
+            try {
+                verdictEventService.stream(listTypes, resumeAfter, output, outputFormat);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        MediaType contentType = ndjson ? new MediaType("application", "x-ndjson") : MediaType.TEXT_EVENT_STREAM;
+        return ResponseEntity.ok().contentType(contentType).cacheControl(CacheControl.noCache()).body(body);
+    }
+    
     /**
      * Get system statistics
      */
@@ -287,12 +592,72 @@ public class LoanEligibilityController {
     public ResponseEntity<Map<String, Object>> getStatistics() {
         try {
             Map<String, Object> stats = eligibilityService.getStatistics();
+            stats.put("persistence", persistenceService.getStatistics());
+            stats.put("replication", replicationService.getStatus());
+            stats.put("verdictEvents", verdictEventService.getStatus());
             return ResponseEntity.ok(stats);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
     
+    /**
+     * Get upload timings, check latency histograms and store gauges
+     */
+    @GetMapping("/metrics")
+    public ResponseEntity<Map<String, Object>> getMetrics() {
+        try {
+            return ResponseEntity.ok(eligibilityMetrics.getMetrics());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+    
+    /**
+     * Replication role and, on a follower, how far it is behind its primary
+     */
+    @GetMapping("/replication/status")
+    public ResponseEntity<Map<String, Object>> getReplicationStatus() {
+        return ResponseEntity.ok(replicationService.getStatus());
+    }
+    
+    /**
+     * Snapshot of the published generation, for a follower to bootstrap from
+     */
+    @GetMapping("/replication/snapshot")
+    public ResponseEntity<StreamingResponseBody> getReplicationSnapshot() {
+        if (!replicationService.isPrimary()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        StreamingResponseBody body = replicationService::writeSnapshot;
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_OCTET_STREAM).body(body);
+    }
+    
+    /**
+     * Write-ahead log entries committed after the given generation, followed by new
+     * ones as they commit. 410 Gone when the log no longer holds the next generation
+     * and the follower has to bootstrap from a snapshot again.
+     */
+    @GetMapping("/replication/log")
+    public ResponseEntity<StreamingResponseBody> getReplicationLog(@RequestParam("after") long after,
+                                                                   HttpServletRequest request) throws IOException {
+        if (!replicationService.isPrimary()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        if (!replicationService.canStreamFrom(after)) {
+            return ResponseEntity.status(HttpStatus.GONE).build();
+        }
+        String follower = request.getRemoteAddr() + ":" + request.getRemotePort();
+        StreamingResponseBody body = output -> {
+            try {
+                replicationService.streamLog(after, follower, output);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_OCTET_STREAM).body(body);
+    }
+    
     /**
      * Health check endpoint
      */
@@ -2,10 +2,15 @@ package com.loanmanagement.dto;
 
 import jakarta.validation.constraints.NotBlank;
 
+import java.time.LocalDateTime;
+
 public class EligibilityCheckRequest {
     @NotBlank(message = "Account ID is required")
     private String accountId;
     
+    // Optional: answer as of this time instead of now
+    private LocalDateTime asOf;
+    
     public EligibilityCheckRequest() {}
     
     public EligibilityCheckRequest(String accountId) {
@@ -19,4 +24,12 @@ public class EligibilityCheckRequest {
     public void setAccountId(String accountId) {
         this.accountId = accountId;
     }
+    
+    public LocalDateTime getAsOf() {
+        return asOf;
+    }
+    
+    public void setAsOf(LocalDateTime asOf) {
+        this.asOf = asOf;
+    }
 }
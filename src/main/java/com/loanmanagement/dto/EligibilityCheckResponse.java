@@ -10,6 +10,9 @@ public class EligibilityCheckResponse {
     private String message;
     private List<IneligibilityReason> ineligibilityReasons;
     private LocalDateTime checkTimestamp;
+    private long generation;
+    // Set when the check was answered for an earlier point in time
+    private LocalDateTime asOf;
     
     public EligibilityCheckResponse() {
         this.checkTimestamp = LocalDateTime.now();
@@ -63,6 +66,22 @@ public class EligibilityCheckResponse {
         this.checkTimestamp = checkTimestamp;
     }
     
+    public long getGeneration() {
+        return generation;
+    }
+    
+    public void setGeneration(long generation) {
+        this.generation = generation;
+    }
+    
+    public LocalDateTime getAsOf() {
+        return asOf;
+    }
+    
+    public void setAsOf(LocalDateTime asOf) {
+        this.asOf = asOf;
+    }
+    
     public static class IneligibilityReason {
         private ListType listType;
         private String reason;
@@ -1,6 +1,7 @@
 package com.loanmanagement.dto;
 
 import com.loanmanagement.model.ListType;
+import com.loanmanagement.model.UploadMode;
 import java.time.LocalDateTime;
 
 public class ListUploadResponse {
@@ -11,6 +12,15 @@ public class ListUploadResponse {
     private LocalDateTime uploadTimestamp;
     private String message;
     private boolean success;
+    private int distinctReasons;
+    private int newReasons;
+    private long reasonBytesSaved;
+    private UploadMode mode = UploadMode.APPEND;
+    // Replace mode only: how the uploaded list differed from the current one
+    private int addedRecords;
+    private int removedRecords;
+    private int changedRecords;
+    private int unchangedRecords;
     
     public ListUploadResponse() {
         this.uploadTimestamp = LocalDateTime.now();
@@ -79,4 +89,68 @@ public class ListUploadResponse {
     public void setSuccess(boolean success) {
         this.success = success;
     }
+    
+    public int getDistinctReasons() {
+        return distinctReasons;
+    }
+    
+    public void setDistinctReasons(int distinctReasons) {
+        this.distinctReasons = distinctReasons;
+    }
+    
+    public int getNewReasons() {
+        return newReasons;
+    }
+    
+    public void setNewReasons(int newReasons) {
+        this.newReasons = newReasons;
+    }
+    
+    public long getReasonBytesSaved() {
+        return reasonBytesSaved;
+    }
+    
+    public void setReasonBytesSaved(long reasonBytesSaved) {
+        this.reasonBytesSaved = reasonBytesSaved;
+    }
+    
+    public UploadMode getMode() {
+        return mode;
+    }
+    
+    public void setMode(UploadMode mode) {
+        this.mode = mode;
+    }
+    
+    public int getAddedRecords() {
+        return addedRecords;
+    }
+    
+    public void setAddedRecords(int addedRecords) {
+        this.addedRecords = addedRecords;
+    }
+    
+    public int getRemovedRecords() {
+        return removedRecords;
+    }
+    
+    public void setRemovedRecords(int removedRecords) {
+        this.removedRecords = removedRecords;
+    }
+    
+    public int getChangedRecords() {
+        return changedRecords;
+    }
+    
+    public void setChangedRecords(int changedRecords) {
+        this.changedRecords = changedRecords;
+    }
+    
+    public int getUnchangedRecords() {
+        return unchangedRecords;
+    }
+    
+    public void setUnchangedRecords(int unchangedRecords) {
+        this.unchangedRecords = unchangedRecords;
+    }
 }
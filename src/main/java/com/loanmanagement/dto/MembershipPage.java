@@ -0,0 +1,63 @@
+package com.loanmanagement.dto;
+
+import java.util.List;
+
+public class MembershipPage {
+    private long generation;
+    // Accounts matching the query in this generation, across all pages
+    private long total;
+    private List<String> accountIds;
+    private String nextCursor;
+    private boolean hasMore;
+
+    public MembershipPage() {}
+
+    public MembershipPage(long generation, long total, List<String> accountIds, String nextCursor) {
+        this.generation = generation;
+        this.total = total;
+        this.accountIds = accountIds;
+        this.nextCursor = nextCursor;
+        this.hasMore = nextCursor != null;
+    }
+
+    // Getters and Setters
+    public long getGeneration() {
+        return generation;
+    }
+
+    public void setGeneration(long generation) {
+        this.generation = generation;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public void setTotal(long total) {
+        this.total = total;
+    }
+
+    public List<String> getAccountIds() {
+        return accountIds;
+    }
+
+    public void setAccountIds(List<String> accountIds) {
+        this.accountIds = accountIds;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+}
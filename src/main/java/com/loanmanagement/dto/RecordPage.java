@@ -0,0 +1,53 @@
+package com.loanmanagement.dto;
+
+import com.loanmanagement.model.EligibilityRecord;
+import java.util.List;
+
+public class RecordPage {
+    private long generation;
+    private List<EligibilityRecord> records;
+    private String nextCursor;
+    private boolean hasMore;
+
+    public RecordPage() {}
+
+    public RecordPage(long generation, List<EligibilityRecord> records, String nextCursor) {
+        this.generation = generation;
+        this.records = records;
+        this.nextCursor = nextCursor;
+        this.hasMore = nextCursor != null;
+    }
+
+    // Getters and Setters
+    public long getGeneration() {
+        return generation;
+    }
+
+    public void setGeneration(long generation) {
+        this.generation = generation;
+    }
+
+    public List<EligibilityRecord> getRecords() {
+        return records;
+    }
+
+    public void setRecords(List<EligibilityRecord> records) {
+        this.records = records;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+}
@@ -0,0 +1,68 @@
+package com.loanmanagement.ingest;
+
+import com.loanmanagement.model.ListType;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Command-line converter from AccountID,Reason CSV to {@link BinaryListFormat}.
+ * Rows are read the way CSV uploads are, so both files ingest to the same result.
+ *
+ * <pre>
+ * java -cp loan-eligibility-system-1.0.0-exec.jar \
+ *     -Dloader.main=com.loanmanagement.ingest.BinaryListConverter \
+ *     org.springframework.boot.loader.PropertiesLauncher STR str.csv str.elb
+ * </pre>
+ */
+public class BinaryListConverter {
+
+    private static final CSVFormat FORMAT = CSVFormat.DEFAULT
+        .withFirstRecordAsHeader()
+        .withHeader("AccountID", "Reason");
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("Usage: BinaryListConverter <LIST_TYPE> <input.csv> <output.elb>");
+            System.exit(2);
+        }
+        ListType listType = ListType.valueOf(args[0].toUpperCase());
+        Path input = Paths.get(args[1]);
+        Path output = Paths.get(args[2]);
+
+        long start = System.nanoTime();
+        long skipped = 0;
+        BinaryListWriter writer = new BinaryListWriter(output, listType);
+        try (Reader reader = Files.newBufferedReader(input, Charset.defaultCharset());
+             CSVParser parser = FORMAT.parse(reader)) {
+            for (CSVRecord record : parser) {
+                String accountId;
+                String reason;
+                try {
+                    accountId = record.get("AccountID").trim();
+                    reason = record.get("Reason") != null ? record.get("Reason").trim() : "";
+                } catch (RuntimeException e) {
+                    // Short rows are skipped, as the CSV ingest does
+                    skipped++;
+                    continue;
+                }
+                if (!writer.write(accountId, reason)) {
+                    skipped++;
+                }
+            }
+        } finally {
+            writer.close();
+        }
+
+        System.out.printf("Wrote %d %s rows (%d skipped, %d distinct reasons): %d bytes -> %d bytes in %d ms%n",
+            writer.getRowCount(), listType, skipped, writer.getReasonCount(), Files.size(input), Files.size(output),
+            (System.nanoTime() - start) / 1_000_000);
+    }
+}
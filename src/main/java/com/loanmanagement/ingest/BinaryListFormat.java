@@ -0,0 +1,82 @@
+package com.loanmanagement.ingest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Binary list files, an alternative to AccountID,Reason CSV that ingests without
+ * text parsing or per-row string allocation.
+ *
+ * <pre>
+ * file   := header block*
+ * header := MAGIC:i32 version:u8 listTypeLength:u8 listType:ascii rowCount:i64
+ *           reasonCount:i32 (reasonLength:u16 reason:utf8)*
+ * block  := rowCount:i32 byteLength:i32 row*
+ * row    := tag:u8 reasonIndex:varint accountId
+ * </pre>
+ *
+ * The list type is the {@code ListType} code, e.g. "STR". Reasons are stored once in
+ * the header and rows refer to them by index. A row's tag says how its account ID
+ * is stored:
+ * <ul>
+ *   <li>{@code 0x80 | digits} (1 to 17 digits): the ID is all digits and is stored as
+ *       its value, a varint below 10^digits; leading zeros are implied by the digit
+ *       count.</li>
+ *   <li>{@code 1} to {@code 127}: the ID is stored as that many UTF-8 bytes.</li>
+ * </ul>
+ * Fixed-width integers are big-endian; varints are unsigned LEB128. Blocks are
+ * self-delimiting so they can be handed to parser threads without decoding, and the
+ * header row count must match the rows in all blocks. Use
+ * {@link BinaryListConverter} to produce files from CSV.
+ */
+public final class BinaryListFormat {
+
+    // "ELB1"
+    public static final int MAGIC = 0x454C4231;
+    public static final int VERSION = 1;
+
+    static final int NUMERIC_TAG = 0x80;
+    static final int MAX_TEXT_ID_BYTES = 127;
+    static final int BLOCK_HEADER_BYTES = 8;
+    static final int MAX_BLOCK_BYTES = 64 << 20;
+
+    private BinaryListFormat() {
+    }
+
+    /**
+     * Whether the bytes start with the binary list magic
+     */
+    public static boolean isBinary(byte[] prefix, int length) {
+        return length >= 4 && ByteBuffer.wrap(prefix, 0, 4).getInt() == MAGIC;
+    }
+
+    public static boolean isBinary(Path file) throws IOException {
+        try (InputStream input = Files.newInputStream(file)) {
+            byte[] prefix = input.readNBytes(4);
+            return isBinary(prefix, prefix.length);
+        }
+    }
+
+    static long readVarint(ByteBuffer buffer) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in binary list");
+    }
+
+    static void writeVarint(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+}
@@ -0,0 +1,216 @@
+package com.loanmanagement.ingest;
+
+import com.loanmanagement.model.ListType;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the header of a {@link BinaryListFormat} file and hands out its blocks.
+ *
+ * <p>Files are read through memory-mapped regions, one per block, so block bytes
+ * go from the page cache straight to the parser threads. Streams (the write-ahead
+ * log during recovery) are read block by block into heap buffers.
+ */
+public abstract class BinaryListReader implements Closeable {
+
+    private ListType listType;
+    private long rowCount;
+    private String[] reasons;
+
+    /**
+     * Open a file, reading its header
+     */
+    public static BinaryListReader open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new MappedReader(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Read a file from a stream, reading its header. Closing the reader closes the stream.
+     */
+    public static BinaryListReader read(InputStream input) throws IOException {
+        return new StreamReader(input);
+    }
+
+    public ListType getListType() {
+        return listType;
+    }
+
+    /**
+     * Number of rows the header declares
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * The reason dictionary; rows refer to reasons by index into this array
+     */
+    public String[] getReasons() {
+        return reasons;
+    }
+
+    /**
+     * The next block's rows, positioned at the first row, or null after the last block
+     */
+    public abstract Block nextBlock() throws IOException;
+
+    /**
+     * Parse the header; returns its length in bytes
+     */
+    long readHeader(DataInputStream input) throws IOException {
+        if (input.readInt() != BinaryListFormat.MAGIC) {
+            throw new IOException("Not a binary list file");
+        }
+        int version = input.readUnsignedByte();
+        if (version != BinaryListFormat.VERSION) {
+            throw new IOException("Unsupported binary list version " + version);
+        }
+        byte[] code = new byte[input.readUnsignedByte()];
+        input.readFully(code);
+        try {
+            listType = ListType.valueOf(new String(code, StandardCharsets.US_ASCII));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unknown list type in binary list header");
+        }
+        rowCount = input.readLong();
+        int reasonCount = input.readInt();
+        if (rowCount < 0 || reasonCount < 0) {
+            throw new IOException("Corrupt binary list header");
+        }
+        long length = 4 + 1 + 1 + code.length + 8 + 4;
+        reasons = new String[reasonCount];
+        for (int i = 0; i < reasonCount; i++) {
+            byte[] reason = new byte[input.readUnsignedShort()];
+            input.readFully(reason);
+            reasons[i] = new String(reason, StandardCharsets.UTF_8);
+            length += 2 + reason.length;
+        }
+        return length;
+    }
+
+    static void checkBlock(int rows, int bytes) throws IOException {
+        if (rows < 0 || bytes < 0 || bytes > BinaryListFormat.MAX_BLOCK_BYTES) {
+            throw new IOException("Corrupt binary list block header");
+        }
+    }
+
+    /**
+     * Encoded rows of one block
+     */
+    public static final class Block {
+        final int rows;
+        final ByteBuffer data;
+
+        Block(int rows, ByteBuffer data) {
+            this.rows = rows;
+            this.data = data;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        public int getBytes() {
+            return data.limit();
+        }
+    }
+
+    private static final class MappedReader extends BinaryListReader {
+        private final FileChannel channel;
+        private final long size;
+        private final ByteBuffer blockHeader = ByteBuffer.allocate(BinaryListFormat.BLOCK_HEADER_BYTES);
+        private long position;
+
+        MappedReader(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            // The header is read through a stream; its parsed length says where the blocks start
+            DataInputStream header = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            try {
+                this.position = readHeader(header);
+            } catch (EOFException e) {
+                throw new IOException("Binary list header is truncated");
+            }
+        }
+
+        @Override
+        public Block nextBlock() throws IOException {
+            if (position == size) {
+                return null;
+            }
+            blockHeader.clear();
+            while (blockHeader.hasRemaining()) {
+                if (channel.read(blockHeader, position + blockHeader.position()) < 0) {
+                    throw new IOException("Binary list block header is truncated");
+                }
+            }
+            int rows = blockHeader.getInt(0);
+            int bytes = blockHeader.getInt(4);
+            checkBlock(rows, bytes);
+            long start = position + BinaryListFormat.BLOCK_HEADER_BYTES;
+            if (start + bytes > size) {
+                throw new IOException("Binary list block is truncated");
+            }
+            position = start + bytes;
+            return new Block(rows, channel.map(FileChannel.MapMode.READ_ONLY, start, bytes));
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    private static final class StreamReader extends BinaryListReader {
+        private final DataInputStream input;
+
+        StreamReader(InputStream source) throws IOException {
+            this.input = new DataInputStream(new BufferedInputStream(source, 1 << 16));
+            try {
+                readHeader(input);
+            } catch (EOFException e) {
+                throw new IOException("Binary list header is truncated");
+            }
+        }
+
+        @Override
+        public Block nextBlock() throws IOException {
+            int first = input.read();
+            if (first < 0) {
+                return null;
+            }
+            try {
+                int rows = first << 24 | input.readUnsignedByte() << 16 | input.readUnsignedShort();
+                int bytes = input.readInt();
+                checkBlock(rows, bytes);
+                byte[] data = new byte[bytes];
+                input.readFully(data);
+                return new Block(rows, ByteBuffer.wrap(data));
+            } catch (EOFException e) {
+                throw new IOException("Binary list block is truncated");
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+}
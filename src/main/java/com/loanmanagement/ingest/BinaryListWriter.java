@@ -0,0 +1,161 @@
+package com.loanmanagement.ingest;
+
+import com.loanmanagement.model.ListType;
+import com.loanmanagement.store.NumericAccountId;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a {@link BinaryListFormat} file. Rows are encoded into blocks in a temporary
+ * file next to the target while the reason dictionary grows; closing writes the
+ * header and appends the blocks behind it.
+ */
+public class BinaryListWriter implements Closeable {
+
+    private static final int BLOCK_BYTES = 1 << 20;
+    // Tag, a five-byte reason index and the longest text ID
+    private static final int MAX_ROW_BYTES = 1 + 5 + BinaryListFormat.MAX_TEXT_ID_BYTES;
+
+    private final Path target;
+    private final ListType listType;
+    private final Path body;
+    private final FileChannel bodyChannel;
+    private final ByteBuffer block = ByteBuffer.allocate(BinaryListFormat.BLOCK_HEADER_BYTES + BLOCK_BYTES);
+    private final Map<String, Integer> reasonIndex = new HashMap<>();
+    private final List<String> reasons = new ArrayList<>();
+    private int blockRows;
+    private long rows;
+    private boolean closed;
+
+    public BinaryListWriter(Path target, ListType listType) throws IOException {
+        this.target = target;
+        this.listType = listType;
+        Path directory = target.toAbsolutePath().getParent();
+        this.body = Files.createTempFile(directory, target.getFileName().toString(), ".blocks");
+        this.bodyChannel = FileChannel.open(body, StandardOpenOption.WRITE, StandardOpenOption.READ);
+        block.position(BinaryListFormat.BLOCK_HEADER_BYTES);
+    }
+
+    /**
+     * Append a row. Returns false, writing nothing, for a blank account ID or one
+     * longer than the format allows.
+     */
+    public boolean write(String accountId, String reason) throws IOException {
+        if (accountId.isEmpty()) {
+            return false;
+        }
+        long key = NumericAccountId.pack(accountId);
+        byte[] text = null;
+        if (key == NumericAccountId.NONE) {
+            text = accountId.getBytes(StandardCharsets.UTF_8);
+            if (text.length > BinaryListFormat.MAX_TEXT_ID_BYTES) {
+                return false;
+            }
+        }
+        if (block.remaining() < MAX_ROW_BYTES) {
+            flushBlock();
+        }
+        if (text == null) {
+            block.put((byte) (BinaryListFormat.NUMERIC_TAG | NumericAccountId.digits(key)));
+            BinaryListFormat.writeVarint(block, reasonIndex(reason));
+            BinaryListFormat.writeVarint(block, NumericAccountId.value(key));
+        } else {
+            block.put((byte) text.length);
+            BinaryListFormat.writeVarint(block, reasonIndex(reason));
+            block.put(text);
+        }
+        blockRows++;
+        rows++;
+        return true;
+    }
+
+    public long getRowCount() {
+        return rows;
+    }
+
+    public int getReasonCount() {
+        return reasons.size();
+    }
+
+    private int reasonIndex(String reason) {
+        return reasonIndex.computeIfAbsent(reason != null ? reason : "", text -> {
+            reasons.add(text);
+            return reasons.size() - 1;
+        });
+    }
+
+    private void flushBlock() throws IOException {
+        if (blockRows == 0) {
+            return;
+        }
+        block.putInt(0, blockRows);
+        block.putInt(4, block.position() - BinaryListFormat.BLOCK_HEADER_BYTES);
+        block.flip();
+        while (block.hasRemaining()) {
+            bodyChannel.write(block);
+        }
+        block.clear();
+        block.position(BinaryListFormat.BLOCK_HEADER_BYTES);
+        blockRows = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try (FileChannel blocks = bodyChannel) {
+            flushBlock();
+            try (FileChannel output = FileChannel.open(target, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer header = header();
+                while (header.hasRemaining()) {
+                    output.write(header);
+                }
+                long size = blocks.size();
+                for (long position = 0; position < size; ) {
+                    position += blocks.transferTo(position, size - position, output);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(body);
+        }
+    }
+
+    private ByteBuffer header() {
+        byte[] code = listType.getCode().getBytes(StandardCharsets.US_ASCII);
+        List<byte[]> encoded = new ArrayList<>(reasons.size());
+        int size = 4 + 1 + 1 + code.length + 8 + 4;
+        for (String reason : reasons) {
+            byte[] bytes = reason.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > 0xFFFF) {
+                throw new IllegalArgumentException("Reason longer than 65535 bytes");
+            }
+            encoded.add(bytes);
+            size += 2 + bytes.length;
+        }
+        ByteBuffer header = ByteBuffer.allocate(size);
+        header.putInt(BinaryListFormat.MAGIC)
+            .put((byte) BinaryListFormat.VERSION)
+            .put((byte) code.length)
+            .put(code)
+            .putLong(rows)
+            .putInt(reasons.size());
+        for (byte[] bytes : encoded) {
+            header.putShort((short) bytes.length).put(bytes);
+        }
+        return header.flip();
+    }
+}
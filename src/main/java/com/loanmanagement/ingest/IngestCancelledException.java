@@ -0,0 +1,13 @@
+package com.loanmanagement.ingest;
+
+import java.io.IOException;
+
+/**
+ * Thrown by {@link IngestPipeline#run} when its {@link IngestProgress} was cancelled
+ */
+public class IngestCancelledException extends IOException {
+
+    public IngestCancelledException() {
+        super("Upload cancelled");
+    }
+}
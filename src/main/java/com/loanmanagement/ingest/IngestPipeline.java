@@ -0,0 +1,567 @@
+package com.loanmanagement.ingest;
+
+import com.loanmanagement.store.AccountSharding;
+import com.loanmanagement.store.NumericAccountId;
+import jakarta.annotation.PreDestroy;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Staged, parallel list ingest.
+ *
+ * <ol>
+ *   <li>The calling thread reads the input in large chunks: CSV is cut at line
+ *       boundaries that are not inside a quoted field, binary lists are read one
+ *       block at a time.</li>
+ *   <li>Parser workers turn each chunk into AccountID,Reason rows and route them to
+ *       the applier of the account's store shard. All-digit IDs are packed once here
+ *       and stay packed; binary lists also take reasons from the file's dictionary,
+ *       so no strings are built for them.</li>
+ *   <li>One applier per {@link AccountSharding} shard hands rows to the
+ *       {@link RowHandler}, so every shard has a single writer. Each applier re-orders
+ *       batches by chunk sequence, so rows for one account are applied in file order.</li>
+ * </ol>
+ *
+ * Queues between the stages are bounded, and the reader may only have a fixed number
+ * of chunks in flight, so memory use does not depend on file size.
+ */
+@Component
+public class IngestPipeline {
+
+    private static final String[] HEADER = {"AccountID", "Reason"};
+
+    // The first chunk carries the header line, which is skipped just like the single-threaded parser did
+    private static final CSVFormat FIRST_CHUNK_FORMAT = CSVFormat.DEFAULT
+        .withFirstRecordAsHeader()
+        .withHeader(HEADER);
+    private static final CSVFormat CHUNK_FORMAT = CSVFormat.DEFAULT
+        .withHeader(HEADER);
+
+    private static final long POLL_MILLIS = 100;
+
+    private final int parallelism;
+    private final AccountSharding sharding;
+    private final int shards;
+    private final int chunkSize;
+    private final int queueCapacity;
+    private final ExecutorService workers;
+
+    public IngestPipeline(AccountSharding sharding,
+                          @Value("${eligibility.ingest.parallelism:0}") int parallelism,
+                          @Value("${eligibility.ingest.chunk-size-bytes:1048576}") int chunkSize,
+                          @Value("${eligibility.ingest.queue-capacity:8}") int queueCapacity) {
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.sharding = sharding;
+        this.shards = sharding.getShardCount();
+        this.chunkSize = Math.max(chunkSize, 4096);
+        this.queueCapacity = Math.max(queueCapacity, 1);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "ingest-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Parse the CSV input and apply every valid row. Returns the same counts as a
+     * sequential pass: a row is skipped when its account ID is blank or when reading
+     * or applying it throws.
+     */
+    public IngestResult run(InputStream input, RowHandler handler) throws IOException {
+        return run(input, handler, new IngestProgress());
+    }
+
+    /**
+     * Same as {@link #run(InputStream, RowHandler)}, reporting counts to the given
+     * progress as rows are parsed and applied
+     */
+    public IngestResult run(InputStream input, RowHandler handler, IngestProgress progress) throws IOException {
+        Run run = new Run(handler, progress, null);
+        return execute(run, () -> run.readChunks(input));
+    }
+
+    /**
+     * Apply every row of a binary list. Fails if the blocks hold a different number
+     * of rows than the header declares.
+     */
+    public IngestResult run(BinaryListReader input, RowHandler handler, IngestProgress progress) throws IOException {
+        Run run = new Run(handler, progress, input.getReasons());
+        IngestResult result = execute(run, () -> run.readBlocks(input));
+        if (result.getTotalRecords() != input.getRowCount()) {
+            throw new IOException(String.format("Binary list declares %d rows but holds %d",
+                input.getRowCount(), result.getTotalRecords()));
+        }
+        return result;
+    }
+
+    @FunctionalInterface
+    private interface ReadStage {
+        void read() throws IOException, InterruptedException;
+    }
+
+    private IngestResult execute(Run run, ReadStage reader) throws IOException {
+        long start = System.nanoTime();
+        IngestProgress progress = run.progress;
+        List<Future<?>> parsers = new ArrayList<>(parallelism);
+        List<Future<?>> appliers = new ArrayList<>(shards);
+        for (int i = 0; i < parallelism; i++) {
+            parsers.add(workers.submit(run::parseLoop));
+        }
+        for (int i = 0; i < shards; i++) {
+            int shard = i;
+            appliers.add(workers.submit(() -> run.applyLoop(shard)));
+        }
+
+        try {
+            reader.read();
+        } catch (Throwable t) {
+            run.fail(t);
+        }
+
+        try {
+            for (int i = 0; i < parallelism; i++) {
+                run.put(run.chunkQueue, Chunk.END);
+            }
+            await(parsers, run);
+            for (BlockingQueue<RowBatch> queue : run.applierQueues) {
+                run.put(queue, RowBatch.END);
+            }
+            await(appliers, run);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            run.fail(e);
+        }
+
+        Throwable failure = run.failure.get();
+        if (failure == null && progress.isCancelled()) {
+            failure = new IngestCancelledException();
+        }
+        if (failure != null) {
+            if (failure instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (failure instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException(failure.getMessage(), failure);
+        }
+        return new IngestResult(progress.totalRecords.intValue(), progress.processedRecords.intValue(),
+            progress.skippedRecords.intValue(), run.parseNanos.sum(), run.applyNanos.sum(), System.nanoTime() - start,
+            run.shardRows, run.shardApplyNanos);
+    }
+
+    private static void await(List<Future<?>> futures, Run run) {
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                run.fail(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                run.fail(e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * State shared by the stages of one ingest run
+     */
+    private class Run {
+        final RowHandler handler;
+        final BlockingQueue<Chunk> chunkQueue = new ArrayBlockingQueue<>(queueCapacity);
+        final List<BlockingQueue<RowBatch>> applierQueues;
+        final Semaphore chunksInFlight = new Semaphore(queueCapacity + 2 * parallelism);
+        // Rows applied and time spent per shard, each written only by that shard's applier
+        final long[] shardRows = new long[shards];
+        final long[] shardApplyNanos = new long[shards];
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final IngestProgress progress;
+        final LongAdder parseNanos = new LongAdder();
+        final LongAdder applyNanos = new LongAdder();
+        final Charset charset = Charset.defaultCharset();
+        // Reason dictionary of a binary list; null for CSV
+        final String[] reasons;
+
+        Run(RowHandler handler, IngestProgress progress, String[] reasons) {
+            this.handler = handler;
+            this.progress = progress;
+            this.reasons = reasons;
+            this.applierQueues = new ArrayList<>(shards);
+            for (int i = 0; i < shards; i++) {
+                applierQueues.add(new ArrayBlockingQueue<>(queueCapacity));
+            }
+        }
+
+        void fail(Throwable t) {
+            failure.compareAndSet(null, t);
+        }
+
+        boolean failed() {
+            if (progress.isCancelled()) {
+                fail(new IngestCancelledException());
+            }
+            return failure.get() != null;
+        }
+
+        /**
+         * Reader stage: emit chunks that end on a newline outside quotes
+         */
+        void readChunks(InputStream input) throws IOException, InterruptedException {
+            byte[] buffer = new byte[chunkSize];
+            int length = 0;
+            int scanned = 0;
+            int splitAt = -1;
+            boolean inQuotes = false;
+            long sequence = 0;
+
+            while (!failed()) {
+                for (int i = scanned; i < length; i++) {
+                    byte b = buffer[i];
+                    if (b == '"') {
+                        inQuotes = !inQuotes;
+                    } else if (b == '\n' && !inQuotes) {
+                        splitAt = i;
+                    }
+                }
+                scanned = length;
+
+                if (length == buffer.length) {
+                    if (splitAt < 0) {
+                        // A single record larger than the chunk size; keep reading into a bigger buffer
+                        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    } else {
+                        int chunkLength = splitAt + 1;
+                        int carried = length - chunkLength;
+                        byte[] next = new byte[Math.max(chunkSize, carried * 2)];
+                        System.arraycopy(buffer, chunkLength, next, 0, carried);
+                        emit(new Chunk(sequence++, buffer, chunkLength));
+
+                        // The carried-over tail starts outside quotes and is re-scanned
+                        buffer = next;
+                        length = carried;
+                        scanned = 0;
+                        splitAt = -1;
+                        inQuotes = false;
+                        continue;
+                    }
+                }
+
+                int read = input.read(buffer, length, buffer.length - length);
+                if (read < 0) {
+                    break;
+                }
+                length += read;
+                progress.bytesRead.add(read);
+            }
+
+            if (length > 0 && !failed()) {
+                emit(new Chunk(sequence, buffer, length));
+            }
+        }
+
+        /**
+         * Reader stage for binary lists: every block is one chunk
+         */
+        void readBlocks(BinaryListReader input) throws IOException, InterruptedException {
+            long sequence = 0;
+            BinaryListReader.Block block;
+            while (!failed() && (block = input.nextBlock()) != null) {
+                progress.bytesRead.add(BinaryListFormat.BLOCK_HEADER_BYTES + block.getBytes());
+                emit(new Chunk(sequence++, block));
+            }
+        }
+
+        private void emit(Chunk chunk) throws InterruptedException {
+            while (!chunksInFlight.tryAcquire(POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (failed()) {
+                    return;
+                }
+            }
+            chunk.pendingPartitions.set(shards);
+            put(chunkQueue, chunk);
+        }
+
+        /**
+         * Parser stage: split a chunk into per-applier row batches
+         */
+        void parseLoop() {
+            try {
+                Chunk chunk;
+                while ((chunk = take(chunkQueue)) != null && chunk != Chunk.END) {
+                    RowBatch[] batches = chunk.block != null ? parseBlock(chunk) : parse(chunk);
+                    for (int i = 0; i < shards; i++) {
+                        put(applierQueues.get(i), batches[i]);
+                    }
+                }
+            } catch (Throwable t) {
+                fail(t);
+            }
+        }
+
+        private RowBatch[] parse(Chunk chunk) throws IOException {
+            long start = System.nanoTime();
+            RowBatch[] batches = newBatches(chunk);
+
+            CSVFormat format = chunk.sequence == 0 ? FIRST_CHUNK_FORMAT : CHUNK_FORMAT;
+            InputStreamReader reader = new InputStreamReader(
+                new ByteArrayInputStream(chunk.data, 0, chunk.length), charset);
+            int total = 0;
+            int skipped = 0;
+            try (CSVParser parser = format.parse(reader)) {
+                for (CSVRecord record : parser) {
+                    total++;
+                    try {
+                        String accountId = record.get("AccountID").trim();
+                        String reason = record.get("Reason") != null ? record.get("Reason").trim() : "";
+
+                        if (accountId.isEmpty()) {
+                            skipped++;
+                            continue;
+                        }
+                        long accountKey = NumericAccountId.pack(accountId);
+                        if (accountKey != NumericAccountId.NONE) {
+                            batches[sharding.shardOf(accountKey)].addNumeric(accountKey, reason);
+                        } else {
+                            batches[sharding.shardOfText(accountId)].add(accountId, reason);
+                        }
+                    } catch (Exception e) {
+                        skipped++;
+                    }
+                }
+            } finally {
+                progress.totalRecords.add(total);
+                progress.skippedRecords.add(skipped);
+                parseNanos.add(System.nanoTime() - start);
+            }
+            return batches;
+        }
+
+        private RowBatch[] parseBlock(Chunk chunk) throws IOException {
+            long start = System.nanoTime();
+            RowBatch[] batches = newBatches(chunk);
+
+            ByteBuffer data = chunk.block.data;
+            int rows = 0;
+            try {
+                for (; rows < chunk.block.rows; rows++) {
+                    int tag = data.get() & 0xFF;
+                    long reasonIndex = BinaryListFormat.readVarint(data);
+                    if (reasonIndex < 0 || reasonIndex >= reasons.length) {
+                        throw corruptBlock(chunk);
+                    }
+                    String reason = reasons[(int) reasonIndex];
+                    if ((tag & BinaryListFormat.NUMERIC_TAG) != 0) {
+                        long accountKey = NumericAccountId.pack(tag & ~BinaryListFormat.NUMERIC_TAG,
+                            BinaryListFormat.readVarint(data));
+                        if (accountKey == NumericAccountId.NONE) {
+                            throw corruptBlock(chunk);
+                        }
+                        batches[sharding.shardOf(accountKey)].addNumeric(accountKey, reason);
+                    } else {
+                        if (tag == 0) {
+                            throw corruptBlock(chunk);
+                        }
+                        byte[] id = new byte[tag];
+                        data.get(id);
+                        String accountId = new String(id, StandardCharsets.UTF_8);
+                        batches[sharding.shardOf(accountId)].add(accountId, reason);
+                    }
+                }
+                if (data.hasRemaining()) {
+                    throw corruptBlock(chunk);
+                }
+            } catch (BufferUnderflowException e) {
+                throw corruptBlock(chunk);
+            } finally {
+                progress.totalRecords.add(rows);
+                parseNanos.add(System.nanoTime() - start);
+            }
+            return batches;
+        }
+
+        private RowBatch[] newBatches(Chunk chunk) {
+            RowBatch[] batches = new RowBatch[shards];
+            for (int i = 0; i < shards; i++) {
+                batches[i] = new RowBatch(chunk);
+            }
+            return batches;
+        }
+
+        private IOException corruptBlock(Chunk chunk) {
+            return new IOException("Corrupt binary list block " + chunk.sequence);
+        }
+
+        /**
+         * Applier stage: apply the batches for one shard in chunk order
+         */
+        void applyLoop(int shard) {
+            BlockingQueue<RowBatch> queue = applierQueues.get(shard);
+            Map<Long, RowBatch> outOfOrder = new HashMap<>();
+            long nextSequence = 0;
+            try {
+                RowBatch batch;
+                while ((batch = take(queue)) != null && batch != RowBatch.END) {
+                    if (batch.chunk.sequence != nextSequence) {
+                        outOfOrder.put(batch.chunk.sequence, batch);
+                        continue;
+                    }
+                    apply(shard, batch);
+                    nextSequence++;
+                    while ((batch = outOfOrder.remove(nextSequence)) != null) {
+                        apply(shard, batch);
+                        nextSequence++;
+                    }
+                }
+            } catch (Throwable t) {
+                fail(t);
+            }
+        }
+
+        private void apply(int shard, RowBatch batch) {
+            long start = System.nanoTime();
+            int processed = 0;
+            int skipped = 0;
+            for (int i = 0; i < batch.size; i++) {
+                try {
+                    if (batch.accountIds[i] != null) {
+                        handler.apply(batch.accountIds[i], batch.reasons[i]);
+                    } else {
+                        handler.applyNumeric(batch.accountKeys[i], batch.reasons[i]);
+                    }
+                    processed++;
+                } catch (Exception e) {
+                    skipped++;
+                }
+            }
+            long nanos = System.nanoTime() - start;
+            progress.processedRecords.add(processed);
+            progress.skippedRecords.add(skipped);
+            applyNanos.add(nanos);
+            shardRows[shard] += processed;
+            shardApplyNanos[shard] += nanos;
+            if (batch.chunk.pendingPartitions.decrementAndGet() == 0) {
+                chunksInFlight.release();
+            }
+        }
+
+        <T> void put(BlockingQueue<T> queue, T item) throws InterruptedException {
+            while (!queue.offer(item, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (failed()) {
+                    return;
+                }
+            }
+        }
+
+        <T> T take(BlockingQueue<T> queue) throws InterruptedException {
+            while (true) {
+                T item = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (item != null) {
+                    return item;
+                }
+                if (failed()) {
+                    return null;
+                }
+            }
+        }
+    }
+
+    private static final class Chunk {
+        static final Chunk END = new Chunk(-1, new byte[0], 0);
+
+        final long sequence;
+        final byte[] data;
+        final int length;
+        // Set instead of data for binary lists
+        final BinaryListReader.Block block;
+        final AtomicInteger pendingPartitions = new AtomicInteger();
+
+        Chunk(long sequence, byte[] data, int length) {
+            this.sequence = sequence;
+            this.data = data;
+            this.length = length;
+            this.block = null;
+        }
+
+        Chunk(long sequence, BinaryListReader.Block block) {
+            this.sequence = sequence;
+            this.data = null;
+            this.length = 0;
+            this.block = block;
+        }
+    }
+
+    private static final class RowBatch {
+        static final RowBatch END = new RowBatch(Chunk.END);
+
+        final Chunk chunk;
+        // A null account ID means the row's ID is the packed numeric key at the same index
+        String[] accountIds = new String[16];
+        long[] accountKeys = new long[16];
+        String[] reasons = new String[16];
+        int size;
+
+        RowBatch(Chunk chunk) {
+            this.chunk = chunk;
+        }
+
+        void add(String accountId, String reason) {
+            ensureCapacity();
+            accountIds[size] = accountId;
+            reasons[size] = reason;
+            size++;
+        }
+
+        void addNumeric(long accountKey, String reason) {
+            ensureCapacity();
+            accountKeys[size] = accountKey;
+            reasons[size] = reason;
+            size++;
+        }
+
+        private void ensureCapacity() {
+            if (size == accountIds.length) {
+                accountIds = Arrays.copyOf(accountIds, size * 2);
+                accountKeys = Arrays.copyOf(accountKeys, size * 2);
+                reasons = Arrays.copyOf(reasons, size * 2);
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.loanmanagement.ingest;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live row and byte counts of an ingest run, readable from other threads while it
+ * runs. Cancelling makes the pipeline stop at the next chunk boundary and fail with
+ * {@link IngestCancelledException}.
+ */
+public class IngestProgress {
+
+    final LongAdder bytesRead = new LongAdder();
+    final LongAdder totalRecords = new LongAdder();
+    final LongAdder processedRecords = new LongAdder();
+    final LongAdder skippedRecords = new LongAdder();
+    private volatile boolean cancelled;
+
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    public long getTotalRecords() {
+        return totalRecords.sum();
+    }
+
+    public long getProcessedRecords() {
+        return processedRecords.sum();
+    }
+
+    public long getSkippedRecords() {
+        return skippedRecords.sum();
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
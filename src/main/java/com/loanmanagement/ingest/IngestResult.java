@@ -0,0 +1,67 @@
+package com.loanmanagement.ingest;
+
+/**
+ * Row counts and phase timings produced by a single ingest run. Parse and apply
+ * times are summed over all workers, so they can exceed the elapsed time.
+ */
+public class IngestResult {
+    private final int totalRecords;
+    private final int processedRecords;
+    private final int skippedRecords;
+    private final long parseNanos;
+    private final long applyNanos;
+    private final long elapsedNanos;
+    private final long[] shardRows;
+    private final long[] shardApplyNanos;
+
+    public IngestResult(int totalRecords, int processedRecords, int skippedRecords,
+                        long parseNanos, long applyNanos, long elapsedNanos,
+                        long[] shardRows, long[] shardApplyNanos) {
+        this.totalRecords = totalRecords;
+        this.processedRecords = processedRecords;
+        this.skippedRecords = skippedRecords;
+        this.parseNanos = parseNanos;
+        this.applyNanos = applyNanos;
+        this.elapsedNanos = elapsedNanos;
+        this.shardRows = shardRows;
+        this.shardApplyNanos = shardApplyNanos;
+    }
+
+    public int getTotalRecords() {
+        return totalRecords;
+    }
+
+    public int getProcessedRecords() {
+        return processedRecords;
+    }
+
+    public int getSkippedRecords() {
+        return skippedRecords;
+    }
+
+    public long getParseNanos() {
+        return parseNanos;
+    }
+
+    public long getApplyNanos() {
+        return applyNanos;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Rows applied by each shard's applier, indexed by shard
+     */
+    public long[] getShardRows() {
+        return shardRows;
+    }
+
+    /**
+     * Time each shard's applier spent applying rows, indexed by shard
+     */
+    public long[] getShardApplyNanos() {
+        return shardApplyNanos;
+    }
+}
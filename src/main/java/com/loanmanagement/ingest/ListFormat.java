@@ -0,0 +1,11 @@
+package com.loanmanagement.ingest;
+
+/**
+ * Encoding of an uploaded list file
+ */
+public enum ListFormat {
+    // AccountID,Reason text with a header line
+    CSV,
+    // See BinaryListFormat
+    BINARY
+}
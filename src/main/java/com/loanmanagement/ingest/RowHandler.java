@@ -0,0 +1,20 @@
+package com.loanmanagement.ingest;
+
+import com.loanmanagement.store.NumericAccountId;
+
+/**
+ * Applies one parsed AccountID,Reason row. Rows for the same account are always
+ * delivered to the same thread, in file order.
+ */
+@FunctionalInterface
+public interface RowHandler {
+    void apply(String accountId, String reason);
+
+    /**
+     * Apply a row whose account ID is all digits, given as its {@link NumericAccountId}
+     * key. Binary ingest calls this so handlers can skip building the ID string.
+     */
+    default void applyNumeric(long accountKey, String reason) {
+        apply(NumericAccountId.toString(accountKey), reason);
+    }
+}
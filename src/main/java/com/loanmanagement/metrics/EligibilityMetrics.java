@@ -0,0 +1,223 @@
+package com.loanmanagement.metrics;
+
+import com.loanmanagement.ingest.IngestResult;
+import com.loanmanagement.model.ListType;
+import com.loanmanagement.store.AccountStateStore;
+import com.loanmanagement.store.Generation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timings for uploads and eligibility checks, plus store size gauges.
+ *
+ * <p>The check path costs two {@code System.nanoTime()} calls and one striped
+ * counter increment. With {@code eligibility.metrics.enabled=false} both the timer
+ * and the recording are skipped entirely.
+ */
+@Component
+public class EligibilityMetrics {
+
+    private static final Logger log = LoggerFactory.getLogger(EligibilityMetrics.class);
+
+    public enum CheckVerdict {
+        ELIGIBLE, INELIGIBLE, UNKNOWN, NOT_MODIFIED
+    }
+
+    private final boolean enabled;
+    private final AccountStateStore store;
+    private final Map<CheckVerdict, LatencyHistogram> checkLatency = new EnumMap<>(CheckVerdict.class);
+    private final Map<ListType, UploadMetrics> uploads = new EnumMap<>(ListType.class);
+    // Rows applied and apply time per store shard, over every upload
+    private final LongAdder[] shardRows;
+    private final LongAdder[] shardApplyNanos;
+
+    public EligibilityMetrics(@Value("${eligibility.metrics.enabled:true}") boolean enabled,
+                              AccountStateStore store) {
+        this.enabled = enabled;
+        this.store = store;
+        for (CheckVerdict verdict : CheckVerdict.values()) {
+            checkLatency.put(verdict, new LatencyHistogram());
+        }
+        for (ListType listType : ListType.values()) {
+            uploads.put(listType, new UploadMetrics());
+        }
+        int shards = store.shardAccountCounts().length;
+        shardRows = new LongAdder[shards];
+        shardApplyNanos = new LongAdder[shards];
+        for (int i = 0; i < shards; i++) {
+            shardRows[i] = new LongAdder();
+            shardApplyNanos[i] = new LongAdder();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Start time to pass to a record method, or 0 when metrics are off
+     */
+    public long startTimer() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    public void recordCheck(CheckVerdict verdict, long startNanos) {
+        if (enabled) {
+            checkLatency.get(verdict).record(System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * Record a finished upload. {@code publishNanos} covers committing and publishing after the ingest.
+     */
+    public void recordUpload(ListType listType, IngestResult result, long startNanos, long publishNanos) {
+        if (!enabled) {
+            return;
+        }
+        long totalNanos = System.nanoTime() - startNanos;
+        uploads.get(listType).record(result, publishNanos, totalNanos);
+        long[] rows = result.getShardRows();
+        long[] nanos = result.getShardApplyNanos();
+        for (int i = 0; i < Math.min(rows.length, shardRows.length); i++) {
+            shardRows[i].add(rows[i]);
+            shardApplyNanos[i].add(nanos[i]);
+        }
+        log.info("Uploaded {}: {} rows in {} ms (parse {} ms, apply {} ms across workers; {} rows/s)",
+            listType, result.getProcessedRecords(), TimeUnit.NANOSECONDS.toMillis(totalNanos),
+            TimeUnit.NANOSECONDS.toMillis(result.getParseNanos()),
+            TimeUnit.NANOSECONDS.toMillis(result.getApplyNanos()),
+            rowsPerSecond(result.getProcessedRecords(), totalNanos));
+    }
+
+    public void recordUploadFailure(ListType listType) {
+        if (enabled) {
+            uploads.get(listType).failures.increment();
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", enabled);
+        if (!enabled) {
+            return metrics;
+        }
+
+        Map<String, Object> checks = new LinkedHashMap<>();
+        checkLatency.forEach((verdict, histogram) -> checks.put(verdict.name().toLowerCase(), histogram.toMap()));
+        metrics.put("checkLatency", checks);
+
+        Map<ListType, Object> uploadMetrics = new EnumMap<>(ListType.class);
+        uploads.forEach((listType, upload) -> uploadMetrics.put(listType, upload.toMap()));
+        metrics.put("uploads", uploadMetrics);
+
+        metrics.put("store", storeGauges());
+        metrics.put("shards", shardGauges());
+        return metrics;
+    }
+
+    /**
+     * Size and ingest rate of every store shard; the rate is rows per second of the
+     * shard applier's busy time, so an uneven split shows up as uneven rates or sizes
+     */
+    private List<Map<String, Object>> shardGauges() {
+        long[] accounts = store.shardAccountCounts();
+        List<Map<String, Object>> shards = new ArrayList<>(accounts.length);
+        for (int i = 0; i < accounts.length; i++) {
+            Map<String, Object> shard = new LinkedHashMap<>();
+            long rows = shardRows[i].sum();
+            long nanos = shardApplyNanos[i].sum();
+            shard.put("shard", i);
+            shard.put("accounts", accounts[i]);
+            shard.put("rows", rows);
+            shard.put("applyMillis", TimeUnit.NANOSECONDS.toMillis(nanos));
+            shard.put("rowsPerSecond", rowsPerSecond(rows, nanos));
+            shards.add(shard);
+        }
+        return shards;
+    }
+
+    private Map<String, Object> storeGauges() {
+        Map<String, Object> gauges = new LinkedHashMap<>();
+        long accounts;
+        try (Generation generation = store.snapshot()) {
+            accounts = generation.getAccountCount();
+            gauges.put("generation", generation.getNumber());
+        }
+        Runtime runtime = Runtime.getRuntime();
+        long heapUsed = runtime.totalMemory() - runtime.freeMemory();
+        gauges.put("accounts", accounts);
+        gauges.put("storeBytes", store.estimatedBytes());
+        gauges.put("storeBytesPerAccount", accounts == 0 ? 0.0 : (double) store.estimatedBytes() / accounts);
+        gauges.put("retainedVersions", store.retainedVersionCount());
+        gauges.put("heapUsedBytes", heapUsed);
+        gauges.put("heapMaxBytes", runtime.maxMemory());
+        gauges.put("heapBytesPerAccount", accounts == 0 ? 0.0 : (double) heapUsed / accounts);
+        return gauges;
+    }
+
+    private static long rowsPerSecond(long rows, long nanos) {
+        return nanos == 0 ? 0 : rows * 1_000_000_000L / nanos;
+    }
+
+    /**
+     * Cumulative and last-upload timings for one list type
+     */
+    private static class UploadMetrics {
+        final LongAdder uploads = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        final LongAdder rows = new LongAdder();
+        final LongAdder parseNanos = new LongAdder();
+        final LongAdder applyNanos = new LongAdder();
+        final LongAdder publishNanos = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final LatencyHistogram duration = new LatencyHistogram();
+        volatile Map<String, Object> last;
+
+        void record(IngestResult result, long publish, long total) {
+            uploads.increment();
+            rows.add(result.getProcessedRecords());
+            parseNanos.add(result.getParseNanos());
+            applyNanos.add(result.getApplyNanos());
+            publishNanos.add(publish);
+            totalNanos.add(total);
+            duration.record(total);
+
+            Map<String, Object> upload = new LinkedHashMap<>();
+            upload.put("rows", result.getProcessedRecords());
+            upload.put("skippedRows", result.getSkippedRecords());
+            upload.put("parseMillis", TimeUnit.NANOSECONDS.toMillis(result.getParseNanos()));
+            upload.put("applyMillis", TimeUnit.NANOSECONDS.toMillis(result.getApplyNanos()));
+            upload.put("ingestMillis", TimeUnit.NANOSECONDS.toMillis(result.getElapsedNanos()));
+            upload.put("publishMillis", TimeUnit.NANOSECONDS.toMillis(publish));
+            upload.put("totalMillis", TimeUnit.NANOSECONDS.toMillis(total));
+            upload.put("rowsPerSecond", rowsPerSecond(result.getProcessedRecords(), total));
+            upload.put("rowsPerShard", result.getShardRows());
+            last = upload;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("uploads", uploads.sum());
+            map.put("failures", failures.sum());
+            map.put("rows", rows.sum());
+            map.put("parseMillis", TimeUnit.NANOSECONDS.toMillis(parseNanos.sum()));
+            map.put("applyMillis", TimeUnit.NANOSECONDS.toMillis(applyNanos.sum()));
+            map.put("publishMillis", TimeUnit.NANOSECONDS.toMillis(publishNanos.sum()));
+            map.put("totalMillis", TimeUnit.NANOSECONDS.toMillis(totalNanos.sum()));
+            map.put("rowsPerSecond", rowsPerSecond(rows.sum(), totalNanos.sum()));
+            map.put("duration", duration.toMap());
+            map.put("last", last);
+            return map;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.loanmanagement.metrics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with log-linear buckets: every power of two is split
+ * into eight sub-buckets, so reported percentiles are within 12.5% of the true value.
+ * Recording is one bucket index computation and one LongAdder increment.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final LongAdder[] counts = new LongAdder[BUCKETS];
+    private final LongAdder sum = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        counts[bucket(value)].increment();
+        sum.add(value);
+    }
+
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int highestBit = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (highestBit - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (highestBit - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Largest value that falls into the bucket
+     */
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int highestBit = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        long lower = (SUB_BUCKETS + subBucket) << (highestBit - SUB_BUCKET_BITS);
+        return lower + (1L << (highestBit - SUB_BUCKET_BITS)) - 1;
+    }
+
+    /**
+     * Count, mean, percentiles and the non-empty buckets, all in nanoseconds
+     */
+    public Map<String, Object> toMap() {
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts[i].sum();
+            count += snapshot[i];
+        }
+
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("count", count);
+        map.put("meanNanos", count == 0 ? 0 : sum.sum() / count);
+        map.put("p50Nanos", percentile(snapshot, count, 0.50));
+        map.put("p90Nanos", percentile(snapshot, count, 0.90));
+        map.put("p99Nanos", percentile(snapshot, count, 0.99));
+        map.put("p999Nanos", percentile(snapshot, count, 0.999));
+        map.put("maxNanos", percentile(snapshot, count, 1.0));
+
+        List<Map<String, Long>> buckets = new ArrayList<>();
+        for (int i = 0; i < BUCKETS; i++) {
+            if (snapshot[i] > 0) {
+                Map<String, Long> bucket = new LinkedHashMap<>();
+                bucket.put("le", upperBound(i));
+                bucket.put("count", snapshot[i]);
+                buckets.add(bucket);
+            }
+        }
+        map.put("buckets", buckets);
+        return map;
+    }
+
+    private static long percentile(long[] snapshot, long count, double quantile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(BUCKETS - 1);
+    }
+}
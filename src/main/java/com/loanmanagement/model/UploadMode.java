@@ -0,0 +1,17 @@
+package com.loanmanagement.model;
+
+import java.util.Locale;
+
+/**
+ * How an uploaded list is applied to the accounts already on that list
+ */
+public enum UploadMode {
+    // Every row is added or refreshed; accounts missing from the file are left alone
+    APPEND,
+    // The file is the complete list; accounts missing from it are taken off the list
+    REPLACE;
+    
+    public static UploadMode fromParameter(String value) {
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,278 @@
+package com.loanmanagement.persistence;
+
+import com.loanmanagement.service.EligibilityService;
+import com.loanmanagement.store.AccountStateStore;
+import com.loanmanagement.store.Generation;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durability for the account store: recovery at startup and periodic snapshots.
+ *
+ * <p>Recovery runs after all singletons are created and before the web server
+ * accepts requests. It restores the newest snapshot that passes verification and
+ * then replays write-ahead log entries newer than the snapshot's generation. A torn
+ * entry at the end of the log (a crash mid-upload) is truncated away. Every entry must
+ * replay as exactly the generation it was logged under, or recovery fails. Recovery
+ * also fails when a bad entry has committed entries after it, and when the newest
+ * snapshot is unusable and the log no longer reaches back to an older one.
+ *
+ * <p>Once the log on disk grows past the configured threshold, a snapshot
+ * of the published generation is written in the background and the segments it
+ * covers are deleted.
+ */
+@Component
+public class PersistenceService implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(PersistenceService.class);
+
+    private final WriteAheadLog writeAheadLog;
+    private final SnapshotFiles snapshotFiles;
+    private final AccountStateStore store;
+    private final EligibilityService eligibilityService;
+    private final long snapshotThresholdBytes;
+    private final long snapshotCheckIntervalSeconds;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "persistence-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile long recoveryMillis;
+    private volatile long recoveredSnapshotGeneration = -1;
+    private volatile int recoveredAccounts;
+    private volatile int replayedEntries;
+    private volatile long lastSnapshotGeneration = -1;
+    private volatile LocalDateTime lastSnapshotAt;
+    private volatile long lastSnapshotMillis;
+    private volatile long lastSnapshotBytes;
+
+    public PersistenceService(WriteAheadLog writeAheadLog,
+                              SnapshotFiles snapshotFiles,
+                              AccountStateStore store,
+                              EligibilityService eligibilityService,
+                              @Value("${eligibility.persistence.snapshot-threshold-bytes:268435456}") long snapshotThresholdBytes,
+                              @Value("${eligibility.persistence.snapshot-check-interval-seconds:30}") long snapshotCheckIntervalSeconds) {
+        this.writeAheadLog = writeAheadLog;
+        this.snapshotFiles = snapshotFiles;
+        this.store = store;
+        this.eligibilityService = eligibilityService;
+        this.snapshotThresholdBytes = snapshotThresholdBytes;
+        this.snapshotCheckIntervalSeconds = Math.max(snapshotCheckIntervalSeconds, 1);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!writeAheadLog.isEnabled()) {
+            return;
+        }
+        try {
+            recover();
+            writeAheadLog.open();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to recover persisted eligibility data", e);
+        }
+        scheduler.scheduleWithFixedDelay(this::snapshotIfDue,
+            snapshotCheckIntervalSeconds, snapshotCheckIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    private void recover() throws IOException {
+        long start = System.nanoTime();
+        long snapshotGeneration = restoreSnapshot();
+
+        int replayed = 0;
+        List<Path> segments = writeAheadLog.segments();
+        segments:
+        for (int i = 0; i < segments.size(); i++) {
+            List<Path> later = segments.subList(i + 1, segments.size());
+            try (WriteAheadLog.SegmentReader reader = writeAheadLog.read(segments.get(i))) {
+                while (true) {
+                    WriteAheadLog.LogEntry entry;
+                    try {
+                        entry = reader.next();
+                    } catch (IOException e) {
+                        discardTail(reader, later, e);
+                        break segments;
+                    }
+                    if (entry == null) {
+                        break;
+                    }
+                    try {
+                        if (entry.getGeneration() <= snapshotGeneration) {
+                            entry.skip();
+                        } else if (entry.isClear()) {
+                            entry.skip();
+                            eligibilityService.replayClear(entry.getGeneration());
+                            replayed++;
+                        } else {
+                            eligibilityService.replayUpload(entry.getGeneration(), entry.getListType(),
+                                entry.getMode(), entry.getFormat(), entry.getUploadTimestamp(), entry.getPayload());
+                            replayed++;
+                        }
+                    } catch (IOException e) {
+                        // A generation out of sequence is not torn and fails recovery instead
+                        discardTail(reader, later, e);
+                        break segments;
+                    }
+                }
+            }
+        }
+
+        replayedEntries = replayed;
+        recoveryMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        log.info("Recovered eligibility data in {} ms ({} log entries replayed)", recoveryMillis, replayed);
+    }
+
+    /**
+     * Restore the newest usable snapshot and return its generation, or 0 without one.
+     * Passing over an unusable snapshot is only safe while the log still holds every
+     * entry after the one restored instead; once a snapshot has trimmed the log,
+     * startup fails rather than come up with uploads missing.
+     */
+    private long restoreSnapshot() throws IOException {
+        IOException unusable = null;
+        for (Path path : snapshotFiles.list()) {
+            try (SnapshotFiles.Snapshot snapshot = snapshotFiles.open(path)) {
+                if (unusable != null) {
+                    requireLogAfter(snapshot.getGeneration(), unusable);
+                }
+                Generation restored;
+                try {
+                    // Leaves the store empty if the snapshot cannot be read to the end
+                    restored = store.restore(snapshot.getGeneration(), snapshot);
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                recoveredSnapshotGeneration = restored.getNumber();
+                recoveredAccounts = restored.getAccountCount();
+                lastSnapshotGeneration = restored.getNumber();
+                log.info("Restored {} accounts from snapshot {}", recoveredAccounts, path);
+                return restored.getNumber();
+            } catch (IOException e) {
+                log.warn("Skipping unusable snapshot {}: {}", path, e.getMessage());
+                unusable = e;
+            }
+        }
+        if (unusable != null) {
+            requireLogAfter(0, unusable);
+        }
+        return 0;
+    }
+
+    private void requireLogAfter(long generation, IOException unusable) throws IOException {
+        long oldest = writeAheadLog.getOldestGeneration();
+        if (oldest < 0 || oldest > generation + 1) {
+            throw new IOException("Newest snapshot is unusable and the write-ahead log no longer holds "
+                + "every entry after generation " + generation, unusable);
+        }
+    }
+
+    /**
+     * Truncate a bad entry away when it is the torn tail a crash mid-upload leaves. A
+     * committed entry after it means the log is damaged rather than torn; discarding
+     * the rest would silently drop uploads, so recovery fails instead.
+     */
+    private void discardTail(WriteAheadLog.SegmentReader reader, List<Path> later, IOException e)
+            throws IOException {
+        boolean followed = reader.committedEntryFollows();
+        for (int i = 0; i < later.size() && !followed; i++) {
+            followed = writeAheadLog.containsCommittedEntry(later.get(i));
+        }
+        if (followed) {
+            throw new IllegalStateException("Write-ahead log " + reader.getPath()
+                + " has an unreadable entry followed by committed entries", e);
+        }
+        log.warn("Discarding incomplete write-ahead log entry in {}: {}", reader.getPath(), e.getMessage());
+        reader.truncateAtEntry();
+        // Later segments hold nothing committed, and new entries must not land after the bad one
+        for (Path segment : later) {
+            Files.delete(segment);
+        }
+    }
+
+    private void snapshotIfDue() {
+        // Segments covered by a snapshot are deleted, so everything on disk would be replayed
+        if (writeAheadLog.sizeBytes() < snapshotThresholdBytes) {
+            return;
+        }
+        try {
+            snapshot();
+        } catch (Exception e) {
+            log.error("Snapshot failed", e);
+        }
+    }
+
+    /**
+     * Write a snapshot of the published generation and drop the log segments it covers
+     */
+    public synchronized void snapshot() throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        long firstLiveSegment = writeAheadLog.rotate();
+        long covered = writeAheadLog.getLastCommittedGeneration();
+
+        // Uploads commit to the log just before publishing; wait for the last one to become visible
+        Generation generation = store.snapshot();
+        while (generation.getNumber() < covered) {
+            generation.close();
+            Thread.sleep(1);
+            generation = store.snapshot();
+        }
+
+        Path path;
+        try {
+            path = snapshotFiles.write(generation);
+        } finally {
+            generation.close();
+        }
+        snapshotFiles.deleteAllExcept(path);
+        writeAheadLog.deleteSegmentsBefore(firstLiveSegment);
+
+        lastSnapshotGeneration = generation.getNumber();
+        lastSnapshotAt = LocalDateTime.ofInstant(Instant.now(), ZoneId.systemDefault());
+        lastSnapshotMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        lastSnapshotBytes = path.toFile().length();
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", writeAheadLog.isEnabled());
+        if (!writeAheadLog.isEnabled()) {
+            return stats;
+        }
+        stats.put("walBytes", writeAheadLog.sizeBytes());
+        stats.put("walCommittedEntries", writeAheadLog.getCommittedEntries());
+        stats.put("walFailed", writeAheadLog.isFailed());
+        stats.put("recoveryMillis", recoveryMillis);
+        stats.put("recoveredSnapshotGeneration", recoveredSnapshotGeneration);
+        stats.put("recoveredAccounts", recoveredAccounts);
+        stats.put("replayedEntries", replayedEntries);
+        stats.put("lastSnapshotGeneration", lastSnapshotGeneration);
+        stats.put("lastSnapshotAt", lastSnapshotAt);
+        stats.put("lastSnapshotMillis", lastSnapshotMillis);
+        stats.put("lastSnapshotBytes", lastSnapshotBytes);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
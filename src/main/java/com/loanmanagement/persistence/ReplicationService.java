@@ -0,0 +1,404 @@
+package com.loanmanagement.persistence;
+
+import com.loanmanagement.service.EligibilityService;
+import com.loanmanagement.service.VerdictEventService;
+import com.loanmanagement.store.AccountStateStore;
+import com.loanmanagement.store.Generation;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Primary/follower replication over the write-ahead log.
+ *
+ * <p>An instance with persistence enabled can act as a primary: it serves a snapshot
+ * of its published generation and a stream of the log entries committed after a
+ * given generation, followed by new entries as uploads commit them. Heartbeats keep
+ * an idle stream alive and tell followers the primary's latest generation.
+ *
+ * <p>An instance configured with a primary URL is a follower. It rejects uploads,
+ * bootstraps from the primary's snapshot and then applies streamed entries exactly
+ * as recovery replays the log, so each follower reproduces the primary's generations
+ * one for one. If the primary's log no longer holds the next generation the follower
+ * needs, it bootstraps again; the restored snapshot replaces the local data in one
+ * swap and must not be older than what the follower has applied. Lag is reported as the generations the follower is
+ * behind and for how long it has been behind.
+ */
+@Component
+public class ReplicationService implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicationService.class);
+
+    private static final String API = "/api/loan-eligibility/replication";
+    // Ends each log stream well before the servlet async timeout; followers reconnect at once
+    private static final long STREAM_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private final WriteAheadLog writeAheadLog;
+    private final SnapshotFiles snapshotFiles;
+    private final AccountStateStore store;
+    private final EligibilityService eligibilityService;
+    private final VerdictEventService verdictEvents;
+    private final String primaryUrl;
+    private final long heartbeatMillis;
+    private final long retryMillis;
+
+    // Primary side
+    private final List<FollowerStream> followerStreams = new CopyOnWriteArrayList<>();
+
+    // Follower side
+    private final AtomicLong bootstraps = new AtomicLong();
+    private final AtomicLong appliedEntries = new AtomicLong();
+    private volatile Thread follower;
+    private volatile HttpURLConnection connection;
+    private volatile boolean stopped;
+    private volatile String state = "starting";
+    private volatile long appliedGeneration = -1;
+    private volatile long primaryGeneration = -1;
+    private volatile long behindSince;
+    private volatile long lastContactAt;
+    private volatile String lastError;
+
+    public ReplicationService(WriteAheadLog writeAheadLog,
+                              SnapshotFiles snapshotFiles,
+                              AccountStateStore store,
+                              EligibilityService eligibilityService,
+                              VerdictEventService verdictEvents,
+                              @Value("${eligibility.replication.primary-url:}") String primaryUrl,
+                              @Value("${eligibility.replication.heartbeat-millis:1000}") long heartbeatMillis,
+                              @Value("${eligibility.replication.retry-millis:2000}") long retryMillis) {
+        this.writeAheadLog = writeAheadLog;
+        this.snapshotFiles = snapshotFiles;
+        this.store = store;
+        this.eligibilityService = eligibilityService;
+        this.verdictEvents = verdictEvents;
+        this.primaryUrl = primaryUrl == null || primaryUrl.isBlank() ? null : stripTrailingSlash(primaryUrl);
+        this.heartbeatMillis = Math.max(heartbeatMillis, 10);
+        this.retryMillis = Math.max(retryMillis, 10);
+    }
+
+    public boolean isFollower() {
+        return primaryUrl != null;
+    }
+
+    /**
+     * Followers need a primary's log; an instance without one cannot serve replication
+     */
+    public boolean isPrimary() {
+        return !isFollower() && writeAheadLog.isEnabled();
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!isFollower()) {
+            return;
+        }
+        if (writeAheadLog.isEnabled()) {
+            throw new IllegalStateException(
+                "A read replica keeps no write-ahead log of its own; disable eligibility.persistence.enabled");
+        }
+        // Bootstrap before the web server starts, so the replica does not serve an empty store
+        boolean bootstrapped = false;
+        try {
+            bootstrap();
+            bootstrapped = true;
+        } catch (IOException e) {
+            disconnected(e);
+        }
+        boolean ready = bootstrapped;
+        follower = new Thread(() -> follow(ready), "replication-follower");
+        follower.setDaemon(true);
+        follower.start();
+    }
+
+    // ---- Primary
+
+    /**
+     * Write a snapshot of the published generation; the generation is in its header
+     */
+    public void writeSnapshot(OutputStream output) throws IOException {
+        try (Generation generation = store.snapshot()) {
+            snapshotFiles.write(generation, output);
+        }
+    }
+
+    /**
+     * Whether the log still holds every generation after the given one
+     */
+    public boolean canStreamFrom(long afterGeneration) throws IOException {
+        long latest;
+        try (Generation generation = store.snapshot()) {
+            latest = Math.max(generation.getNumber(), writeAheadLog.getLastCommittedGeneration());
+        }
+        if (afterGeneration > latest) {
+            // The follower has generations this primary never had, e.g. after its data was reset
+            return false;
+        }
+        long oldest = writeAheadLog.getOldestGeneration();
+        return afterGeneration == latest || (oldest >= 0 && oldest <= afterGeneration + 1);
+    }
+
+    /**
+     * Stream log entries committed after the given generation, then new ones as they
+     * commit, with heartbeats while idle. Returns after a fixed time or when the
+     * follower disconnects.
+     */
+    public void streamLog(long afterGeneration, String follower, OutputStream output)
+            throws IOException, InterruptedException {
+        FollowerStream stream = new FollowerStream(follower, afterGeneration);
+        followerStreams.add(stream);
+        WritableByteChannel channel = Channels.newChannel(output);
+        long end = System.currentTimeMillis() + STREAM_MILLIS;
+        long lastWrite = 0;
+        try (LogShipper shipper = writeAheadLog.ship(afterGeneration)) {
+            while (System.currentTimeMillis() < end && !stopped) {
+                if (shipper.shipCommitted(channel) > 0) {
+                    stream.shippedGeneration = shipper.getLastShipped();
+                    output.flush();
+                    lastWrite = System.currentTimeMillis();
+                } else if (System.currentTimeMillis() - lastWrite >= heartbeatMillis) {
+                    LogShipper.heartbeat(channel, Math.max(shipper.getLastShipped(), latestGeneration()));
+                    output.flush();
+                    lastWrite = System.currentTimeMillis();
+                }
+                shipper.awaitCommit(heartbeatMillis);
+            }
+        } finally {
+            followerStreams.remove(stream);
+        }
+    }
+
+    private long latestGeneration() {
+        try (Generation generation = store.snapshot()) {
+            return generation.getNumber();
+        }
+    }
+
+    // ---- Follower
+
+    private void follow(boolean bootstrapped) {
+        while (!stopped) {
+            try {
+                if (!bootstrapped) {
+                    bootstrap();
+                    bootstrapped = true;
+                }
+                // A stream that ends normally is simply reopened
+                bootstrapped = tail();
+                continue;
+            } catch (IOException | RuntimeException e) {
+                if (stopped) {
+                    return;
+                }
+                disconnected(e);
+                // The local store no longer lines up with the primary's log; start over from a snapshot
+                bootstrapped &= !(e instanceof IllegalStateException);
+            }
+            try {
+                Thread.sleep(retryMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Replace the local store with the primary's current snapshot
+     */
+    private void bootstrap() throws IOException {
+        state = "bootstrapping";
+        HttpURLConnection snapshot = open(API + "/snapshot");
+        Path temp = Files.createTempFile("replica-snapshot-", ".bin");
+        try {
+            try (InputStream input = snapshot.getInputStream()) {
+                Files.copy(input, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            try (SnapshotFiles.Snapshot restored = snapshotFiles.open(temp)) {
+                if (restored.getGeneration() < appliedGeneration) {
+                    // Generation numbers must never move backwards for readers of this instance
+                    throw new IllegalStateException("Primary snapshot is at generation " + restored.getGeneration()
+                        + ", behind the " + appliedGeneration + " already applied here");
+                }
+                // Readers keep the current data until the restored generation replaces it
+                Generation generation = store.restore(restored.getGeneration(), restored);
+                verdictEvents.reset(generation);
+                appliedGeneration = generation.getNumber();
+                // The primary may have been reset; learn its generation afresh
+                primaryGeneration = appliedGeneration;
+                behindSince = 0;
+                log.info("Bootstrapped {} accounts at generation {} from {}",
+                    generation.getAccountCount(), appliedGeneration, primaryUrl);
+            }
+            bootstraps.incrementAndGet();
+            lastContactAt = System.currentTimeMillis();
+        } finally {
+            snapshot.disconnect();
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Apply streamed entries until the stream ends. Returns false when the primary no
+     * longer has the next generation and the follower must bootstrap again.
+     */
+    private boolean tail() throws IOException {
+        HttpURLConnection stream = open(API + "/log?after=" + appliedGeneration);
+        if (stream.getResponseCode() == HttpURLConnection.HTTP_GONE) {
+            stream.disconnect();
+            log.warn("Primary cannot stream from generation {}; bootstrapping again", appliedGeneration + 1);
+            return false;
+        }
+        state = "streaming";
+        lastError = null;
+        try (WriteAheadLog.LogReader reader =
+                 new WriteAheadLog.LogReader(new BufferedInputStream(stream.getInputStream(), 1 << 16))) {
+            WriteAheadLog.LogEntry entry;
+            while ((entry = reader.next()) != null) {
+                lastContactAt = System.currentTimeMillis();
+                observePrimary(entry.getGeneration());
+                if (entry.isHeartbeat()) {
+                    entry.skip();
+                    continue;
+                }
+                if (entry.getGeneration() != appliedGeneration + 1) {
+                    log.warn("Replication stream skipped from generation {} to {}; bootstrapping again",
+                        appliedGeneration, entry.getGeneration());
+                    return false;
+                }
+                if (entry.isClear()) {
+                    entry.skip();
+                    eligibilityService.replayClear(entry.getGeneration());
+                } else {
+                    eligibilityService.replayUpload(entry.getGeneration(), entry.getListType(), entry.getMode(),
+                        entry.getFormat(), entry.getUploadTimestamp(), entry.getPayload());
+                }
+                appliedGeneration = entry.getGeneration();
+                appliedEntries.incrementAndGet();
+                if (appliedGeneration >= primaryGeneration) {
+                    behindSince = 0;
+                }
+            }
+            return true;
+        } finally {
+            stream.disconnect();
+        }
+    }
+
+    private void observePrimary(long generation) {
+        if (generation > primaryGeneration) {
+            primaryGeneration = generation;
+        }
+        if (primaryGeneration > appliedGeneration && behindSince == 0) {
+            behindSince = System.currentTimeMillis();
+        }
+    }
+
+    private HttpURLConnection open(String path) throws IOException {
+        HttpURLConnection opened = (HttpURLConnection) new URL(primaryUrl + path).openConnection();
+        opened.setConnectTimeout((int) Math.min(retryMillis * 5, Integer.MAX_VALUE));
+        // Heartbeats arrive every heartbeatMillis, so a silent stream means a lost primary
+        opened.setReadTimeout((int) Math.min(heartbeatMillis * 5, Integer.MAX_VALUE));
+        connection = opened;
+        int status = opened.getResponseCode();
+        if (status != HttpURLConnection.HTTP_OK && status != HttpURLConnection.HTTP_GONE) {
+            opened.disconnect();
+            throw new IOException("Primary answered " + status + " for " + path);
+        }
+        return opened;
+    }
+
+    private void disconnected(Exception e) {
+        state = "disconnected";
+        lastError = e.getMessage();
+        log.warn("Replication from {} interrupted: {}", primaryUrl, e.getMessage());
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        if (isFollower()) {
+            long now = System.currentTimeMillis();
+            long behind = behindSince;
+            status.put("role", "follower");
+            status.put("primaryUrl", primaryUrl);
+            status.put("state", state);
+            status.put("appliedGeneration", appliedGeneration);
+            status.put("primaryGeneration", primaryGeneration);
+            status.put("lagGenerations", Math.max(primaryGeneration - appliedGeneration, 0));
+            status.put("lagMillis", behind == 0 ? 0 : now - behind);
+            status.put("millisSinceContact", lastContactAt == 0 ? -1 : now - lastContactAt);
+            status.put("appliedEntries", appliedEntries.get());
+            status.put("bootstraps", bootstraps.get());
+            status.put("lastError", lastError);
+            return status;
+        }
+        status.put("role", isPrimary() ? "primary" : "standalone");
+        if (isPrimary()) {
+            long latest = latestGeneration();
+            status.put("generation", latest);
+            List<Map<String, Object>> followers = new ArrayList<>();
+            for (FollowerStream stream : followerStreams) {
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("follower", stream.follower);
+                entry.put("connectedAt", stream.connectedAt);
+                entry.put("shippedGeneration", stream.shippedGeneration);
+                entry.put("lagGenerations", Math.max(latest - stream.shippedGeneration, 0));
+                followers.add(entry);
+            }
+            status.put("followers", followers);
+        }
+        return status;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopped = true;
+        Thread thread = follower;
+        if (thread != null) {
+            thread.interrupt();
+        }
+        HttpURLConnection current = connection;
+        if (current != null) {
+            current.disconnect();
+        }
+    }
+
+    private static String stripTrailingSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+    /**
+     * A follower currently tailing this primary
+     */
+    private static final class FollowerStream {
+        final String follower;
+        final LocalDateTime connectedAt = LocalDateTime.now();
+        volatile long shippedGeneration;
+
+        FollowerStream(String follower, long afterGeneration) {
+            this.follower = follower;
+            this.shippedGeneration = afterGeneration;
+        }
+    }
+}
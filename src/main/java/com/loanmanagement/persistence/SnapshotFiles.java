@@ -0,0 +1,405 @@
+package com.loanmanagement.persistence;
+
+import com.loanmanagement.model.ListType;
+import com.loanmanagement.store.AccountHistory;
+import com.loanmanagement.store.AccountState;
+import com.loanmanagement.store.Generation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary snapshots of a published generation.
+ *
+ * <pre>
+ * file    := MAGIC version:i32 generation:i64 createdAt:i64 account* END_MAGIC count:i32 crc32:i64
+ * account := idLength:u16 id:utf8 present:u16 inactive:u16 verdict:u16 (timestamp:i64 reasonLength:i32 reason:utf8)*
+ *            historyEvents:i32 (timestamp:i64 listType:u8 verdict:u16 reasonLength:i32 reason:utf8)*
+ * </pre>
+ *
+ * List entries follow the presence mask in ListType ordinal order. History events
+ * are in the order they happened; an event's reason length is -1 when it carries
+ * no reason. The account count is the number of accounts actually written, so it
+ * is only known once the generation has been walked and lives in the footer;
+ * versions 1 and 2 also carried it in the header, after the generation, where it
+ * must match the footer. Version 1 snapshots have no history; it is seeded from
+ * the lists in force when they are read. Snapshots are
+ * written to a temporary file and renamed into place, and are read back through
+ * memory-mapped windows so recovery is a sequential scan of the page cache.
+ */
+@Component
+public class SnapshotFiles {
+
+    static final int MAGIC = 0x454C534E;
+    static final int END_MAGIC = 0x454C5345;
+    static final int VERSION = 3;
+    private static final int VERSION_WITHOUT_HISTORY = 1;
+    private static final int VERSION_WITH_HEADER_COUNT = 2;
+
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 8;
+    private static final int FOOTER_BYTES = 4 + 4 + 8;
+    private static final long WINDOW_BYTES = 256L * 1024 * 1024;
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".bin";
+
+    private final Path directory;
+
+    public SnapshotFiles(@Value("${eligibility.persistence.directory:data}") String directory) {
+        this.directory = Paths.get(directory);
+    }
+
+    /**
+     * Write every account visible in the generation. Returns the snapshot path.
+     */
+    public Path write(Generation generation) throws IOException {
+        Files.createDirectories(directory);
+        Path target = directory.resolve(String.format("%s%016d%s", PREFIX, generation.getNumber(), SUFFIX));
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+
+        try (OutputStream file = Files.newOutputStream(temp)) {
+            write(generation, file);
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return target;
+    }
+
+    /**
+     * Write a snapshot of the generation to a stream, such as a follower bootstrapping
+     * from this instance. The stream is flushed but not closed.
+     */
+    public void write(Generation generation, OutputStream file) throws IOException {
+        CRC32 crc = new CRC32();
+        DataOutputStream output = new DataOutputStream(
+            new CheckedOutputStream(new BufferedOutputStream(file, 1 << 20), crc));
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeLong(generation.getNumber());
+        output.writeLong(System.currentTimeMillis());
+
+        int[] count = {0};
+        try {
+            generation.forEach(state -> {
+                try {
+                    writeAccount(output, state);
+                    count[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        output.writeInt(END_MAGIC);
+        output.writeInt(count[0]);
+        output.flush();
+        // The CRC covers everything before it
+        DataOutputStream trailer = new DataOutputStream(file);
+        trailer.writeLong(crc.getValue());
+        trailer.flush();
+    }
+
+    private static void writeAccount(DataOutputStream output, AccountState state) throws IOException {
+        byte[] accountId = state.getAccountId().getBytes(StandardCharsets.UTF_8);
+        output.writeShort(accountId.length);
+        output.write(accountId);
+        output.writeShort(state.getPresentMask());
+        output.writeShort(state.getInactiveMask());
+        output.writeShort(state.getVerdictMask());
+        for (ListType listType : ListType.values()) {
+            if (state.has(listType)) {
+                byte[] reason = state.getReason(listType).getBytes(StandardCharsets.UTF_8);
+                output.writeLong(state.getTimestamp(listType));
+                output.writeInt(reason.length);
+                output.write(reason);
+            }
+        }
+        output.writeInt(state.getHistorySize());
+        try {
+            state.forEachHistoryEvent((timestamp, listType, verdictMask, reason) -> {
+                try {
+                    output.writeLong(timestamp);
+                    output.writeByte(listType.ordinal());
+                    output.writeShort(verdictMask);
+                    if (reason == null) {
+                        output.writeInt(-1);
+                    } else {
+                        byte[] text = reason.getBytes(StandardCharsets.UTF_8);
+                        output.writeInt(text.length);
+                        output.write(text);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Snapshot files, newest first
+     */
+    public List<Path> list() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> snapshots = new ArrayList<>();
+            files.filter(path -> {
+                    String name = path.getFileName().toString();
+                    return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+                })
+                .sorted(Comparator.reverseOrder())
+                .forEach(snapshots::add);
+            return snapshots;
+        }
+    }
+
+    /**
+     * Delete every snapshot except the given one
+     */
+    public void deleteAllExcept(Path keep) throws IOException {
+        for (Path snapshot : list()) {
+            if (!snapshot.equals(keep)) {
+                Files.deleteIfExists(snapshot);
+            }
+        }
+    }
+
+    /**
+     * Memory-map a snapshot and verify its checksum
+     */
+    public Snapshot open(Path path) throws IOException {
+        return new Snapshot(path);
+    }
+
+    /**
+     * A verified snapshot whose accounts are decoded lazily from the mapped file
+     */
+    public static class Snapshot implements Iterable<AccountState>, AutoCloseable {
+        private final FileChannel channel;
+        private final long size;
+        private final int version;
+        private final int headerBytes;
+        private final long generation;
+        private final int accountCount;
+
+        Snapshot(Path path) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                this.size = channel.size();
+                if (size < HEADER_BYTES + FOOTER_BYTES) {
+                    throw new IOException("Snapshot " + path + " is truncated");
+                }
+                MappedInput input = new MappedInput(channel, 0, size);
+                if (input.getInt() != MAGIC) {
+                    throw new IOException("Snapshot " + path + " has an unsupported format");
+                }
+                this.version = input.getInt();
+                if (version < VERSION_WITHOUT_HISTORY || version > VERSION) {
+                    throw new IOException("Snapshot " + path + " has an unsupported format");
+                }
+                this.generation = input.getLong();
+                boolean headerCounted = version <= VERSION_WITH_HEADER_COUNT;
+                int headerCount = headerCounted ? input.getInt() : -1;
+                this.headerBytes = headerCounted ? HEADER_BYTES + 4 : HEADER_BYTES;
+                this.accountCount = verify(path, headerCount);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Check the CRC and return the account count from the footer
+         */
+        private int verify(Path path, int headerCount) throws IOException {
+            CRC32 crc = new CRC32();
+            long checked = size - 8;
+            for (long offset = 0; offset < checked; offset += WINDOW_BYTES) {
+                long length = Math.min(WINDOW_BYTES, checked - offset);
+                crc.update(channel.map(FileChannel.MapMode.READ_ONLY, offset, length));
+            }
+            MappedByteBuffer tail = channel.map(FileChannel.MapMode.READ_ONLY, size - FOOTER_BYTES, FOOTER_BYTES);
+            int endMagic = tail.getInt();
+            int count = tail.getInt();
+            long expected = tail.getLong();
+            if (endMagic != END_MAGIC || expected != crc.getValue()) {
+                throw new IOException("Snapshot " + path + " failed checksum verification");
+            }
+            if (count < 0 || headerCount >= 0 && count != headerCount) {
+                throw new IOException("Snapshot " + path + " account count mismatch");
+            }
+            return count;
+        }
+
+        public long getGeneration() {
+            return generation;
+        }
+
+        public int getAccountCount() {
+            return accountCount;
+        }
+
+        @Override
+        public Iterator<AccountState> iterator() {
+            MappedInput input;
+            try {
+                input = new MappedInput(channel, headerBytes, size - FOOTER_BYTES);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return new Iterator<>() {
+                int remaining = accountCount;
+
+                @Override
+                public boolean hasNext() {
+                    return remaining > 0;
+                }
+
+                @Override
+                public AccountState next() {
+                    if (remaining == 0) {
+                        throw new NoSuchElementException();
+                    }
+                    remaining--;
+                    try {
+                        return readAccount(input, version);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            };
+        }
+
+        private static AccountState readAccount(MappedInput input, int version) throws IOException {
+            String accountId = input.getString(input.getShort() & 0xFFFF);
+            int present = input.getShort() & 0xFFFF;
+            int inactive = input.getShort() & 0xFFFF;
+            int verdict = input.getShort() & 0xFFFF;
+            int entries = Integer.bitCount(present);
+            long[] timestamps = new long[entries];
+            String[] reasons = new String[entries];
+            for (int i = 0; i < entries; i++) {
+                timestamps[i] = input.getLong();
+                // Decoded texts are encoded into the ReasonDictionary by restore
+                reasons[i] = input.getString(input.getInt());
+            }
+            AccountHistory.Builder history = null;
+            if (version != VERSION_WITHOUT_HISTORY) {
+                int events = input.getInt();
+                history = events > 0 ? new AccountHistory.Builder() : null;
+                ListType[] listTypes = ListType.values();
+                for (int i = 0; i < events; i++) {
+                    long timestamp = input.getLong();
+                    int listType = input.getByte();
+                    int eventVerdict = input.getShort() & 0xFFFF;
+                    int reasonLength = input.getInt();
+                    if (listType < 0 || listType >= listTypes.length) {
+                        throw new IOException("Corrupt snapshot history event");
+                    }
+                    String reason = reasonLength < 0 ? null : input.getString(reasonLength);
+                    history.append(timestamp, listTypes[listType], eventVerdict, reason);
+                }
+            }
+            return AccountState.restore(accountId, present, inactive, verdict, timestamps, reasons, history);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Sequential reader over a file region through a sliding memory-mapped window,
+     * so snapshots larger than 2 GB can be read
+     */
+    private static class MappedInput {
+        private final FileChannel channel;
+        private final long end;
+        private long windowStart;
+        private ByteBuffer window;
+        private byte[] scratch = new byte[256];
+
+        MappedInput(FileChannel channel, long start, long end) throws IOException {
+            this.channel = channel;
+            this.end = end;
+            map(start);
+        }
+
+        private void map(long position) throws IOException {
+            windowStart = position;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_BYTES, end - position));
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (window.remaining() >= bytes) {
+                return;
+            }
+            long position = windowStart + window.position();
+            if (end - position < bytes) {
+                throw new IOException("Snapshot is truncated");
+            }
+            map(position);
+        }
+
+        byte getByte() throws IOException {
+            ensure(1);
+            return window.get();
+        }
+
+        short getShort() throws IOException {
+            ensure(2);
+            return window.getShort();
+        }
+
+        int getInt() throws IOException {
+            ensure(4);
+            return window.getInt();
+        }
+
+        long getLong() throws IOException {
+            ensure(8);
+            return window.getLong();
+        }
+
+        String getString(int length) throws IOException {
+            if (length < 0) {
+                throw new IOException("Corrupt snapshot string length");
+            }
+            ensure(length);
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            window.get(scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,793 @@
+package com.loanmanagement.persistence;
+
+import com.loanmanagement.ingest.ListFormat;
+import com.loanmanagement.model.ListType;
+import com.loanmanagement.model.UploadMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of every applied upload, split into numbered segment files.
+ *
+ * <p>An entry records the upload's list type, timestamp and generation followed by
+ * the raw upload bytes in length-prefixed frames, and ends with a commit marker and
+ * CRC. Bytes are captured as the ingest pipeline reads them, so logging costs one
+ * extra sequential write and replay re-runs the exact same ingest. An entry is only
+ * durable once {@link Entry#commit()} returns; uploads commit before publishing.
+ *
+ * <pre>
+ * entry   := ENTRY_MAGIC kind:u8 generation:i64 listType:i8 timestamp:i64 format:u8
+ *            (length:i32 bytes)* 0:i32 COMMIT_MAGIC crc32:i64
+ * </pre>
+ *
+ * kind is 1 for an appending upload, 2 for a clear and 3 for a replacing upload;
+ * format is 1 for CSV and 2 for a binary list. Replication streams the same entries
+ * to followers and adds heartbeats of kind 4, which are never written to disk.
+ *
+ * <p>If a failed entry cannot be truncated away, the log is marked failed and
+ * refuses further appends: anything written after the leftover bytes would be
+ * unreachable to recovery, which stops at the first bad entry.
+ */
+@Component
+public class WriteAheadLog {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteAheadLog.class);
+
+    static final int ENTRY_MAGIC = 0x454C5745;
+    static final int COMMIT_MAGIC = 0x454C5743;
+    static final byte KIND_UPLOAD = 1;
+    static final byte KIND_CLEAR = 2;
+    static final byte KIND_REPLACE = 3;
+    static final byte KIND_HEARTBEAT = 4;
+    static final byte FORMAT_CSV = 1;
+    static final byte FORMAT_BINARY = 2;
+
+    static final int HEADER_BYTES = 4 + 1 + 8 + 1 + 8 + 1;
+    private static final int FRAME_BYTES = 64 * 1024;
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final boolean enabled;
+    private final Path directory;
+    private final boolean fsync;
+    // Held by the entry being written from begin to commit or abort, which may run on
+    // different threads, so it is a permit rather than a lock owned by a thread
+    private final Semaphore appendPermit = new Semaphore(1);
+    private final AtomicLong committedEntries = new AtomicLong();
+    // Notified whenever the committed position moves
+    private final Object commitSignal = new Object();
+
+    private FileChannel channel;
+    private volatile long segmentNumber;
+    private volatile long lastCommittedGeneration;
+    private volatile Position committed;
+    // Set when a failed entry could not be truncated; appends are refused from then on
+    private volatile IOException failure;
+
+    public WriteAheadLog(@Value("${eligibility.persistence.enabled:false}") boolean enabled,
+                         @Value("${eligibility.persistence.directory:data}") String directory,
+                         @Value("${eligibility.persistence.fsync:true}") boolean fsync) {
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.fsync = fsync;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Start logging an upload. The returned entry must be committed or aborted.
+     */
+    public Entry beginUpload(long generation, ListType listType, long uploadTimestamp, UploadMode mode,
+                             ListFormat format) throws IOException {
+        if (!enabled) {
+            return Entry.DISABLED;
+        }
+        appendPermit.acquireUninterruptibly();
+        try {
+            requireUsable();
+            byte kind = mode == UploadMode.REPLACE ? KIND_REPLACE : KIND_UPLOAD;
+            return new Entry(this, generation, kind, listType, uploadTimestamp,
+                format == ListFormat.BINARY ? FORMAT_BINARY : FORMAT_CSV);
+        } catch (IOException | RuntimeException e) {
+            appendPermit.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Log that every account is removed, producing the given generation. Called while
+     * the store has that generation open, so clears and uploads reach the log in
+     * generation order.
+     */
+    public void logClear(long generation) throws IOException {
+        if (!enabled) {
+            return;
+        }
+        appendPermit.acquireUninterruptibly();
+        Entry entry;
+        try {
+            requireUsable();
+            entry = new Entry(this, generation, KIND_CLEAR, null, 0, FORMAT_CSV);
+        } catch (IOException | RuntimeException e) {
+            appendPermit.release();
+            throw e;
+        }
+        entry.commit();
+    }
+
+    private void requireUsable() throws IOException {
+        IOException cause = failure;
+        if (cause != null) {
+            throw new IOException("Write-ahead log is failed after an entry could not be truncated", cause);
+        }
+    }
+
+    /**
+     * True once a failed entry could not be truncated; the log accepts no more appends
+     * and the process must be restarted so recovery can discard the entry
+     */
+    public boolean isFailed() {
+        return failure != null;
+    }
+
+    /**
+     * Open a fresh segment for appends after recovery has read the existing ones
+     */
+    public synchronized void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(directory);
+        List<Path> segments = segments();
+        long last = segments.isEmpty() ? 0 : segmentNumber(segments.get(segments.size() - 1));
+        for (Path segment : segments) {
+            // Segments left empty by earlier restarts hold nothing to replay
+            if (Files.size(segment) == 0) {
+                Files.delete(segment);
+            }
+        }
+        openSegment(last + 1);
+    }
+
+    /**
+     * Close the current segment and start a new one. Returns the number of the first
+     * live segment; every older segment only holds entries up to
+     * {@link #getLastCommittedGeneration()} as of this call. While an entry is being
+     * written its segment stays open and its number is returned, so a snapshot never
+     * waits for a long upload; the next rotation closes it.
+     */
+    public long rotate() throws IOException {
+        if (!appendPermit.tryAcquire()) {
+            return segmentNumber;
+        }
+        try {
+            // The leftover entry must stay last in the log for recovery to discard it
+            requireUsable();
+            if (channel != null) {
+                channel.force(true);
+                channel.close();
+            }
+            openSegment(segmentNumber + 1);
+            return segmentNumber;
+        } finally {
+            appendPermit.release();
+        }
+    }
+
+    /**
+     * Delete segments numbered below the given one, typically after a snapshot covers them
+     */
+    public void deleteSegmentsBefore(long number) throws IOException {
+        for (Path segment : segments()) {
+            if (segmentNumber(segment) < number) {
+                Files.deleteIfExists(segment);
+            }
+        }
+    }
+
+    private void openSegment(long number) throws IOException {
+        segmentNumber = number;
+        Path path = directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        advanceCommitted(new Position(number, channel.position()));
+    }
+
+    private void advanceCommitted(Position position) {
+        synchronized (commitSignal) {
+            committed = position;
+            commitSignal.notifyAll();
+        }
+    }
+
+    /**
+     * End of the committed entries: everything before this offset of this segment, and
+     * all of every older segment, is committed. Null until the log is opened.
+     */
+    Position getCommitted() {
+        return committed;
+    }
+
+    /**
+     * Wait until the committed position moves past the given one, or the timeout passes
+     */
+    void awaitCommit(Position seen, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (commitSignal) {
+            long remaining = timeoutMillis;
+            while (committed == seen && remaining > 0) {
+                commitSignal.wait(remaining);
+                remaining = deadline - System.currentTimeMillis();
+            }
+        }
+    }
+
+    /**
+     * Generation of the oldest entry still on disk, or -1 when the log holds no entries
+     */
+    public long getOldestGeneration() throws IOException {
+        for (Path segment : segments()) {
+            try (FileChannel file = FileChannel.open(segment, StandardOpenOption.READ)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                while (header.hasRemaining() && file.read(header) >= 0) {
+                    // fill
+                }
+                if (!header.hasRemaining() && header.getInt(0) == ENTRY_MAGIC) {
+                    return header.getLong(5);
+                }
+            } catch (NoSuchFileException e) {
+                // Deleted by a snapshot since it was listed
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Start shipping committed entries newer than the given generation, see {@link LogShipper}
+     */
+    public LogShipper ship(long afterGeneration) {
+        return new LogShipper(this, afterGeneration);
+    }
+
+    /**
+     * Existing segment files in log order
+     */
+    public List<Path> segments() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                .filter(path -> {
+                    String name = path.getFileName().toString();
+                    return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                })
+                .sorted()
+                .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
+        }
+    }
+
+    static long segmentNumber(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * Total size of all segments on disk
+     */
+    public long sizeBytes() {
+        try {
+            long total = 0;
+            for (Path segment : segments()) {
+                total += Files.size(segment);
+            }
+            return total;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    public long getCommittedEntries() {
+        return committedEntries.get();
+    }
+
+    public long getLastCommittedGeneration() {
+        return lastCommittedGeneration;
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Open a segment for reading during recovery
+     */
+    public SegmentReader read(Path segment) throws IOException {
+        return new SegmentReader(segment);
+    }
+
+    /**
+     * An entry being appended. Upload bytes are captured through {@link #record(InputStream)}.
+     * The entry holds the log's append permit until it is committed or aborted, from
+     * whichever thread finishes the upload.
+     */
+    public static class Entry {
+        static final Entry DISABLED = new Entry();
+
+        private final WriteAheadLog wal;
+        private final long start;
+        private final long generation;
+        private final CRC32 crc = new CRC32();
+        private final ByteBuffer frame;
+        private volatile boolean finished;
+
+        private Entry() {
+            this.wal = null;
+            this.start = 0;
+            this.generation = 0;
+            this.frame = null;
+            this.finished = true;
+        }
+
+        Entry(WriteAheadLog wal, long generation, byte kind, ListType listType, long timestamp, byte format)
+                throws IOException {
+            if (wal.channel == null) {
+                throw new IllegalStateException("Write-ahead log is not open");
+            }
+            this.wal = wal;
+            this.generation = generation;
+            this.start = wal.channel.position();
+            this.frame = ByteBuffer.allocate(4 + FRAME_BYTES);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(ENTRY_MAGIC)
+                .put(kind)
+                .putLong(generation)
+                .put((byte) (listType != null ? listType.ordinal() : -1))
+                .putLong(timestamp)
+                .put(format)
+                .flip();
+            wal.write(header);
+            frame.position(4);
+        }
+
+        /**
+         * False when logging is disabled and nothing needs to be recorded
+         */
+        public boolean isRecording() {
+            return wal != null;
+        }
+
+        /**
+         * Wrap the upload stream so every byte read is also appended to this entry
+         */
+        public InputStream record(InputStream source) {
+            if (wal == null) {
+                return source;
+            }
+            return new FilterInputStream(source) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b >= 0) {
+                        append(new byte[]{(byte) b}, 0, 1);
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException {
+                    int read = super.read(buffer, offset, length);
+                    if (read > 0) {
+                        append(buffer, offset, read);
+                    }
+                    return read;
+                }
+            };
+        }
+
+        private void append(byte[] bytes, int offset, int length) throws IOException {
+            crc.update(bytes, offset, length);
+            while (length > 0) {
+                int n = Math.min(length, frame.remaining());
+                frame.put(bytes, offset, n);
+                offset += n;
+                length -= n;
+                if (!frame.hasRemaining()) {
+                    flushFrame();
+                }
+            }
+        }
+
+        private void flushFrame() throws IOException {
+            int length = frame.position() - 4;
+            if (length == 0) {
+                return;
+            }
+            frame.putInt(0, length).flip();
+            wal.write(frame);
+            frame.clear().position(4);
+        }
+
+        /**
+         * Make the entry durable and release the log for the next writer
+         */
+        public void commit() throws IOException {
+            if (finished) {
+                return;
+            }
+            try {
+                flushFrame();
+                ByteBuffer trailer = ByteBuffer.allocate(4 + 4 + 8);
+                trailer.putInt(0).putInt(COMMIT_MAGIC).putLong(crc.getValue()).flip();
+                wal.write(trailer);
+                if (wal.fsync) {
+                    wal.channel.force(false);
+                }
+                wal.lastCommittedGeneration = generation;
+                wal.committedEntries.incrementAndGet();
+                wal.advanceCommitted(new Position(wal.segmentNumber, wal.channel.position()));
+            } catch (IOException | RuntimeException e) {
+                truncate();
+                throw e;
+            } finally {
+                finish();
+            }
+        }
+
+        /**
+         * Drop the partially written entry
+         */
+        public void abort() {
+            if (finished) {
+                return;
+            }
+            try {
+                truncate();
+            } finally {
+                finish();
+            }
+        }
+
+        private void truncate() {
+            try {
+                wal.channel.truncate(start);
+                wal.channel.position(start);
+            } catch (IOException e) {
+                wal.failure = e;
+                log.error("Could not truncate aborted write-ahead log entry; refusing further appends", e);
+            }
+        }
+
+        private void finish() {
+            finished = true;
+            wal.appendPermit.release();
+        }
+    }
+
+    /**
+     * Sequential reader over a stream of entries, such as a replication stream.
+     * Entries must be consumed in order.
+     */
+    public static class LogReader implements AutoCloseable {
+        private final InputStream source;
+        private final CountingInputStream counter;
+        final DataInputStream input;
+        long entryStart;
+
+        public LogReader(InputStream source) {
+            this.source = source;
+            this.counter = new CountingInputStream(source);
+            this.input = new DataInputStream(counter);
+        }
+
+        /**
+         * Read the next entry header, or null at the end of the stream
+         */
+        public LogEntry next() throws IOException {
+            entryStart = counter.position;
+            try {
+                int magic = input.readInt();
+                if (magic != ENTRY_MAGIC) {
+                    throw new IOException("Bad entry magic at offset " + entryStart);
+                }
+                byte kind = input.readByte();
+                long generation = input.readLong();
+                int listType = input.readByte();
+                long timestamp = input.readLong();
+                byte format = input.readByte();
+                return new LogEntry(kind, generation,
+                    listType >= 0 ? ListType.values()[listType] : null, timestamp, format, new PayloadStream());
+            } catch (EOFException e) {
+                if (counter.position != entryStart) {
+                    tornHeader(e);
+                }
+                return null;
+            }
+        }
+
+        /**
+         * Called when the stream ends inside an entry header
+         */
+        void tornHeader(EOFException e) throws IOException {
+            throw e;
+        }
+
+        @Override
+        public void close() throws IOException {
+            source.close();
+        }
+
+        /**
+         * Frame-decoding payload stream. End of stream is only reported after the commit
+         * marker and CRC have been verified; a torn or corrupt entry raises an IOException.
+         */
+        private class PayloadStream extends InputStream {
+            private final CRC32 crc = new CRC32();
+            private int frameRemaining;
+            private boolean ended;
+
+            @Override
+            public int read() throws IOException {
+                byte[] one = new byte[1];
+                int n = read(one, 0, 1);
+                return n < 0 ? -1 : one[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                if (ended) {
+                    return -1;
+                }
+                if (frameRemaining == 0) {
+                    frameRemaining = input.readInt();
+                    if (frameRemaining == 0) {
+                        if (input.readInt() != COMMIT_MAGIC || input.readLong() != crc.getValue()) {
+                            throw new IOException("Write-ahead log entry failed verification");
+                        }
+                        ended = true;
+                        return -1;
+                    }
+                    if (frameRemaining < 0) {
+                        throw new IOException("Corrupt write-ahead log frame");
+                    }
+                }
+                int read = input.read(buffer, offset, Math.min(length, frameRemaining));
+                if (read < 0) {
+                    throw new EOFException("Write-ahead log entry is truncated");
+                }
+                crc.update(buffer, offset, read);
+                frameRemaining -= read;
+                return read;
+            }
+        }
+    }
+
+    /**
+     * Sequential reader over one segment. A torn header at the end of the segment
+     * reads as the end and is truncated away.
+     */
+    public static class SegmentReader extends LogReader {
+        private final Path path;
+        private final FileChannel channel;
+
+        SegmentReader(Path path) throws IOException {
+            this(path, FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE));
+        }
+
+        private SegmentReader(Path path, FileChannel channel) {
+            super(new BufferedInputStream(Channels.newInputStream(channel), 1 << 20));
+            this.path = path;
+            this.channel = channel;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        @Override
+        void tornHeader(EOFException e) throws IOException {
+            truncateAtEntry();
+        }
+
+        /**
+         * Whether a verified entry starts anywhere after the start of the current one, in
+         * which case discarding from here would lose committed uploads
+         */
+        public boolean committedEntryFollows() throws IOException {
+            return containsCommittedEntry(path, entryStart + 1);
+        }
+
+        /**
+         * Discard the current entry and everything after it
+         */
+        public void truncateAtEntry() throws IOException {
+            log.warn("Truncating write-ahead log {} at offset {}", path, entryStart);
+            channel.truncate(entryStart);
+        }
+    }
+
+    /**
+     * Whether a verified entry starts anywhere in the segment
+     */
+    public boolean containsCommittedEntry(Path segment) throws IOException {
+        return containsCommittedEntry(segment, 0);
+    }
+
+    /**
+     * Scan for the entry magic from the given offset and verify each entry it starts.
+     * Only used once recovery has found a bad entry, so it favours simplicity over speed.
+     */
+    private static boolean containsCommittedEntry(Path segment, long from) throws IOException {
+        try (FileChannel file = FileChannel.open(segment, StandardOpenOption.READ)) {
+            ByteBuffer window = ByteBuffer.allocate(FRAME_BYTES);
+            long base = from;
+            while (true) {
+                window.clear();
+                while (window.hasRemaining() && file.read(window, base + window.position()) >= 0) {
+                    // fill
+                }
+                window.flip();
+                for (int i = 0; i + 4 <= window.limit(); i++) {
+                    if (window.getInt(i) == ENTRY_MAGIC && isCommittedEntry(segment, base + i)) {
+                        return true;
+                    }
+                }
+                if (window.limit() < window.capacity()) {
+                    return false;
+                }
+                // Overlap so a magic straddling two windows is still seen
+                base += window.limit() - 3;
+            }
+        }
+    }
+
+    private static boolean isCommittedEntry(Path segment, long offset) throws IOException {
+        FileChannel file = FileChannel.open(segment, StandardOpenOption.READ);
+        file.position(offset);
+        try (LogReader reader = new LogReader(new BufferedInputStream(Channels.newInputStream(file)))) {
+            LogEntry entry = reader.next();
+            if (entry == null) {
+                return false;
+            }
+            entry.skip();
+            return true;
+        } catch (IOException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * A position in the log: a segment number and a byte offset into it
+     */
+    static final class Position {
+        final long segment;
+        final long offset;
+
+        Position(long segment, long offset) {
+            this.segment = segment;
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * A logged operation; the payload must be read to the end to verify the entry
+     */
+    public static class LogEntry {
+        private final byte kind;
+        private final long generation;
+        private final ListType listType;
+        private final long uploadTimestamp;
+        private final byte format;
+        private final InputStream payload;
+
+        LogEntry(byte kind, long generation, ListType listType, long uploadTimestamp, byte format, InputStream payload) {
+            this.kind = kind;
+            this.generation = generation;
+            this.listType = listType;
+            this.uploadTimestamp = uploadTimestamp;
+            this.format = format;
+            this.payload = payload;
+        }
+
+        public boolean isClear() {
+            return kind == KIND_CLEAR;
+        }
+
+        /**
+         * A replication heartbeat: the generation is the primary's latest and the
+         * timestamp its clock
+         */
+        public boolean isHeartbeat() {
+            return kind == KIND_HEARTBEAT;
+        }
+
+        /**
+         * Mode the upload was applied in; replacements must be replayed as replacements
+         */
+        public UploadMode getMode() {
+            return kind == KIND_REPLACE ? UploadMode.REPLACE : UploadMode.APPEND;
+        }
+
+        public long getGeneration() {
+            return generation;
+        }
+
+        public ListType getListType() {
+            return listType;
+        }
+
+        public long getUploadTimestamp() {
+            return uploadTimestamp;
+        }
+
+        public ListFormat getFormat() {
+            return format == FORMAT_BINARY ? ListFormat.BINARY : ListFormat.CSV;
+        }
+
+        public InputStream getPayload() {
+            return payload;
+        }
+
+        /**
+         * Read and verify the payload without applying it
+         */
+        public void skip() throws IOException {
+            byte[] buffer = new byte[FRAME_BYTES];
+            while (payload.read(buffer, 0, buffer.length) >= 0) {
+                // discard
+            }
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        long position;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                position++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+    }
+}
@@ -0,0 +1,395 @@
+package com.loanmanagement.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.loanmanagement.dto.EligibilityCheckResponse;
+import com.loanmanagement.store.AccountStateStore;
+import com.loanmanagement.store.Generation;
+import jakarta.annotation.PreDestroy;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bulk eligibility checks over a streamed list of account IDs.
+ *
+ * <p>IDs are read incrementally and grouped into batches that are evaluated in
+ * parallel. At most a fixed number of batches are in flight; results are written
+ * in input order as soon as the oldest batch completes, so memory use does not
+ * depend on how many IDs the request contains.
+ *
+ * <p>Accounts can also be selected by an ID range instead of a list: the range is
+ * walked in the sorted ID index of one pinned generation, so only the accounts in it
+ * are read.
+ */
+@Service
+public class BulkEligibilityService {
+
+    public enum InputFormat {
+        JSON, LINES, CSV
+    }
+
+    public enum OutputFormat {
+        NDJSON, CSV
+    }
+
+    private static final String[] CSV_HEADER = {
+        "AccountID", "Eligible", "Message", "ListType", "Reason", "AddedOn", "Generation"
+    };
+
+    private final EligibilityService eligibilityService;
+    private final AccountStateStore eligibilityData;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+    private final int maxBatchesInFlight;
+    private final ExecutorService executor;
+
+    public BulkEligibilityService(EligibilityService eligibilityService,
+                                  AccountStateStore eligibilityData,
+                                  ObjectMapper objectMapper,
+                                  @Value("${eligibility.bulk.batch-size:1000}") int batchSize,
+                                  @Value("${eligibility.bulk.parallelism:0}") int parallelism) {
+        this.eligibilityService = eligibilityService;
+        this.eligibilityData = eligibilityData;
+        this.objectMapper = objectMapper;
+        this.batchSize = Math.max(batchSize, 1);
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.maxBatchesInFlight = threads * 2;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "bulk-check-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Check every account ID read from the input and stream the results to the output
+     *
+     * @return number of accounts checked
+     */
+    public long checkAll(InputStream input, InputFormat inputFormat, OutputStream output, OutputFormat outputFormat)
+            throws IOException {
+        return checkAll(input, inputFormat, output, outputFormat, null);
+    }
+
+    /**
+     * As {@link #checkAll(InputStream, InputFormat, OutputStream, OutputFormat)}, answering
+     * as of the given time when it is not null
+     */
+    public long checkAll(InputStream input, InputFormat inputFormat, OutputStream output, OutputFormat outputFormat,
+                         LocalDateTime asOf) throws IOException {
+        Iterator<String> accountIds = accountIds(input, inputFormat);
+        ResultWriter writer = outputFormat == OutputFormat.CSV ? new CsvResultWriter(output) : new NdjsonResultWriter(output);
+        Deque<Future<List<EligibilityCheckResponse>>> inFlight = new ArrayDeque<>();
+        long checked = 0;
+
+        try {
+            while (accountIds.hasNext()) {
+                List<String> batch = new ArrayList<>(batchSize);
+                while (batch.size() < batchSize && accountIds.hasNext()) {
+                    batch.add(accountIds.next());
+                }
+                if (inFlight.size() >= maxBatchesInFlight) {
+                    checked += writer.write(await(inFlight.removeFirst()));
+                }
+                inFlight.addLast(executor.submit(() -> checkBatch(batch, asOf)));
+            }
+            while (!inFlight.isEmpty()) {
+                checked += writer.write(await(inFlight.removeFirst()));
+            }
+            writer.flush();
+        } finally {
+            inFlight.forEach(future -> future.cancel(true));
+        }
+        return checked;
+    }
+
+    /**
+     * Check every stored account with an ID from {@code from} (inclusive) up to
+     * {@code to} (exclusive) and stream the results in ID order. A null bound is open;
+     * when {@code eligible} is not null only accounts with that verdict are written.
+     *
+     * @return number of accounts written
+     */
+    public long checkRange(String from, String to, Boolean eligible, long limit, OutputStream output,
+                           OutputFormat outputFormat) throws IOException {
+        ResultWriter writer = outputFormat == OutputFormat.CSV ? new CsvResultWriter(output) : new NdjsonResultWriter(output);
+        long written = 0;
+        try (Generation generation = eligibilityData.snapshot()) {
+            Iterator<String> accountIds = generation.getAccountIds().range(from, to);
+            List<EligibilityCheckResponse> batch = new ArrayList<>(batchSize);
+            while (written + batch.size() < limit && accountIds.hasNext()) {
+                EligibilityCheckResponse result = eligibilityService.checkEligibility(generation, accountIds.next());
+                if (eligible != null && result.isEligible() != eligible) {
+                    continue;
+                }
+                batch.add(result);
+                if (batch.size() == batchSize) {
+                    written += writer.write(batch);
+                    batch.clear();
+                }
+            }
+            written += writer.write(batch);
+            writer.flush();
+        }
+        return written;
+    }
+
+    private List<EligibilityCheckResponse> checkBatch(List<String> accountIds, LocalDateTime asOf) {
+        List<EligibilityCheckResponse> results = new ArrayList<>(accountIds.size());
+        for (String accountId : accountIds) {
+            results.add(asOf != null
+                ? eligibilityService.checkEligibility(accountId, asOf)
+                : eligibilityService.checkEligibility(accountId));
+        }
+        return results;
+    }
+
+    private static List<EligibilityCheckResponse> await(Future<List<EligibilityCheckResponse>> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Bulk check interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Bulk check failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Lazily read non-blank account IDs from the request body
+     */
+    private Iterator<String> accountIds(InputStream input, InputFormat format) throws IOException {
+        return switch (format) {
+            case JSON -> new JsonAccountIds(objectMapper.getFactory().createParser(input));
+            case CSV -> new CsvAccountIds(CSVFormat.DEFAULT
+                .parse(new InputStreamReader(input, StandardCharsets.UTF_8)).iterator());
+            case LINES -> new LineAccountIds(new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8)));
+        };
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Base iterator that skips blank IDs and looks one element ahead
+     */
+    private abstract static class AccountIdIterator implements Iterator<String> {
+        private String next;
+        private boolean done;
+
+        /**
+         * Return the next raw ID, or null at end of input
+         */
+        protected abstract String read() throws IOException;
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && !done) {
+                try {
+                    String candidate = read();
+                    if (candidate == null) {
+                        done = true;
+                        continue;
+                    }
+                    // Trimmed exactly as a single check trims it, so both answer alike
+                    String accountId = EligibilityService.normalizeAccountId(candidate);
+                    if (!accountId.isEmpty()) {
+                        next = accountId;
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String result = next;
+            next = null;
+            return result;
+        }
+    }
+
+    /**
+     * JSON array of strings, numbers or {"accountId": ...} objects
+     */
+    private static class JsonAccountIds extends AccountIdIterator {
+        private final JsonParser parser;
+        private boolean started;
+
+        JsonAccountIds(JsonParser parser) {
+            this.parser = parser;
+        }
+
+        @Override
+        protected String read() throws IOException {
+            if (!started) {
+                started = true;
+                if (parser.nextToken() != JsonToken.START_ARRAY) {
+                    throw new IOException("Expected a JSON array of account IDs");
+                }
+            }
+            while (true) {
+                JsonToken token = parser.nextToken();
+                if (token == null || token == JsonToken.END_ARRAY) {
+                    return null;
+                }
+                if (token == JsonToken.START_OBJECT) {
+                    JsonNode node = parser.readValueAsTree();
+                    JsonNode accountId = node.get("accountId");
+                    if (accountId != null && !accountId.isNull()) {
+                        return accountId.asText();
+                    }
+                } else if (token.isScalarValue() && token != JsonToken.VALUE_NULL) {
+                    return parser.getText();
+                } else if (token == JsonToken.START_ARRAY) {
+                    parser.skipChildren();
+                }
+            }
+        }
+    }
+
+    /**
+     * CSV with the account ID in the first column and an optional AccountID header
+     */
+    private static class CsvAccountIds extends AccountIdIterator {
+        private final Iterator<CSVRecord> records;
+        private boolean first = true;
+
+        CsvAccountIds(Iterator<CSVRecord> records) {
+            this.records = records;
+        }
+
+        @Override
+        protected String read() {
+            while (records.hasNext()) {
+                String value = records.next().get(0).trim();
+                if (first) {
+                    first = false;
+                    if (value.equalsIgnoreCase("AccountID")) {
+                        continue;
+                    }
+                }
+                return value;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * One account ID per line
+     */
+    private static class LineAccountIds extends AccountIdIterator {
+        private final BufferedReader reader;
+
+        LineAccountIds(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        protected String read() throws IOException {
+            return reader.readLine();
+        }
+    }
+
+    private interface ResultWriter {
+        int write(List<EligibilityCheckResponse> results) throws IOException;
+
+        void flush() throws IOException;
+    }
+
+    private class NdjsonResultWriter implements ResultWriter {
+        private final OutputStream output;
+        private final ObjectWriter writer = objectMapper.writerFor(EligibilityCheckResponse.class);
+
+        NdjsonResultWriter(OutputStream output) {
+            this.output = output;
+        }
+
+        @Override
+        public int write(List<EligibilityCheckResponse> results) throws IOException {
+            for (EligibilityCheckResponse result : results) {
+                output.write(writer.writeValueAsBytes(result));
+                output.write('\n');
+            }
+            output.flush();
+            return results.size();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            output.flush();
+        }
+    }
+
+    /**
+     * One row per ineligibility reason; eligible accounts get a single row with empty reason columns
+     */
+    private static class CsvResultWriter implements ResultWriter {
+        private final Writer writer;
+        private final CSVPrinter printer;
+
+        CsvResultWriter(OutputStream output) throws IOException {
+            this.writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+            this.printer = new CSVPrinter(writer, CSVFormat.DEFAULT.withHeader(CSV_HEADER));
+        }
+
+        @Override
+        public int write(List<EligibilityCheckResponse> results) throws IOException {
+            for (EligibilityCheckResponse result : results) {
+                List<EligibilityCheckResponse.IneligibilityReason> reasons = result.getIneligibilityReasons();
+                if (reasons == null || reasons.isEmpty()) {
+                    printer.printRecord(result.getAccountId(), result.isEligible(), result.getMessage(),
+                        "", "", "", result.getGeneration());
+                    continue;
+                }
+                for (EligibilityCheckResponse.IneligibilityReason reason : reasons) {
+                    printer.printRecord(result.getAccountId(), result.isEligible(), result.getMessage(),
+                        reason.getListType(), reason.getReason(), reason.getAddedOn(), result.getGeneration());
+                }
+            }
+            printer.flush();
+            return results.size();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            printer.flush();
+        }
+    }
+}
@@ -2,217 +2,727 @@ package com.loanmanagement.service;
 
 import com.loanmanagement.dto.EligibilityCheckResponse;
 import com.loanmanagement.dto.ListUploadResponse;
+import com.loanmanagement.ingest.BinaryListFormat;
+import com.loanmanagement.ingest.BinaryListReader;
+import com.loanmanagement.ingest.IngestCancelledException;
+import com.loanmanagement.ingest.IngestPipeline;
+import com.loanmanagement.ingest.IngestProgress;
+import com.loanmanagement.ingest.IngestResult;
+import com.loanmanagement.ingest.ListFormat;
+import com.loanmanagement.ingest.RowHandler;
+import com.loanmanagement.metrics.EligibilityMetrics;
+import com.loanmanagement.metrics.EligibilityMetrics.CheckVerdict;
 import com.loanmanagement.model.EligibilityRecord;
 import com.loanmanagement.model.ListType;
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVRecord;
+import com.loanmanagement.model.UploadMode;
+import com.loanmanagement.persistence.WriteAheadLog;
+import com.loanmanagement.store.AccountHistory;
+import com.loanmanagement.store.AccountIdSet;
+import com.loanmanagement.store.AccountState;
+import com.loanmanagement.store.AccountStateStore;
+import com.loanmanagement.store.Generation;
+import com.loanmanagement.store.MembershipFilter;
+import com.loanmanagement.store.ReasonDictionary;
+import com.loanmanagement.store.StoreStatistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.InputStreamReader;
-import java.io.Reader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.io.UncheckedIOException;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
 
 @Service
 public class EligibilityService {
     
+    private static final Logger log = LoggerFactory.getLogger(EligibilityService.class);
+    
+    private static final ListType[] INELIGIBILITY_LIST_TYPES = {
+        ListType.STR, ListType.CR, ListType.MULTIPLE_ACCOUNT, ListType.FDM, ListType.SST
+    };
+    
     // In-memory storage for all eligibility records
-    private final Map<String, Map<ListType, EligibilityRecord>> eligibilityData = new ConcurrentHashMap<>();
+    private final AccountStateStore eligibilityData;
+    
+    private final IngestPipeline ingestPipeline;
+    
+    private final WriteAheadLog writeAheadLog;
+    
+    private final EligibilityMetrics metrics;
+    
+    private final VerdictEventService verdictEvents;
+    
+    // Cross-check the maintained counters against a full scan on every statistics call
+    private final boolean verifyStatistics;
+    
+    // Part of every check validator: generation numbers restart with the process unless
+    // persistence is on, so validators issued before a restart must never match after it
+    private final String validatorEpoch = Long.toHexString(System.currentTimeMillis());
+    
+    // Changes made by the most recent uploads, newest first
+    private final Deque<Map<String, Object>> recentUploads = new ArrayDeque<>();
+    private final int recentUploadLimit;
+    
+    // Primary this instance replicates, or null; replicas only apply what the primary logged
+    private final String replicaOf;
+    
+    public EligibilityService(AccountStateStore eligibilityData, IngestPipeline ingestPipeline,
+                              WriteAheadLog writeAheadLog, EligibilityMetrics metrics,
+                              VerdictEventService verdictEvents,
+                              @Value("${eligibility.statistics.verify:false}") boolean verifyStatistics,
+                              @Value("${eligibility.statistics.recent-uploads:20}") int recentUploadLimit,
+                              @Value("${eligibility.replication.primary-url:}") String primaryUrl) {
+        this.eligibilityData = eligibilityData;
+        this.ingestPipeline = ingestPipeline;
+        this.writeAheadLog = writeAheadLog;
+        this.metrics = metrics;
+        this.verdictEvents = verdictEvents;
+        this.verifyStatistics = verifyStatistics;
+        this.recentUploadLimit = Math.max(recentUploadLimit, 0);
+        this.replicaOf = primaryUrl == null || primaryUrl.isBlank() ? null : primaryUrl;
+    }
     
     /**
-     * Upload and process a list (CSV format)
+     * Upload and process a list (CSV or binary format)
      * Expected CSV format: AccountID,Reason
      */
     public ListUploadResponse uploadList(ListType listType, MultipartFile file) {
-        ListUploadResponse response = new ListUploadResponse(listType, false, "");
-        LocalDateTime uploadTimestamp = LocalDateTime.now();
-        
+        return uploadList(listType, UploadMode.APPEND, file);
+    }
+    
+    /**
+     * Upload a list in either format. Binary lists are recognised by their magic
+     * number and spooled to a file so they can be memory-mapped.
+     */
+    public ListUploadResponse uploadList(ListType listType, UploadMode mode, MultipartFile file) {
         try {
-            Reader reader = new InputStreamReader(file.getInputStream());
-            Iterable<CSVRecord> records = CSVFormat.DEFAULT
-                .withFirstRecordAsHeader()
-                .withHeader("AccountID", "Reason")
-                .parse(reader);
-            
-            int totalRecords = 0;
-            int processedRecords = 0;
-            int skippedRecords = 0;
-            
-            for (CSVRecord record : records) {
-                totalRecords++;
-                
-                try {
-                    String accountId = record.get("AccountID").trim();
-                    String reason = record.get("Reason") != null ? record.get("Reason").trim() : "";
-                    
-                    if (accountId.isEmpty()) {
-                        skippedRecords++;
-                        continue;
+            if (!isBinary(file)) {
+                return uploadList(listType, mode, file.getInputStream(), new IngestProgress());
+            }
+            Path spooled = Files.createTempFile("upload-", ".elb");
+            try {
+                file.transferTo(spooled);
+                return uploadList(listType, mode, spooled, new IngestProgress());
+            } finally {
+                Files.deleteIfExists(spooled);
+            }
+        } catch (IOException e) {
+            return new ListUploadResponse(listType, false, "Error processing file: " + e.getMessage());
+        }
+    }
+    
+    private static boolean isBinary(MultipartFile file) throws IOException {
+        try (InputStream input = file.getInputStream()) {
+            byte[] prefix = input.readNBytes(4);
+            return BinaryListFormat.isBinary(prefix, prefix.length);
+        }
+    }
+    
+    public ListUploadResponse uploadList(ListType listType, InputStream file, IngestProgress progress) {
+        return uploadList(listType, UploadMode.APPEND, file, progress);
+    }
+    
+    /**
+     * Upload and process a list in either format read from a stream, which is closed
+     * when done. Rows are applied as they are read, so ingest overlaps with the
+     * transfer when the stream is a request body. Row counts are reported to the
+     * given progress while the upload runs.
+     */
+    public ListUploadResponse uploadList(ListType listType, UploadMode mode, InputStream file, IngestProgress progress) {
+        try (InputStream source = new BufferedInputStream(file, 1 << 16)) {
+            // Peek at the magic number without consuming it
+            source.mark(4);
+            byte[] prefix = source.readNBytes(4);
+            source.reset();
+            if (prefix.length == 0) {
+                return new ListUploadResponse(listType, false, "File is empty");
+            }
+            // The upload bytes are logged as the pipeline reads them
+            if (!BinaryListFormat.isBinary(prefix, prefix.length)) {
+                return upload(listType, mode, ListFormat.CSV,
+                    (handler, logEntry) -> ingestPipeline.run(logEntry.record(source), handler, progress));
+            }
+            return upload(listType, mode, ListFormat.BINARY, (handler, logEntry) -> {
+                BinaryListReader reader = BinaryListReader.read(logEntry.record(source));
+                checkListType(reader, listType);
+                return ingestPipeline.run(reader, handler, progress);
+            });
+        } catch (IOException e) {
+            return new ListUploadResponse(listType, false, "Error processing file: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Upload and process a list file in either format. Binary lists are read through
+     * memory-mapped blocks; when the write-ahead log is on, the file is copied into it
+     * before any row is applied.
+     */
+    public ListUploadResponse uploadList(ListType listType, UploadMode mode, Path file, IngestProgress progress) {
+        try {
+            if (!BinaryListFormat.isBinary(file)) {
+                return uploadList(listType, mode, Files.newInputStream(file), progress);
+            }
+        } catch (IOException e) {
+            return new ListUploadResponse(listType, false, "Error processing file: " + e.getMessage());
+        }
+        return upload(listType, mode, ListFormat.BINARY, (handler, logEntry) -> {
+            try (BinaryListReader reader = BinaryListReader.open(file)) {
+                checkListType(reader, listType);
+                if (logEntry.isRecording()) {
+                    try (InputStream logged = logEntry.record(Files.newInputStream(file))) {
+                        logged.transferTo(OutputStream.nullOutputStream());
                     }
-                    
-                    processRecord(accountId, listType, uploadTimestamp, reason);
-                    processedRecords++;
-                    
-                } catch (Exception e) {
-                    skippedRecords++;
                 }
+                return ingestPipeline.run(reader, handler, progress);
             }
+        });
+    }
+    
+    private static void checkListType(BinaryListReader reader, ListType listType) throws IOException {
+        if (reader.getListType() != listType) {
+            throw new IOException("File holds a " + reader.getListType() + " list, not " + listType);
+        }
+    }
+    
+    /**
+     * Runs the rows of one upload through a handler, logging them to the given entry
+     */
+    @FunctionalInterface
+    private interface ListIngest {
+        IngestResult run(RowHandler handler, WriteAheadLog.Entry logEntry) throws IOException;
+    }
+    
+    /**
+     * Apply an upload as one generation. In replace mode the file is the complete
+     * list: only accounts whose membership or reason differs are rewritten, and listed
+     * accounts missing from the file are taken off the list.
+     */
+    private ListUploadResponse upload(ListType listType, UploadMode mode, ListFormat format, ListIngest ingest) {
+        ListUploadResponse response = new ListUploadResponse(listType, false, "");
+        response.setMode(mode);
+        if (mode == UploadMode.REPLACE && listType.isDelist()) {
+            response.setMessage("Replace mode is only supported for ineligibility lists");
+            return response;
+        }
+        if (replicaOf != null) {
+            response.setMessage("This instance is a read replica; upload lists to the primary at " + replicaOf);
+            return response;
+        }
+        // The store keeps epoch millis, so truncate up front to keep comparisons exact
+        LocalDateTime uploadTimestamp = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        
+        long timestamp = toEpochMillis(uploadTimestamp);
+        long start = metrics.startTimer();
+        
+        // Rows are staged into a new generation that readers cannot see until it is published
+        long generation = eligibilityData.beginGeneration();
+        // Writers are serialized, so dictionary counter deltas belong to this upload
+        long reasonsAddedBefore = ReasonDictionary.addedCount();
+        long reasonBytesSavedBefore = ReasonDictionary.bytesSaved();
+        WriteAheadLog.Entry logEntry = null;
+        ListReplacement replacement = mode == UploadMode.REPLACE ? new ListReplacement(listType, timestamp) : null;
+        IngestResult result;
+        Generation published;
+        long publishTime;
+        try {
+            // The log entry is committed before publishing
+            logEntry = writeAheadLog.beginUpload(generation, listType, timestamp, mode, format);
             
-            response.setTotalRecords(totalRecords);
-            response.setProcessedRecords(processedRecords);
-            response.setSkippedRecords(skippedRecords);
-            response.setSuccess(true);
-            response.setMessage(String.format("Successfully processed %d out of %d records for %s", 
-                processedRecords, totalRecords, listType.getDescription()));
-            
+            // Rows are parsed and applied in parallel, partitioned by account ID
+            result = ingest.run(replacement != null ? replacement : new ListAppend(listType, timestamp), logEntry);
+            if (replacement != null) {
+                replacement.removeUnlisted();
+            }
+            long publishStart = metrics.startTimer();
+            logEntry.commit();
+            published = eligibilityData.publishGeneration();
+            publishTime = metrics.startTimer() - publishStart;
         } catch (Exception e) {
+            // Nothing was published, so the staged rows and the log entry are both dropped
+            if (logEntry != null) {
+                logEntry.abort();
+            }
+            eligibilityData.abortGeneration();
+            metrics.recordUploadFailure(listType);
             response.setSuccess(false);
-            response.setMessage("Error processing file: " + e.getMessage());
+            response.setMessage(e instanceof IngestCancelledException
+                ? "Upload cancelled; no records were applied"
+                : "Error processing file: " + e.getMessage());
+            return response;
+        }
+        
+        // The upload is committed and visible from here on; bookkeeping must not fail it
+        try {
+            metrics.recordUpload(listType, result, start, publishTime);
+            recordUpload(listType, published);
+            verdictEvents.uploaded(listType, published);
+        } catch (RuntimeException e) {
+            log.warn("Bookkeeping failed after {} upload was published as generation {}",
+                listType, published.getNumber(), e);
         }
         
+        int totalRecords = result.getTotalRecords();
+        int processedRecords = result.getProcessedRecords();
+        int skippedRecords = result.getSkippedRecords();
+        
+        response.setTotalRecords(totalRecords);
+        response.setProcessedRecords(processedRecords);
+        response.setSkippedRecords(skippedRecords);
+        response.setDistinctReasons(ReasonDictionary.size(listType));
+        response.setNewReasons((int) (ReasonDictionary.addedCount() - reasonsAddedBefore));
+        response.setReasonBytesSaved(ReasonDictionary.bytesSaved() - reasonBytesSavedBefore);
+        response.setSuccess(true);
+        response.setMessage(String.format("Successfully processed %d out of %d records for %s",
+            processedRecords, totalRecords, listType.getDescription()));
+        if (replacement != null) {
+            response.setAddedRecords(replacement.added.intValue());
+            response.setRemovedRecords(replacement.removed);
+            response.setChangedRecords(replacement.changed.intValue());
+            response.setUnchangedRecords(replacement.unchanged.intValue());
+            response.setMessage(String.format("Replaced %s: %d added, %d removed, %d reason changes, %d unchanged",
+                listType.getDescription(), response.getAddedRecords(), response.getRemovedRecords(),
+                response.getChangedRecords(), response.getUnchangedRecords()));
+        }
+        log.info("{} upload: {} distinct reasons ({} new), ~{} bytes of duplicate reason text not retained",
+            listType, response.getDistinctReasons(), response.getNewReasons(), response.getReasonBytesSaved());
+        
         return response;
     }
     
     /**
-     * Process a single record based on list type
+     * Re-apply a logged upload during recovery, publishing it as the generation it was logged under
+     */
+    public IngestResult replayUpload(long generation, ListType listType, UploadMode mode, ListFormat format,
+                                     long uploadTimestamp, InputStream input) throws IOException {
+        beginReplay(generation);
+        IngestResult result;
+        Generation published;
+        try {
+            ListReplacement replacement = mode == UploadMode.REPLACE ? new ListReplacement(listType, uploadTimestamp) : null;
+            RowHandler handler = replacement != null ? replacement : new ListAppend(listType, uploadTimestamp);
+            // The payload belongs to the log reader, so the binary reader over it is not closed
+            result = format == ListFormat.BINARY
+                ? ingestPipeline.run(BinaryListReader.read(input), handler, new IngestProgress())
+                : ingestPipeline.run(input, handler);
+            if (replacement != null) {
+                replacement.removeUnlisted();
+            }
+            published = eligibilityData.publishGeneration();
+        } catch (IOException | RuntimeException e) {
+            eligibilityData.abortGeneration();
+            throw e;
+        }
+        verdictEvents.uploaded(listType, published);
+        return result;
+    }
+    
+    /**
+     * Re-apply a logged clear during recovery
+     */
+    public void replayClear(long generation) {
+        beginReplay(generation);
+        verdictEvents.cleared(eligibilityData.clear());
+    }
+    
+    /**
+     * Open the next generation for a logged entry. Replaying an entry under any other
+     * number would break the rule that entries at or below a snapshot are already in it.
      */
-    private void processRecord(String accountId, ListType listType, LocalDateTime uploadTimestamp, String reason) {
-        eligibilityData.computeIfAbsent(accountId, k -> new ConcurrentHashMap<>());
+    private void beginReplay(long generation) {
+        long opened = eligibilityData.beginGeneration();
+        if (opened != generation) {
+            eligibilityData.abortGeneration();
+            throw new IllegalStateException(String.format(
+                "Log entry for generation %d cannot be replayed as generation %d", generation, opened));
+        }
+    }
+    
+    /**
+     * Applies every row on top of the accounts already on the list (the default mode)
+     */
+    private class ListAppend implements RowHandler {
+        private final ListType listType;
+        private final long timestamp;
+        
+        ListAppend(ListType listType, long timestamp) {
+            this.listType = listType;
+            this.timestamp = timestamp;
+        }
         
+        @Override
+        public void apply(String accountId, String reason) {
+            eligibilityData.update(accountId, accountState -> processRecord(accountState, listType, timestamp, reason));
+        }
+        
+        @Override
+        public void applyNumeric(long accountKey, String reason) {
+            eligibilityData.updateNumeric(accountKey,
+                accountState -> processRecord(accountState, listType, timestamp, reason));
+        }
+    }
+    
+    /**
+     * Process a single record based on list type
+     */
+    private AccountState processRecord(AccountState accountState, ListType listType, long timestamp, String reason) {
+        AccountState updated;
         if (listType.isDelist()) {
             // Handle delist operation
-            processDelistRecord(accountId, listType, uploadTimestamp, reason);
+            updated = processDelistRecord(accountState, listType, timestamp, reason);
         } else {
             // Handle ineligibility list addition
-            processIneligibilityRecord(accountId, listType, uploadTimestamp, reason);
+            updated = processIneligibilityRecord(accountState, listType, timestamp, reason);
         }
+        // Refresh the cached verdict so checks never re-evaluate timestamps
+        return updated.withVerdict(computeVerdictMask(updated), listType, timestamp);
     }
     
     /**
-     * Process ineligibility record (STR, CR, MULTIPLE_ACCOUNT, FDM, SST)
+     * Applies a replacement list as the difference against the current one. Rows for
+     * accounts already listed with the same reason leave their state untouched, so the
+     * store stages new versions only for real changes. Accounts the file mentioned are
+     * remembered so that, once every row is in, the listed accounts it left out can be
+     * taken off the list by deactivating their entry, as a delist would. Rows repeating
+     * an account carry the same timestamp as its first row and so are not newer; as in
+     * append mode, they are ignored and not counted.
      */
-    private void processIneligibilityRecord(String accountId, ListType listType, LocalDateTime uploadTimestamp, String reason) {
-        Map<ListType, EligibilityRecord> accountRecords = eligibilityData.get(accountId);
+    private class ListReplacement implements RowHandler {
+        private final ListType listType;
+        private final long timestamp;
+        private final AccountIdSet listedInFile = new AccountIdSet();
+        private final LongAdder added = new LongAdder();
+        private final LongAdder changed = new LongAdder();
+        private final LongAdder unchanged = new LongAdder();
+        private int removed;
         
-        // Check if there's an existing record for this list type
-        EligibilityRecord existingRecord = accountRecords.get(listType);
+        ListReplacement(ListType listType, long timestamp) {
+            this.listType = listType;
+            this.timestamp = timestamp;
+        }
         
-        if (existingRecord == null || uploadTimestamp.isAfter(existingRecord.getUploadTimestamp())) {
-            // Add or update the record
-            EligibilityRecord newRecord = new EligibilityRecord(accountId, listType, uploadTimestamp, reason);
-            accountRecords.put(listType, newRecord);
+        @Override
+        public void apply(String accountId, String reason) {
+            if (listedInFile.add(accountId)) {
+                eligibilityData.update(accountId, accountState -> replace(accountState, reason));
+            }
         }
         
-        // Also check if there's a corresponding delist record that's newer
-        ListType delistType = listType.getDelistType();
-        if (delistType != null) {
-            EligibilityRecord delistRecord = accountRecords.get(delistType);
-            if (delistRecord != null && delistRecord.getUploadTimestamp().isAfter(uploadTimestamp)) {
-                // Delist is newer, keep the account eligible for this list type
-                return;
+        @Override
+        public void applyNumeric(long accountKey, String reason) {
+            if (listedInFile.addNumeric(accountKey)) {
+                eligibilityData.updateNumeric(accountKey, accountState -> replace(accountState, reason));
+            }
+        }
+        
+        private AccountState replace(AccountState accountState, String reason) {
+            boolean listed = isListed(accountState);
+            if (listed && Objects.equals(reason != null ? reason : "", accountState.getReason(listType))) {
+                unchanged.increment();
+                return accountState;
             }
+            (listed ? changed : added).increment();
+            AccountState updated = accountState.with(listType, timestamp, reason);
+            return updated.withVerdict(computeVerdictMask(updated), listType, timestamp);
         }
+        
+        /**
+         * Take every account listed in the last published generation but absent from the
+         * file off the list; the membership index yields the listed accounts without a scan.
+         * The entry keeps its listing time; the history records the removal at the
+         * upload time, which is what moves the account's last-modified time.
+         */
+        void removeUnlisted() {
+            try (Generation current = eligibilityData.snapshot()) {
+                current.getMembership().forEach(listType, accountId -> {
+                    if (!listedInFile.contains(accountId)) {
+                        eligibilityData.update(accountId, state -> {
+                            AccountState updated = state.deactivate(listType);
+                            return updated.withVerdict(computeVerdictMask(updated), listType, timestamp);
+                        });
+                        removed++;
+                    }
+                });
+            }
+        }
+        
+        private boolean isListed(AccountState accountState) {
+            return (accountState.getVerdictMask() & (1 << listType.ordinal())) != 0;
+        }
+    }
+    
+    /**
+     * Compute the bitmask of ineligibility lists currently in force for an account
+     */
+    private int computeVerdictMask(AccountState accountState) {
+        int mask = 0;
+        for (ListType listType : INELIGIBILITY_LIST_TYPES) {
+            if (isIneligibleForListType(accountState, listType)) {
+                mask |= 1 << listType.ordinal();
+            }
+        }
+        return mask;
+    }
+    
+    /**
+     * Process ineligibility record (STR, CR, MULTIPLE_ACCOUNT, FDM, SST)
+     */
+    private AccountState processIneligibilityRecord(AccountState accountState, ListType listType, long uploadTimestamp, String reason) {
+        // Add or update the record only if it is newer than the existing one for this list type
+        if (!accountState.has(listType) || uploadTimestamp > accountState.getTimestamp(listType)) {
+            return accountState.with(listType, uploadTimestamp, reason);
+        }
+        return accountState;
     }
     
     /**
      * Process delist record (D_STR, D_CR, etc.)
      */
-    private void processDelistRecord(String accountId, ListType delistType, LocalDateTime uploadTimestamp, String reason) {
-        Map<ListType, EligibilityRecord> accountRecords = eligibilityData.get(accountId);
-        
+    private AccountState processDelistRecord(AccountState accountState, ListType delistType, long uploadTimestamp, String reason) {
         // Add the delist record
-        EligibilityRecord delistRecord = new EligibilityRecord(accountId, delistType, uploadTimestamp, reason);
-        accountRecords.put(delistType, delistRecord);
+        AccountState updated = accountState.with(delistType, uploadTimestamp, reason);
         
         // Check if this delist supersedes any existing ineligibility record
         ListType ineligibilityType = delistType.getIneligibilityType();
-        if (ineligibilityType != null) {
-            EligibilityRecord ineligibilityRecord = accountRecords.get(ineligibilityType);
-            if (ineligibilityRecord != null && uploadTimestamp.isAfter(ineligibilityRecord.getUploadTimestamp())) {
-                // Delist is newer, the account becomes eligible for this type
-                ineligibilityRecord.setActive(false);
-            }
+        if (ineligibilityType != null && updated.has(ineligibilityType)
+                && uploadTimestamp > updated.getTimestamp(ineligibilityType)) {
+            // Delist is newer, the account becomes eligible for this type
+            updated = updated.deactivate(ineligibilityType);
         }
+        return updated;
     }
     
     /**
      * Check eligibility for an account
      */
     public EligibilityCheckResponse checkEligibility(String accountId) {
+        return checkEligibility(accountId, validator -> false);
+    }
+    
+    /**
+     * Check eligibility for an account unless the caller already holds the current
+     * version. The validator is derived from the account's state in the same
+     * generation the response would be built from; when {@code notModified} accepts
+     * it, null is returned without building the response.
+     */
+    public EligibilityCheckResponse checkEligibility(String accountId, Predicate<CheckValidator> notModified) {
+        long start = metrics.startTimer();
+        accountId = normalizeAccountId(accountId);
+        AccountState accountState;
+        long generationNumber;
+        try (Generation generation = eligibilityData.snapshot()) {
+            accountState = generation.get(accountId);
+            generationNumber = generation.getNumber();
+        }
+        
+        if (notModified.test(toValidator(accountState))) {
+            metrics.recordCheck(CheckVerdict.NOT_MODIFIED, start);
+            return null;
+        }
+        
+        return toResponse(accountId, accountState, generationNumber, start);
+    }
+    
+    /**
+     * Check eligibility for an account in a generation the caller has pinned, so that
+     * many checks can answer from one consistent view
+     */
+    public EligibilityCheckResponse checkEligibility(Generation generation, String accountId) {
+        long start = metrics.startTimer();
+        accountId = normalizeAccountId(accountId);
+        return toResponse(accountId, generation.get(accountId), generation.getNumber(), start);
+    }
+    
+    private EligibilityCheckResponse toResponse(String accountId, AccountState accountState, long generationNumber,
+                                                long start) {
         EligibilityCheckResponse response = new EligibilityCheckResponse();
         response.setAccountId(accountId);
+        response.setGeneration(generationNumber);
         
-        Map<ListType, EligibilityRecord> accountRecords = eligibilityData.get(accountId);
-        
-        if (accountRecords == null || accountRecords.isEmpty()) {
+        if (accountState == null || accountState.isEmpty()) {
             response.setEligible(true);
             response.setMessage("Account is eligible for loan - no records found");
+            metrics.recordCheck(CheckVerdict.UNKNOWN, start);
             return response;
         }
         
-        List<EligibilityCheckResponse.IneligibilityReason> ineligibilityReasons = new ArrayList<>();
-        
-        // Check each ineligibility list type
-        for (ListType listType : Arrays.asList(ListType.STR, ListType.CR, ListType.MULTIPLE_ACCOUNT, ListType.FDM, ListType.SST)) {
-            EligibilityRecord ineligibilityRecord = accountRecords.get(listType);
-            EligibilityRecord delistRecord = accountRecords.get(listType.getDelistType());
-            
-            // Determine if account is ineligible for this list type
-            if (isIneligibleForListType(ineligibilityRecord, delistRecord)) {
-                ineligibilityReasons.add(new EligibilityCheckResponse.IneligibilityReason(
-                    listType, 
-                    ineligibilityRecord.getReason(), 
-                    ineligibilityRecord.getUploadTimestamp()
-                ));
-            }
-        }
-        
-        if (ineligibilityReasons.isEmpty()) {
+        // The verdict is maintained at ingest time, so eligible accounts need a single bit test
+        if (accountState.isEligible()) {
             response.setEligible(true);
             response.setMessage("Account is eligible for loan");
+            metrics.recordCheck(CheckVerdict.ELIGIBLE, start);
         } else {
+            List<EligibilityCheckResponse.IneligibilityReason> ineligibilityReasons = toIneligibilityReasons(accountState);
             response.setEligible(false);
             response.setMessage(String.format("Account is ineligible due to %d reason(s)", ineligibilityReasons.size()));
             response.setIneligibilityReasons(ineligibilityReasons);
+            metrics.recordCheck(CheckVerdict.INELIGIBLE, start);
         }
         
         return response;
     }
     
+    /**
+     * Check eligibility as it stood at an earlier time, from the account's verdict
+     * history. Uploads count from the time they were made, so the answer is what a
+     * check made at {@code asOf} would have returned.
+     */
+    public EligibilityCheckResponse checkEligibility(String accountId, LocalDateTime asOf) {
+        long start = metrics.startTimer();
+        accountId = normalizeAccountId(accountId);
+        AccountState accountState;
+        long generationNumber;
+        try (Generation generation = eligibilityData.snapshot()) {
+            accountState = generation.get(accountId);
+            generationNumber = generation.getNumber();
+        }
+        
+        EligibilityCheckResponse response = new EligibilityCheckResponse();
+        response.setAccountId(accountId);
+        response.setGeneration(generationNumber);
+        response.setAsOf(asOf);
+        
+        AccountHistory.PointInTime verdict = accountState != null ? accountState.verdictAt(toEpochMillis(asOf)) : null;
+        if (verdict == null || verdict.isEligible()) {
+            response.setEligible(true);
+            response.setMessage(verdict == null
+                ? "Account was eligible for loan as of " + asOf + " - no ineligibility recorded by then"
+                : "Account was eligible for loan as of " + asOf);
+            metrics.recordCheck(accountState == null ? CheckVerdict.UNKNOWN : CheckVerdict.ELIGIBLE, start);
+            return response;
+        }
+        
+        int verdictMask = verdict.getVerdictMask();
+        List<EligibilityCheckResponse.IneligibilityReason> ineligibilityReasons = new ArrayList<>(Integer.bitCount(verdictMask));
+        for (ListType listType : INELIGIBILITY_LIST_TYPES) {
+            if ((verdictMask & (1 << listType.ordinal())) != 0) {
+                ineligibilityReasons.add(new EligibilityCheckResponse.IneligibilityReason(
+                    listType,
+                    verdict.getReason(listType),
+                    toLocalDateTime(verdict.getListedAt(listType))
+                ));
+            }
+        }
+        response.setEligible(false);
+        response.setMessage(String.format("Account was ineligible as of %s due to %d reason(s)", asOf,
+            ineligibilityReasons.size()));
+        response.setIneligibilityReasons(ineligibilityReasons);
+        metrics.recordCheck(CheckVerdict.INELIGIBLE, start);
+        return response;
+    }
+    
+    /**
+     * The eligibility answer depends only on the account's own state, so the generation
+     * that last wrote it identifies the answer. Unknown accounts all share one answer.
+     */
+    private CheckValidator toValidator(AccountState accountState) {
+        if (accountState == null || accountState.isEmpty()) {
+            return new CheckValidator("W/\"" + validatorEpoch + "-none\"", -1);
+        }
+        // A removal by a replacement list keeps the listing time and shows only in the history
+        long lastModified = accountState.getVerdictChangedAt();
+        for (ListType listType : ListType.values()) {
+            lastModified = Math.max(lastModified, accountState.getTimestamp(listType));
+        }
+        return new CheckValidator("W/\"" + validatorEpoch + "-" + accountState.getGeneration() + "\"", lastModified);
+    }
+    
+    /**
+     * HTTP validator for a check response: a weak ETag, since the body also carries the
+     * check time, and the time the account last changed (-1 when it is on no list)
+     */
+    public static final class CheckValidator {
+        private final String eTag;
+        private final long lastModified;
+        
+        CheckValidator(String eTag, long lastModified) {
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+        }
+        
+        public String getETag() {
+            return eTag;
+        }
+        
+        public long getLastModified() {
+            return lastModified;
+        }
+    }
+    
+    /**
+     * Load reason details for the ineligibility lists set in the account's verdict mask
+     */
+    private List<EligibilityCheckResponse.IneligibilityReason> toIneligibilityReasons(AccountState accountState) {
+        int verdictMask = accountState.getVerdictMask();
+        List<EligibilityCheckResponse.IneligibilityReason> ineligibilityReasons = new ArrayList<>(Integer.bitCount(verdictMask));
+        for (ListType listType : INELIGIBILITY_LIST_TYPES) {
+            if ((verdictMask & (1 << listType.ordinal())) != 0) {
+                ineligibilityReasons.add(new EligibilityCheckResponse.IneligibilityReason(
+                    listType, 
+                    accountState.getReason(listType), 
+                    toLocalDateTime(accountState.getTimestamp(listType))
+                ));
+            }
+        }
+        return ineligibilityReasons;
+    }
+    
     /**
      * Determine if account is ineligible for a specific list type based on timestamps
      */
-    private boolean isIneligibleForListType(EligibilityRecord ineligibilityRecord, EligibilityRecord delistRecord) {
-        // No ineligibility record exists
-        if (ineligibilityRecord == null) {
+    private boolean isIneligibleForListType(AccountState accountState, ListType listType) {
+        // No ineligibility record exists, or it has been superseded
+        if (!accountState.isActive(listType)) {
             return false;
         }
         
         // No delist record exists, so ineligible
-        if (delistRecord == null) {
-            return ineligibilityRecord.isActive();
+        ListType delistType = listType.getDelistType();
+        if (!accountState.has(delistType)) {
+            return true;
         }
         
         // Compare timestamps - if delist is newer, account is eligible
-        return ineligibilityRecord.getUploadTimestamp().isAfter(delistRecord.getUploadTimestamp()) 
-               && ineligibilityRecord.isActive();
+        return accountState.getTimestamp(listType) > accountState.getTimestamp(delistType);
     }
     
     /**
-     * Get all records for debugging/admin purposes
+     * Get records for a specific account
      */
-    public Map<String, Map<ListType, EligibilityRecord>> getAllRecords() {
-        return new HashMap<>(eligibilityData);
+    public Map<ListType, EligibilityRecord> getAccountRecords(String accountId) {
+        AccountState accountState;
+        try (Generation generation = eligibilityData.snapshot()) {
+            accountState = generation.get(normalizeAccountId(accountId));
+        }
+        return accountState != null ? toRecords(accountState) : new HashMap<>();
     }
     
     /**
-     * Get records for a specific account
+     * Expand a compact account state into per-list records
      */
-    public Map<ListType, EligibilityRecord> getAccountRecords(String accountId) {
-        return eligibilityData.getOrDefault(accountId, new HashMap<>());
+    private Map<ListType, EligibilityRecord> toRecords(AccountState accountState) {
+        Map<ListType, EligibilityRecord> records = new EnumMap<>(ListType.class);
+        for (ListType listType : ListType.values()) {
+            if (accountState.has(listType)) {
+                EligibilityRecord record = new EligibilityRecord(accountState.getAccountId(), listType,
+                    toLocalDateTime(accountState.getTimestamp(listType)), accountState.getReason(listType));
+                record.setActive(accountState.isActive(listType));
+                records.put(listType, record);
+            }
+        }
+        return records;
     }
     
     /**
@@ -220,24 +730,144 @@ public class EligibilityService {
      */
     public Map<String, Object> getStatistics() {
         Map<String, Object> stats = new HashMap<>();
-        stats.put("totalAccounts", eligibilityData.size());
-        
-        Map<ListType, Long> countByListType = new HashMap<>();
-        for (ListType listType : ListType.values()) {
-            long count = eligibilityData.values().stream()
-                .mapToLong(accountRecords -> accountRecords.containsKey(listType) ? 1 : 0)
-                .sum();
-            countByListType.put(listType, count);
+        try (Generation generation = eligibilityData.snapshot()) {
+            // Counters are maintained at write time, so this never scans the store
+            StoreStatistics counters = generation.getStatistics();
+            stats.put("generation", generation.getNumber());
+            stats.put("generationPublishedAt", generation.getPublishedAt());
+            stats.put("totalAccounts", counters.getAccounts());
+            stats.put("ineligibleAccounts", counters.getIneligibleAccounts());
+            stats.put("recordsByListType", counters.getRecordsByListType());
+            stats.put("activeRecordsByListType", counters.getActiveRecordsByListType());
+            stats.put("supersededRecordsByListType", counters.getSupersededRecordsByListType());
+            stats.put("ineligibleAccountsByListType", counters.getIneligibleAccountsByListType());
+            stats.put("lastChange", toChangeMap(generation.getChange()));
+            
+            if (verifyStatistics) {
+                stats.put("verification", verifyStatistics(generation));
+            }
+        }
+        synchronized (recentUploads) {
+            stats.put("recentUploads", new ArrayList<>(recentUploads));
+        }
+        stats.put("storeBytes", eligibilityData.estimatedBytes());
+        stats.put("bytesPerAccount", eligibilityData.bytesPerAccount());
+        stats.put("retainedVersions", eligibilityData.retainedVersionCount());
+        stats.put("retainedVersionBytes", eligibilityData.retainedVersionBytes());
+        stats.put("reasonDictionary", reasonDictionaryStatistics());
+        MembershipFilter filter = eligibilityData.getMembershipFilter();
+        if (filter != null) {
+            stats.put("membershipFilter", membershipFilterStatistics(filter));
         }
-        stats.put("recordsByListType", countByListType);
         
         return stats;
     }
     
+    /**
+     * Debug check: recount the generation from scratch and compare with the maintained counters
+     */
+    private Map<String, Object> verifyStatistics(Generation generation) {
+        long start = System.nanoTime();
+        StoreStatistics recounted = StoreStatistics.count(generation);
+        boolean consistent = recounted.equals(generation.getStatistics());
+        
+        Map<String, Object> verification = new HashMap<>();
+        verification.put("consistent", consistent);
+        verification.put("scanMillis", (System.nanoTime() - start) / 1_000_000);
+        if (!consistent) {
+            // Positive values mean the counters are ahead of the scan
+            verification.put("difference", toChangeMap(generation.getStatistics().minus(recounted)));
+            log.warn("Statistics counters for generation {} disagree with a full scan", generation.getNumber());
+        }
+        return verification;
+    }
+    
+    private void recordUpload(ListType listType, Generation generation) {
+        if (recentUploadLimit == 0) {
+            return;
+        }
+        Map<String, Object> upload = toChangeMap(generation.getChange());
+        upload.put("generation", generation.getNumber());
+        upload.put("listType", listType);
+        upload.put("publishedAt", generation.getPublishedAt());
+        synchronized (recentUploads) {
+            recentUploads.addFirst(upload);
+            while (recentUploads.size() > recentUploadLimit) {
+                recentUploads.removeLast();
+            }
+        }
+    }
+    
+    private static Map<String, Object> reasonDictionaryStatistics() {
+        Map<ListType, Integer> distinct = new EnumMap<>(ListType.class);
+        for (ListType listType : ListType.values()) {
+            distinct.put(listType, ReasonDictionary.size(listType));
+        }
+        Map<String, Object> dictionary = new LinkedHashMap<>();
+        dictionary.put("distinctReasonsByListType", distinct);
+        dictionary.put("encodedReasons", ReasonDictionary.encodedCount());
+        dictionary.put("dictionaryBytes", ReasonDictionary.estimatedBytes());
+        dictionary.put("bytesSaved", ReasonDictionary.bytesSaved());
+        return dictionary;
+    }
+    
+    private static Map<String, Object> membershipFilterStatistics(MembershipFilter filter) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("sizeBytes", filter.getSizeBytes());
+        map.put("capacity", filter.getCapacity());
+        map.put("insertions", filter.getInsertions());
+        map.put("estimatedFalsePositiveRate", filter.getEstimatedFalsePositiveRate());
+        map.put("rejectedLookups", filter.getRejectedLookups());
+        map.put("falsePositives", filter.getFalsePositives());
+        map.put("observedFalsePositiveRate", filter.getObservedFalsePositiveRate());
+        return map;
+    }
+    
+    private static Map<String, Object> toChangeMap(StoreStatistics change) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("accounts", change.getAccounts());
+        map.put("ineligibleAccounts", change.getIneligibleAccounts());
+        map.put("records", change.getRecordsByListType());
+        map.put("activeRecords", change.getActiveRecordsByListType());
+        map.put("supersededRecords", change.getSupersededRecordsByListType());
+        map.put("ineligibleAccountsByListType", change.getIneligibleAccountsByListType());
+        return map;
+    }
+    
     /**
      * Clear all data (for testing purposes)
      */
     public void clearAllData() {
-        eligibilityData.clear();
+        if (replicaOf != null) {
+            throw new IllegalStateException("This instance is a read replica of " + replicaOf);
+        }
+        // Logged while the generation is open, so the log holds the clear in generation order
+        long generation = eligibilityData.beginGeneration();
+        try {
+            writeAheadLog.logClear(generation);
+        } catch (IOException e) {
+            eligibilityData.abortGeneration();
+            throw new UncheckedIOException("Failed to log clear", e);
+        } catch (RuntimeException e) {
+            eligibilityData.abortGeneration();
+            throw e;
+        }
+        verdictEvents.cleared(eligibilityData.clear());
+    }
+    
+    /**
+     * Account IDs are stored trimmed, as ingest reads them, so every lookup path trims
+     * the requested ID the same way
+     */
+    public static String normalizeAccountId(String accountId) {
+        return accountId.trim();
+    }
+    
+    static long toEpochMillis(LocalDateTime timestamp) {
+        return timestamp.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+    
+    static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
     }
 }
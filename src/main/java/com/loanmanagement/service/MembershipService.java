@@ -0,0 +1,94 @@
+package com.loanmanagement.service;
+
+import com.loanmanagement.dto.MembershipPage;
+import com.loanmanagement.model.ListType;
+import com.loanmanagement.store.AccountStateStore;
+import com.loanmanagement.store.Generation;
+import com.loanmanagement.store.MembershipIndex;
+import com.loanmanagement.store.MembershipQuery;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Who is on which ineligibility lists, answered from the membership index of the
+ * published generation rather than by scanning accounts.
+ *
+ * <p>Paging is keyset-based: a cursor is the index position after the last account
+ * returned, so no server-side state is kept and each page reads the latest
+ * generation. Accounts that stay on the queried lists are returned exactly once.
+ */
+@Service
+public class MembershipService {
+
+    private final AccountStateStore eligibilityData;
+    private final int maxPageSize;
+
+    public MembershipService(AccountStateStore eligibilityData,
+                             @Value("${eligibility.membership.max-page-size:10000}") int maxPageSize) {
+        this.eligibilityData = eligibilityData;
+        this.maxPageSize = Math.max(maxPageSize, 1);
+    }
+
+    /**
+     * One page of the accounts matching the query
+     *
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public MembershipPage page(MembershipQuery query, String cursor, int limit) {
+        long position = cursor != null ? parseCursor(cursor) : 0;
+        try (Generation generation = eligibilityData.snapshot()) {
+            MembershipIndex membership = generation.getMembership();
+            MembershipIndex.Page page = membership.page(query, position, Math.max(1, Math.min(limit, maxPageSize)));
+            return new MembershipPage(generation.getNumber(), membership.count(query), page.getAccountIds(),
+                page.getNext() >= 0 ? Long.toString(page.getNext(), 36) : null);
+        }
+    }
+
+    /**
+     * Number of accounts matching the query
+     */
+    public Map<String, Object> count(MembershipQuery query) {
+        long start = System.nanoTime();
+        try (Generation generation = eligibilityData.snapshot()) {
+            long count = generation.getMembership().count(query);
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("generation", generation.getNumber());
+            result.put("query", query.toString());
+            result.put("count", count);
+            result.put("queryMicros", TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+            return result;
+        }
+    }
+
+    /**
+     * Accounts each ineligibility list currently applies to
+     */
+    public Map<ListType, Long> listSizes() {
+        Map<ListType, Long> sizes = new EnumMap<>(ListType.class);
+        try (Generation generation = eligibilityData.snapshot()) {
+            for (ListType listType : ListType.values()) {
+                if (!listType.isDelist()) {
+                    sizes.put(listType, generation.getMembership().count(listType));
+                }
+            }
+        }
+        return sizes;
+    }
+
+    private static long parseCursor(String cursor) {
+        try {
+            long position = Long.parseLong(cursor, 36);
+            if (position < 0) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+            return position;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package com.loanmanagement.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.loanmanagement.dto.RecordPage;
+import com.loanmanagement.model.EligibilityRecord;
+import com.loanmanagement.model.ListType;
+import com.loanmanagement.store.AccountState;
+import com.loanmanagement.store.AccountStateStore;
+import com.loanmanagement.store.Generation;
+import jakarta.annotation.PreDestroy;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admin access to the full record set without copying it.
+ *
+ * <p>Exports walk one pinned generation and write each matching record straight to
+ * the response, so memory use does not depend on the number of accounts. Paged reads
+ * keep a server-side cursor that holds its generation open between requests; every
+ * page of a cursor therefore comes from the same consistent view. While a cursor or
+ * export is open the store retains the versions it can see, so idle cursors are
+ * closed after a timeout and only a bounded number may be open at once.
+ */
+@Service
+public class RecordExportService {
+
+    public enum OutputFormat {
+        NDJSON, CSV
+    }
+
+    private static final String[] CSV_HEADER = {
+        "AccountID", "ListType", "UploadTimestamp", "Reason", "Active", "Generation"
+    };
+
+    private final AccountStateStore eligibilityData;
+    private final ObjectMapper objectMapper;
+    private final int maxPageSize;
+    private final int maxOpenCursors;
+    private final long cursorTimeoutNanos;
+    private final Map<String, RecordCursor> cursors = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "record-cursor-sweeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public RecordExportService(AccountStateStore eligibilityData,
+                               ObjectMapper objectMapper,
+                               @Value("${eligibility.export.max-page-size:10000}") int maxPageSize,
+                               @Value("${eligibility.export.max-open-cursors:16}") int maxOpenCursors,
+                               @Value("${eligibility.export.cursor-timeout-seconds:300}") long cursorTimeoutSeconds) {
+        this.eligibilityData = eligibilityData;
+        this.objectMapper = objectMapper;
+        this.maxPageSize = Math.max(maxPageSize, 1);
+        this.maxOpenCursors = Math.max(maxOpenCursors, 1);
+        this.cursorTimeoutNanos = TimeUnit.SECONDS.toNanos(Math.max(cursorTimeoutSeconds, 1));
+        long sweepSeconds = Math.max(cursorTimeoutSeconds / 4, 1);
+        sweeper.scheduleWithFixedDelay(this::closeIdleCursors, sweepSeconds, sweepSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Which records to return. Null fields match everything; the time window is
+     * inclusive of {@code from} and exclusive of {@code to}.
+     */
+    public static class Filter {
+        private final Set<ListType> listTypes;
+        private final Boolean active;
+        private final long fromMillis;
+        private final long toMillis;
+
+        public Filter(Set<ListType> listTypes, Boolean active, LocalDateTime from, LocalDateTime to) {
+            this.listTypes = listTypes == null || listTypes.isEmpty()
+                ? EnumSet.allOf(ListType.class) : EnumSet.copyOf(listTypes);
+            this.active = active;
+            this.fromMillis = from != null ? EligibilityService.toEpochMillis(from) : Long.MIN_VALUE;
+            this.toMillis = to != null ? EligibilityService.toEpochMillis(to) : Long.MAX_VALUE;
+        }
+
+        boolean matches(AccountState accountState, ListType listType) {
+            if (!listTypes.contains(listType) || !accountState.has(listType)) {
+                return false;
+            }
+            if (active != null && accountState.isActive(listType) != active) {
+                return false;
+            }
+            long timestamp = accountState.getTimestamp(listType);
+            return timestamp >= fromMillis && timestamp < toMillis;
+        }
+
+        /**
+         * Append the account's matching records, in ListType order
+         */
+        void collect(AccountState accountState, Deque<EligibilityRecord> records) {
+            for (ListType listType : ListType.values()) {
+                if (matches(accountState, listType)) {
+                    records.add(toRecord(accountState, listType));
+                }
+            }
+        }
+    }
+
+    private static EligibilityRecord toRecord(AccountState accountState, ListType listType) {
+        EligibilityRecord record = new EligibilityRecord(accountState.getAccountId(), listType,
+            EligibilityService.toLocalDateTime(accountState.getTimestamp(listType)), accountState.getReason(listType));
+        record.setActive(accountState.isActive(listType));
+        return record;
+    }
+
+    /**
+     * Stream every matching record of the current generation to the output
+     *
+     * @return number of records written
+     */
+    public long export(Filter filter, OutputStream output, OutputFormat format) throws IOException {
+        try (Generation generation = eligibilityData.snapshot()) {
+            RecordWriter writer = format == OutputFormat.CSV
+                ? new CsvRecordWriter(output, generation.getNumber())
+                : new NdjsonRecordWriter(output, generation.getNumber());
+            Deque<EligibilityRecord> records = new ArrayDeque<>();
+            long written = 0;
+            for (AccountState accountState : generation) {
+                filter.collect(accountState, records);
+                while (!records.isEmpty()) {
+                    writer.write(records.poll());
+                    written++;
+                }
+            }
+            writer.flush();
+            return written;
+        }
+    }
+
+    /**
+     * First page of a new cursor over the current generation
+     */
+    public RecordPage openPage(Filter filter, int limit) {
+        if (cursors.size() >= maxOpenCursors) {
+            closeLeastRecentlyUsedCursor();
+        }
+        RecordCursor cursor = new RecordCursor(UUID.randomUUID().toString(), eligibilityData.snapshot(), filter);
+        cursors.put(cursor.id, cursor);
+        return nextPage(cursor, limit);
+    }
+
+    /**
+     * Next page of an open cursor, or null if the cursor is unknown, finished or expired
+     */
+    public RecordPage nextPage(String cursorId, int limit) {
+        RecordCursor cursor = cursors.get(cursorId);
+        return cursor != null ? nextPage(cursor, limit) : null;
+    }
+
+    private RecordPage nextPage(RecordCursor cursor, int limit) {
+        int pageSize = Math.min(Math.max(limit, 1), maxPageSize);
+        synchronized (cursor) {
+            if (cursor.closed) {
+                return null;
+            }
+            cursor.lastUsedNanos = System.nanoTime();
+            List<EligibilityRecord> page = new ArrayList<>(Math.min(pageSize, 1024));
+            // Records of one account may straddle pages; the rest wait in the cursor
+            while (page.size() < pageSize) {
+                if (cursor.pending.isEmpty()) {
+                    if (!cursor.accounts.hasNext()) {
+                        break;
+                    }
+                    cursor.filter.collect(cursor.accounts.next(), cursor.pending);
+                    continue;
+                }
+                page.add(cursor.pending.poll());
+            }
+            boolean more = !cursor.pending.isEmpty() || hasMatchingAccount(cursor);
+            long generation = cursor.generation.getNumber();
+            if (!more) {
+                close(cursor);
+            }
+            return new RecordPage(generation, page, more ? cursor.id : null);
+        }
+    }
+
+    /**
+     * Advance to the next account with a matching record, so the last page does not
+     * promise more when nothing is left
+     */
+    private static boolean hasMatchingAccount(RecordCursor cursor) {
+        while (cursor.pending.isEmpty() && cursor.accounts.hasNext()) {
+            cursor.filter.collect(cursor.accounts.next(), cursor.pending);
+        }
+        return !cursor.pending.isEmpty();
+    }
+
+    /**
+     * Close a cursor early. Returns false if it was not open.
+     */
+    public boolean closeCursor(String cursorId) {
+        RecordCursor cursor = cursors.get(cursorId);
+        if (cursor == null) {
+            return false;
+        }
+        synchronized (cursor) {
+            close(cursor);
+        }
+        return true;
+    }
+
+    public int getOpenCursorCount() {
+        return cursors.size();
+    }
+
+    /**
+     * Release the cursor's generation; called with the cursor's lock held
+     */
+    private void close(RecordCursor cursor) {
+        if (!cursor.closed) {
+            cursor.closed = true;
+            cursor.generation.close();
+            cursors.remove(cursor.id);
+        }
+    }
+
+    private void closeIdleCursors() {
+        long now = System.nanoTime();
+        for (RecordCursor cursor : cursors.values()) {
+            synchronized (cursor) {
+                if (now - cursor.lastUsedNanos > cursorTimeoutNanos) {
+                    close(cursor);
+                }
+            }
+        }
+    }
+
+    private void closeLeastRecentlyUsedCursor() {
+        cursors.values().stream()
+            .min(Comparator.comparingLong(cursor -> cursor.lastUsedNanos))
+            .ifPresent(cursor -> {
+                synchronized (cursor) {
+                    close(cursor);
+                }
+            });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+        for (RecordCursor cursor : cursors.values()) {
+            synchronized (cursor) {
+                close(cursor);
+            }
+        }
+    }
+
+    private static final class RecordCursor {
+        final String id;
+        final Generation generation;
+        final Iterator<AccountState> accounts;
+        final Filter filter;
+        final Deque<EligibilityRecord> pending = new ArrayDeque<>();
+        volatile long lastUsedNanos = System.nanoTime();
+        boolean closed;
+
+        RecordCursor(String id, Generation generation, Filter filter) {
+            this.id = id;
+            this.generation = generation;
+            this.accounts = generation.iterator();
+            this.filter = filter;
+        }
+    }
+
+    private interface RecordWriter {
+        void write(EligibilityRecord record) throws IOException;
+
+        void flush() throws IOException;
+    }
+
+    /**
+     * One JSON object per record, written field by field so no per-record tree is built
+     */
+    private class NdjsonRecordWriter implements RecordWriter {
+        private final OutputStream output;
+        private final JsonGenerator generator;
+        private final long generation;
+
+        NdjsonRecordWriter(OutputStream output, long generation) throws IOException {
+            this.output = output;
+            this.generator = objectMapper.getFactory().createGenerator(output);
+            // Records are separated by newlines rather than the default space
+            this.generator.setRootValueSeparator(null);
+            this.generation = generation;
+        }
+
+        @Override
+        public void write(EligibilityRecord record) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("accountId", record.getAccountId());
+            generator.writeStringField("listType", record.getListType().name());
+            generator.writeStringField("uploadTimestamp", record.getUploadTimestamp().toString());
+            generator.writeStringField("reason", record.getReason());
+            generator.writeBooleanField("active", record.isActive());
+            generator.writeNumberField("generation", generation);
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            generator.flush();
+            output.flush();
+        }
+    }
+
+    private static class CsvRecordWriter implements RecordWriter {
+        private final CSVPrinter printer;
+        private final long generation;
+
+        CsvRecordWriter(OutputStream output, long generation) throws IOException {
+            Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+            this.printer = new CSVPrinter(writer, CSVFormat.DEFAULT.withHeader(CSV_HEADER));
+            this.generation = generation;
+        }
+
+        @Override
+        public void write(EligibilityRecord record) throws IOException {
+            printer.printRecord(record.getAccountId(), record.getListType(), record.getUploadTimestamp(),
+                record.getReason(), record.isActive(), generation);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            printer.flush();
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package com.loanmanagement.service;
+
+import com.loanmanagement.config.VirtualThreads;
+import com.loanmanagement.dto.ListUploadResponse;
+import com.loanmanagement.dto.UploadJobStatus;
+import com.loanmanagement.ingest.IngestProgress;
+import com.loanmanagement.model.ListType;
+import com.loanmanagement.model.UploadMode;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Background upload jobs.
+ *
+ * <p>The uploaded file is spooled to a temporary file before the request returns,
+ * because the servlet container deletes multipart data once the request ends. The
+ * job then runs {@link EligibilityService#uploadList} on its own thread, so Tomcat
+ * workers and proxies are not tied up for the duration of the ingest. At most a
+ * configured number of jobs run at once; the rest wait in the QUEUED state.
+ *
+ * <p>Cancelling a job stops the ingest at the next chunk and aborts its generation,
+ * so none of its rows become visible.
+ */
+@Service
+public class UploadJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadJobService.class);
+
+    public enum State {
+        QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED
+    }
+
+    private final EligibilityService eligibilityService;
+    private final Semaphore running;
+    private final int retainedJobs;
+    private final Path spoolDirectory;
+    private final ExecutorService executor = newJobExecutor();
+    private final Map<String, UploadJob> jobs = new ConcurrentHashMap<>();
+    private final Deque<String> submissionOrder = new ConcurrentLinkedDeque<>();
+
+    public UploadJobService(EligibilityService eligibilityService,
+                            @Value("${eligibility.jobs.max-concurrent:2}") int maxConcurrent,
+                            @Value("${eligibility.jobs.retained:100}") int retainedJobs,
+                            @Value("${eligibility.jobs.spool-directory:${java.io.tmpdir}}") String spoolDirectory) {
+        this.eligibilityService = eligibilityService;
+        this.running = new Semaphore(Math.max(maxConcurrent, 1), true);
+        this.retainedJobs = Math.max(retainedJobs, 1);
+        this.spoolDirectory = Paths.get(spoolDirectory);
+    }
+
+    /**
+     * Virtual threads when the runtime has them (Java 21+), otherwise daemon platform
+     * threads; the job thread mostly waits on the ingest pipeline either way
+     */
+    private static ExecutorService newJobExecutor() {
+        ExecutorService virtual = VirtualThreads.newPerTaskExecutor();
+        if (virtual != null) {
+            return virtual;
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "upload-job-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Spool the file and queue it for ingest. Returns the status of the new job.
+     */
+    public UploadJobStatus submit(ListType listType, UploadMode mode, MultipartFile file) throws IOException {
+        Files.createDirectories(spoolDirectory);
+        Path spooled = Files.createTempFile(spoolDirectory, "upload-", ".list");
+        try {
+            file.transferTo(spooled);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(spooled);
+            throw e;
+        }
+
+        UploadJob job = new UploadJob(UUID.randomUUID().toString(), listType, mode, file.getOriginalFilename(),
+            Files.size(spooled), spooled);
+        jobs.put(job.id, job);
+        submissionOrder.addLast(job.id);
+        evictFinishedJobs();
+        executor.execute(() -> run(job));
+        return job.toStatus();
+    }
+
+    private void run(UploadJob job) {
+        boolean acquired = false;
+        try {
+            // Poll so a job cancelled while queued gives up its place promptly
+            while (!job.progress.isCancelled()
+                    && !(acquired = running.tryAcquire(100, TimeUnit.MILLISECONDS))) {
+                // waiting for a free slot
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!acquired) {
+            job.finish(State.CANCELLED, new ListUploadResponse(job.listType, false, "Upload cancelled before it started"));
+            deleteSpool(job);
+            return;
+        }
+        try {
+            if (job.progress.isCancelled()) {
+                job.finish(State.CANCELLED, new ListUploadResponse(job.listType, false, "Upload cancelled before it started"));
+                return;
+            }
+            job.start();
+            ListUploadResponse response = eligibilityService.uploadList(job.listType, job.mode, job.spooled, job.progress);
+            State state = response.isSuccess() ? State.SUCCEEDED
+                : job.progress.isCancelled() ? State.CANCELLED : State.FAILED;
+            job.finish(state, response);
+        } catch (Exception e) {
+            log.error("Upload job {} failed", job.id, e);
+            job.finish(State.FAILED, new ListUploadResponse(job.listType, false, "Error: " + e.getMessage()));
+        } finally {
+            running.release();
+            deleteSpool(job);
+        }
+    }
+
+    private static void deleteSpool(UploadJob job) {
+        try {
+            Files.deleteIfExists(job.spooled);
+        } catch (IOException e) {
+            log.warn("Could not delete spooled upload {}", job.spooled, e);
+        }
+    }
+
+    /**
+     * Status of a job, or null if it is unknown or has been evicted
+     */
+    public UploadJobStatus getStatus(String jobId) {
+        UploadJob job = jobs.get(jobId);
+        return job != null ? job.toStatus() : null;
+    }
+
+    /**
+     * Status of every retained job, newest first
+     */
+    public List<UploadJobStatus> listJobs() {
+        List<UploadJobStatus> statuses = new ArrayList<>();
+        submissionOrder.descendingIterator().forEachRemaining(id -> {
+            UploadJob job = jobs.get(id);
+            if (job != null) {
+                statuses.add(job.toStatus());
+            }
+        });
+        return statuses;
+    }
+
+    /**
+     * Request cancellation. Returns the job's status, or null if it is unknown.
+     */
+    public UploadJobStatus cancel(String jobId) {
+        UploadJob job = jobs.get(jobId);
+        if (job == null) {
+            return null;
+        }
+        // A queued job gives up waiting; a running ingest stops at the next chunk
+        job.progress.cancel();
+        return job.toStatus();
+    }
+
+    private void evictFinishedJobs() {
+        int excess = jobs.size() - retainedJobs;
+        for (String id : submissionOrder) {
+            if (excess <= 0) {
+                break;
+            }
+            UploadJob job = jobs.get(id);
+            if (job == null || job.isFinished()) {
+                jobs.remove(id);
+                submissionOrder.remove(id);
+                excess--;
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobs.values().forEach(job -> job.progress.cancel());
+        executor.shutdownNow();
+    }
+
+    private static final class UploadJob {
+        final String id;
+        final ListType listType;
+        final UploadMode mode;
+        final String fileName;
+        final long fileBytes;
+        final Path spooled;
+        final IngestProgress progress = new IngestProgress();
+        final LocalDateTime submittedAt = LocalDateTime.now();
+        volatile State state = State.QUEUED;
+        volatile LocalDateTime startedAt;
+        volatile long startNanos;
+        volatile LocalDateTime finishedAt;
+        volatile long finishNanos;
+        volatile ListUploadResponse result;
+
+        UploadJob(String id, ListType listType, UploadMode mode, String fileName, long fileBytes, Path spooled) {
+            this.id = id;
+            this.listType = listType;
+            this.mode = mode;
+            this.fileName = fileName;
+            this.fileBytes = fileBytes;
+            this.spooled = spooled;
+        }
+
+        void start() {
+            startNanos = System.nanoTime();
+            startedAt = LocalDateTime.now();
+            state = State.RUNNING;
+        }
+
+        void finish(State finalState, ListUploadResponse response) {
+            finishNanos = System.nanoTime();
+            finishedAt = LocalDateTime.now();
+            result = response;
+            state = finalState;
+        }
+
+        boolean isFinished() {
+            State current = state;
+            return current != State.QUEUED && current != State.RUNNING;
+        }
+
+        UploadJobStatus toStatus() {
+            State current = state;
+            UploadJobStatus status = new UploadJobStatus();
+            status.setJobId(id);
+            status.setListType(listType);
+            status.setState(current.name());
+            status.setFileName(fileName);
+            status.setFileBytes(fileBytes);
+            status.setSubmittedAt(submittedAt);
+            status.setStartedAt(startedAt);
+            status.setFinishedAt(finishedAt);
+            status.setResult(result);
+
+            long bytesRead = progress.getBytesRead();
+            long processed = progress.getProcessedRecords();
+            status.setBytesRead(bytesRead);
+            status.setRowsRead(progress.getTotalRecords());
+            status.setRowsProcessed(processed);
+            status.setRowsSkipped(progress.getSkippedRecords());
+
+            if (startedAt != null) {
+                long end = current == State.RUNNING ? System.nanoTime() : finishNanos;
+                long elapsedNanos = Math.max(end - startNanos, 1);
+                status.setRowsPerSecond(processed * TimeUnit.SECONDS.toNanos(1) / elapsedNanos);
+                if (current == State.RUNNING && bytesRead > 0) {
+                    // Extrapolate from the share of the file read so far
+                    long remainingBytes = Math.max(fileBytes - bytesRead, 0);
+                    status.setEtaSeconds(TimeUnit.NANOSECONDS.toSeconds(
+                        (long) ((double) elapsedNanos * remainingBytes / bytesRead)));
+                } else if (current != State.RUNNING) {
+                    status.setEtaSeconds(0L);
+                }
+            }
+            return status;
+        }
+    }
+}
@@ -0,0 +1,378 @@
+package com.loanmanagement.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.loanmanagement.model.ListType;
+import com.loanmanagement.store.AccountStateStore;
+import com.loanmanagement.store.Generation;
+import com.loanmanagement.store.VerdictChanges;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pushes the accounts whose overall eligibility an upload changed to subscribers.
+ *
+ * <p>The store notes verdict flips while an upload is staged, so the changes are known
+ * as soon as the upload is published; each upload becomes one event carrying all of
+ * them. Events go into one bounded ring shared by every subscriber instead of a queue
+ * per subscriber: publishing is a constant-time append however many subscribers there
+ * are or however slowly they read, and each subscriber streams from its own position
+ * in the ring. A subscriber that falls further behind than the ring reaches is told
+ * which generations it missed and carries on with the oldest event still retained.
+ * Clears and replica re-bootstraps are announced too, since they change verdicts
+ * without an upload.
+ */
+@Service
+public class VerdictEventService {
+
+    public enum OutputFormat {
+        SSE, NDJSON
+    }
+
+    // Streams are ended after this long; SSE clients reconnect with Last-Event-ID
+    private static final long STREAM_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private final AccountStateStore eligibilityData;
+    private final ObjectMapper objectMapper;
+    private final int maxChangesPerUpload;
+    private final int retainedUploads;
+    private final long heartbeatMillis;
+
+    // Oldest first, in generation order; guarded by this
+    private final Deque<VerdictEvent> events = new ArrayDeque<>();
+    // Highest generation whose event has dropped out of the ring; guarded by this
+    private long evictedThrough = -1;
+
+    private final AtomicInteger subscribers = new AtomicInteger();
+    private final LongAdder missedEvents = new LongAdder();
+    private volatile boolean stopped;
+
+    public VerdictEventService(AccountStateStore eligibilityData,
+                               ObjectMapper objectMapper,
+                               @Value("${eligibility.events.max-changes-per-upload:100000}") int maxChangesPerUpload,
+                               @Value("${eligibility.events.retained-uploads:32}") int retainedUploads,
+                               @Value("${eligibility.events.heartbeat-millis:15000}") long heartbeatMillis) {
+        this.eligibilityData = eligibilityData;
+        this.objectMapper = objectMapper;
+        this.maxChangesPerUpload = Math.max(maxChangesPerUpload, 0);
+        this.retainedUploads = Math.max(retainedUploads, 1);
+        this.heartbeatMillis = Math.max(heartbeatMillis, 100);
+        eligibilityData.trackVerdictChanges(this.maxChangesPerUpload);
+    }
+
+    /**
+     * Announce the verdict changes of an upload once its generation is published;
+     * uploads that changed no verdict are not announced
+     */
+    public void uploaded(ListType listType, Generation generation) {
+        if (generation.getVerdictChanges().getTotal() == 0) {
+            return;
+        }
+        append(new VerdictEvent("verdicts", generation, listType, generation.getVerdictChanges()));
+    }
+
+    /**
+     * Announce that every account was removed, and so is eligible again
+     */
+    public void cleared(Generation generation) {
+        append(new VerdictEvent("cleared", generation, null, null));
+    }
+
+    /**
+     * Announce that the store was replaced wholesale, as when a replica bootstraps
+     * again; subscribers cannot tell which verdicts changed and have to re-read them
+     */
+    public void reset(Generation generation) {
+        append(new VerdictEvent("reset", generation, null, null));
+    }
+
+    private synchronized void append(VerdictEvent event) {
+        // Writers publish one at a time, but may announce out of order
+        Iterator<VerdictEvent> newest = events.descendingIterator();
+        List<VerdictEvent> later = new ArrayList<>();
+        while (newest.hasNext()) {
+            VerdictEvent last = newest.next();
+            if (last.generation < event.generation) {
+                break;
+            }
+            later.add(0, last);
+            newest.remove();
+        }
+        events.addLast(event);
+        events.addAll(later);
+        while (events.size() > retainedUploads) {
+            evictedThrough = events.removeFirst().generation;
+        }
+        notifyAll();
+    }
+
+    /**
+     * Stream events for uploads of the given lists (all lists if empty) until the
+     * client goes away. Delists count as uploads of the list they take accounts off
+     * too; clears and resets are always sent. Events follow the last published
+     * generation, or {@code lastEventId} when a reconnecting client still has events
+     * to catch up on.
+     */
+    public void stream(Set<ListType> listTypes, Long lastEventId, OutputStream output, OutputFormat format)
+            throws IOException, InterruptedException {
+        EventWriter writer = format == OutputFormat.NDJSON ? new NdjsonEventWriter(output) : new SseEventWriter(output);
+        long last = startAfter(lastEventId);
+        long end = System.currentTimeMillis() + STREAM_MILLIS;
+        subscribers.incrementAndGet();
+        try {
+            // Commit the response right away so the client knows it is subscribed
+            writer.heartbeat();
+            while (!stopped && System.currentTimeMillis() < end) {
+                Pending pending = await(last);
+                if (pending == null) {
+                    writer.heartbeat();
+                    continue;
+                }
+                if (pending.missedThrough > last) {
+                    missedEvents.increment();
+                    writer.missed(last + 1, pending.missedThrough);
+                    last = pending.missedThrough;
+                }
+                for (VerdictEvent event : pending.events) {
+                    if (event.matches(listTypes)) {
+                        writer.write(event);
+                    }
+                    last = event.generation;
+                }
+                writer.flush();
+            }
+        } finally {
+            subscribers.decrementAndGet();
+        }
+    }
+
+    private long startAfter(Long lastEventId) {
+        try (Generation generation = eligibilityData.snapshot()) {
+            // Generations restart with the process unless persistence is on
+            return lastEventId != null && lastEventId <= generation.getNumber() ? lastEventId : generation.getNumber();
+        }
+    }
+
+    /**
+     * Events after the given generation, waiting up to one heartbeat for the next one;
+     * null if none arrived
+     */
+    private synchronized Pending await(long after) throws InterruptedException {
+        if (events.isEmpty() || events.getLast().generation <= after) {
+            wait(heartbeatMillis);
+        }
+        if (stopped || events.isEmpty() || events.getLast().generation <= after) {
+            return null;
+        }
+        List<VerdictEvent> pending = new ArrayList<>();
+        for (VerdictEvent event : events) {
+            if (event.generation > after) {
+                pending.add(event);
+            }
+        }
+        return new Pending(pending, evictedThrough);
+    }
+
+    /**
+     * Subscribers and the retained events
+     */
+    public synchronized Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("subscribers", subscribers.get());
+        status.put("retainedEvents", events.size());
+        status.put("oldestRetainedGeneration", events.isEmpty() ? null : events.getFirst().generation);
+        status.put("latestGeneration", events.isEmpty() ? null : events.getLast().generation);
+        status.put("maxChangesPerUpload", maxChangesPerUpload);
+        status.put("missedEvents", missedEvents.sum());
+        return status;
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        stopped = true;
+        notifyAll();
+    }
+
+    /**
+     * One upload's verdict changes, or a clear or reset, which have no list type
+     */
+    private static final class VerdictEvent {
+        final String type;
+        final long generation;
+        final LocalDateTime publishedAt;
+        final ListType listType;
+        final VerdictChanges changes;
+
+        VerdictEvent(String type, Generation generation, ListType listType, VerdictChanges changes) {
+            this.type = type;
+            this.generation = generation.getNumber();
+            this.publishedAt = generation.getPublishedAt();
+            this.listType = listType;
+            this.changes = changes;
+        }
+
+        boolean matches(Set<ListType> listTypes) {
+            return listType == null || listTypes == null || listTypes.isEmpty() || listTypes.contains(listType)
+                || (listType.isDelist() && listTypes.contains(listType.getIneligibilityType()));
+        }
+    }
+
+    private static final class Pending {
+        final List<VerdictEvent> events;
+        final long missedThrough;
+
+        Pending(List<VerdictEvent> events, long missedThrough) {
+            this.events = events;
+            this.missedThrough = missedThrough;
+        }
+    }
+
+    private interface EventWriter {
+        void write(VerdictEvent event) throws IOException;
+
+        void missed(long fromGeneration, long toGeneration) throws IOException;
+
+        void heartbeat() throws IOException;
+
+        void flush() throws IOException;
+    }
+
+    /**
+     * Writes each event as a single line of JSON
+     */
+    private class NdjsonEventWriter implements EventWriter {
+        final OutputStream output;
+
+        NdjsonEventWriter(OutputStream output) {
+            this.output = output;
+        }
+
+        @Override
+        public void write(VerdictEvent event) throws IOException {
+            writeJson(event);
+            output.write('\n');
+        }
+
+        @Override
+        public void missed(long fromGeneration, long toGeneration) throws IOException {
+            writeMissed(fromGeneration, toGeneration);
+            output.write('\n');
+        }
+
+        /**
+         * A blank line, which line-oriented readers skip
+         */
+        @Override
+        public void heartbeat() throws IOException {
+            output.write('\n');
+            output.flush();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            output.flush();
+        }
+
+        void writeJson(VerdictEvent event) throws IOException {
+            try (JsonGenerator json = generator()) {
+                json.writeStartObject();
+                json.writeStringField("type", event.type);
+                json.writeNumberField("generation", event.generation);
+                json.writeStringField("publishedAt", event.publishedAt.toString());
+                if (event.listType != null) {
+                    VerdictChanges changes = event.changes;
+                    json.writeStringField("listType", event.listType.name());
+                    json.writeNumberField("changed", changes.getTotal());
+                    json.writeBooleanField("complete", changes.isComplete());
+                    json.writeArrayFieldStart("changes");
+                    for (int i = 0; i < changes.size(); i++) {
+                        json.writeStartObject();
+                        json.writeStringField("accountId", changes.getAccountId(i));
+                        json.writeBooleanField("eligible", changes.isEligible(i));
+                        json.writeArrayFieldStart("lists");
+                        for (ListType listType : ListType.values()) {
+                            if ((changes.getVerdictMask(i) & (1 << listType.ordinal())) != 0) {
+                                json.writeString(listType.name());
+                            }
+                        }
+                        json.writeEndArray();
+                        json.writeEndObject();
+                    }
+                    json.writeEndArray();
+                }
+                json.writeEndObject();
+            }
+        }
+
+        void writeMissed(long fromGeneration, long toGeneration) throws IOException {
+            try (JsonGenerator json = generator()) {
+                json.writeStartObject();
+                json.writeStringField("type", "missed");
+                json.writeNumberField("fromGeneration", fromGeneration);
+                json.writeNumberField("toGeneration", toGeneration);
+                json.writeEndObject();
+            }
+        }
+
+        private JsonGenerator generator() throws IOException {
+            return objectMapper.getFactory().createGenerator(output)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        }
+    }
+
+    /**
+     * Server-sent events: the same JSON as data, the generation as the event ID and a
+     * comment line as heartbeat
+     */
+    private class SseEventWriter extends NdjsonEventWriter {
+
+        SseEventWriter(OutputStream output) {
+            super(output);
+        }
+
+        @Override
+        public void write(VerdictEvent event) throws IOException {
+            writeField("id", Long.toString(event.generation));
+            writeField("event", event.type);
+            output.write("data: ".getBytes(StandardCharsets.UTF_8));
+            writeJson(event);
+            output.write("\n\n".getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void missed(long fromGeneration, long toGeneration) throws IOException {
+            writeField("id", Long.toString(toGeneration));
+            writeField("event", "missed");
+            output.write("data: ".getBytes(StandardCharsets.UTF_8));
+            writeMissed(fromGeneration, toGeneration);
+            output.write("\n\n".getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void heartbeat() throws IOException {
+            output.write(": keep-alive\n\n".getBytes(StandardCharsets.UTF_8));
+            output.flush();
+        }
+
+        private void writeField(String name, String value) throws IOException {
+            output.write((name + ": " + value + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,432 @@
+package com.loanmanagement.store;
+
+import com.loanmanagement.model.ListType;
+
+import java.util.Arrays;
+
+/**
+ * Append-only history of an account's verdict, packed into a byte array so it
+ * costs a few bytes per event on top of the current {@link AccountState}.
+ *
+ * <p>An event is recorded whenever an upload changes which ineligibility lists are
+ * in force for the account, or the reason of a list in force. Re-listing an account
+ * with the same reason changes nothing and records nothing.
+ *
+ * <pre>
+ * history    := event* checkpoint:u32* checkpointCount:u16
+ * event      := time:varint type:u8 verdict:u8 reason:varint? inForce*
+ * inForce    := listedBefore:varint reason:varint
+ * </pre>
+ *
+ * Times are upload times in epoch millis and never decrease. Every
+ * {@value #CHECKPOINT_INTERVAL}th event is a checkpoint: its time is absolute
+ * rather than a delta from the previous event, and it carries the listing time
+ * (as a delta back from the event) and reason of every list in force, so decoding
+ * can start there. The trailer holds the offsets of all checkpoints after the
+ * first, which is always at offset 0. A point-in-time lookup is a binary search
+ * over checkpoints followed by at most {@value #CHECKPOINT_INTERVAL} events.
+ *
+ * <p>The type byte holds the ListType ordinal of the list whose upload caused the
+ * event, plus a flag when the event lists the account on that list, in which case
+ * the reason follows. Reasons are {@link ReasonDictionary} codes and verdicts are
+ * masks over ListType ordinals, as in {@link AccountState}.
+ */
+public final class AccountHistory {
+
+    static final int CHECKPOINT_INTERVAL = 16;
+
+    private static final int TYPE_MASK = 0x0F;
+    private static final int HAS_REASON = 0x10;
+    private static final int INELIGIBILITY_LISTS = 5;
+
+    private AccountHistory() {
+    }
+
+    /**
+     * Receives the events of a history in order; {@code reason} is null unless the
+     * event lists the account on {@code listType}
+     */
+    @FunctionalInterface
+    public interface EventConsumer {
+        void accept(long timestamp, ListType listType, int verdictMask, String reason);
+    }
+
+    /**
+     * Number of events in the history
+     */
+    public static int size(byte[] history) {
+        if (history == null) {
+            return 0;
+        }
+        Cursor cursor = tail(history);
+        return cursor.index;
+    }
+
+    /**
+     * Time of the last event, or {@link Long#MIN_VALUE} when there is none
+     */
+    public static long lastTimestamp(byte[] history) {
+        if (history == null) {
+            return Long.MIN_VALUE;
+        }
+        Cursor cursor = tail(history);
+        return cursor.index > 0 ? cursor.time : Long.MIN_VALUE;
+    }
+
+    /**
+     * The verdict in force at the given time, or null when the history has no event
+     * at or before it
+     */
+    public static PointInTime at(byte[] history, long asOf) {
+        if (history == null || history.length == 0) {
+            return null;
+        }
+        int checkpoints = checkpointCount(history);
+        // Last checkpoint at or before asOf; checkpoint 0 is the first event
+        int low = 0;
+        int high = checkpoints;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (readVarint(history, checkpointOffset(history, middle)) <= asOf) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        Cursor cursor = new Cursor(history, low);
+        if (cursor.peekTime() > asOf) {
+            return null;
+        }
+        cursor.next();
+        while (cursor.hasNext() && cursor.peekTime() <= asOf) {
+            cursor.next();
+        }
+        return cursor.toPointInTime();
+    }
+
+    /**
+     * Visit every event in order
+     */
+    public static void forEach(byte[] history, EventConsumer consumer) {
+        if (history == null) {
+            return;
+        }
+        Cursor cursor = new Cursor(history, 0);
+        while (cursor.hasNext()) {
+            cursor.next();
+            ListType listType = ListType.values()[cursor.type];
+            consumer.accept(cursor.time, listType, cursor.verdict,
+                cursor.reason >= 0 ? ReasonDictionary.decode(listType, cursor.reason) : null);
+        }
+    }
+
+    /**
+     * Return the history with an event appended if the verdict mask or the reason of
+     * the list in force for {@code listType} differs from the last event's; otherwise
+     * return the history unchanged. {@code reasonCode} is the account's reason for
+     * {@code listType}, and is ignored unless the verdict has that list in force.
+     */
+    static byte[] record(byte[] history, long timestamp, ListType listType, int verdictMask, int reasonCode) {
+        Cursor tail = history != null ? tail(history) : null;
+        int ordinal = listType.ordinal();
+        boolean listed = (verdictMask & (1 << ordinal)) != 0 && ordinal < INELIGIBILITY_LISTS;
+        // Before the first event the account was eligible
+        int verdict = tail != null ? tail.verdict : 0;
+        if (verdict == verdictMask && (!listed || (tail != null && tail.reasons[ordinal] == reasonCode))) {
+            return history;
+        }
+        Builder builder = tail != null ? Builder.resume(history, tail) : new Builder();
+        builder.append(timestamp, ordinal, verdictMask, listed ? reasonCode : -1);
+        return builder.build();
+    }
+
+    /**
+     * Seed a history for a state that has none, with one event per list in force, in
+     * the order they were listed
+     */
+    static byte[] seed(AccountState state) {
+        Builder builder = new Builder();
+        Integer[] order = new Integer[INELIGIBILITY_LISTS];
+        int count = 0;
+        for (int ordinal = 0; ordinal < INELIGIBILITY_LISTS; ordinal++) {
+            if ((state.getVerdictMask() & (1 << ordinal)) != 0) {
+                order[count++] = ordinal;
+            }
+        }
+        ListType[] types = ListType.values();
+        Arrays.sort(order, 0, count,
+            (a, b) -> Long.compare(state.getTimestamp(types[a]), state.getTimestamp(types[b])));
+        int mask = 0;
+        for (int i = 0; i < count; i++) {
+            ListType listType = types[order[i]];
+            mask |= 1 << listType.ordinal();
+            builder.append(state.getTimestamp(listType), listType.ordinal(), mask, state.getReasonCode(listType));
+        }
+        return builder.size > 0 ? builder.build() : null;
+    }
+
+    /**
+     * Builds a history from events given in order, as read from a snapshot
+     */
+    public static final class Builder {
+        private byte[] data = new byte[32];
+        private int length;
+        private int[] checkpoints = new int[0];
+        private int size;
+        private long time;
+        private int verdict;
+        private final long[] listedAt = new long[INELIGIBILITY_LISTS];
+        private final int[] reasons = new int[INELIGIBILITY_LISTS];
+
+        public Builder() {
+            Arrays.fill(reasons, -1);
+        }
+
+        /**
+         * A builder holding the events of an existing history, ready to append
+         */
+        static Builder resume(byte[] history, Cursor cursor) {
+            Builder builder = new Builder();
+            int end = eventBytes(history);
+            builder.data = Arrays.copyOf(history, end + 32);
+            builder.length = end;
+            int count = checkpointCount(history);
+            builder.checkpoints = new int[count];
+            for (int i = 0; i < count; i++) {
+                builder.checkpoints[i] = checkpointOffset(history, i + 1);
+            }
+            builder.size = cursor.index;
+            builder.time = cursor.time;
+            builder.verdict = cursor.verdict;
+            System.arraycopy(cursor.listedAt, 0, builder.listedAt, 0, INELIGIBILITY_LISTS);
+            System.arraycopy(cursor.reasons, 0, builder.reasons, 0, INELIGIBILITY_LISTS);
+            return builder;
+        }
+
+        /**
+         * Append an event; {@code reason} is null unless the event lists the account on {@code listType}
+         */
+        public Builder append(long timestamp, ListType listType, int verdictMask, String reason) {
+            append(timestamp, listType.ordinal(), verdictMask,
+                reason != null ? ReasonDictionary.encode(listType, reason) : -1);
+            return this;
+        }
+
+        void append(long timestamp, int ordinal, int verdictMask, int reasonCode) {
+            // Upload times come from the wall clock; never let one step backwards
+            long eventTime = size > 0 ? Math.max(timestamp, time) : Math.max(timestamp, 0);
+            boolean checkpoint = size % CHECKPOINT_INTERVAL == 0;
+            if (checkpoint && size > 0) {
+                checkpoints = Arrays.copyOf(checkpoints, checkpoints.length + 1);
+                checkpoints[checkpoints.length - 1] = length;
+            }
+            ensureCapacity(10 + 2 + 5 + INELIGIBILITY_LISTS * 15);
+            length = writeVarint(data, length, checkpoint ? eventTime : eventTime - time);
+            data[length++] = (byte) (ordinal | (reasonCode >= 0 ? HAS_REASON : 0));
+            data[length++] = (byte) verdictMask;
+            if (reasonCode >= 0) {
+                length = writeVarint(data, length, reasonCode);
+                listedAt[ordinal] = eventTime;
+                reasons[ordinal] = reasonCode;
+            }
+            if (checkpoint) {
+                for (int list = 0; list < INELIGIBILITY_LISTS; list++) {
+                    if ((verdictMask & (1 << list)) != 0) {
+                        length = writeVarint(data, length, eventTime - listedAt[list]);
+                        length = writeVarint(data, length, reasons[list]);
+                    }
+                }
+            }
+            size++;
+            time = eventTime;
+            verdict = verdictMask;
+        }
+
+        public byte[] build() {
+            byte[] history = Arrays.copyOf(data, length + 4 * checkpoints.length + 2);
+            int offset = length;
+            for (int checkpoint : checkpoints) {
+                writeInt(history, offset, checkpoint);
+                offset += 4;
+            }
+            history[offset] = (byte) (checkpoints.length >>> 8);
+            history[offset + 1] = (byte) checkpoints.length;
+            return history;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (length + extra > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + extra));
+            }
+        }
+    }
+
+    /**
+     * The verdict of an account at a point in time
+     */
+    public static final class PointInTime {
+        private final long timestamp;
+        private final int verdictMask;
+        private final long[] listedAt;
+        private final int[] reasons;
+
+        private PointInTime(long timestamp, int verdictMask, long[] listedAt, int[] reasons) {
+            this.timestamp = timestamp;
+            this.verdictMask = verdictMask;
+            this.listedAt = listedAt;
+            this.reasons = reasons;
+        }
+
+        /**
+         * Time of the last event at or before the requested time
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public int getVerdictMask() {
+            return verdictMask;
+        }
+
+        public boolean isEligible() {
+            return verdictMask == 0;
+        }
+
+        /**
+         * When the account was put on a list in force, in epoch millis
+         */
+        public long getListedAt(ListType listType) {
+            return listedAt[listType.ordinal()];
+        }
+
+        public String getReason(ListType listType) {
+            return ReasonDictionary.decode(listType, reasons[listType.ordinal()]);
+        }
+    }
+
+    /**
+     * A cursor positioned after the last event, holding the current verdict
+     */
+    private static Cursor tail(byte[] history) {
+        Cursor cursor = new Cursor(history, checkpointCount(history));
+        while (cursor.hasNext()) {
+            cursor.next();
+        }
+        return cursor;
+    }
+
+    private static int checkpointCount(byte[] history) {
+        return (history[history.length - 2] & 0xFF) << 8 | (history[history.length - 1] & 0xFF);
+    }
+
+    private static int eventBytes(byte[] history) {
+        return history.length - 2 - 4 * checkpointCount(history);
+    }
+
+    private static int checkpointOffset(byte[] history, int checkpoint) {
+        return checkpoint == 0 ? 0 : readInt(history, eventBytes(history) + 4 * (checkpoint - 1));
+    }
+
+    /**
+     * Decodes events forward from a checkpoint, tracking the verdict and the listing
+     * of every list in force
+     */
+    private static final class Cursor {
+        final byte[] history;
+        final int end;
+        int offset;
+        int index;
+        long time;
+        int type;
+        int verdict;
+        int reason;
+        final long[] listedAt = new long[INELIGIBILITY_LISTS];
+        final int[] reasons = new int[INELIGIBILITY_LISTS];
+
+        Cursor(byte[] history, int checkpoint) {
+            this.history = history;
+            this.end = eventBytes(history);
+            this.offset = checkpointOffset(history, checkpoint);
+            this.index = checkpoint * CHECKPOINT_INTERVAL;
+        }
+
+        boolean hasNext() {
+            return offset < end;
+        }
+
+        long peekTime() {
+            long value = readVarint(history, offset);
+            return index % CHECKPOINT_INTERVAL == 0 ? value : time + value;
+        }
+
+        void next() {
+            boolean checkpoint = index % CHECKPOINT_INTERVAL == 0;
+            long value = readVarint(history, offset);
+            offset += varintLength(value);
+            time = checkpoint ? value : time + value;
+            int typeByte = history[offset++] & 0xFF;
+            type = typeByte & TYPE_MASK;
+            verdict = history[offset++] & 0xFF;
+            reason = -1;
+            if ((typeByte & HAS_REASON) != 0) {
+                reason = (int) readVarint(history, offset);
+                offset += varintLength(reason);
+                listedAt[type] = time;
+                reasons[type] = reason;
+            }
+            if (checkpoint) {
+                for (int list = 0; list < INELIGIBILITY_LISTS; list++) {
+                    if ((verdict & (1 << list)) != 0) {
+                        long before = readVarint(history, offset);
+                        offset += varintLength(before);
+                        long code = readVarint(history, offset);
+                        offset += varintLength(code);
+                        listedAt[list] = time - before;
+                        reasons[list] = (int) code;
+                    }
+                }
+            }
+            index++;
+        }
+
+        PointInTime toPointInTime() {
+            return new PointInTime(time, verdict, listedAt.clone(), reasons.clone());
+        }
+    }
+
+    private static long readVarint(byte[] data, int offset) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = data[offset++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static int writeVarint(byte[] data, int offset, long value) {
+        while ((value & ~0x7FL) != 0) {
+            data[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[offset++] = (byte) value;
+        return offset;
+    }
+
+    private static int varintLength(long value) {
+        return Math.max(1, (64 - Long.numberOfLeadingZeros(value) + 6) / 7);
+    }
+
+    private static int readInt(byte[] data, int offset) {
+        return (data[offset] & 0xFF) << 24 | (data[offset + 1] & 0xFF) << 16
+            | (data[offset + 2] & 0xFF) << 8 | (data[offset + 3] & 0xFF);
+    }
+
+    private static void writeInt(byte[] data, int offset, int value) {
+        data[offset] = (byte) (value >>> 24);
+        data[offset + 1] = (byte) (value >>> 16);
+        data[offset + 2] = (byte) (value >>> 8);
+        data[offset + 3] = (byte) value;
+    }
+}
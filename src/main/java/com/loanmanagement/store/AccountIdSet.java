@@ -0,0 +1,118 @@
+package com.loanmanagement.store;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Concurrent set of account IDs, used to remember which accounts an upload mentioned.
+ *
+ * <p>Numeric IDs are held as their packed {@link LongKeyTable} keys in segmented
+ * open-addressing {@code long[]} tables, so tracking ten million IDs costs tens of
+ * megabytes instead of one String and map node each. Other IDs fall back to a
+ * concurrent hash set. Adds may run from several ingest workers at once; reads are
+ * only safe once every add has completed.
+ */
+public final class AccountIdSet {
+
+    private static final int SEGMENT_BITS = 6;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+    private final Set<String> otherIds = ConcurrentHashMap.newKeySet();
+
+    public AccountIdSet() {
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Add an ID; returns false if it was already present
+     */
+    public boolean add(String accountId) {
+        long key = LongKeyTable.numericKey(accountId);
+        if (key == LongKeyTable.NOT_NUMERIC) {
+            return otherIds.add(accountId);
+        }
+        return addNumeric(key);
+    }
+
+    /**
+     * Add an all-digit ID given as its {@link NumericAccountId} key
+     */
+    public boolean addNumeric(long key) {
+        long hash = LongKeyTable.mix(key);
+        Segment segment = segmentFor(hash);
+        synchronized (segment) {
+            return segment.add(key, hash);
+        }
+    }
+
+    public boolean contains(String accountId) {
+        long key = LongKeyTable.numericKey(accountId);
+        if (key == LongKeyTable.NOT_NUMERIC) {
+            return otherIds.contains(accountId);
+        }
+        long hash = LongKeyTable.mix(key);
+        long[] keys = segmentFor(hash).keys;
+        int mask = keys.length - 1;
+        for (int i = (int) hash & mask; ; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return true;
+            }
+            if (keys[i] == LongKeyTable.NOT_NUMERIC) {
+                return false;
+            }
+        }
+    }
+
+    public long size() {
+        long size = otherIds.size();
+        for (Segment segment : segments) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    private Segment segmentFor(long hash) {
+        return segments[(int) (hash >>> (64 - SEGMENT_BITS))];
+    }
+
+    private static final class Segment {
+        long[] keys = new long[INITIAL_CAPACITY];
+        int size;
+
+        boolean add(long key, long hash) {
+            int slot = find(keys, key, hash);
+            if (keys[slot] == key) {
+                return false;
+            }
+            if (size + 1 > keys.length * 3 / 4) {
+                grow();
+                slot = find(keys, key, hash);
+            }
+            keys[slot] = key;
+            size++;
+            return true;
+        }
+
+        private void grow() {
+            long[] grown = new long[keys.length << 1];
+            for (long key : keys) {
+                if (key != LongKeyTable.NOT_NUMERIC) {
+                    grown[find(grown, key, LongKeyTable.mix(key))] = key;
+                }
+            }
+            keys = grown;
+        }
+
+        private static int find(long[] keys, long key, long hash) {
+            int mask = keys.length - 1;
+            int i = (int) hash & mask;
+            while (keys[i] != key && keys[i] != LongKeyTable.NOT_NUMERIC) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+    }
+}
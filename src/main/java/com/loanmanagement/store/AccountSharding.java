@@ -0,0 +1,48 @@
+package com.loanmanagement.store;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Splits accounts into a fixed number of shards by account ID.
+ *
+ * <p>The store keeps separate tables per shard and the ingest pipeline runs one
+ * applier per shard, routing every row with this class, so during an upload each
+ * shard is written by exactly one thread. All-digit IDs are routed by their
+ * {@link NumericAccountId} key, so an ID lands in the same shard whether it arrives
+ * as text or already packed.
+ */
+@Component
+public class AccountSharding {
+
+    private final int shardCount;
+
+    public AccountSharding(@Value("${eligibility.store.shards:0}") int shards) {
+        this.shardCount = shards > 0 ? shards : Runtime.getRuntime().availableProcessors();
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public int shardOf(String accountId) {
+        long key = NumericAccountId.pack(accountId);
+        return key != NumericAccountId.NONE ? shardOf(key) : shardOfText(accountId);
+    }
+
+    /**
+     * Shard of an all-digit account ID given as its packed key
+     */
+    public int shardOf(long numericKey) {
+        // Fibonacci hashing; the high bits of the product mix every bit of the key
+        return (int) (((numericKey * 0x9E3779B97F4A7C15L) >>> 32) % shardCount);
+    }
+
+    /**
+     * Shard of an account ID already known not to be all digits
+     */
+    public int shardOfText(String accountId) {
+        int hash = accountId.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), shardCount);
+    }
+}
@@ -0,0 +1,288 @@
+package com.loanmanagement.store;
+
+import com.loanmanagement.model.ListType;
+
+import java.util.Arrays;
+
+/**
+ * Immutable, compact per-account view of every list the account appears on.
+ * A presence bitmask over ListType ordinals says which lists are populated;
+ * timestamps (epoch millis) and reason codes are stored densely in ordinal order,
+ * so an account on two lists costs two array slots rather than two records.
+ * Reasons are held as {@link ReasonDictionary} codes and decoded on read.
+ * The verdict mask caches which ineligibility lists currently apply; it is
+ * maintained by ingest so eligibility checks reduce to a single bit test.
+ * Every change of verdict is also recorded in a compact {@link AccountHistory},
+ * so the verdict at an earlier time can be looked up.
+ *
+ * <p>The list data is immutable. The store stamps each state with the generation
+ * that wrote it and links it to the version it replaced, so readers pinned to an
+ * older generation can still resolve the state they are entitled to see.
+ */
+public final class AccountState {
+
+    private static final long[] NO_TIMESTAMPS = new long[0];
+    private static final int[] NO_REASONS = new int[0];
+
+    private final String accountId;
+    private final short presentMask;
+    private final short inactiveMask;
+    private final short verdictMask;
+    private final long[] timestamps;
+    private final int[] reasonCodes;
+    // Null until the account is first found ineligible
+    private final byte[] history;
+
+    // Version chain, written by the store before the state is published
+    private long generation;
+    private AccountState previous;
+    // Position in the owning shard's membership index, kept by every version of the account
+    private int ordinal;
+
+    private AccountState(String accountId, short presentMask, short inactiveMask, short verdictMask,
+                         long[] timestamps, int[] reasonCodes, byte[] history) {
+        this.accountId = accountId;
+        this.presentMask = presentMask;
+        this.inactiveMask = inactiveMask;
+        this.verdictMask = verdictMask;
+        this.timestamps = timestamps;
+        this.reasonCodes = reasonCodes;
+        this.history = history;
+    }
+
+    public static AccountState empty(String accountId) {
+        return new AccountState(accountId, (short) 0, (short) 0, (short) 0, NO_TIMESTAMPS, NO_REASONS, null);
+    }
+
+    /**
+     * Rebuild a state from its persisted fields; timestamps and reasons are in ListType ordinal order.
+     * Without a persisted history, one is seeded from the lists currently in force.
+     */
+    public static AccountState restore(String accountId, int presentMask, int inactiveMask, int verdictMask,
+                                       long[] timestamps, String[] reasons, AccountHistory.Builder history) {
+        if (Integer.bitCount(presentMask) != timestamps.length || timestamps.length != reasons.length) {
+            throw new IllegalArgumentException("List entries do not match presence mask for account " + accountId);
+        }
+        int[] reasonCodes = new int[reasons.length];
+        int slot = 0;
+        for (ListType listType : ListType.values()) {
+            if ((presentMask & bit(listType)) != 0) {
+                reasonCodes[slot] = ReasonDictionary.encode(listType, reasons[slot]);
+                slot++;
+            }
+        }
+        AccountState state = new AccountState(accountId, (short) presentMask, (short) inactiveMask,
+                (short) verdictMask, timestamps, reasonCodes, history != null ? history.build() : null);
+        if (history != null || verdictMask == 0) {
+            return state;
+        }
+        return new AccountState(accountId, (short) presentMask, (short) inactiveMask, (short) verdictMask,
+                timestamps, reasonCodes, AccountHistory.seed(state));
+    }
+
+    public String getAccountId() {
+        return accountId;
+    }
+
+    public boolean isEmpty() {
+        return presentMask == 0;
+    }
+
+    public int getPresentMask() {
+        return presentMask;
+    }
+
+    public int getInactiveMask() {
+        return inactiveMask;
+    }
+
+    /**
+     * Bitmask over ListType ordinals of the ineligibility lists currently in force
+     */
+    public int getVerdictMask() {
+        return verdictMask;
+    }
+
+    public boolean isEligible() {
+        return verdictMask == 0;
+    }
+
+    public boolean has(ListType listType) {
+        return (presentMask & bit(listType)) != 0;
+    }
+
+    public boolean isActive(ListType listType) {
+        return has(listType) && (inactiveMask & bit(listType)) == 0;
+    }
+
+    /**
+     * Upload timestamp in epoch millis, or {@code Long.MIN_VALUE} when the account is not on the list
+     */
+    public long getTimestamp(ListType listType) {
+        return has(listType) ? timestamps[slot(listType)] : Long.MIN_VALUE;
+    }
+
+    public String getReason(ListType listType) {
+        return has(listType) ? ReasonDictionary.decode(listType, reasonCodes[slot(listType)]) : null;
+    }
+
+    int getReasonCode(ListType listType) {
+        return has(listType) ? reasonCodes[slot(listType)] : -1;
+    }
+
+    /**
+     * The verdict in force at the given time (epoch millis), or null if the account
+     * had never been ineligible by then
+     */
+    public AccountHistory.PointInTime verdictAt(long timestamp) {
+        return AccountHistory.at(history, timestamp);
+    }
+
+    public void forEachHistoryEvent(AccountHistory.EventConsumer consumer) {
+        AccountHistory.forEach(history, consumer);
+    }
+
+    public int getHistorySize() {
+        return AccountHistory.size(history);
+    }
+
+    /**
+     * Time of the upload that last changed the verdict, which for a removal by a
+     * replacement list is later than any listing time; {@link Long#MIN_VALUE} if none
+     */
+    public long getVerdictChangedAt() {
+        return AccountHistory.lastTimestamp(history);
+    }
+
+    /**
+     * Return a copy with the given list entry added or replaced; the entry is active
+     */
+    public AccountState with(ListType listType, long timestamp, String reason) {
+        int reasonCode = ReasonDictionary.encode(listType, reason);
+        int bit = bit(listType);
+        int slot = slot(listType);
+        short inactive = (short) (inactiveMask & ~bit);
+
+        if ((presentMask & bit) != 0) {
+            long[] newTimestamps = timestamps.clone();
+            int[] newReasons = reasonCodes.clone();
+            newTimestamps[slot] = timestamp;
+            newReasons[slot] = reasonCode;
+            return new AccountState(accountId, presentMask, inactive, verdictMask, newTimestamps, newReasons, history);
+        }
+
+        int size = timestamps.length;
+        long[] newTimestamps = new long[size + 1];
+        int[] newReasons = new int[size + 1];
+        System.arraycopy(timestamps, 0, newTimestamps, 0, slot);
+        System.arraycopy(reasonCodes, 0, newReasons, 0, slot);
+        newTimestamps[slot] = timestamp;
+        newReasons[slot] = reasonCode;
+        System.arraycopy(timestamps, slot, newTimestamps, slot + 1, size - slot);
+        System.arraycopy(reasonCodes, slot, newReasons, slot + 1, size - slot);
+        return new AccountState(accountId, (short) (presentMask | bit), inactive, verdictMask, newTimestamps, newReasons,
+                history);
+    }
+
+    /**
+     * Return a copy with the given list entry marked inactive (superseded by a delist)
+     */
+    public AccountState deactivate(ListType listType) {
+        if (!isActive(listType)) {
+            return this;
+        }
+        return new AccountState(accountId, presentMask, (short) (inactiveMask | bit(listType)), verdictMask,
+                timestamps, reasonCodes, history);
+    }
+
+    /**
+     * Return a copy carrying the given verdict mask, or this state if nothing changed.
+     * The history records the change when the verdict differs or when the reason of
+     * {@code cause} changed while it is in force; {@code timestamp} is the time of
+     * the upload that caused it.
+     */
+    public AccountState withVerdict(int mask, ListType cause, long timestamp) {
+        if (mask == verdictMask && (mask & bit(cause)) == 0) {
+            return this;
+        }
+        byte[] recorded = AccountHistory.record(history, timestamp, cause, mask, getReasonCode(cause));
+        if (mask == verdictMask && recorded == history) {
+            return this;
+        }
+        return new AccountState(accountId, presentMask, inactiveMask, (short) mask, timestamps, reasonCodes, recorded);
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    AccountState getPrevious() {
+        return previous;
+    }
+
+    void link(long generation, AccountState previous) {
+        this.generation = generation;
+        this.previous = previous;
+    }
+
+    void unlinkPrevious() {
+        this.previous = null;
+    }
+
+    int getOrdinal() {
+        return ordinal;
+    }
+
+    void assignOrdinal(int ordinal) {
+        this.ordinal = ordinal;
+    }
+
+    /**
+     * Resolve the version of this account visible to a reader pinned at the given
+     * generation, or null if the account did not exist yet
+     */
+    AccountState visibleAt(long readerGeneration) {
+        AccountState version = this;
+        while (version != null && version.generation > readerGeneration) {
+            version = version.previous;
+        }
+        return version;
+    }
+
+    /**
+     * Approximate retained heap size in bytes, assuming compressed oops.
+     * Reason texts are held once in the {@link ReasonDictionary} and counted there.
+     */
+    public long estimatedBytes() {
+        long self = 12 + 4 + 2 + 2 + 2 + 4 + 4 + 4 + 8 + 4 + 4;
+        long timestampArray = 16 + 8L * timestamps.length;
+        long reasonArray = 16 + 4L * reasonCodes.length;
+        long historyArray = history != null ? align(16 + history.length) : 0;
+        long id = 24 + 16 + accountId.length();
+        return align(self) + align(timestampArray) + align(reasonArray) + historyArray + align(id);
+    }
+
+    private int slot(ListType listType) {
+        return Integer.bitCount(presentMask & (bit(listType) - 1));
+    }
+
+    private static int bit(ListType listType) {
+        return 1 << listType.ordinal();
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    @Override
+    public String toString() {
+        return "AccountState{" +
+                "accountId='" + accountId + '\'' +
+                ", presentMask=" + Integer.toBinaryString(presentMask) +
+                ", inactiveMask=" + Integer.toBinaryString(inactiveMask) +
+                ", verdictMask=" + Integer.toBinaryString(verdictMask) +
+                ", timestamps=" + Arrays.toString(timestamps) +
+                ", generation=" + generation +
+                '}';
+    }
+}
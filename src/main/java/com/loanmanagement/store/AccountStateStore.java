@@ -0,0 +1,103 @@
+package com.loanmanagement.store;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * Storage abstraction for per-account list state used by the eligibility service.
+ *
+ * <p>Reads go through a pinned {@link Generation} and never take locks. Writes are
+ * grouped into generations: {@link #beginGeneration()} opens one, {@link #update}
+ * stages changes into it, and {@link #publishGeneration()} makes all of them
+ * visible at once. Only one generation can be open at a time.
+ */
+public interface AccountStateStore {
+
+    /**
+     * Pin the latest published generation. The caller must close it when done.
+     */
+    Generation snapshot();
+
+    /**
+     * Open a new generation for writing, waiting for any other writer to finish.
+     * Returns the number the generation will be published under.
+     */
+    long beginGeneration();
+
+    /**
+     * Atomically replace the state of an account in the open generation. The update
+     * function receives an empty state for unknown accounts and must not return null.
+     * Concurrent updates must route accounts by {@link AccountSharding} so that each
+     * shard has one writing thread at a time, as the ingest pipeline does.
+     */
+    AccountState update(String accountId, UnaryOperator<AccountState> update);
+
+    /**
+     * Same as {@link #update} for an all-digit account ID given as its
+     * {@link NumericAccountId} key, so callers holding packed IDs need no ID string
+     */
+    AccountState updateNumeric(long numericKey, UnaryOperator<AccountState> update);
+
+    /**
+     * Publish the open generation, making every staged update visible to new readers
+     */
+    Generation publishGeneration();
+
+    /**
+     * Discard every update staged in the open generation
+     */
+    void abortGeneration();
+
+    /**
+     * Replace every account with the given states and publish them as the given
+     * generation in one swap; readers see the old contents until then. The generation
+     * must not be below the published one. If the states cannot all be read, the store
+     * is left as it was.
+     */
+    Generation restore(long generation, Iterable<AccountState> states);
+
+    /**
+     * Number of superseded account versions still retained for older readers
+     */
+    long retainedVersionCount();
+
+    /**
+     * Approximate heap held by superseded account versions, in bytes
+     */
+    long retainedVersionBytes();
+
+    /**
+     * Approximate heap retained by the store, in bytes
+     */
+    long estimatedBytes();
+
+    /**
+     * Accounts stored in each shard, including ones staged in the open generation
+     */
+    long[] shardAccountCounts();
+
+    /**
+     * Filter used to reject lookups for unknown accounts, or null when it is disabled
+     */
+    MembershipFilter getMembershipFilter();
+
+    /**
+     * Record up to {@code limit} accounts per generation whose overall eligibility it
+     * changes, in {@link Generation#getVerdictChanges()}; 0 only counts them. Takes
+     * effect from the next generation opened.
+     */
+    void trackVerdictChanges(int limit);
+
+    default double bytesPerAccount() {
+        try (Generation generation = snapshot()) {
+            int size = generation.getAccountCount();
+            return size == 0 ? 0.0 : (double) estimatedBytes() / size;
+        }
+    }
+
+    /**
+     * Remove every account and publish the empty store as the open generation. Like an
+     * upload, a clear is opened with {@link #beginGeneration()}, so it is ordered with
+     * every other writer.
+     */
+    Generation clear();
+}
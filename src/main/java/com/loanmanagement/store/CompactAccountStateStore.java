@@ -0,0 +1,728 @@
+package com.loanmanagement.store;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Default store: one immutable {@link AccountState} per account. All-digit account
+ * IDs are packed into longs and kept in a primitive {@link LongKeyTable}; any other
+ * ID falls back to a ConcurrentHashMap keyed by the string. Updates are
+ * copy-on-write per account, so readers always see a whole account state without
+ * locking.
+ *
+ * <p>Accounts are split into shards by {@link AccountSharding}, each with its own
+ * tables and counters. The ingest pipeline gives every shard a single applier, so
+ * numeric tables are written without locks and uploads share no counters between
+ * shards. Reads go straight to the owning shard.
+ *
+ * <p>Every write is stamped with the open generation and linked to the version it
+ * replaced. Readers resolve each account against the generation they pinned, so
+ * staged writes stay invisible until {@link #publishGeneration()} swaps the
+ * published generation. When the last reader of the older generation closes it, a
+ * background reclaimer drops the versions it superseded, visiting only the accounts
+ * the new generation wrote; the memory held for them in the meantime is bounded by
+ * the number of accounts the last upload touched.
+ *
+ * <p>Each generation carries a {@link MembershipIndex}: per shard, every account has
+ * a dense ordinal, and each ineligibility list a copy-on-write bitmap of the ordinals
+ * it applies to. Bitmaps are updated as verdicts change during staging and published
+ * with the generation, so membership queries never scan the accounts.
+ *
+ * <p>It also carries {@link SortedAccountIds}, every account ID in order. IDs first
+ * stored in a generation are collected per shard while staging and merged in at
+ * publish time, copying only the blocks they fall into.
+ *
+ * <p>Staging also notes when a write moves an account's overall eligibility away
+ * from its published verdict. At publish time the noted accounts still changed are
+ * handed out as the generation's {@link VerdictChanges}, so nothing re-evaluates
+ * accounts an upload did not flip.
+ *
+ * <p>A {@link MembershipFilter} over every stored ID lets lookups for accounts on no
+ * list return without probing either table. It is resized at publish time once more
+ * IDs were added than it was sized for.
+ *
+ * <p>Each generation reads through the shards and filter that were current when it
+ * was published. A clear installs empty ones for the next generation, and a restore
+ * loads fresh ones before publishing them in one swap, so readers of earlier
+ * generations keep seeing their data; the old shards are released once the last of
+ * those readers is gone.
+ */
+@Component
+public class CompactAccountStateStore implements AccountStateStore {
+
+    // Approximate cost of a ConcurrentHashMap node plus its table slot
+    private static final long ENTRY_OVERHEAD_BYTES = 32 + 4;
+
+    private final AccountSharding sharding;
+    // Replaced only by a clear, under the writer slot
+    private volatile Shard[] shards;
+
+    private final Semaphore writer = new Semaphore(1);
+    private final ExecutorService reclaimer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "generation-reclaimer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Completes when every reclaim scheduled so far has run; each one is chained after
+    // the last, so a reclaim never runs while an older generation is still read
+    private CompletableFuture<Void> reclaimed = CompletableFuture.completedFuture(null);
+
+    private volatile Generation published;
+    private volatile long openGeneration = -1;
+
+    // Verdict changes recorded per generation, and per shard in the open one
+    private volatile int verdictChangeLimit;
+    private int shardChangeLimit;
+
+    // Null when the negative-lookup filter is disabled
+    private volatile MembershipFilter filter;
+    private final long expectedAccounts;
+
+    public CompactAccountStateStore(AccountSharding sharding,
+                                    @Value("${eligibility.filter.enabled:false}") boolean filterEnabled,
+                                    @Value("${eligibility.filter.expected-accounts:1000000}") long expectedAccounts,
+                                    @Value("${eligibility.filter.bits-per-key:10}") int bitsPerKey) {
+        this.sharding = sharding;
+        this.shards = newShards();
+        this.expectedAccounts = expectedAccounts;
+        this.filter = filterEnabled ? new MembershipFilter(expectedAccounts, bitsPerKey) : null;
+        this.published = new Generation(new View(), 0, StoreStatistics.EMPTY, StoreStatistics.EMPTY,
+            membershipIndex(), SortedAccountIds.EMPTY, VerdictChanges.EMPTY);
+    }
+
+    private Shard[] newShards() {
+        Shard[] created = new Shard[sharding.getShardCount()];
+        for (int i = 0; i < created.length; i++) {
+            created[i] = new Shard();
+        }
+        return created;
+    }
+
+    @Override
+    public Generation snapshot() {
+        while (true) {
+            Generation generation = published;
+            generation.readers.increment();
+            // Re-check so the reclaimer cannot miss a reader that pinned during a swap
+            if (generation == published) {
+                return generation;
+            }
+            // Closed rather than just decremented, in case this was the reader a reclaim waits on
+            generation.close();
+        }
+    }
+
+    @Override
+    public long beginGeneration() {
+        writer.acquireUninterruptibly();
+        for (Shard shard : shards) {
+            shard.pendingChange.reset();
+            shard.addedIds.clear();
+            shard.stagedIds.clear();
+            shard.resetFlips();
+        }
+        shardChangeLimit = (verdictChangeLimit + shards.length - 1) / shards.length;
+        openGeneration = published.getNumber() + 1;
+        return openGeneration;
+    }
+
+    @Override
+    public AccountState update(String accountId, UnaryOperator<AccountState> update) {
+        long generation = openGeneration;
+        if (generation < 0) {
+            throw new IllegalStateException("No generation is open for writing");
+        }
+        long key = LongKeyTable.numericKey(accountId);
+        if (key != LongKeyTable.NOT_NUMERIC) {
+            Shard shard = shards[sharding.shardOf(key)];
+            return shard.numericAccounts.compute(key,
+                current -> stage(shard, accountId, key, current, update, generation));
+        }
+        Shard shard = shards[sharding.shardOfText(accountId)];
+        return shard.accounts.compute(accountId, (id, current) -> stage(shard, id, key, current, update, generation));
+    }
+
+    @Override
+    public AccountState updateNumeric(long numericKey, UnaryOperator<AccountState> update) {
+        long generation = openGeneration;
+        if (generation < 0) {
+            throw new IllegalStateException("No generation is open for writing");
+        }
+        Shard shard = shards[sharding.shardOf(numericKey)];
+        return shard.numericAccounts.compute(numericKey,
+            current -> stage(shard, null, numericKey, current, update, generation));
+    }
+
+    /**
+     * Apply an update to the head state; the account ID is only needed, and rebuilt
+     * from the numeric key if not given, when the account is new
+     */
+    private AccountState stage(Shard shard, String accountId, long key, AccountState current,
+                               UnaryOperator<AccountState> update, long generation) {
+        AccountState base = current != null ? current
+            : AccountState.empty(accountId != null ? accountId : NumericAccountId.toString(key));
+        AccountState updated = update.apply(base);
+        if (updated == base) {
+            return current;
+        }
+        MembershipFilter membership = filter;
+        if (current == null && membership != null) {
+            // Added before the state is published, so no reader can get a false negative
+            membership.add(MembershipFilter.hash(accountId, key));
+        }
+        if (current == null) {
+            updated.assignOrdinal(shard.membership.assign(updated.getAccountId()));
+            shard.addedIds.add(updated.getAccountId());
+        } else {
+            updated.assignOrdinal(current.getOrdinal());
+        }
+        shard.membership.update(updated.getOrdinal(), current != null ? current.getVerdictMask() : 0,
+            updated.getVerdictMask(), generation);
+        recordFlip(shard, current, updated, generation);
+        if (current != null && current.getGeneration() == generation) {
+            // Already rewritten in this generation; keep the link to the published version
+            updated.link(generation, current.getPrevious());
+            shard.stateBytes.add(updated.estimatedBytes() - current.estimatedBytes());
+        } else {
+            updated.link(generation, current);
+            shard.stagedIds.add(updated.getAccountId());
+            shard.stateBytes.add(updated.estimatedBytes());
+            if (current != null) {
+                shard.retainedVersions.increment();
+                shard.retainedBytes.add(current.estimatedBytes());
+            }
+        }
+        // Deltas against the head add up to the change against the published version
+        shard.pendingChange.record(current, updated);
+        return updated;
+    }
+
+    /**
+     * Note the account when this write moves its eligibility away from the published
+     * verdict, and take the count back when it returns there
+     */
+    private void recordFlip(Shard shard, AccountState current, AccountState updated, long generation) {
+        boolean retouched = current != null && current.getGeneration() == generation;
+        AccountState before = retouched ? current.getPrevious() : current;
+        boolean eligibleBefore = before == null || before.isEligible();
+        boolean wasFlipped = eligibleBefore != (current == null || current.isEligible());
+        boolean flipped = eligibleBefore != updated.isEligible();
+        if (flipped == wasFlipped) {
+            return;
+        }
+        if (!flipped) {
+            shard.flips--;
+            return;
+        }
+        shard.flips++;
+        if (shard.flippedIds.size() < shardChangeLimit) {
+            shard.flippedIds.add(updated.getAccountId());
+            // Only an account flipped back and forth within the generation can be noted twice
+            shard.flipsMayRepeat |= retouched;
+        }
+    }
+
+    @Override
+    public Generation publishGeneration() {
+        long generation = requireOpenGeneration();
+        Generation previous = published;
+        StoreStatistics change = StoreStatistics.EMPTY;
+        List<List<String>> staged = new ArrayList<>(shards.length);
+        for (Shard shard : shards) {
+            change = change.plus(shard.pendingChange.toStatistics());
+            shard.membership.publish();
+            // Handed to the reclaimer, which visits only the accounts this generation wrote
+            staged.add(shard.stagedIds);
+            shard.stagedIds = new ArrayList<>();
+        }
+        Generation next = new Generation(new View(), generation, previous.getStatistics().plus(change), change,
+            membershipIndex(), previous.getAccountIds().withAdded(addedIds()), verdictChanges());
+        Shard[] written = shards;
+        openGeneration = -1;
+        published = next;
+        try {
+            resizeFilterIfFull();
+            afterReaders(previous, () -> reclaim(written, staged, generation));
+        } finally {
+            writer.release();
+        }
+        return next;
+    }
+
+    @Override
+    public void abortGeneration() {
+        long generation = requireOpenGeneration();
+        for (Shard shard : shards) {
+            // Only accounts written in the open generation have a version to roll back
+            for (String accountId : shard.stagedIds) {
+                long key = LongKeyTable.numericKey(accountId);
+                if (key != LongKeyTable.NOT_NUMERIC) {
+                    shard.numericAccounts.compute(key, head -> head != null ? shard.unstage(head, generation) : null);
+                } else {
+                    shard.accounts.computeIfPresent(accountId, (id, head) -> shard.unstage(head, generation));
+                }
+            }
+            shard.stagedIds.clear();
+            shard.pendingChange.reset();
+            shard.addedIds.clear();
+            shard.resetFlips();
+            shard.membership.abort();
+        }
+        openGeneration = -1;
+        writer.release();
+    }
+
+    private MembershipIndex membershipIndex() {
+        ShardMembership[] memberships = new ShardMembership[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            memberships[i] = shards[i].membership;
+        }
+        return new MembershipIndex(memberships);
+    }
+
+    /**
+     * Take the IDs first stored in the open generation from every shard, sorted
+     */
+    private String[] addedIds() {
+        int count = 0;
+        for (Shard shard : shards) {
+            count += shard.addedIds.size();
+        }
+        String[] ids = new String[count];
+        int next = 0;
+        for (Shard shard : shards) {
+            for (String accountId : shard.addedIds) {
+                ids[next++] = accountId;
+            }
+            shard.addedIds.clear();
+        }
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    /**
+     * Take the accounts noted as flipped in the open generation from every shard, keeping
+     * those whose staged verdict still differs from the published one
+     */
+    private VerdictChanges verdictChanges() {
+        long total = 0;
+        List<String> accountIds = new ArrayList<>();
+        List<AccountState> heads = new ArrayList<>();
+        for (Shard shard : shards) {
+            total += shard.flips;
+            Set<String> seen = shard.flipsMayRepeat ? new HashSet<>() : null;
+            for (String accountId : shard.flippedIds) {
+                if (seen != null && !seen.add(accountId)) {
+                    continue;
+                }
+                long key = LongKeyTable.numericKey(accountId);
+                AccountState head = key != LongKeyTable.NOT_NUMERIC
+                    ? shard.numericAccounts.get(key)
+                    : shard.accounts.get(accountId);
+                AccountState before = head.getPrevious();
+                if ((before == null || before.isEligible()) != head.isEligible()) {
+                    accountIds.add(accountId);
+                    heads.add(head);
+                }
+            }
+            shard.resetFlips();
+        }
+        if (total == 0) {
+            return VerdictChanges.EMPTY;
+        }
+        int[] verdictMasks = new int[heads.size()];
+        for (int i = 0; i < verdictMasks.length; i++) {
+            verdictMasks[i] = heads.get(i).getVerdictMask();
+        }
+        return new VerdictChanges(accountIds.toArray(new String[0]), verdictMasks, total);
+    }
+
+    @Override
+    public Generation restore(long generation, Iterable<AccountState> states) {
+        writer.acquireUninterruptibly();
+        Generation previous = published;
+        Shard[] previousShards = shards;
+        MembershipFilter previousFilter = filter;
+        boolean restored = false;
+        try {
+            if (generation < previous.getNumber()) {
+                throw new IllegalStateException("Cannot restore generation " + generation
+                    + " over published generation " + previous.getNumber());
+            }
+            // Loaded into fresh shards that readers of earlier generations never see, so a
+            // restore that fails partway leaves the store as it was
+            shards = newShards();
+            StoreStatistics.Accumulator loaded = new StoreStatistics.Accumulator();
+            for (AccountState state : states) {
+                Shard shard = shards[sharding.shardOf(state.getAccountId())];
+                state.link(generation, null);
+                state.assignOrdinal(shard.membership.assign(state.getAccountId()));
+                shard.membership.update(state.getOrdinal(), 0, state.getVerdictMask(), generation);
+                shard.addedIds.add(state.getAccountId());
+                AccountState replaced = put(state);
+                loaded.record(replaced, state);
+                shard.stateBytes.add(state.estimatedBytes() - (replaced != null ? replaced.estimatedBytes() : 0));
+            }
+            for (Shard shard : shards) {
+                shard.membership.publish();
+            }
+            StoreStatistics statistics = loaded.toStatistics();
+            rebuildFilter(Math.max(expectedAccounts, 2 * statistics.getAccounts()));
+            published = new Generation(new View(), generation, statistics,
+                statistics.plus(previous.getStatistics().negate()), membershipIndex(),
+                SortedAccountIds.EMPTY.withAdded(addedIds()), VerdictChanges.EMPTY);
+            restored = true;
+            afterReaders(previous, () -> release(previousShards));
+            return published;
+        } finally {
+            if (!restored) {
+                shards = previousShards;
+                filter = previousFilter;
+            }
+            writer.release();
+        }
+    }
+
+    private AccountState put(AccountState state) {
+        long key = LongKeyTable.numericKey(state.getAccountId());
+        if (key == LongKeyTable.NOT_NUMERIC) {
+            return shards[sharding.shardOfText(state.getAccountId())].accounts.put(state.getAccountId(), state);
+        }
+        AccountState[] replaced = new AccountState[1];
+        shards[sharding.shardOf(key)].numericAccounts.compute(key, current -> {
+            replaced[0] = current;
+            return state;
+        });
+        return replaced[0];
+    }
+
+    /**
+     * Double the filter once more IDs went in than it was sized for; called by the writer
+     */
+    private void resizeFilterIfFull() {
+        MembershipFilter membership = filter;
+        if (membership != null && membership.getInsertions() > membership.getCapacity()) {
+            rebuildFilter(Math.max(2 * membership.getCapacity(), 2L * accountCount()));
+        }
+    }
+
+    /**
+     * Replace the filter with one holding every current head. Readers holding the old
+     * filter stay correct: it already covers every generation published before the swap.
+     */
+    private void rebuildFilter(long capacity) {
+        MembershipFilter membership = filter;
+        if (membership == null) {
+            return;
+        }
+        MembershipFilter rebuilt = membership.resized(capacity);
+        for (Shard shard : shards) {
+            shard.numericAccounts.forEach(head -> rebuilt.add(
+                MembershipFilter.hash(head.getAccountId(), LongKeyTable.numericKey(head.getAccountId()))));
+            shard.accounts.keySet().forEach(
+                accountId -> rebuilt.add(MembershipFilter.hash(accountId, LongKeyTable.NOT_NUMERIC)));
+        }
+        filter = rebuilt;
+    }
+
+    private long requireOpenGeneration() {
+        long generation = openGeneration;
+        if (generation < 0) {
+            throw new IllegalStateException("No generation is open for writing");
+        }
+        return generation;
+    }
+
+    /**
+     * Run a cleanup on the reclaimer once the last reader of the superseded generation
+     * closes it, and after every earlier cleanup; called by the writer
+     */
+    private void afterReaders(Generation superseded, Runnable cleanup) {
+        // A failed cleanup only loses its own work, as an executor task would
+        reclaimed = reclaimed.exceptionally(failure -> null)
+            .thenCombine(superseded.supersede(), (done, released) -> released)
+            .thenRunAsync(cleanup, reclaimer);
+    }
+
+    /**
+     * Unlink every version of the accounts written in the given generation that only
+     * an older generation could see
+     */
+    private void reclaim(Shard[] shards, List<List<String>> staged, long generation) {
+        for (int i = 0; i < shards.length; i++) {
+            Shard shard = shards[i];
+            for (String accountId : staged.get(i)) {
+                long key = LongKeyTable.numericKey(accountId);
+                AccountState head = key != LongKeyTable.NOT_NUMERIC
+                    ? shard.numericAccounts.get(key)
+                    : shard.accounts.get(accountId);
+                AccountState visible = head != null ? head.visibleAt(generation) : null;
+                if (visible == null) {
+                    continue;
+                }
+                for (AccountState dropped = visible.getPrevious(); dropped != null; dropped = dropped.getPrevious()) {
+                    shard.retainedVersions.decrement();
+                    shard.retainedBytes.add(-dropped.estimatedBytes());
+                    shard.stateBytes.add(-dropped.estimatedBytes());
+                }
+                visible.unlinkPrevious();
+            }
+        }
+    }
+
+    /**
+     * Drop the shards a clear replaced
+     */
+    private static void release(Shard[] cleared) {
+        for (Shard shard : cleared) {
+            shard.clear();
+        }
+    }
+
+
+    @Override
+    public long retainedVersionCount() {
+        long count = 0;
+        for (Shard shard : shards) {
+            count += shard.retainedVersions.sum();
+        }
+        return count;
+    }
+
+    @Override
+    public long retainedVersionBytes() {
+        long bytes = 0;
+        for (Shard shard : shards) {
+            bytes += shard.retainedBytes.sum();
+        }
+        return bytes;
+    }
+
+    @Override
+    public long estimatedBytes() {
+        MembershipFilter membership = filter;
+        long bytes = ReasonDictionary.estimatedBytes() + (membership != null ? membership.getSizeBytes() : 0);
+        for (Shard shard : shards) {
+            bytes += shard.estimatedBytes();
+        }
+        return bytes + published.getAccountIds().estimatedBytes();
+    }
+
+    @Override
+    public long[] shardAccountCounts() {
+        long[] counts = new long[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            counts[i] = shards[i].size();
+        }
+        return counts;
+    }
+
+    /**
+     * Stored accounts, counting staged and unpublished ones
+     */
+    private long accountCount() {
+        long count = 0;
+        for (Shard shard : shards) {
+            count += shard.size();
+        }
+        return count;
+    }
+
+    @Override
+    public MembershipFilter getMembershipFilter() {
+        return filter;
+    }
+
+    @Override
+    public void trackVerdictChanges(int limit) {
+        verdictChangeLimit = Math.max(limit, 0);
+    }
+
+    @Override
+    public Generation clear() {
+        long generation = requireOpenGeneration();
+        Generation previous = published;
+        Shard[] cleared = shards;
+        Generation next;
+        try {
+            // Earlier generations keep reading the old shards and filter; this one starts afresh
+            shards = newShards();
+            MembershipFilter membership = filter;
+            filter = membership != null ? membership.resized(expectedAccounts) : null;
+            next = new Generation(new View(), generation, StoreStatistics.EMPTY,
+                previous.getStatistics().negate(), membershipIndex(), SortedAccountIds.EMPTY, VerdictChanges.EMPTY);
+            published = next;
+            afterReaders(previous, () -> release(cleared));
+        } finally {
+            openGeneration = -1;
+            writer.release();
+        }
+        return next;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reclaimer.shutdownNow();
+    }
+
+    /**
+     * Version-resolving access for the generations published over one set of shards,
+     * with the filter current at the time
+     */
+    private final class View implements Generation.Reader {
+        private final Shard[] shards = CompactAccountStateStore.this.shards;
+        private final MembershipFilter filter = CompactAccountStateStore.this.filter;
+
+        @Override
+        public AccountState resolve(String accountId, long generation) {
+            long key = LongKeyTable.numericKey(accountId);
+            MembershipFilter membership = filter;
+            if (membership != null && !membership.mightContain(MembershipFilter.hash(accountId, key))) {
+                return null;
+            }
+            AccountState head = key != LongKeyTable.NOT_NUMERIC
+                ? shards[sharding.shardOf(key)].numericAccounts.get(key)
+                : shards[sharding.shardOfText(accountId)].accounts.get(accountId);
+            if (head == null && membership != null) {
+                membership.recordFalsePositive();
+            }
+            return head != null ? head.visibleAt(generation) : null;
+        }
+
+        @Override
+        public void forEachVisible(long generation, Consumer<AccountState> consumer) {
+            Consumer<AccountState> visit = head -> {
+                AccountState visible = head.visibleAt(generation);
+                if (visible != null) {
+                    consumer.accept(visible);
+                }
+            };
+            for (Shard shard : shards) {
+                shard.numericAccounts.forEach(visit);
+                shard.accounts.values().forEach(visit);
+            }
+        }
+
+        @Override
+        public Iterator<AccountState> iterateVisible(long generation) {
+            return new Iterator<>() {
+                // Numeric then string heads of each shard in turn
+                int table = -1;
+                Iterator<AccountState> heads = Collections.emptyIterator();
+                AccountState next;
+
+                @Override
+                public boolean hasNext() {
+                    while (next == null) {
+                        if (!heads.hasNext()) {
+                            // Stay on the end once reached, so hasNext can be asked again
+                            if (table == 2 * shards.length - 1) {
+                                return false;
+                            }
+                            table++;
+                            Shard shard = shards[table / 2];
+                            heads = table % 2 == 0 ? shard.numericAccounts.iterator() : shard.accounts.values().iterator();
+                            continue;
+                        }
+                        next = heads.next().visibleAt(generation);
+                    }
+                    return true;
+                }
+
+                @Override
+                public AccountState next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    AccountState result = next;
+                    next = null;
+                    return result;
+                }
+            };
+        }
+    }
+
+    /**
+     * The accounts of one shard with their own counters. During an upload only the
+     * shard's applier writes here; the reclaimer only adjusts the counters.
+     */
+    private static final class Shard {
+        final LongKeyTable numericAccounts = new LongKeyTable();
+        final ConcurrentHashMap<String, AccountState> accounts = new ConcurrentHashMap<>();
+        final LongAdder stateBytes = new LongAdder();
+        final LongAdder retainedVersions = new LongAdder();
+        final LongAdder retainedBytes = new LongAdder();
+        final StoreStatistics.Accumulator pendingChange = new StoreStatistics.Accumulator();
+        ShardMembership membership = new ShardMembership();
+        // IDs first stored in the open generation, not yet in the sorted index
+        final List<String> addedIds = new ArrayList<>();
+        // IDs of every account written in the open generation, so an abort and the
+        // reclaim after publishing visit only those
+        List<String> stagedIds = new ArrayList<>();
+        // Accounts noted as flipped in the open generation, and the net number of flips
+        final List<String> flippedIds = new ArrayList<>();
+        long flips;
+        boolean flipsMayRepeat;
+
+        void resetFlips() {
+            flippedIds.clear();
+            flips = 0;
+            flipsMayRepeat = false;
+        }
+
+        /**
+         * Roll a head written in the given generation back to the version it replaced
+         */
+        AccountState unstage(AccountState head, long generation) {
+            if (head.getGeneration() != generation) {
+                return head;
+            }
+            AccountState previous = head.getPrevious();
+            stateBytes.add(-head.estimatedBytes());
+            if (previous != null) {
+                retainedVersions.decrement();
+                retainedBytes.add(-previous.estimatedBytes());
+            }
+            return previous;
+        }
+
+        long size() {
+            return numericAccounts.size() + accounts.size();
+        }
+
+        long estimatedBytes() {
+            return stateBytes.sum() + ENTRY_OVERHEAD_BYTES * accounts.size() + numericAccounts.estimatedBytes()
+                + membership.estimatedBytes();
+        }
+
+        void clear() {
+            numericAccounts.clear();
+            accounts.clear();
+            stateBytes.reset();
+            retainedVersions.reset();
+            retainedBytes.reset();
+            membership = new ShardMembership();
+            addedIds.clear();
+            stagedIds.clear();
+            resetFlips();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.loanmanagement.store;
+
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * A published, immutable view of the store. Each upload builds the next generation
+ * and publishes it with a single atomic swap, so a reader holding a generation sees
+ * either all of an upload or none of it.
+ *
+ * <p>Obtained from {@link AccountStateStore#snapshot()} and must be closed; while it
+ * is open the store keeps the account versions it can see.
+ */
+public final class Generation implements AutoCloseable, Iterable<AccountState> {
+
+    private final Reader store;
+    private final long number;
+    private final StoreStatistics statistics;
+    private final StoreStatistics change;
+    private final MembershipIndex membership;
+    private final SortedAccountIds accountIds;
+    private final VerdictChanges verdictChanges;
+    private final LocalDateTime publishedAt;
+    final LongAdder readers = new LongAdder();
+    // Completed once a newer generation is published and the last reader has closed this one
+    private final CompletableFuture<Void> released = new CompletableFuture<>();
+    private volatile boolean superseded;
+
+    Generation(Reader store, long number, StoreStatistics statistics, StoreStatistics change,
+               MembershipIndex membership, SortedAccountIds accountIds, VerdictChanges verdictChanges) {
+        this.store = store;
+        this.number = number;
+        this.statistics = statistics;
+        this.change = change;
+        this.membership = membership;
+        this.accountIds = accountIds;
+        this.verdictChanges = verdictChanges;
+        this.publishedAt = LocalDateTime.now();
+    }
+
+    public long getNumber() {
+        return number;
+    }
+
+    /**
+     * Number of accounts visible in this generation
+     */
+    public int getAccountCount() {
+        return (int) statistics.getAccounts();
+    }
+
+    /**
+     * Counters for this generation, maintained as it was written
+     */
+    public StoreStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * What the write that produced this generation changed, relative to the one before
+     */
+    public StoreStatistics getChange() {
+        return change;
+    }
+
+    /**
+     * Which accounts each ineligibility list applies to in this generation
+     */
+    public MembershipIndex getMembership() {
+        return membership;
+    }
+
+    /**
+     * Every account ID in this generation, in order, for prefix and range lookups
+     */
+    public SortedAccountIds getAccountIds() {
+        return accountIds;
+    }
+
+    /**
+     * Accounts whose overall eligibility the write that produced this generation changed
+     */
+    public VerdictChanges getVerdictChanges() {
+        return verdictChanges;
+    }
+
+    public LocalDateTime getPublishedAt() {
+        return publishedAt;
+    }
+
+    /**
+     * Get the state of an account as of this generation, or null if it is on no list
+     */
+    public AccountState get(String accountId) {
+        return store.resolve(accountId, number);
+    }
+
+    /**
+     * Visit every account as of this generation
+     */
+    @Override
+    public void forEach(Consumer<? super AccountState> consumer) {
+        store.forEachVisible(number, consumer::accept);
+    }
+
+    /**
+     * Walk every account as of this generation lazily, for callers that need to pause
+     * between accounts; the generation must stay open until the walk is finished
+     */
+    @Override
+    public Iterator<AccountState> iterator() {
+        return store.iterateVisible(number);
+    }
+
+    @Override
+    public void close() {
+        readers.decrement();
+        if (superseded && readers.sum() == 0) {
+            released.complete(null);
+        }
+    }
+
+    /**
+     * Mark this generation as replaced by a newer one, which new readers pin instead.
+     * The returned future completes when the last reader still holding it closes it.
+     */
+    CompletableFuture<Void> supersede() {
+        superseded = true;
+        if (readers.sum() == 0) {
+            released.complete(null);
+        }
+        return released;
+    }
+
+    /**
+     * Version-resolving access implemented by the owning store
+     */
+    interface Reader {
+        AccountState resolve(String accountId, long generation);
+
+        void forEachVisible(long generation, Consumer<AccountState> consumer);
+
+        Iterator<AccountState> iterateVisible(long generation);
+    }
+}
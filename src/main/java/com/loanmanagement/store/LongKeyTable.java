@@ -0,0 +1,267 @@
+package com.loanmanagement.store;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * Open-addressing hash table from packed numeric account IDs to account states.
+ *
+ * <p>Keys and values sit in parallel primitive/reference arrays, so a lookup is a
+ * probe over a {@code long[]} with no key objects, boxing or map nodes.
+ *
+ * <p>Each store shard owns one table, and a shard is only ever written by one
+ * thread at a time, so writes take no lock. The table is split into segments so
+ * that growing it rehashes one small segment at a time. Reads take no lock either:
+ * the writer stores the value before the key with release semantics, and grows a
+ * segment by publishing a new array pair, so a reader always sees a consistent slot.
+ * Removed entries keep their key with a null value until the next resize.
+ */
+final class LongKeyTable {
+
+    /**
+     * Key that marks an empty slot; {@link #numericKey} never returns it
+     */
+    static final long NOT_NUMERIC = NumericAccountId.NONE;
+
+    private static final int SEGMENT_BITS = 6;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final VarHandle KEYS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle VALUES = MethodHandles.arrayElementVarHandle(AccountState[].class);
+
+    private final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+
+    LongKeyTable() {
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Pack an all-digit account ID into a key, or return {@link #NOT_NUMERIC}
+     */
+    static long numericKey(String accountId) {
+        return NumericAccountId.pack(accountId);
+    }
+
+    /**
+     * Replacement for the state stored under a key; null means absent
+     */
+    interface Remapping {
+        AccountState apply(AccountState current);
+    }
+
+    AccountState get(long key) {
+        long hash = mix(key);
+        Table table = segmentFor(hash).table;
+        int mask = table.keys.length - 1;
+        for (int i = (int) hash & mask; ; i = (i + 1) & mask) {
+            long probe = (long) KEYS.getAcquire(table.keys, i);
+            if (probe == key) {
+                return (AccountState) VALUES.getAcquire(table.values, i);
+            }
+            if (probe == NOT_NUMERIC) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Replace the state under a key; returning null removes the entry. Callers must
+     * not write the table from two threads at once.
+     */
+    AccountState compute(long key, Remapping remapping) {
+        long hash = mix(key);
+        Segment segment = segmentFor(hash);
+        Table table = segment.table;
+        int slot = find(table, key, hash);
+        AccountState current = table.keys[slot] == key ? table.values[slot] : null;
+        AccountState updated = remapping.apply(current);
+        if (updated == current) {
+            return current;
+        }
+        if (table.keys[slot] != key) {
+            if (table.used + 1 > table.keys.length * 3 / 4) {
+                table = segment.resize(segment.live + 1);
+                slot = find(table, key, hash);
+            }
+            VALUES.setRelease(table.values, slot, updated);
+            KEYS.setRelease(table.keys, slot, key);
+            table.used++;
+        } else {
+            VALUES.setRelease(table.values, slot, updated);
+        }
+        segment.live += (updated != null ? 1 : 0) - (current != null ? 1 : 0);
+        return updated;
+    }
+
+    /**
+     * Apply the remapping to every entry, segment by segment; null results remove the entry
+     */
+    void replaceAll(Remapping remapping) {
+        for (Segment segment : segments) {
+            Table table = segment.table;
+            for (int i = 0; i < table.values.length; i++) {
+                AccountState current = table.values[i];
+                if (current == null) {
+                    continue;
+                }
+                AccountState updated = remapping.apply(current);
+                if (updated != current) {
+                    VALUES.setRelease(table.values, i, updated);
+                    if (updated == null) {
+                        segment.live--;
+                    }
+                }
+            }
+        }
+    }
+
+    void forEach(Consumer<AccountState> consumer) {
+        for (Segment segment : segments) {
+            Table table = segment.table;
+            for (int i = 0; i < table.values.length; i++) {
+                AccountState state = (AccountState) VALUES.getAcquire(table.values, i);
+                if (state != null) {
+                    consumer.accept(state);
+                }
+            }
+        }
+    }
+
+    /**
+     * Lazily walk the entries. Each segment is read from the table current when the
+     * walk reaches it, so entries present for the whole walk are visited exactly once.
+     */
+    Iterator<AccountState> iterator() {
+        return new Iterator<>() {
+            int segment = -1;
+            AccountState[] values = new AccountState[0];
+            int slot;
+            AccountState next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null) {
+                    if (slot == values.length) {
+                        if (segment + 1 == segments.length) {
+                            return false;
+                        }
+                        values = segments[++segment].table.values;
+                        slot = 0;
+                        continue;
+                    }
+                    next = (AccountState) VALUES.getAcquire(values, slot++);
+                }
+                return true;
+            }
+
+            @Override
+            public AccountState next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                AccountState result = next;
+                next = null;
+                return result;
+            }
+        };
+    }
+
+    int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.live;
+        }
+        return size;
+    }
+
+    void clear() {
+        for (Segment segment : segments) {
+            segment.table = new Table(INITIAL_CAPACITY);
+            segment.live = 0;
+        }
+    }
+
+    /**
+     * Approximate heap held by the slot arrays, in bytes
+     */
+    long estimatedBytes() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            bytes += 32 + (8L + 4L) * segment.table.keys.length;
+        }
+        return bytes;
+    }
+
+    private Segment segmentFor(long hash) {
+        return segments[(int) (hash >>> (64 - SEGMENT_BITS))];
+    }
+
+    /**
+     * Slot holding the key, or the empty slot where it would be inserted
+     */
+    private static int find(Table table, long key, long hash) {
+        int mask = table.keys.length - 1;
+        int i = (int) hash & mask;
+        while (table.keys[i] != key && table.keys[i] != NOT_NUMERIC) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    static long mix(long key) {
+        // MurmurHash3 finalizer; sequential IDs would otherwise cluster in one run of slots
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    private static final class Segment {
+        volatile Table table = new Table(INITIAL_CAPACITY);
+        volatile int live;
+
+        /**
+         * Rehash the live entries into a table sized for the given count
+         */
+        Table resize(int expected) {
+            int capacity = INITIAL_CAPACITY;
+            while (capacity * 3 / 4 < expected * 2) {
+                capacity <<= 1;
+            }
+            Table old = table;
+            Table grown = new Table(capacity);
+            for (int i = 0; i < old.keys.length; i++) {
+                AccountState state = old.values[i];
+                if (state != null) {
+                    long key = old.keys[i];
+                    int slot = find(grown, key, mix(key));
+                    grown.keys[slot] = key;
+                    grown.values[slot] = state;
+                    grown.used++;
+                }
+            }
+            // The volatile write publishes the filled arrays to readers
+            table = grown;
+            return grown;
+        }
+    }
+
+    private static final class Table {
+        final long[] keys;
+        final AccountState[] values;
+        // Slots with a key, including removed entries
+        int used;
+
+        Table(int capacity) {
+            keys = new long[capacity];
+            values = new AccountState[capacity];
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package com.loanmanagement.store;
+
+import java.util.Arrays;
+
+/**
+ * Compressed bitmap of account ordinals in the manner of Roaring bitmaps. Ordinals
+ * are split into containers of 2^16; a container holds a sorted {@code char[]} of
+ * its low bits while it has at most 4096 members and a 1024-word bitset above that,
+ * so a sparse list costs two bytes per member and a dense one a bit per account.
+ *
+ * <p>Bitmaps are copy-on-write per generation. The bitmap a generation publishes is
+ * never modified again: the next writer takes {@link #forGeneration} and copies each
+ * container the first time it changes it, so an upload touching a few accounts
+ * copies a few containers rather than the bitmap.
+ */
+final class MembershipBitmap {
+
+    static final int CONTAINER_BITS = 16;
+    static final int WORDS = 1 << (CONTAINER_BITS - 6);
+
+    private static final int ARRAY_LIMIT = 4096;
+    private static final Container[] NO_CONTAINERS = new Container[0];
+
+    static final MembershipBitmap EMPTY = new MembershipBitmap(-1, NO_CONTAINERS, 0);
+
+    // Generation allowed to modify this bitmap in place
+    private final long generation;
+    private Container[] containers;
+    private long cardinality;
+
+    private MembershipBitmap(long generation, Container[] containers, long cardinality) {
+        this.generation = generation;
+        this.containers = containers;
+        this.cardinality = cardinality;
+    }
+
+    /**
+     * This bitmap if the generation may already modify it, otherwise a copy sharing
+     * every container
+     */
+    MembershipBitmap forGeneration(long writerGeneration) {
+        if (generation == writerGeneration) {
+            return this;
+        }
+        return new MembershipBitmap(writerGeneration, containers.clone(), cardinality);
+    }
+
+    long cardinality() {
+        return cardinality;
+    }
+
+    int containerCount() {
+        return containers.length;
+    }
+
+    boolean contains(int ordinal) {
+        Container container = container(ordinal >>> CONTAINER_BITS);
+        return container != null && container.contains((char) ordinal);
+    }
+
+    void add(int ordinal) {
+        int index = ordinal >>> CONTAINER_BITS;
+        if (index >= containers.length) {
+            containers = Arrays.copyOf(containers, Math.max(index + 1, containers.length * 3 / 2));
+        }
+        Container container = writable(index);
+        if (container == null) {
+            container = new Container(generation);
+            containers[index] = container;
+        }
+        if (container.add((char) ordinal)) {
+            cardinality++;
+        }
+    }
+
+    void remove(int ordinal) {
+        int index = ordinal >>> CONTAINER_BITS;
+        if (container(index) == null) {
+            return;
+        }
+        Container container = writable(index);
+        if (container.remove((char) ordinal)) {
+            cardinality--;
+            if (container.cardinality == 0) {
+                containers[index] = null;
+            }
+        }
+    }
+
+    /**
+     * Overwrite the words with the container's members; false if it has none
+     */
+    boolean load(int index, long[] words) {
+        Container container = container(index);
+        if (container == null) {
+            return false;
+        }
+        if (container.words != null) {
+            System.arraycopy(container.words, 0, words, 0, WORDS);
+        } else {
+            Arrays.fill(words, 0);
+            for (int i = 0; i < container.cardinality; i++) {
+                char value = container.values[i];
+                words[value >>> 6] |= 1L << value;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Add the container's members to the words
+     */
+    void orInto(int index, long[] words) {
+        Container container = container(index);
+        if (container == null) {
+            return;
+        }
+        if (container.words != null) {
+            for (int i = 0; i < WORDS; i++) {
+                words[i] |= container.words[i];
+            }
+        } else {
+            for (int i = 0; i < container.cardinality; i++) {
+                char value = container.values[i];
+                words[value >>> 6] |= 1L << value;
+            }
+        }
+    }
+
+    /**
+     * Keep only the words' members that are in the container; false if none are left
+     */
+    boolean andInto(int index, long[] words) {
+        Container container = container(index);
+        if (container == null) {
+            return false;
+        }
+        long any = 0;
+        if (container.words != null) {
+            for (int i = 0; i < WORDS; i++) {
+                words[i] &= container.words[i];
+                any |= words[i];
+            }
+        } else {
+            // Values are sorted, so each word's mask is built from one run of them
+            int next = 0;
+            for (int i = 0; i < WORDS; i++) {
+                long mask = 0;
+                while (next < container.cardinality && container.values[next] >>> 6 == i) {
+                    mask |= 1L << container.values[next++];
+                }
+                words[i] &= mask;
+                any |= words[i];
+            }
+        }
+        return any != 0;
+    }
+
+    /**
+     * Remove the container's members from the words
+     */
+    void andNotInto(int index, long[] words) {
+        Container container = container(index);
+        if (container == null) {
+            return;
+        }
+        if (container.words != null) {
+            for (int i = 0; i < WORDS; i++) {
+                words[i] &= ~container.words[i];
+            }
+        } else {
+            for (int i = 0; i < container.cardinality; i++) {
+                char value = container.values[i];
+                words[value >>> 6] &= ~(1L << value);
+            }
+        }
+    }
+
+    /**
+     * Approximate heap held by this bitmap, counting shared containers in full
+     */
+    long estimatedBytes() {
+        long bytes = 16 + 4L * containers.length + 32;
+        for (Container container : containers) {
+            if (container != null) {
+                bytes += 32 + (container.words != null ? 16 + 8L * WORDS : 16 + 2L * container.values.length);
+            }
+        }
+        return bytes;
+    }
+
+    private Container container(int index) {
+        return index < containers.length ? containers[index] : null;
+    }
+
+    private Container writable(int index) {
+        Container container = containers[index];
+        if (container != null && container.generation != generation) {
+            container = container.copy(generation);
+            containers[index] = container;
+        }
+        return container;
+    }
+
+    private static final class Container {
+        final long generation;
+        // Exactly one of these is set
+        char[] values;
+        long[] words;
+        int cardinality;
+
+        Container(long generation) {
+            this.generation = generation;
+            this.values = new char[4];
+        }
+
+        private Container(long generation, char[] values, long[] words, int cardinality) {
+            this.generation = generation;
+            this.values = values;
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        Container copy(long generation) {
+            return new Container(generation, values != null ? values.clone() : null,
+                words != null ? words.clone() : null, cardinality);
+        }
+
+        boolean contains(char value) {
+            if (words != null) {
+                return (words[value >>> 6] & (1L << value)) != 0;
+            }
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        boolean add(char value) {
+            if (words != null) {
+                long bit = 1L << value;
+                if ((words[value >>> 6] & bit) != 0) {
+                    return false;
+                }
+                words[value >>> 6] |= bit;
+                cardinality++;
+                return true;
+            }
+            int slot = Arrays.binarySearch(values, 0, cardinality, value);
+            if (slot >= 0) {
+                return false;
+            }
+            if (cardinality == ARRAY_LIMIT) {
+                toWords();
+                return add(value);
+            }
+            slot = -slot - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(values.length * 2, ARRAY_LIMIT));
+            }
+            System.arraycopy(values, slot, values, slot + 1, cardinality - slot);
+            values[slot] = value;
+            cardinality++;
+            return true;
+        }
+
+        boolean remove(char value) {
+            if (words != null) {
+                long bit = 1L << value;
+                if ((words[value >>> 6] & bit) == 0) {
+                    return false;
+                }
+                words[value >>> 6] &= ~bit;
+                cardinality--;
+                // Convert back well below the limit so a container on the edge does not flip-flop
+                if (cardinality <= ARRAY_LIMIT / 2) {
+                    toValues();
+                }
+                return true;
+            }
+            int slot = Arrays.binarySearch(values, 0, cardinality, value);
+            if (slot < 0) {
+                return false;
+            }
+            System.arraycopy(values, slot + 1, values, slot, cardinality - slot - 1);
+            cardinality--;
+            return true;
+        }
+
+        private void toWords() {
+            words = new long[WORDS];
+            for (int i = 0; i < cardinality; i++) {
+                words[values[i] >>> 6] |= 1L << values[i];
+            }
+            values = null;
+        }
+
+        private void toValues() {
+            values = new char[Math.max(cardinality, 4)];
+            int n = 0;
+            for (int i = 0; i < WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    values[n++] = (char) ((i << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            words = null;
+        }
+    }
+}
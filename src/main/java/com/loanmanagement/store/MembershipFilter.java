@@ -0,0 +1,158 @@
+package com.loanmanagement.store;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Blocked Bloom filter over every account ID the store holds, used to answer
+ * lookups for accounts on no list without probing the account tables.
+ *
+ * <p>Each ID sets {@link #HASHES} bits inside one 512-bit block, so a lookup touches
+ * a single cache line. Bits are only ever set, so concurrent ingest can add IDs while
+ * readers query; an ID is added before the state that carries it is published, so
+ * a reader never gets a false negative. Rolled-back accounts leave their bits set,
+ * which only costs false positives until the filter is next rebuilt.
+ */
+public final class MembershipFilter {
+
+    private static final int HASHES = 7;
+    private static final int WORDS_PER_BLOCK = 8;
+    private static final int BITS_PER_BLOCK = WORDS_PER_BLOCK * Long.SIZE;
+
+    private final AtomicLongArray words;
+    private final int blocks;
+    private final long capacity;
+    private final int bitsPerKey;
+    private final LongAdder insertions = new LongAdder();
+    private final LongAdder setBits = new LongAdder();
+
+    // Lookup outcomes, carried over when the filter is rebuilt
+    private final LongAdder rejected;
+    private final LongAdder falsePositives;
+
+    MembershipFilter(long capacity, int bitsPerKey) {
+        this(capacity, bitsPerKey, new LongAdder(), new LongAdder());
+    }
+
+    private MembershipFilter(long capacity, int bitsPerKey, LongAdder rejected, LongAdder falsePositives) {
+        this.capacity = Math.max(capacity, 1024);
+        this.bitsPerKey = Math.max(bitsPerKey, 1);
+        long bits = this.capacity * this.bitsPerKey;
+        this.blocks = (int) Math.min((bits + BITS_PER_BLOCK - 1) / BITS_PER_BLOCK, Integer.MAX_VALUE / WORDS_PER_BLOCK);
+        this.words = new AtomicLongArray(blocks * WORDS_PER_BLOCK);
+        this.rejected = rejected;
+        this.falsePositives = falsePositives;
+    }
+
+    /**
+     * An empty filter sized for the given number of IDs that keeps this filter's lookup counters
+     */
+    MembershipFilter resized(long newCapacity) {
+        return new MembershipFilter(newCapacity, bitsPerKey, rejected, falsePositives);
+    }
+
+    /**
+     * 64-bit hash of an account ID; numeric IDs reuse their packed key
+     */
+    static long hash(String accountId, long numericKey) {
+        if (numericKey != LongKeyTable.NOT_NUMERIC) {
+            return LongKeyTable.mix(numericKey);
+        }
+        long hash = 0;
+        for (int i = 0; i < accountId.length(); i++) {
+            hash = hash * 31 + accountId.charAt(i);
+        }
+        return LongKeyTable.mix(hash + accountId.length());
+    }
+
+    void add(long hash) {
+        int base = block(hash) * WORDS_PER_BLOCK;
+        int newBits = 0;
+        for (int i = 0; i < HASHES; i++) {
+            int bit = bit(hash, i);
+            long mask = 1L << bit;
+            int index = base + (bit >>> 6 & (WORDS_PER_BLOCK - 1));
+            // Skip the atomic write when the bit is already set, as it mostly is on re-uploads
+            if ((words.get(index) & mask) == 0
+                    && (words.getAndAccumulate(index, mask, (word, m) -> word | m) & mask) == 0) {
+                newBits++;
+            }
+        }
+        insertions.increment();
+        setBits.add(newBits);
+    }
+
+    /**
+     * False means the ID was definitely never added
+     */
+    boolean mightContain(long hash) {
+        int base = block(hash) * WORDS_PER_BLOCK;
+        for (int i = 0; i < HASHES; i++) {
+            int bit = bit(hash, i);
+            if ((words.get(base + (bit >>> 6 & (WORDS_PER_BLOCK - 1))) & (1L << bit)) == 0) {
+                rejected.increment();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Record a lookup that passed the filter but found no account
+     */
+    void recordFalsePositive() {
+        falsePositives.increment();
+    }
+
+    private int block(long hash) {
+        // Multiply-shift maps the high bits onto any block count without a modulo
+        return (int) (((hash >>> 32) * blocks) >>> 32);
+    }
+
+    private static int bit(long hash, int i) {
+        // Double hashing over the low 32 bits, one bit position within the 512-bit block
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 16) | 1;
+        return (h1 + i * h2) & (BITS_PER_BLOCK - 1);
+    }
+
+    /**
+     * Number of IDs the filter was sized for; past this its false-positive rate climbs
+     */
+    public long getCapacity() {
+        return capacity;
+    }
+
+    public long getInsertions() {
+        return insertions.sum();
+    }
+
+    public long getSizeBytes() {
+        return 8L * words.length();
+    }
+
+    /**
+     * Expected false-positive rate for an unknown ID, from the share of bits set
+     */
+    public double getEstimatedFalsePositiveRate() {
+        double fill = (double) setBits.sum() / ((long) blocks * BITS_PER_BLOCK);
+        return Math.pow(fill, HASHES);
+    }
+
+    public long getRejectedLookups() {
+        return rejected.sum();
+    }
+
+    public long getFalsePositives() {
+        return falsePositives.sum();
+    }
+
+    /**
+     * Share of lookups for absent accounts that the filter failed to reject
+     */
+    public double getObservedFalsePositiveRate() {
+        long misses = falsePositives.sum();
+        long total = misses + rejected.sum();
+        return total == 0 ? 0.0 : (double) misses / total;
+    }
+}
@@ -0,0 +1,200 @@
+package com.loanmanagement.store;
+
+import com.loanmanagement.model.ListType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The per-list membership index as of one generation: for every ineligibility list,
+ * a compressed bitmap of the accounts it currently makes ineligible.
+ *
+ * <p>Queries combine bitmaps container by container, so counting or listing the
+ * members of an intersection, union or difference of lists costs a pass over the
+ * bitmaps involved rather than a scan of every account. Listing walks members in
+ * shard and ordinal order; a position (see {@link Page#getNext()}) is stable across
+ * generations, so paging can continue on a newer generation without repeating or
+ * skipping accounts that stayed on the lists.
+ */
+public final class MembershipIndex {
+
+    private static final int CHUNK_MASK = (1 << MembershipBitmap.CONTAINER_BITS) - 1;
+
+    // Per shard, by ListType ordinal
+    private final MembershipBitmap[][] bitmaps;
+    private final String[][][] ids;
+
+    MembershipIndex(ShardMembership[] shards) {
+        this.bitmaps = new MembershipBitmap[shards.length][];
+        this.ids = new String[shards.length][][];
+        for (int i = 0; i < shards.length; i++) {
+            bitmaps[i] = shards[i].getPublished();
+            ids[i] = shards[i].getIds();
+        }
+    }
+
+    /**
+     * Accounts currently made ineligible by the list
+     */
+    public long count(ListType listType) {
+        long count = 0;
+        for (MembershipBitmap[] shard : bitmaps) {
+            count += shard[listType.ordinal()].cardinality();
+        }
+        return count;
+    }
+
+    /**
+     * Accounts matching the query
+     */
+    public long count(MembershipQuery query) {
+        if (query.getLists().size() == 1 && query.getExcluded().isEmpty()) {
+            return count(query.getLists().iterator().next());
+        }
+        long[] words = new long[MembershipBitmap.WORDS];
+        long count = 0;
+        for (int shard = 0; shard < bitmaps.length; shard++) {
+            int containers = containerCount(shard, query);
+            for (int container = 0; container < containers; container++) {
+                if (evaluate(shard, container, query, words)) {
+                    for (long word : words) {
+                        count += Long.bitCount(word);
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Up to {@code limit} accounts matching the query, starting at the given position
+     * (0 for the first page)
+     */
+    public Page page(MembershipQuery query, long position, int limit) {
+        List<String> accountIds = new ArrayList<>(Math.min(limit, 1024));
+        long[] words = new long[MembershipBitmap.WORDS];
+        int startShard = (int) (position >>> 32);
+        int startOrdinal = (int) position;
+
+        for (int shard = startShard; shard < bitmaps.length; shard++) {
+            int from = shard == startShard ? startOrdinal : 0;
+            int containers = containerCount(shard, query);
+            for (int container = from >>> MembershipBitmap.CONTAINER_BITS; container < containers; container++) {
+                if (!evaluate(shard, container, query, words)) {
+                    continue;
+                }
+                int base = container << MembershipBitmap.CONTAINER_BITS;
+                for (int i = 0; i < words.length; i++) {
+                    long word = words[i];
+                    while (word != 0) {
+                        int ordinal = base + (i << 6) + Long.numberOfTrailingZeros(word);
+                        word &= word - 1;
+                        if (ordinal < from) {
+                            continue;
+                        }
+                        if (accountIds.size() == limit) {
+                            return new Page(accountIds, ((long) shard << 32) | ordinal);
+                        }
+                        accountIds.add(accountId(shard, ordinal));
+                    }
+                }
+            }
+        }
+        return new Page(accountIds, -1);
+    }
+
+    /**
+     * Visit the ID of every account currently made ineligible by the list
+     */
+    public void forEach(ListType listType, Consumer<String> consumer) {
+        long[] words = new long[MembershipBitmap.WORDS];
+        for (int shard = 0; shard < bitmaps.length; shard++) {
+            MembershipBitmap bitmap = bitmaps[shard][listType.ordinal()];
+            for (int container = 0; container < bitmap.containerCount(); container++) {
+                if (!bitmap.load(container, words)) {
+                    continue;
+                }
+                int base = container << MembershipBitmap.CONTAINER_BITS;
+                for (int i = 0; i < words.length; i++) {
+                    long word = words[i];
+                    while (word != 0) {
+                        consumer.accept(accountId(shard, base + (i << 6) + Long.numberOfTrailingZeros(word)));
+                        word &= word - 1;
+                    }
+                }
+            }
+        }
+    }
+
+    private String accountId(int shard, int ordinal) {
+        return ids[shard][ordinal >>> MembershipBitmap.CONTAINER_BITS][ordinal & CHUNK_MASK];
+    }
+
+    /**
+     * Containers that can hold matches: any list's for a union, the shortest list's
+     * for an intersection
+     */
+    private int containerCount(int shard, MembershipQuery query) {
+        int count = query.isMatchAll() ? Integer.MAX_VALUE : 0;
+        for (ListType listType : query.getLists()) {
+            int containers = bitmaps[shard][listType.ordinal()].containerCount();
+            count = query.isMatchAll() ? Math.min(count, containers) : Math.max(count, containers);
+        }
+        return count;
+    }
+
+    /**
+     * Fill the words with the query's matches in one container; false if there are none
+     */
+    private boolean evaluate(int shard, int container, MembershipQuery query, long[] words) {
+        MembershipBitmap[] lists = bitmaps[shard];
+        boolean loaded = false;
+        for (ListType listType : query.getLists()) {
+            MembershipBitmap bitmap = lists[listType.ordinal()];
+            if (!loaded) {
+                loaded = bitmap.load(container, words);
+                if (!loaded && query.isMatchAll()) {
+                    return false;
+                }
+            } else if (query.isMatchAll()) {
+                if (!bitmap.andInto(container, words)) {
+                    return false;
+                }
+            } else {
+                bitmap.orInto(container, words);
+            }
+        }
+        if (!loaded) {
+            return false;
+        }
+        for (ListType listType : query.getExcluded()) {
+            lists[listType.ordinal()].andNotInto(container, words);
+        }
+        return true;
+    }
+
+    /**
+     * One page of matching account IDs
+     */
+    public static final class Page {
+        private final List<String> accountIds;
+        private final long next;
+
+        Page(List<String> accountIds, long next) {
+            this.accountIds = accountIds;
+            this.next = next;
+        }
+
+        public List<String> getAccountIds() {
+            return accountIds;
+        }
+
+        /**
+         * Position of the first account of the next page, or -1 after the last page
+         */
+        public long getNext() {
+            return next;
+        }
+    }
+}
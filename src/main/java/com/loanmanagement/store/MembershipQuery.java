@@ -0,0 +1,64 @@
+package com.loanmanagement.store;
+
+import com.loanmanagement.model.ListType;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * A set expression over ineligibility list memberships: the accounts on all
+ * (or any) of the given lists, minus those on any excluded list.
+ */
+public final class MembershipQuery {
+
+    private final Set<ListType> lists;
+    private final boolean matchAll;
+    private final Set<ListType> excluded;
+
+    /**
+     * @param matchAll true for the intersection of the lists, false for their union
+     * @throws IllegalArgumentException if no list is given or a list is a delist
+     */
+    public MembershipQuery(Collection<ListType> lists, boolean matchAll, Collection<ListType> excluded) {
+        if (lists == null || lists.isEmpty()) {
+            throw new IllegalArgumentException("At least one list type is required");
+        }
+        this.lists = EnumSet.copyOf(lists);
+        this.matchAll = matchAll;
+        this.excluded = excluded == null || excluded.isEmpty() ? EnumSet.noneOf(ListType.class) : EnumSet.copyOf(excluded);
+        for (ListType listType : this.lists) {
+            requireIneligibilityList(listType);
+        }
+        for (ListType listType : this.excluded) {
+            requireIneligibilityList(listType);
+        }
+    }
+
+    public static MembershipQuery of(ListType listType) {
+        return new MembershipQuery(EnumSet.of(listType), true, null);
+    }
+
+    public Set<ListType> getLists() {
+        return lists;
+    }
+
+    public boolean isMatchAll() {
+        return matchAll;
+    }
+
+    public Set<ListType> getExcluded() {
+        return excluded;
+    }
+
+    private static void requireIneligibilityList(ListType listType) {
+        if (listType.isDelist()) {
+            throw new IllegalArgumentException("Membership is only indexed for ineligibility lists, not " + listType);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return lists + (matchAll ? " all" : " any") + (excluded.isEmpty() ? "" : " except " + excluded);
+    }
+}
@@ -0,0 +1,82 @@
+package com.loanmanagement.store;
+
+/**
+ * Packed form of all-digit account IDs: the digit count in the top bits and the
+ * value below it, so "00123" and "123" stay distinct. Numeric accounts are keyed by
+ * this form in the store, and binary list files carry it instead of ID strings.
+ */
+public final class NumericAccountId {
+
+    /**
+     * Returned for IDs that cannot be packed; never a valid key
+     */
+    public static final long NONE = 0L;
+
+    // IDs of up to 17 digits fit below the length tag; longer ones use string keys
+    public static final int MAX_DIGITS = 17;
+
+    private static final int LENGTH_SHIFT = 57;
+    private static final long VALUE_MASK = (1L << LENGTH_SHIFT) - 1;
+    private static final long[] POWERS_OF_TEN = new long[MAX_DIGITS + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i <= MAX_DIGITS; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private NumericAccountId() {
+    }
+
+    /**
+     * Pack an all-digit account ID, or return {@link #NONE}
+     */
+    public static long pack(String accountId) {
+        int length = accountId.length();
+        if (length == 0 || length > MAX_DIGITS) {
+            return NONE;
+        }
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            int digit = accountId.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return NONE;
+            }
+            value = value * 10 + digit;
+        }
+        return ((long) length << LENGTH_SHIFT) | value;
+    }
+
+    /**
+     * Pack an ID of the given digit count and value, or return {@link #NONE} if the
+     * value does not fit in that many digits
+     */
+    public static long pack(int digits, long value) {
+        if (digits < 1 || digits > MAX_DIGITS || value < 0 || value >= POWERS_OF_TEN[digits]) {
+            return NONE;
+        }
+        return ((long) digits << LENGTH_SHIFT) | value;
+    }
+
+    public static int digits(long key) {
+        return (int) (key >>> LENGTH_SHIFT);
+    }
+
+    public static long value(long key) {
+        return key & VALUE_MASK;
+    }
+
+    /**
+     * The account ID a key was packed from, with its leading zeros
+     */
+    public static String toString(long key) {
+        char[] chars = new char[digits(key)];
+        long value = value(key);
+        for (int i = chars.length - 1; i >= 0; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,128 @@
+package com.loanmanagement.store;
+
+import com.loanmanagement.model.ListType;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide dictionaries that map reason texts to small integer codes, one per
+ * ListType. Lists repeat a few hundred distinct reasons across millions of rows, so
+ * account states store a code per list entry and every distinct text is held once.
+ *
+ * <p>Codes are never reassigned or removed, so a code stays valid for as long as any
+ * account state, snapshot or older generation refers to it. Encoding a known reason
+ * is one hash lookup; adding a new one takes a per-list lock.
+ */
+public final class ReasonDictionary {
+
+    private static final Map<ListType, ReasonDictionary> DICTIONARIES = new EnumMap<>(ListType.class);
+
+    static {
+        for (ListType listType : ListType.values()) {
+            DICTIONARIES.put(listType, new ReasonDictionary());
+        }
+    }
+
+    // Rows encoded, reasons added, and estimated bytes of duplicate strings not retained
+    private static final LongAdder encoded = new LongAdder();
+    private static final LongAdder added = new LongAdder();
+    private static final LongAdder bytesSaved = new LongAdder();
+
+    private final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+    private volatile String[] texts = new String[16];
+    private int size;
+    private long textBytes;
+
+    private ReasonDictionary() {
+    }
+
+    /**
+     * Code for the reason on the given list, adding it if it is new
+     */
+    public static int encode(ListType listType, String reason) {
+        return DICTIONARIES.get(listType).encode(reason == null ? "" : reason);
+    }
+
+    public static String decode(ListType listType, int code) {
+        return DICTIONARIES.get(listType).texts[code];
+    }
+
+    private int encode(String reason) {
+        encoded.increment();
+        Integer code = codes.get(reason);
+        if (code != null) {
+            bytesSaved.add(stringBytes(reason));
+            return code;
+        }
+        synchronized (this) {
+            code = codes.get(reason);
+            if (code != null) {
+                bytesSaved.add(stringBytes(reason));
+                return code;
+            }
+            if (size == texts.length) {
+                texts = Arrays.copyOf(texts, size * 2);
+            }
+            int newCode = size;
+            // Publish the text before the code so a reader holding the code can always decode it
+            String[] current = texts;
+            current[newCode] = reason;
+            texts = current;
+            size++;
+            textBytes += stringBytes(reason) + 4;
+            codes.put(reason, newCode);
+            added.increment();
+            return newCode;
+        }
+    }
+
+    /**
+     * Distinct reasons held for the given list
+     */
+    public static int size(ListType listType) {
+        ReasonDictionary dictionary = DICTIONARIES.get(listType);
+        synchronized (dictionary) {
+            return dictionary.size;
+        }
+    }
+
+    public static long encodedCount() {
+        return encoded.sum();
+    }
+
+    public static long addedCount() {
+        return added.sum();
+    }
+
+    /**
+     * Estimated heap not spent on duplicate reason strings since startup
+     */
+    public static long bytesSaved() {
+        return bytesSaved.sum();
+    }
+
+    /**
+     * Approximate heap held by all dictionaries, in bytes
+     */
+    public static long estimatedBytes() {
+        long total = 0;
+        for (ReasonDictionary dictionary : DICTIONARIES.values()) {
+            synchronized (dictionary) {
+                // Text plus its hash map node and array slot
+                total += dictionary.textBytes + dictionary.size * 40L;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Approximate size of a String of this length, assuming compact Latin-1 strings
+     */
+    static long stringBytes(String text) {
+        return 24 + ((16 + text.length() + 7) & ~7L);
+    }
+}
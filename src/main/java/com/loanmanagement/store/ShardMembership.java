@@ -0,0 +1,101 @@
+package com.loanmanagement.store;
+
+import com.loanmanagement.model.ListType;
+
+import java.util.Arrays;
+
+/**
+ * The writable side of one shard's membership index: dense account ordinals and,
+ * per ineligibility list, the bitmap of ordinals currently on it.
+ *
+ * <p>An ordinal is assigned when an account is first stored and never changes or
+ * gets reused. IDs are kept in chunks of one bitmap container each, appended to by
+ * the shard's single writer; a published view only reads ordinals its bitmaps hold,
+ * all of which were written before it was published.
+ */
+final class ShardMembership {
+
+    private static final int CHUNK_BITS = MembershipBitmap.CONTAINER_BITS;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    private String[][] ids = new String[1][];
+    private int nextOrdinal;
+    private MembershipBitmap[] published = emptyBitmaps();
+    private MembershipBitmap[] staged = published;
+
+    /**
+     * Give a new account the next ordinal
+     */
+    int assign(String accountId) {
+        int ordinal = nextOrdinal++;
+        int chunk = ordinal >>> CHUNK_BITS;
+        if (chunk == ids.length) {
+            ids = Arrays.copyOf(ids, ids.length * 2);
+        }
+        if (ids[chunk] == null) {
+            ids[chunk] = new String[CHUNK_SIZE];
+        }
+        ids[chunk][ordinal & (CHUNK_SIZE - 1)] = accountId;
+        return ordinal;
+    }
+
+    /**
+     * Stage the membership changes of one account between two verdict masks
+     */
+    void update(int ordinal, int oldMask, int newMask, long generation) {
+        int changed = oldMask ^ newMask;
+        if (changed == 0) {
+            return;
+        }
+        if (staged == published) {
+            staged = published.clone();
+        }
+        while (changed != 0) {
+            int listOrdinal = Integer.numberOfTrailingZeros(changed);
+            changed &= changed - 1;
+            MembershipBitmap bitmap = staged[listOrdinal].forGeneration(generation);
+            staged[listOrdinal] = bitmap;
+            if ((newMask & (1 << listOrdinal)) != 0) {
+                bitmap.add(ordinal);
+            } else {
+                bitmap.remove(ordinal);
+            }
+        }
+    }
+
+    void publish() {
+        published = staged;
+    }
+
+    void abort() {
+        staged = published;
+    }
+
+    MembershipBitmap[] getPublished() {
+        return published;
+    }
+
+    String[][] getIds() {
+        return ids;
+    }
+
+    /**
+     * Approximate heap held by the ID chunks and the published bitmaps
+     */
+    long estimatedBytes() {
+        long bytes = 16 + 4L * ids.length;
+        for (String[] chunk : ids) {
+            bytes += chunk != null ? 16 + 4L * CHUNK_SIZE : 0;
+        }
+        for (MembershipBitmap bitmap : published) {
+            bytes += bitmap.estimatedBytes();
+        }
+        return bytes;
+    }
+
+    private static MembershipBitmap[] emptyBitmaps() {
+        MembershipBitmap[] bitmaps = new MembershipBitmap[ListType.values().length];
+        Arrays.fill(bitmaps, MembershipBitmap.EMPTY);
+        return bitmaps;
+    }
+}
@@ -0,0 +1,241 @@
+package com.loanmanagement.store;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Every stored account ID in lexicographic order, as of one generation.
+ *
+ * <p>IDs are kept in sorted blocks of a few hundred references to the ID strings the
+ * account states already hold, so the index costs little more than four bytes per
+ * account. Locating an ID is a binary search over the first ID of each block and then
+ * within one block. Adding IDs builds a new index that shares every block the new IDs
+ * do not fall into, so a publish copies only the blocks it touches.
+ */
+public final class SortedAccountIds {
+
+    static final SortedAccountIds EMPTY = new SortedAccountIds(new String[0][]);
+
+    // Blocks are split back to this size once merging grows them past twice that
+    private static final int BLOCK_SIZE = 512;
+
+    private final String[][] blocks;
+    private final String[] firstIds;
+    // Rank of the first ID of each block
+    private final int[] starts;
+    private final int size;
+
+    private SortedAccountIds(String[][] blocks) {
+        this.blocks = blocks;
+        this.firstIds = new String[blocks.length];
+        this.starts = new int[blocks.length];
+        int rank = 0;
+        for (int i = 0; i < blocks.length; i++) {
+            firstIds[i] = blocks[i][0];
+            starts[i] = rank;
+            rank += blocks[i].length;
+        }
+        this.size = rank;
+    }
+
+    /**
+     * Index holding these IDs as well; they must be sorted, distinct and not yet indexed
+     */
+    SortedAccountIds withAdded(String[] added) {
+        if (added.length == 0) {
+            return this;
+        }
+        List<String[]> merged = new ArrayList<>(blocks.length + added.length / BLOCK_SIZE + 1);
+        if (blocks.length == 0) {
+            split(added, merged);
+            return new SortedAccountIds(merged.toArray(new String[0][]));
+        }
+        int from = 0;
+        for (int i = 0; i < blocks.length; i++) {
+            // IDs before the first block go into it, IDs past the last block into that one
+            int to = i + 1 < blocks.length ? lowerBound(added, from, added.length, firstIds[i + 1]) : added.length;
+            if (to == from) {
+                merged.add(blocks[i]);
+                continue;
+            }
+            split(merge(blocks[i], added, from, to), merged);
+            from = to;
+        }
+        return new SortedAccountIds(merged.toArray(new String[0][]));
+    }
+
+    /**
+     * Number of indexed accounts
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Number of IDs from {@code from} (inclusive) up to {@code to} (exclusive); a null
+     * bound is open
+     */
+    public int count(String from, String to) {
+        int end = to != null ? rank(to) : size;
+        int start = from != null ? rank(from) : 0;
+        return Math.max(end - start, 0);
+    }
+
+    /**
+     * Walk the IDs from {@code from} (inclusive) up to {@code to} (exclusive) in order;
+     * a null bound is open
+     */
+    public Iterator<String> range(String from, String to) {
+        int block = from != null ? blockOf(from) : 0;
+        int offset = block < blocks.length && from != null
+            ? lowerBound(blocks[block], 0, blocks[block].length, from)
+            : 0;
+        return new RangeIterator(block, offset, to);
+    }
+
+    /**
+     * The smallest string greater than every string starting with the prefix, or null
+     * if there is none; {@code [prefix, prefixEnd(prefix))} is the range of the prefix
+     */
+    public static String prefixEnd(String prefix) {
+        for (int i = prefix.length() - 1; i >= 0; i--) {
+            char c = prefix.charAt(i);
+            if (c != Character.MAX_VALUE) {
+                return prefix.substring(0, i) + (char) (c + 1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Approximate heap held by the blocks and their lookup arrays
+     */
+    long estimatedBytes() {
+        long bytes = 3 * (16 + 4L * blocks.length);
+        for (String[] block : blocks) {
+            bytes += 16 + 4L * block.length;
+        }
+        return bytes;
+    }
+
+    /**
+     * Number of indexed IDs less than the given one
+     */
+    private int rank(String accountId) {
+        int block = blockOf(accountId);
+        if (block == blocks.length) {
+            return size;
+        }
+        return starts[block] + lowerBound(blocks[block], 0, blocks[block].length, accountId);
+    }
+
+    /**
+     * The block the ID would be in: the last block starting at or before it, or the
+     * first block if it sorts before every ID
+     */
+    private int blockOf(String accountId) {
+        int found = Arrays.binarySearch(firstIds, accountId);
+        if (found >= 0) {
+            return found;
+        }
+        return Math.max(-found - 2, 0);
+    }
+
+    /**
+     * First index in {@code [from, to)} whose ID is not less than the key
+     */
+    private static int lowerBound(String[] ids, int from, int to, String key) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (ids[middle].compareTo(key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static String[] merge(String[] block, String[] added, int from, int to) {
+        String[] merged = new String[block.length + to - from];
+        int i = 0;
+        int j = from;
+        int k = 0;
+        while (i < block.length && j < to) {
+            merged[k++] = block[i].compareTo(added[j]) < 0 ? block[i++] : added[j++];
+        }
+        while (i < block.length) {
+            merged[k++] = block[i++];
+        }
+        while (j < to) {
+            merged[k++] = added[j++];
+        }
+        return merged;
+    }
+
+    /**
+     * Add the sorted IDs as one block, or as several of about {@link #BLOCK_SIZE} if
+     * they would make an oversized one
+     */
+    private static void split(String[] ids, List<String[]> blocks) {
+        if (ids.length <= 2 * BLOCK_SIZE) {
+            blocks.add(ids);
+            return;
+        }
+        int count = (ids.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        for (int i = 0; i < count; i++) {
+            blocks.add(Arrays.copyOfRange(ids, (int) ((long) ids.length * i / count),
+                (int) ((long) ids.length * (i + 1) / count)));
+        }
+    }
+
+    private final class RangeIterator implements Iterator<String> {
+        private final String to;
+        private int block;
+        private int offset;
+        private String next;
+
+        RangeIterator(int block, int offset, String to) {
+            this.block = block;
+            this.offset = offset;
+            this.to = to;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next != null) {
+                return true;
+            }
+            while (block < blocks.length && offset == blocks[block].length) {
+                block++;
+                offset = 0;
+            }
+            if (block == blocks.length) {
+                return false;
+            }
+            String candidate = blocks[block][offset];
+            if (to != null && candidate.compareTo(to) >= 0) {
+                block = blocks.length;
+                return false;
+            }
+            offset++;
+            next = candidate;
+            return true;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String result = next;
+            next = null;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.loanmanagement.store;
+
+import com.loanmanagement.model.ListType;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Immutable counters describing one generation, or the change one upload made.
+ * Counts are indexed by ListType ordinal and maintained incrementally at write
+ * time, so reading them never scans the store.
+ */
+public final class StoreStatistics {
+
+    private static final int LIST_TYPES = ListType.values().length;
+
+    public static final StoreStatistics EMPTY = new StoreStatistics(0, 0, new long[LIST_TYPES],
+        new long[LIST_TYPES], new long[LIST_TYPES]);
+
+    private final long accounts;
+    private final long ineligibleAccounts;
+    private final long[] records;
+    private final long[] inactiveRecords;
+    private final long[] ineligibleByList;
+
+    private StoreStatistics(long accounts, long ineligibleAccounts, long[] records, long[] inactiveRecords,
+                            long[] ineligibleByList) {
+        this.accounts = accounts;
+        this.ineligibleAccounts = ineligibleAccounts;
+        this.records = records;
+        this.inactiveRecords = inactiveRecords;
+        this.ineligibleByList = ineligibleByList;
+    }
+
+    public long getAccounts() {
+        return accounts;
+    }
+
+    /**
+     * Accounts with at least one ineligibility list in force
+     */
+    public long getIneligibleAccounts() {
+        return ineligibleAccounts;
+    }
+
+    public long getRecords(ListType listType) {
+        return records[listType.ordinal()];
+    }
+
+    /**
+     * Records that are still active, i.e. not superseded by a newer delist
+     */
+    public long getActiveRecords(ListType listType) {
+        return records[listType.ordinal()] - inactiveRecords[listType.ordinal()];
+    }
+
+    public long getSupersededRecords(ListType listType) {
+        return inactiveRecords[listType.ordinal()];
+    }
+
+    /**
+     * Accounts currently ineligible because of the given list
+     */
+    public long getIneligibleAccounts(ListType listType) {
+        return ineligibleByList[listType.ordinal()];
+    }
+
+    public Map<ListType, Long> getRecordsByListType() {
+        Map<ListType, Long> counts = new EnumMap<>(ListType.class);
+        for (ListType listType : ListType.values()) {
+            counts.put(listType, getRecords(listType));
+        }
+        return counts;
+    }
+
+    public Map<ListType, Long> getActiveRecordsByListType() {
+        Map<ListType, Long> counts = new EnumMap<>(ListType.class);
+        for (ListType listType : ListType.values()) {
+            counts.put(listType, getActiveRecords(listType));
+        }
+        return counts;
+    }
+
+    public Map<ListType, Long> getSupersededRecordsByListType() {
+        Map<ListType, Long> counts = new EnumMap<>(ListType.class);
+        for (ListType listType : ListType.values()) {
+            counts.put(listType, getSupersededRecords(listType));
+        }
+        return counts;
+    }
+
+    public Map<ListType, Long> getIneligibleAccountsByListType() {
+        Map<ListType, Long> counts = new EnumMap<>(ListType.class);
+        for (ListType listType : ListType.values()) {
+            if (!listType.isDelist()) {
+                counts.put(listType, getIneligibleAccounts(listType));
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Add a delta produced by {@link Accumulator#toStatistics()}
+     */
+    public StoreStatistics plus(StoreStatistics delta) {
+        long[] newRecords = new long[LIST_TYPES];
+        long[] newInactive = new long[LIST_TYPES];
+        long[] newIneligible = new long[LIST_TYPES];
+        for (int i = 0; i < LIST_TYPES; i++) {
+            newRecords[i] = records[i] + delta.records[i];
+            newInactive[i] = inactiveRecords[i] + delta.inactiveRecords[i];
+            newIneligible[i] = ineligibleByList[i] + delta.ineligibleByList[i];
+        }
+        return new StoreStatistics(accounts + delta.accounts, ineligibleAccounts + delta.ineligibleAccounts,
+            newRecords, newInactive, newIneligible);
+    }
+
+    /**
+     * The delta that takes these counts back to zero
+     */
+    public StoreStatistics negate() {
+        return EMPTY.minus(this);
+    }
+
+    /**
+     * Per-counter difference, used to compare maintained counts against a recount
+     */
+    public StoreStatistics minus(StoreStatistics other) {
+        long[] newRecords = new long[LIST_TYPES];
+        long[] newInactive = new long[LIST_TYPES];
+        long[] newIneligible = new long[LIST_TYPES];
+        for (int i = 0; i < LIST_TYPES; i++) {
+            newRecords[i] = records[i] - other.records[i];
+            newInactive[i] = inactiveRecords[i] - other.inactiveRecords[i];
+            newIneligible[i] = ineligibleByList[i] - other.ineligibleByList[i];
+        }
+        return new StoreStatistics(accounts - other.accounts, ineligibleAccounts - other.ineligibleAccounts,
+            newRecords, newInactive, newIneligible);
+    }
+
+    /**
+     * Recount from scratch by visiting every account of a generation
+     */
+    public static StoreStatistics count(Generation generation) {
+        Accumulator accumulator = new Accumulator();
+        generation.forEach(state -> accumulator.record(null, state));
+        return accumulator.toStatistics();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof StoreStatistics that)) return false;
+        return accounts == that.accounts
+            && ineligibleAccounts == that.ineligibleAccounts
+            && Arrays.equals(records, that.records)
+            && Arrays.equals(inactiveRecords, that.inactiveRecords)
+            && Arrays.equals(ineligibleByList, that.ineligibleByList);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(accounts, ineligibleAccounts, Arrays.hashCode(records));
+    }
+
+    /**
+     * Thread-safe accumulator of the changes made while a generation is open
+     */
+    public static final class Accumulator {
+        private final LongAdder accounts = new LongAdder();
+        private final LongAdder ineligibleAccounts = new LongAdder();
+        private final LongAdder[] records = adders();
+        private final LongAdder[] inactiveRecords = adders();
+        private final LongAdder[] ineligibleByList = adders();
+
+        private static LongAdder[] adders() {
+            LongAdder[] adders = new LongAdder[LIST_TYPES];
+            for (int i = 0; i < LIST_TYPES; i++) {
+                adders[i] = new LongAdder();
+            }
+            return adders;
+        }
+
+        /**
+         * Record an account changing from one state to another; either may be null
+         */
+        public void record(AccountState before, AccountState after) {
+            int presentBefore = before != null ? before.getPresentMask() : 0;
+            int presentAfter = after != null ? after.getPresentMask() : 0;
+            int inactiveBefore = before != null ? before.getInactiveMask() : 0;
+            int inactiveAfter = after != null ? after.getInactiveMask() : 0;
+            int verdictBefore = before != null ? before.getVerdictMask() : 0;
+            int verdictAfter = after != null ? after.getVerdictMask() : 0;
+
+            if ((presentBefore == 0) != (presentAfter == 0)) {
+                accounts.add(presentAfter != 0 ? 1 : -1);
+            }
+            if ((verdictBefore == 0) != (verdictAfter == 0)) {
+                ineligibleAccounts.add(verdictAfter != 0 ? 1 : -1);
+            }
+            apply(records, presentBefore, presentAfter);
+            apply(inactiveRecords, inactiveBefore, inactiveAfter);
+            apply(ineligibleByList, verdictBefore, verdictAfter);
+        }
+
+        // Only bits that changed touch a counter
+        private static void apply(LongAdder[] counters, int before, int after) {
+            int changed = before ^ after;
+            while (changed != 0) {
+                int bit = Integer.numberOfTrailingZeros(changed);
+                counters[bit].add((after & (1 << bit)) != 0 ? 1 : -1);
+                changed &= changed - 1;
+            }
+        }
+
+        public void reset() {
+            accounts.reset();
+            ineligibleAccounts.reset();
+            for (int i = 0; i < LIST_TYPES; i++) {
+                records[i].reset();
+                inactiveRecords[i].reset();
+                ineligibleByList[i].reset();
+            }
+        }
+
+        public StoreStatistics toStatistics() {
+            long[] recordCounts = new long[LIST_TYPES];
+            long[] inactiveCounts = new long[LIST_TYPES];
+            long[] ineligibleCounts = new long[LIST_TYPES];
+            for (int i = 0; i < LIST_TYPES; i++) {
+                recordCounts[i] = records[i].sum();
+                inactiveCounts[i] = inactiveRecords[i].sum();
+                ineligibleCounts[i] = ineligibleByList[i].sum();
+            }
+            return new StoreStatistics(accounts.sum(), ineligibleAccounts.sum(),
+                recordCounts, inactiveCounts, ineligibleCounts);
+        }
+    }
+}
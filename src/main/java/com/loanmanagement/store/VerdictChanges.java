@@ -0,0 +1,58 @@
+package com.loanmanagement.store;
+
+/**
+ * The accounts whose overall eligibility the write that produced a generation
+ * changed, with the verdict each ended up with.
+ *
+ * <p>Every change is counted, but only up to the limit given to
+ * {@link AccountStateStore#trackVerdictChanges(int)} are recorded; {@link #isComplete()}
+ * tells whether the recorded accounts are all of them.
+ */
+public final class VerdictChanges {
+
+    static final VerdictChanges EMPTY = new VerdictChanges(new String[0], new int[0], 0);
+
+    private final String[] accountIds;
+    private final int[] verdictMasks;
+    private final long total;
+
+    VerdictChanges(String[] accountIds, int[] verdictMasks, long total) {
+        this.accountIds = accountIds;
+        this.verdictMasks = verdictMasks;
+        this.total = total;
+    }
+
+    /**
+     * Number of recorded changes
+     */
+    public int size() {
+        return accountIds.length;
+    }
+
+    public String getAccountId(int index) {
+        return accountIds[index];
+    }
+
+    /**
+     * Ineligibility lists in force for the account after the change, as a bitmask over
+     * ListType ordinals; 0 if it became eligible
+     */
+    public int getVerdictMask(int index) {
+        return verdictMasks[index];
+    }
+
+    public boolean isEligible(int index) {
+        return verdictMasks[index] == 0;
+    }
+
+    /**
+     * Number of accounts whose eligibility changed, recorded or not
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    public boolean isComplete() {
+        return accountIds.length == total;
+    }
+}
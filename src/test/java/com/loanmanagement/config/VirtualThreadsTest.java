@@ -0,0 +1,68 @@
+package com.loanmanagement.config;
+
+import org.apache.coyote.ProtocolHandler;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.WebApplicationContextRunner;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class VirtualThreadsTest {
+
+    private static final boolean JAVA_21 = Runtime.version().feature() >= 21;
+
+    private final WebApplicationContextRunner contextRunner = new WebApplicationContextRunner()
+        .withUserConfiguration(VirtualThreadServingConfiguration.class);
+
+    @Test
+    void availabilityFollowsTheRuntime() throws Exception {
+        assertThat(VirtualThreads.isAvailable()).isEqualTo(JAVA_21);
+        ExecutorService executor = VirtualThreads.newPerTaskExecutor();
+        if (!JAVA_21) {
+            assertThat(executor).isNull();
+            return;
+        }
+        try {
+            // Each task gets a thread of its own, which is not one of a pool's named workers
+            String name = executor.submit(() -> Thread.currentThread().getName()).get(10, TimeUnit.SECONDS);
+            assertThat(name).isEmpty();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void servingModeIsOffUnlessEnabled() {
+        contextRunner.run(context ->
+            assertThat(context).doesNotHaveBean(VirtualThreadServingConfiguration.class));
+        contextRunner.withPropertyValues("eligibility.serving.virtual-threads=false").run(context ->
+            assertThat(context).doesNotHaveBean(VirtualThreadServingConfiguration.class));
+        contextRunner.withPropertyValues("eligibility.serving.virtual-threads=true").run(context ->
+            assertThat(context).hasSingleBean(VirtualThreadServingConfiguration.class)
+                .hasBean("virtualThreadProtocolHandlerCustomizer"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void tomcatKeepsItsPoolWithoutVirtualThreads() {
+        TomcatProtocolHandlerCustomizer<ProtocolHandler> customizer = (TomcatProtocolHandlerCustomizer<ProtocolHandler>)
+            new VirtualThreadServingConfiguration().virtualThreadProtocolHandlerCustomizer();
+        ProtocolHandler protocolHandler = mock(ProtocolHandler.class);
+
+        customizer.customize(protocolHandler);
+
+        if (JAVA_21) {
+            verify(protocolHandler).setExecutor(any(Executor.class));
+        } else {
+            verify(protocolHandler, never()).setExecutor(any());
+        }
+    }
+}
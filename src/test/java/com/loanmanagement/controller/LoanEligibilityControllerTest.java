@@ -0,0 +1,139 @@
+package com.loanmanagement.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.loanmanagement.ingest.BinaryListWriter;
+import com.loanmanagement.ingest.IngestPipeline;
+import com.loanmanagement.metrics.EligibilityMetrics;
+import com.loanmanagement.model.ListType;
+import com.loanmanagement.persistence.WriteAheadLog;
+import com.loanmanagement.service.EligibilityService;
+import com.loanmanagement.service.VerdictEventService;
+import com.loanmanagement.store.AccountSharding;
+import com.loanmanagement.store.CompactAccountStateStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class LoanEligibilityControllerTest {
+
+    private static final String STREAM = "/api/loan-eligibility/upload/{list}/stream";
+
+    @TempDir
+    Path directory;
+
+    private CompactAccountStateStore store;
+    private IngestPipeline pipeline;
+    private VerdictEventService verdictEvents;
+    private EligibilityService service;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        AccountSharding sharding = new AccountSharding(4);
+        store = new CompactAccountStateStore(sharding, false, 1000, 10);
+        pipeline = new IngestPipeline(sharding, 2, 1 << 16, 8);
+        verdictEvents = new VerdictEventService(store, new ObjectMapper(), 1000, 4, 15000);
+        service = new EligibilityService(store, pipeline, new WriteAheadLog(false, directory.toString(), false),
+            new EligibilityMetrics(true, store), verdictEvents, false, 20, "");
+        LoanEligibilityController controller = new LoanEligibilityController();
+        ReflectionTestUtils.setField(controller, "eligibilityService", service);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        verdictEvents.shutdown();
+        pipeline.shutdown();
+        store.shutdown();
+    }
+
+    @Test
+    void gzipBodiesAreDecompressedAsTheyAreRead() throws Exception {
+        StringBuilder csv = new StringBuilder("AccountID,Reason\n");
+        for (int i = 0; i < 50_000; i++) {
+            csv.append(i).append(",Multiple accounts\n");
+        }
+        mockMvc.perform(post(STREAM, "multiple-account")
+                .contentType("text/csv")
+                .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                .content(gzip(csv.toString().getBytes(StandardCharsets.UTF_8))))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.success").value(true))
+            .andExpect(jsonPath("$.processedRecords").value(50_000));
+
+        assertThat(service.checkEligibility("49999").isEligible()).isFalse();
+
+        // Binary lists may be compressed too
+        Path binary = directory.resolve("list.elb");
+        try (BinaryListWriter writer = new BinaryListWriter(binary, ListType.D_MULTIPLE_ACCOUNT)) {
+            writer.write("49999", "Cleared");
+        }
+        mockMvc.perform(post(STREAM, "d-multiple-account")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .header(HttpHeaders.CONTENT_ENCODING, "x-gzip")
+                .content(gzip(Files.readAllBytes(binary))))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.success").value(true));
+        assertThat(service.checkEligibility("49999").isEligible()).isTrue();
+    }
+
+    @Test
+    void badlyEncodedBodiesApplyNothing() throws Exception {
+        byte[] csv = "AccountID,Reason\n1001,Suspicious\n".getBytes(StandardCharsets.UTF_8);
+
+        mockMvc.perform(post(STREAM, "str").contentType("text/csv")
+                .header(HttpHeaders.CONTENT_ENCODING, "gzip").content(csv))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.success").value(false));
+        mockMvc.perform(post(STREAM, "str").contentType("text/csv")
+                .header(HttpHeaders.CONTENT_ENCODING, "br").content(csv))
+            .andExpect(status().isUnsupportedMediaType());
+        mockMvc.perform(post(STREAM, "nonexistent").contentType("text/csv").content(csv))
+            .andExpect(status().isNotFound());
+
+        // A body cut off partway fails the whole upload
+        StringBuilder rows = new StringBuilder("AccountID,Reason\n");
+        for (int i = 0; i < 20_000; i++) {
+            rows.append(i).append(",Suspicious ").append(i).append('\n');
+        }
+        byte[] compressed = gzip(rows.toString().getBytes(StandardCharsets.UTF_8));
+        mockMvc.perform(post(STREAM, "str").contentType("text/csv")
+                .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                .content(Arrays.copyOf(compressed, compressed.length / 2)))
+            .andExpect(jsonPath("$.success").value(false));
+        assertThat(service.checkEligibility("0").isEligible()).isTrue();
+
+        mockMvc.perform(post(STREAM, "str").contentType("text/csv")
+                .header(HttpHeaders.CONTENT_ENCODING, "identity").content(csv))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.success").value(true));
+        assertThat(service.checkEligibility("1001").isEligible()).isFalse();
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream output = new GZIPOutputStream(compressed)) {
+            output.write(data);
+        }
+        return compressed.toByteArray();
+    }
+}
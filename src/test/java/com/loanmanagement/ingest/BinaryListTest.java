@@ -0,0 +1,131 @@
+package com.loanmanagement.ingest;
+
+import com.loanmanagement.model.ListType;
+import com.loanmanagement.store.AccountSharding;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BinaryListTest {
+
+    @TempDir
+    Path directory;
+
+    private final IngestPipeline pipeline = new IngestPipeline(new AccountSharding(4), 4, 4096, 2);
+
+    @AfterEach
+    void shutdown() {
+        pipeline.shutdown();
+    }
+
+    @Test
+    void rowsReadBackAsWrittenFromAFileOrAStream() throws IOException {
+        Map<String, List<String>> expected = new LinkedHashMap<>();
+        Path file = directory.resolve("list.elb");
+        try (BinaryListWriter writer = new BinaryListWriter(file, ListType.FDM)) {
+            // Enough rows for several blocks, with IDs of every shape the format distinguishes
+            for (int i = 0; i < 120_000; i++) {
+                String accountId = switch (i % 5) {
+                    case 0 -> Integer.toString(i);
+                    case 1 -> String.format("%08d", i);
+                    case 2 -> "ACC-" + i;
+                    case 3 -> "1234567890123456789" + i;
+                    default -> "Ünïcode-" + i;
+                };
+                String reason = "Reason " + i % 40;
+                assertThat(writer.write(accountId, reason)).isTrue();
+                expected.computeIfAbsent(accountId, id -> new ArrayList<>()).add(reason);
+            }
+            assertThat(writer.write("", "Blank")).isFalse();
+            assertThat(writer.write("X".repeat(BinaryListFormat.MAX_TEXT_ID_BYTES + 1), "Too long")).isFalse();
+            assertThat(writer.getRowCount()).isEqualTo(120_000);
+            assertThat(writer.getReasonCount()).isEqualTo(40);
+        }
+        assertThat(BinaryListFormat.isBinary(file)).isTrue();
+        // Reasons are stored once and digit IDs as varints, so rows stay small
+        assertThat(Files.size(file)).isLessThan(120_000L * 16);
+
+        try (BinaryListReader reader = BinaryListReader.open(file)) {
+            assertThat(reader.getListType()).isEqualTo(ListType.FDM);
+            assertThat(reader.getRowCount()).isEqualTo(120_000);
+            assertThat(ingest(reader)).isEqualTo(expected);
+        }
+        try (BinaryListReader reader = BinaryListReader.read(Files.newInputStream(file))) {
+            assertThat(ingest(reader)).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void converterMatchesTheCsvIngest() throws IOException {
+        StringBuilder csv = new StringBuilder("AccountID,Reason\n");
+        for (int i = 0; i < 3000; i++) {
+            csv.append(i % 3 == 0 ? " 00" + i + " " : "ACC-" + i).append(",\" Reason, ").append(i % 7).append("\"\n");
+        }
+        csv.append(",Blank ID\n");
+        Path input = directory.resolve("list.csv");
+        Path output = directory.resolve("list.elb");
+        Files.writeString(input, csv.toString());
+
+        BinaryListConverter.main(new String[]{"str", input.toString(), output.toString()});
+
+        Map<String, List<String>> fromCsv = new ConcurrentHashMap<>();
+        IngestResult csvResult = pipeline.run(new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)),
+            recording(fromCsv));
+        try (BinaryListReader reader = BinaryListReader.open(output)) {
+            assertThat(reader.getListType()).isEqualTo(ListType.STR);
+            assertThat(reader.getRowCount()).isEqualTo(csvResult.getProcessedRecords());
+            assertThat(ingest(reader)).isEqualTo(fromCsv);
+        }
+    }
+
+    @Test
+    void headerRowCountMustMatchTheBlocks() throws IOException {
+        Path file = directory.resolve("list.elb");
+        try (BinaryListWriter writer = new BinaryListWriter(file, ListType.STR)) {
+            for (int i = 0; i < 100; i++) {
+                writer.write(Integer.toString(i), "Suspicious");
+            }
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        // The row count follows the magic, the version and the length-prefixed "STR"
+        ByteBuffer.wrap(bytes).putLong(4 + 1 + 1 + 3, 101);
+        Files.write(file, bytes);
+
+        try (BinaryListReader reader = BinaryListReader.open(file)) {
+            assertThatThrownBy(() -> pipeline.run(reader, (accountId, reason) -> { }, new IngestProgress()))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("declares 101 rows but holds 100");
+        }
+
+        bytes[4] = (byte) (BinaryListFormat.VERSION + 1);
+        assertThatThrownBy(() -> BinaryListReader.read(new ByteArrayInputStream(bytes)))
+            .isInstanceOf(IOException.class)
+            .hasMessageContaining("Unsupported binary list version");
+        assertThat(BinaryListFormat.isBinary("Acco".getBytes(StandardCharsets.US_ASCII), 4)).isFalse();
+    }
+
+    private Map<String, List<String>> ingest(BinaryListReader reader) throws IOException {
+        Map<String, List<String>> applied = new ConcurrentHashMap<>();
+        pipeline.run(reader, recording(applied), new IngestProgress());
+        return applied;
+    }
+
+    private static RowHandler recording(Map<String, List<String>> applied) {
+        return (accountId, reason) -> applied.computeIfAbsent(accountId, id -> new ArrayList<>()).add(reason);
+    }
+}
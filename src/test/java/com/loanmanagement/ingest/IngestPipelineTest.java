@@ -0,0 +1,185 @@
+package com.loanmanagement.ingest;
+
+import com.loanmanagement.store.AccountSharding;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IngestPipelineTest {
+
+    private final IngestPipeline pipeline = new IngestPipeline(new AccountSharding(4), 4, 4096, 2);
+
+    @AfterEach
+    void shutdown() {
+        pipeline.shutdown();
+    }
+
+    @Test
+    void quotedNewlinesNeverSplitARecord() throws IOException {
+        StringBuilder csv = new StringBuilder("AccountID,Reason\n");
+        for (int i = 0; i < 5000; i++) {
+            if (i % 7 == 0) {
+                // Long enough that some of these straddle a chunk boundary
+                csv.append("ACC-").append(i).append(",\"Line one\nline \"\"two\"\"\n").append("x".repeat(i % 300))
+                    .append("\"\n");
+            } else {
+                csv.append(i).append(",Reason ").append(i).append('\n');
+            }
+        }
+
+        Map<String, List<String>> applied = new ConcurrentHashMap<>();
+        IngestResult result = pipeline.run(input(csv.toString()), recording(applied));
+
+        Map<String, List<String>> expected = sequential(csv.toString());
+        assertThat(result.getTotalRecords()).isEqualTo(5000);
+        assertThat(result.getProcessedRecords()).isEqualTo(5000);
+        assertThat(applied).isEqualTo(expected);
+    }
+
+    @Test
+    void rowsForAnAccountAreAppliedInFileOrder() throws IOException {
+        StringBuilder csv = new StringBuilder("AccountID,Reason\n");
+        for (int i = 0; i < 20_000; i++) {
+            String accountId = i % 2 == 0 ? Integer.toString(i % 50) : "ACC-" + i % 50;
+            csv.append(accountId).append(',').append(i).append('\n');
+        }
+
+        Map<String, List<String>> applied = new ConcurrentHashMap<>();
+        IngestResult result = pipeline.run(input(csv.toString()), recording(applied));
+
+        assertThat(result.getProcessedRecords()).isEqualTo(20_000);
+        assertThat(applied).hasSize(50);
+        applied.forEach((accountId, reasons) -> {
+            assertThat(reasons).hasSize(400);
+            for (int i = 1; i < reasons.size(); i++) {
+                assertThat(Integer.parseInt(reasons.get(i))).isGreaterThan(Integer.parseInt(reasons.get(i - 1)));
+            }
+        });
+        assertThat(applied).isEqualTo(sequential(csv.toString()));
+    }
+
+    @Test
+    void countsMatchTheSequentialParser() throws IOException {
+        StringBuilder csv = new StringBuilder("AccountID,Reason\n");
+        int blank = 0;
+        int rejected = 0;
+        for (int i = 0; i < 3000; i++) {
+            if (i % 11 == 0) {
+                csv.append("   ,No account\n");
+                blank++;
+            } else if (i % 13 == 0) {
+                csv.append("REJECT-").append(i).append(",Handler throws\n");
+                rejected++;
+            } else if (i % 17 == 0) {
+                csv.append(' ').append(i).append(" ,  Padded reason  \n");
+            } else {
+                csv.append(i).append(",Reason ").append(i).append('\n');
+            }
+        }
+
+        Map<String, List<String>> applied = new ConcurrentHashMap<>();
+        RowHandler recording = recording(applied);
+        IngestResult result = pipeline.run(input(csv.toString()), (accountId, reason) -> {
+            if (accountId.startsWith("REJECT-")) {
+                throw new IllegalArgumentException(accountId);
+            }
+            recording.apply(accountId, reason);
+        });
+
+        assertThat(result.getTotalRecords()).isEqualTo(3000);
+        assertThat(result.getSkippedRecords()).isEqualTo(blank + rejected);
+        assertThat(result.getProcessedRecords()).isEqualTo(3000 - blank - rejected);
+        Map<String, List<String>> expected = sequential(csv.toString());
+        expected.keySet().removeIf(accountId -> accountId.startsWith("REJECT-"));
+        assertThat(applied).isEqualTo(expected);
+        assertThat(applied.get("17")).containsExactly("Padded reason");
+    }
+
+    @Test
+    void eachShardIsWrittenByOneThread() throws IOException {
+        AccountSharding sharding = new AccountSharding(4);
+        StringBuilder csv = new StringBuilder("AccountID,Reason\n");
+        for (int i = 0; i < 40_000; i++) {
+            csv.append(i % 3 == 0 ? "ACC-" + i : Integer.toString(i)).append(",Reason\n");
+        }
+
+        Map<Integer, Set<Thread>> writers = new ConcurrentHashMap<>();
+        long[] rowsPerShard = new long[4];
+        IngestResult result = pipeline.run(input(csv.toString()), new RowHandler() {
+            @Override
+            public void apply(String accountId, String reason) {
+                record(sharding.shardOf(accountId));
+            }
+
+            @Override
+            public void applyNumeric(long accountKey, String reason) {
+                record(sharding.shardOf(accountKey));
+            }
+
+            private void record(int shard) {
+                writers.computeIfAbsent(shard, s -> ConcurrentHashMap.newKeySet()).add(Thread.currentThread());
+                // Only the shard's own applier writes its counter
+                rowsPerShard[shard]++;
+            }
+        });
+
+        assertThat(writers).hasSize(4);
+        assertThat(writers.values()).allSatisfy(threads -> assertThat(threads).hasSize(1));
+        assertThat(result.getShardRows()).containsExactly(rowsPerShard);
+        assertThat(Arrays.stream(rowsPerShard).sum()).isEqualTo(40_000);
+    }
+
+    @Test
+    void headerOnlyAndEmptyInputsHoldNoRows() throws IOException {
+        RowHandler failing = (accountId, reason) -> {
+            throw new AssertionError(accountId);
+        };
+
+        assertThat(pipeline.run(input("AccountID,Reason\n"), failing).getTotalRecords()).isZero();
+        assertThat(pipeline.run(input(""), failing).getTotalRecords()).isZero();
+    }
+
+    private static ByteArrayInputStream input(String csv) {
+        return new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Rows for one account always reach the same applier, so each list has one writer
+     */
+    private static RowHandler recording(Map<String, List<String>> applied) {
+        return (accountId, reason) -> applied.computeIfAbsent(accountId, id -> new ArrayList<>()).add(reason);
+    }
+
+    /**
+     * Rows per account as the single-threaded parser the pipeline replaced would apply them
+     */
+    private static Map<String, List<String>> sequential(String csv) throws IOException {
+        Map<String, List<String>> rows = new ConcurrentHashMap<>();
+        try (Reader reader = new InputStreamReader(input(csv), StandardCharsets.UTF_8)) {
+            for (CSVRecord record : CSVFormat.DEFAULT.withFirstRecordAsHeader().withHeader("AccountID", "Reason")
+                    .parse(reader)) {
+                String accountId = record.get("AccountID").trim();
+                String reason = record.get("Reason") != null ? record.get("Reason").trim() : "";
+                if (!accountId.isEmpty()) {
+                    rows.computeIfAbsent(accountId, id -> new ArrayList<>()).add(reason);
+                }
+            }
+        }
+        return rows;
+    }
+}
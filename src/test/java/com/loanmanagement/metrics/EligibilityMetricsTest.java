@@ -0,0 +1,97 @@
+package com.loanmanagement.metrics;
+
+import com.loanmanagement.ingest.IngestResult;
+import com.loanmanagement.model.ListType;
+import com.loanmanagement.store.AccountSharding;
+import com.loanmanagement.store.CompactAccountStateStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EligibilityMetricsTest {
+
+    private final CompactAccountStateStore store = new CompactAccountStateStore(new AccountSharding(4), false, 1000, 10);
+
+    @AfterEach
+    void shutdown() {
+        store.shutdown();
+    }
+
+    @Test
+    void everyValueFallsWithinItsBucket() {
+        Random random = new Random(5);
+        for (int i = 0; i < 10_000; i++) {
+            long value = random.nextLong() >>> (1 + random.nextInt(63));
+            int bucket = LatencyHistogram.bucket(value);
+            assertThat(value).isLessThanOrEqualTo(LatencyHistogram.upperBound(bucket));
+            if (bucket > 0) {
+                assertThat(value).isGreaterThan(LatencyHistogram.upperBound(bucket - 1));
+            }
+            // Log-linear buckets keep the reported bound within 12.5% of the value
+            assertThat(LatencyHistogram.upperBound(bucket) - value).isLessThanOrEqualTo(value / 8);
+        }
+        assertThat(LatencyHistogram.bucket(Long.MAX_VALUE)).isLessThan(61 * 8);
+    }
+
+    @Test
+    void percentilesAreReportedFromTheBuckets() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertThat(histogram.toMap()).containsEntry("count", 0L).containsEntry("p99Nanos", 0L);
+
+        for (long nanos = 1; nanos <= 1000; nanos++) {
+            histogram.record(nanos * 1000);
+        }
+        histogram.record(-5);
+
+        Map<String, Object> map = histogram.toMap();
+        assertThat(map).containsEntry("count", 1001L);
+        assertThat((long) map.get("p50Nanos")).isBetween(500_000L, 500_000L * 9 / 8);
+        assertThat((long) map.get("p99Nanos")).isBetween(990_000L, 990_000L * 9 / 8);
+        assertThat((long) map.get("maxNanos")).isBetween(1_000_000L, 1_000_000L * 9 / 8);
+        List<?> buckets = (List<?>) map.get("buckets");
+        long counted = buckets.stream().mapToLong(bucket -> (Long) ((Map<?, ?>) bucket).get("count")).sum();
+        assertThat(counted).isEqualTo(1001);
+    }
+
+    @Test
+    void checksAndUploadsAreRecordedPerKind() {
+        EligibilityMetrics metrics = new EligibilityMetrics(true, store);
+        metrics.recordCheck(EligibilityMetrics.CheckVerdict.ELIGIBLE, metrics.startTimer());
+        metrics.recordCheck(EligibilityMetrics.CheckVerdict.NOT_MODIFIED, metrics.startTimer());
+        metrics.recordCheck(EligibilityMetrics.CheckVerdict.NOT_MODIFIED, metrics.startTimer());
+        metrics.recordUpload(ListType.STR, new IngestResult(10, 9, 1, 1000, 2000, 3000,
+            new long[]{4, 5, 0, 0}, new long[]{1000, 1000, 0, 0}), metrics.startTimer(), 100);
+        metrics.recordUploadFailure(ListType.CR);
+
+        Map<String, Object> snapshot = metrics.getMetrics();
+        Map<?, ?> checks = (Map<?, ?>) snapshot.get("checkLatency");
+        assertThat(((Map<?, ?>) checks.get("eligible")).get("count")).isEqualTo(1L);
+        assertThat(((Map<?, ?>) checks.get("not_modified")).get("count")).isEqualTo(2L);
+        assertThat(((Map<?, ?>) checks.get("ineligible")).get("count")).isEqualTo(0L);
+
+        Map<?, ?> uploads = (Map<?, ?>) snapshot.get("uploads");
+        assertThat(((Map<?, ?>) uploads.get(ListType.STR)).get("rows")).isEqualTo(9L);
+        assertThat(((Map<?, ?>) uploads.get(ListType.CR)).get("failures")).isEqualTo(1L);
+
+        List<?> shards = (List<?>) snapshot.get("shards");
+        assertThat(shards).hasSize(4);
+        assertThat(((Map<?, ?>) shards.get(1)).get("rows")).isEqualTo(5L);
+        assertThat(((Map<?, ?>) shards.get(1)).get("rowsPerSecond")).isEqualTo(5_000_000L);
+        assertThat(((Map<?, ?>) snapshot.get("store")).get("accounts")).isEqualTo(0L);
+    }
+
+    @Test
+    void disabledMetricsRecordNothing() {
+        EligibilityMetrics metrics = new EligibilityMetrics(false, store);
+        assertThat(metrics.startTimer()).isZero();
+        metrics.recordCheck(EligibilityMetrics.CheckVerdict.ELIGIBLE, 0);
+        metrics.recordUploadFailure(ListType.STR);
+
+        assertThat(metrics.getMetrics()).containsOnlyKeys("enabled").containsEntry("enabled", false);
+    }
+}
@@ -0,0 +1,223 @@
+package com.loanmanagement.persistence;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.loanmanagement.ingest.IngestPipeline;
+import com.loanmanagement.ingest.IngestProgress;
+import com.loanmanagement.metrics.EligibilityMetrics;
+import com.loanmanagement.model.ListType;
+import com.loanmanagement.model.UploadMode;
+import com.loanmanagement.service.EligibilityService;
+import com.loanmanagement.service.VerdictEventService;
+import com.loanmanagement.store.AccountSharding;
+import com.loanmanagement.store.AccountState;
+import com.loanmanagement.store.CompactAccountStateStore;
+import com.loanmanagement.store.Generation;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PersistenceServiceTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void snapshotPlusLogReplayEqualsTheLiveState() throws Exception {
+        Map<String, AccountState> live;
+        long liveGeneration;
+        try (Stack primary = new Stack()) {
+            primary.upload(ListType.STR, UploadMode.APPEND, "1001,Suspicious\n1002,Suspicious\n000123,Structuring\n");
+            primary.upload(ListType.D_STR, UploadMode.APPEND, "1002,Reviewed\n");
+            primary.upload(ListType.CR, UploadMode.APPEND, "ACC-9,Control\n1001,Control\n");
+            primary.persistence.snapshot();
+
+            primary.upload(ListType.CR, UploadMode.REPLACE, "1001,Control again\n2001,New\n");
+            primary.upload(ListType.FDM, UploadMode.APPEND, "1001,Fraud\n3001,Fraud\n");
+            primary.upload(ListType.D_FDM, UploadMode.APPEND, "3001,Cleared\n");
+            live = primary.accounts();
+            liveGeneration = primary.generation();
+        }
+
+        try (Stack recovered = new Stack()) {
+            assertThat(recovered.generation()).isEqualTo(liveGeneration);
+            assertSameAccounts(recovered.accounts(), live);
+        }
+    }
+
+    @Test
+    void replaysClearsInGenerationOrder() throws Exception {
+        Map<String, AccountState> live;
+        long liveGeneration;
+        try (Stack primary = new Stack()) {
+            primary.upload(ListType.STR, UploadMode.APPEND, "1001,Suspicious\n");
+            primary.persistence.snapshot();
+            primary.upload(ListType.SST, UploadMode.APPEND, "1002,Support\n");
+            primary.service.clearAllData();
+            primary.upload(ListType.CR, UploadMode.APPEND, "1003,Control\n");
+            live = primary.accounts();
+            liveGeneration = primary.generation();
+        }
+
+        try (Stack recovered = new Stack()) {
+            assertThat(recovered.generation()).isEqualTo(liveGeneration);
+            assertThat(live).containsOnlyKeys("1003");
+            assertSameAccounts(recovered.accounts(), live);
+        }
+    }
+
+    @Test
+    void tornTailIsDiscardedOnRecovery() throws Exception {
+        Map<String, AccountState> live;
+        try (Stack primary = new Stack()) {
+            primary.upload(ListType.STR, UploadMode.APPEND, "1001,Suspicious\n");
+            live = primary.accounts();
+        }
+        Path last = lastSegment();
+        long committed = Files.size(last);
+        Files.write(last, ByteBuffer.allocate(6).putInt(WriteAheadLog.ENTRY_MAGIC).put((byte) 1).array(),
+            StandardOpenOption.APPEND);
+
+        try (Stack recovered = new Stack()) {
+            assertSameAccounts(recovered.accounts(), live);
+        }
+        assertThat(Files.size(last)).isEqualTo(committed);
+    }
+
+    @Test
+    void entryLoggedUnderAnotherGenerationFailsRecovery() throws Exception {
+        WriteAheadLog wal = new WriteAheadLog(true, directory.resolve("wal").toString(), false);
+        wal.open();
+        wal.logClear(5);
+
+        assertThatThrownBy(Stack::new).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void badEntryFollowedByCommittedEntriesFailsRecovery() throws Exception {
+        try (Stack primary = new Stack()) {
+            primary.upload(ListType.STR, UploadMode.APPEND, "1001,Suspicious\n");
+            primary.upload(ListType.CR, UploadMode.APPEND, "1002,Control\n");
+        }
+        Path segment = lastSegment();
+        byte[] bytes = Files.readAllBytes(segment);
+        bytes[WriteAheadLog.HEADER_BYTES + 6] ^= 1;
+        Files.write(segment, bytes);
+
+        assertThatThrownBy(Stack::new).isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining("followed by committed entries");
+        // Nothing was discarded, so the log can still be repaired by hand
+        assertThat(Files.readAllBytes(segment)).isEqualTo(bytes);
+    }
+
+    @Test
+    void unusableSnapshotFailsStartupOnceTheLogIsTrimmed() throws Exception {
+        try (Stack primary = new Stack()) {
+            primary.upload(ListType.STR, UploadMode.APPEND, "1001,Suspicious\n");
+            primary.persistence.snapshot();
+            primary.upload(ListType.CR, UploadMode.APPEND, "1002,Control\n");
+        }
+        Path snapshot = new SnapshotFiles(directory.resolve("snapshots").toString()).list().get(0);
+        byte[] bytes = Files.readAllBytes(snapshot);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(snapshot, bytes);
+
+        assertThatThrownBy(Stack::new).hasRootCauseInstanceOf(IOException.class)
+            .hasMessageContaining("Failed to recover");
+    }
+
+    @Test
+    void unusableSnapshotIsPassedOverWhileTheLogCoversEverything() throws Exception {
+        Map<String, AccountState> live;
+        try (Stack primary = new Stack()) {
+            primary.upload(ListType.STR, UploadMode.APPEND, "1001,Suspicious\n");
+            primary.upload(ListType.CR, UploadMode.APPEND, "1002,Control\n");
+            live = primary.accounts();
+        }
+        Path snapshots = Files.createDirectories(directory.resolve("snapshots"));
+        Files.write(snapshots.resolve(String.format("snapshot-%016d.bin", 9)), new byte[100]);
+
+        try (Stack recovered = new Stack()) {
+            assertSameAccounts(recovered.accounts(), live);
+        }
+    }
+
+    private Path lastSegment() throws IOException {
+        List<Path> segments = new WriteAheadLog(true, directory.resolve("wal").toString(), false).segments();
+        return segments.get(segments.size() - 1);
+    }
+
+    private static void assertSameAccounts(Map<String, AccountState> recovered, Map<String, AccountState> live) {
+        assertThat(recovered.keySet()).isEqualTo(live.keySet());
+        live.forEach((accountId, state) -> SnapshotFilesTest.assertSameState(recovered.get(accountId), state));
+    }
+
+    /**
+     * The beans an application context would wire, persisting to the test directory
+     */
+    private final class Stack implements AutoCloseable {
+        final CompactAccountStateStore store;
+        final IngestPipeline pipeline;
+        final VerdictEventService verdictEvents;
+        final EligibilityService service;
+        final PersistenceService persistence;
+
+        Stack() {
+            AccountSharding sharding = new AccountSharding(4);
+            store = new CompactAccountStateStore(sharding, false, 1000, 10);
+            pipeline = new IngestPipeline(sharding, 2, 1 << 16, 8);
+            verdictEvents = new VerdictEventService(store, new ObjectMapper(), 1000, 4, 15000);
+            WriteAheadLog wal = new WriteAheadLog(true, directory.resolve("wal").toString(), false);
+            service = new EligibilityService(store, pipeline, wal, new EligibilityMetrics(true, store),
+                verdictEvents, false, 20, "");
+            persistence = new PersistenceService(wal, new SnapshotFiles(directory.resolve("snapshots").toString()),
+                store, service, Long.MAX_VALUE, 3600);
+            try {
+                persistence.afterSingletonsInstantiated();
+            } catch (RuntimeException e) {
+                close();
+                throw e;
+            }
+        }
+
+        void upload(ListType listType, UploadMode mode, String rows) {
+            byte[] file = ("AccountID,Reason\n" + rows).getBytes(StandardCharsets.UTF_8);
+            assertThat(service.uploadList(listType, mode, new ByteArrayInputStream(file), new IngestProgress())
+                .isSuccess()).isTrue();
+        }
+
+        Map<String, AccountState> accounts() {
+            Map<String, AccountState> accounts = new HashMap<>();
+            try (Generation generation = store.snapshot()) {
+                generation.forEach(state -> accounts.put(state.getAccountId(), state));
+            }
+            return accounts;
+        }
+
+        long generation() {
+            try (Generation generation = store.snapshot()) {
+                return generation.getNumber();
+            }
+        }
+
+        @Override
+        public void close() {
+            persistence.shutdown();
+            verdictEvents.shutdown();
+            pipeline.shutdown();
+            store.shutdown();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.loanmanagement.persistence;
+
+import com.loanmanagement.model.ListType;
+import com.loanmanagement.store.AccountSharding;
+import com.loanmanagement.store.AccountState;
+import com.loanmanagement.store.CompactAccountStateStore;
+import com.loanmanagement.store.Generation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SnapshotFilesTest {
+
+    @TempDir
+    Path directory;
+
+    private final CompactAccountStateStore store = new CompactAccountStateStore(new AccountSharding(4), false, 1000, 10);
+
+    @AfterEach
+    void shutdown() {
+        store.shutdown();
+    }
+
+    @Test
+    void restoresEveryAccountAsWritten() throws IOException {
+        store.beginGeneration();
+        store.update("1001", state -> state.with(ListType.STR, 100, "Suspicious transfer")
+            .withVerdict(1, ListType.STR, 100));
+        store.update("000042", state -> state.with(ListType.CR, 200, null)
+            .with(ListType.D_CR, 300, "Cleared")
+            .deactivate(ListType.CR));
+        store.update("ACC-7", state -> state.with(ListType.FDM, 400, "Fraud ring ✓"));
+        for (int i = 0; i < 20; i++) {
+            long timestamp = 1000 + i;
+            int mask = i % 2;
+            store.update("ACC-7", state -> state.withVerdict(mask, ListType.FDM, timestamp));
+        }
+        store.publishGeneration();
+
+        SnapshotFiles files = new SnapshotFiles(directory.toString());
+        try (Generation generation = store.snapshot()) {
+            Path path = files.write(generation);
+            assertThat(files.list()).containsExactly(path);
+
+            try (SnapshotFiles.Snapshot snapshot = files.open(path)) {
+                assertThat(snapshot.getGeneration()).isEqualTo(generation.getNumber());
+                assertThat(snapshot.getAccountCount()).isEqualTo(3);
+                int restored = 0;
+                for (AccountState state : snapshot) {
+                    assertSameState(state, generation.get(state.getAccountId()));
+                    restored++;
+                }
+                assertThat(restored).isEqualTo(3);
+            }
+        }
+    }
+
+    @Test
+    void rejectsCorruptedAndTruncatedFiles() throws IOException {
+        store.beginGeneration();
+        for (int i = 0; i < 100; i++) {
+            store.update(Integer.toString(i), state -> state.with(ListType.SST, 5, "Support"));
+        }
+        store.publishGeneration();
+        SnapshotFiles files = new SnapshotFiles(directory.toString());
+        Path path;
+        try (Generation generation = store.snapshot()) {
+            path = files.write(generation);
+        }
+        byte[] bytes = Files.readAllBytes(path);
+
+        byte[] corrupted = bytes.clone();
+        corrupted[bytes.length / 2] ^= 1;
+        Files.write(path, corrupted);
+        assertThatThrownBy(() -> files.open(path)).isInstanceOf(IOException.class);
+
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 5));
+        assertThatThrownBy(() -> files.open(path)).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void readsVersionTwoFilesWithTheCountInTheHeader() throws IOException {
+        store.beginGeneration();
+        for (int i = 0; i < 10; i++) {
+            store.update(Integer.toString(i), state -> state.with(ListType.SST, 5, "Support"));
+        }
+        store.publishGeneration();
+        SnapshotFiles files = new SnapshotFiles(directory.toString());
+        Path path;
+        try (Generation generation = store.snapshot()) {
+            path = files.write(generation);
+        }
+        byte[] current = Files.readAllBytes(path);
+
+        Files.write(path, withHeaderCount(current, 10));
+        try (SnapshotFiles.Snapshot snapshot = files.open(path)) {
+            assertThat(snapshot.getAccountCount()).isEqualTo(10);
+            int restored = 0;
+            for (AccountState state : snapshot) {
+                assertThat(state.has(ListType.SST)).isTrue();
+                restored++;
+            }
+            assertThat(restored).isEqualTo(10);
+        }
+
+        // The footer holds the count actually written; a header that disagrees is rejected
+        Files.write(path, withHeaderCount(current, 11));
+        assertThatThrownBy(() -> files.open(path)).isInstanceOf(IOException.class)
+            .hasMessageContaining("count mismatch");
+    }
+
+    /**
+     * Rewrite a current snapshot in the version 2 layout, with the given header count
+     */
+    private static byte[] withHeaderCount(byte[] current, int headerCount) {
+        ByteBuffer buffer = ByteBuffer.allocate(current.length + 4);
+        buffer.put(current, 0, 4).putInt(2).put(current, 8, 8).putInt(headerCount)
+            .put(current, 16, current.length - 16 - 8);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putLong(crc.getValue());
+        return buffer.array();
+    }
+
+    static void assertSameState(AccountState restored, AccountState original) {
+        assertThat(original).isNotNull();
+        assertThat(restored.getAccountId()).isEqualTo(original.getAccountId());
+        assertThat(restored.getPresentMask()).isEqualTo(original.getPresentMask());
+        assertThat(restored.getInactiveMask()).isEqualTo(original.getInactiveMask());
+        assertThat(restored.getVerdictMask()).isEqualTo(original.getVerdictMask());
+        for (ListType listType : ListType.values()) {
+            if (original.has(listType)) {
+                assertThat(restored.getTimestamp(listType)).isEqualTo(original.getTimestamp(listType));
+                assertThat(restored.getReason(listType)).isEqualTo(original.getReason(listType));
+            }
+        }
+        assertThat(history(restored)).isEqualTo(history(original));
+    }
+
+    private static List<Map<String, Object>> history(AccountState state) {
+        List<Map<String, Object>> events = new ArrayList<>();
+        state.forEachHistoryEvent((timestamp, listType, verdictMask, reason) -> {
+            Map<String, Object> event = new HashMap<>();
+            event.put("timestamp", timestamp);
+            event.put("listType", listType);
+            event.put("verdictMask", verdictMask);
+            event.put("reason", reason);
+            events.add(event);
+        });
+        return events;
+    }
+}
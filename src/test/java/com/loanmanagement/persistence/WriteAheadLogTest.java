@@ -0,0 +1,240 @@
+package com.loanmanagement.persistence;
+
+import com.loanmanagement.ingest.ListFormat;
+import com.loanmanagement.model.ListType;
+import com.loanmanagement.model.UploadMode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class WriteAheadLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsBackCommittedEntries() throws IOException {
+        WriteAheadLog wal = open();
+        byte[] large = payload(200_000);
+        log(wal, 1, UploadMode.APPEND, "AccountID,Reason\n1001,Fraud\n".getBytes(StandardCharsets.UTF_8));
+        wal.logClear(2);
+        log(wal, 3, UploadMode.REPLACE, large);
+
+        try (WriteAheadLog.SegmentReader reader = wal.read(onlySegment(wal))) {
+            WriteAheadLog.LogEntry first = reader.next();
+            assertThat(first.getGeneration()).isEqualTo(1);
+            assertThat(first.getListType()).isEqualTo(ListType.STR);
+            assertThat(first.getUploadTimestamp()).isEqualTo(1001);
+            assertThat(first.getMode()).isEqualTo(UploadMode.APPEND);
+            assertThat(first.getFormat()).isEqualTo(ListFormat.CSV);
+            assertThat(new String(first.getPayload().readAllBytes(), StandardCharsets.UTF_8))
+                .isEqualTo("AccountID,Reason\n1001,Fraud\n");
+
+            WriteAheadLog.LogEntry clear = reader.next();
+            assertThat(clear.isClear()).isTrue();
+            assertThat(clear.getGeneration()).isEqualTo(2);
+            clear.skip();
+
+            WriteAheadLog.LogEntry replace = reader.next();
+            assertThat(replace.getMode()).isEqualTo(UploadMode.REPLACE);
+            assertThat(replace.getPayload().readAllBytes()).isEqualTo(large);
+
+            assertThat(reader.next()).isNull();
+        }
+        assertThat(wal.getLastCommittedGeneration()).isEqualTo(3);
+        assertThat(wal.getCommittedEntries()).isEqualTo(3);
+    }
+
+    @Test
+    void tornHeaderAtTheEndIsTruncatedAway() throws IOException {
+        WriteAheadLog wal = open();
+        log(wal, 1, UploadMode.APPEND, payload(1000));
+        Path segment = onlySegment(wal);
+        long committed = Files.size(segment);
+        log(wal, 2, UploadMode.APPEND, payload(1000));
+        truncate(segment, committed + WriteAheadLog.HEADER_BYTES / 2);
+
+        try (WriteAheadLog.SegmentReader reader = wal.read(segment)) {
+            reader.next().skip();
+            assertThat(reader.next()).isNull();
+        }
+        assertThat(Files.size(segment)).isEqualTo(committed);
+    }
+
+    @Test
+    void tornPayloadFailsVerificationAndCanBeTruncated() throws IOException {
+        WriteAheadLog wal = open();
+        log(wal, 1, UploadMode.APPEND, payload(1000));
+        Path segment = onlySegment(wal);
+        long committed = Files.size(segment);
+        log(wal, 2, UploadMode.APPEND, payload(100_000));
+        truncate(segment, committed + WriteAheadLog.HEADER_BYTES + 70_000);
+
+        try (WriteAheadLog.SegmentReader reader = wal.read(segment)) {
+            reader.next().skip();
+            WriteAheadLog.LogEntry torn = reader.next();
+            assertThat(torn.getGeneration()).isEqualTo(2);
+            assertThatThrownBy(torn::skip).isInstanceOf(IOException.class);
+            reader.truncateAtEntry();
+        }
+        assertThat(Files.size(segment)).isEqualTo(committed);
+    }
+
+    @Test
+    void corruptPayloadFailsVerification() throws IOException {
+        WriteAheadLog wal = open();
+        log(wal, 1, UploadMode.APPEND, payload(1000));
+        Path segment = onlySegment(wal);
+        byte[] bytes = Files.readAllBytes(segment);
+        bytes[WriteAheadLog.HEADER_BYTES + 10] ^= 1;
+        Files.write(segment, bytes);
+
+        try (WriteAheadLog.SegmentReader reader = wal.read(segment)) {
+            WriteAheadLog.LogEntry entry = reader.next();
+            assertThatThrownBy(entry::skip).isInstanceOf(IOException.class);
+        }
+    }
+
+    @Test
+    void abortedEntryLeavesNothingBehind() throws IOException {
+        WriteAheadLog wal = open();
+        log(wal, 1, UploadMode.APPEND, payload(1000));
+        Path segment = onlySegment(wal);
+        long committed = Files.size(segment);
+
+        WriteAheadLog.Entry entry = wal.beginUpload(2, ListType.CR, 2, UploadMode.APPEND, ListFormat.CSV);
+        entry.record(new ByteArrayInputStream(payload(100_000))).transferTo(OutputStream.nullOutputStream());
+        entry.abort();
+
+        assertThat(Files.size(segment)).isEqualTo(committed);
+        assertThat(wal.getLastCommittedGeneration()).isEqualTo(1);
+    }
+
+    @Test
+    void entryCanBeFinishedOnAnotherThread() throws Exception {
+        WriteAheadLog wal = open();
+        WriteAheadLog.Entry committed = wal.beginUpload(1, ListType.STR, 1, UploadMode.APPEND, ListFormat.CSV);
+        CompletableFuture.runAsync(() -> {
+            try {
+                committed.commit();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }).get();
+        WriteAheadLog.Entry aborted = assertTimeoutPreemptively(Duration.ofSeconds(5),
+            () -> wal.beginUpload(2, ListType.STR, 2, UploadMode.APPEND, ListFormat.CSV));
+        CompletableFuture.runAsync(aborted::abort).get();
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> wal.logClear(2));
+        assertThat(wal.getLastCommittedGeneration()).isEqualTo(2);
+    }
+
+    @Test
+    void rotationDoesNotWaitForAnOpenEntry() throws IOException {
+        WriteAheadLog wal = open();
+        long first = wal.rotate();
+        WriteAheadLog.Entry entry = wal.beginUpload(1, ListType.STR, 1, UploadMode.APPEND, ListFormat.CSV);
+
+        assertThat(assertTimeoutPreemptively(Duration.ofSeconds(5), wal::rotate)).isEqualTo(first);
+        entry.commit();
+        assertThat(wal.rotate()).isEqualTo(first + 1);
+    }
+
+    @Test
+    void failedTruncateRefusesFurtherAppends() throws IOException {
+        WriteAheadLog wal = open();
+        log(wal, 1, UploadMode.APPEND, payload(1000));
+        WriteAheadLog.Entry entry = wal.beginUpload(2, ListType.CR, 2, UploadMode.APPEND, ListFormat.CSV);
+        entry.record(new ByteArrayInputStream(payload(100_000))).transferTo(OutputStream.nullOutputStream());
+
+        // An interrupt closes the channel, so the truncate in abort fails
+        Thread.currentThread().interrupt();
+        try {
+            entry.abort();
+        } finally {
+            Thread.interrupted();
+        }
+
+        assertThat(wal.isFailed()).isTrue();
+        assertThatThrownBy(() -> wal.beginUpload(2, ListType.CR, 2, UploadMode.APPEND, ListFormat.CSV))
+            .isInstanceOf(IOException.class)
+            .hasMessageContaining("failed");
+        assertThatThrownBy(() -> wal.logClear(2)).isInstanceOf(IOException.class);
+        assertThatThrownBy(wal::rotate).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void findsCommittedEntriesAfterABadOne() throws IOException {
+        WriteAheadLog wal = open();
+        log(wal, 1, UploadMode.APPEND, payload(1000));
+        log(wal, 2, UploadMode.APPEND, payload(1000));
+        Path segment = onlySegment(wal);
+        byte[] bytes = Files.readAllBytes(segment);
+        bytes[WriteAheadLog.HEADER_BYTES + 10] ^= 1;
+        Files.write(segment, bytes);
+
+        try (WriteAheadLog.SegmentReader reader = wal.read(segment)) {
+            WriteAheadLog.LogEntry entry = reader.next();
+            assertThatThrownBy(entry::skip).isInstanceOf(IOException.class);
+            assertThat(reader.committedEntryFollows()).isTrue();
+        }
+
+        // Once the second entry is gone, the first is the torn tail
+        truncate(segment, bytes.length / 2);
+        try (WriteAheadLog.SegmentReader reader = wal.read(segment)) {
+            WriteAheadLog.LogEntry entry = reader.next();
+            assertThatThrownBy(entry::skip).isInstanceOf(IOException.class);
+            assertThat(reader.committedEntryFollows()).isFalse();
+        }
+        assertThat(wal.containsCommittedEntry(segment)).isFalse();
+    }
+
+    private WriteAheadLog open() throws IOException {
+        WriteAheadLog wal = new WriteAheadLog(true, directory.toString(), false);
+        wal.open();
+        return wal;
+    }
+
+    private static void log(WriteAheadLog wal, long generation, UploadMode mode, byte[] payload) throws IOException {
+        WriteAheadLog.Entry entry = wal.beginUpload(generation, ListType.STR, 1000 + generation, mode, ListFormat.CSV);
+        entry.record(new ByteArrayInputStream(payload)).transferTo(OutputStream.nullOutputStream());
+        entry.commit();
+    }
+
+    private static Path onlySegment(WriteAheadLog wal) throws IOException {
+        List<Path> segments = wal.segments();
+        assertThat(segments).hasSize(1);
+        return segments.get(0);
+    }
+
+    private static void truncate(Path segment, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+    }
+
+    private static byte[] payload(int size) {
+        byte[] bytes = new byte[size];
+        Arrays.fill(bytes, (byte) 'x');
+        for (int i = 0; i < size; i += 97) {
+            bytes[i] = (byte) ('0' + i % 10);
+        }
+        return bytes;
+    }
+}
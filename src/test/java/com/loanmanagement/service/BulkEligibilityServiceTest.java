@@ -0,0 +1,154 @@
+package com.loanmanagement.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.loanmanagement.ingest.IngestPipeline;
+import com.loanmanagement.ingest.IngestProgress;
+import com.loanmanagement.metrics.EligibilityMetrics;
+import com.loanmanagement.model.ListType;
+import com.loanmanagement.model.UploadMode;
+import com.loanmanagement.persistence.WriteAheadLog;
+import com.loanmanagement.store.AccountSharding;
+import com.loanmanagement.store.CompactAccountStateStore;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BulkEligibilityServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private CompactAccountStateStore store;
+    private IngestPipeline pipeline;
+    private VerdictEventService verdictEvents;
+    private EligibilityService service;
+    private BulkEligibilityService bulk;
+
+    @BeforeEach
+    void setUp() {
+        AccountSharding sharding = new AccountSharding(4);
+        store = new CompactAccountStateStore(sharding, false, 1000, 10);
+        pipeline = new IngestPipeline(sharding, 2, 1 << 16, 8);
+        verdictEvents = new VerdictEventService(store, objectMapper, 1000, 4, 15000);
+        service = new EligibilityService(store, pipeline, new WriteAheadLog(false, directory.toString(), false),
+            new EligibilityMetrics(true, store), verdictEvents, false, 20, "");
+        // Small batches on several threads, so results complete out of order
+        bulk = new BulkEligibilityService(service, store, objectMapper, 7, 4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        bulk.shutdown();
+        verdictEvents.shutdown();
+        pipeline.shutdown();
+        store.shutdown();
+    }
+
+    @Test
+    void resultsFollowTheInputOrder() throws IOException {
+        StringBuilder listed = new StringBuilder();
+        for (int i = 0; i < 1000; i += 3) {
+            listed.append(i).append(",Suspicious\n");
+        }
+        upload(ListType.STR, listed.toString());
+
+        StringBuilder input = new StringBuilder();
+        List<String> expected = new ArrayList<>();
+        for (int i = 999; i >= 0; i--) {
+            input.append(i).append('\n');
+            expected.add(Integer.toString(i));
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        long checked = bulk.checkAll(stream(input.toString()), BulkEligibilityService.InputFormat.LINES, output,
+            BulkEligibilityService.OutputFormat.NDJSON);
+
+        assertThat(checked).isEqualTo(1000);
+        List<JsonNode> results = ndjson(output);
+        assertThat(results).extracting(result -> result.get("accountId").asText()).containsExactlyElementsOf(expected);
+        for (JsonNode result : results) {
+            assertThat(result.get("eligible").asBoolean()).isEqualTo(result.get("accountId").asInt() % 3 != 0);
+        }
+    }
+
+    @Test
+    void idsAreNormalizedAsForASingleCheck() throws IOException {
+        upload(ListType.CR, "1001,Control\nACC-1,Control\n");
+
+        String json = "[\" 1001 \", 1001, {\"accountId\": \" ACC-1\"}, null, \"  \", [\"nested\"], {\"other\": 1},"
+            + " \"2002\"]";
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        bulk.checkAll(stream(json), BulkEligibilityService.InputFormat.JSON, output,
+            BulkEligibilityService.OutputFormat.NDJSON);
+
+        List<JsonNode> results = ndjson(output);
+        assertThat(results).extracting(result -> result.get("accountId").asText())
+            .containsExactly("1001", "1001", "ACC-1", "2002");
+        assertThat(results).extracting(result -> result.get("eligible").asBoolean())
+            .containsExactly(false, false, false, true);
+        for (JsonNode result : results) {
+            String accountId = result.get("accountId").asText();
+            assertThat(result.get("eligible").asBoolean())
+                .isEqualTo(service.checkEligibility(" " + accountId + " ").isEligible());
+        }
+
+        output.reset();
+        bulk.checkAll(stream("AccountID\n 1001\n\n,\nACC-1 ,extra\n"), BulkEligibilityService.InputFormat.CSV, output,
+            BulkEligibilityService.OutputFormat.NDJSON);
+        assertThat(ndjson(output)).extracting(result -> result.get("accountId").asText())
+            .containsExactly("1001", "ACC-1");
+    }
+
+    @Test
+    void csvOutputHasOneRowPerReason() throws IOException {
+        upload(ListType.STR, "1001,Suspicious\n");
+        upload(ListType.FDM, "1001,Fraud\n");
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        bulk.checkAll(stream("1001\n2002\n"), BulkEligibilityService.InputFormat.LINES, output,
+            BulkEligibilityService.OutputFormat.CSV);
+
+        List<CSVRecord> rows = CSVFormat.DEFAULT.withFirstRecordAsHeader()
+            .parse(new StringReader(output.toString(StandardCharsets.UTF_8))).getRecords();
+        assertThat(rows).extracting(row -> row.get("AccountID")).containsExactly("1001", "1001", "2002");
+        assertThat(rows).extracting(row -> row.get("ListType")).containsExactly("STR", "FDM", "");
+        assertThat(rows).extracting(row -> row.get("Reason")).containsExactly("Suspicious", "Fraud", "");
+        assertThat(rows).extracting(row -> row.get("Eligible")).containsExactly("false", "false", "true");
+    }
+
+    private void upload(ListType listType, String rows) {
+        byte[] file = ("AccountID,Reason\n" + rows).getBytes(StandardCharsets.UTF_8);
+        assertThat(service.uploadList(listType, UploadMode.APPEND, new ByteArrayInputStream(file),
+            new IngestProgress()).isSuccess()).isTrue();
+    }
+
+    private static ByteArrayInputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private List<JsonNode> ndjson(ByteArrayOutputStream output) throws IOException {
+        List<JsonNode> results = new ArrayList<>();
+        for (String line : output.toString(StandardCharsets.UTF_8).split("\n")) {
+            if (!line.isEmpty()) {
+                results.add(objectMapper.readTree(line));
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,282 @@
+package com.loanmanagement.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.loanmanagement.dto.EligibilityCheckResponse;
+import com.loanmanagement.dto.ListUploadResponse;
+import com.loanmanagement.ingest.IngestPipeline;
+import com.loanmanagement.ingest.ListFormat;
+import com.loanmanagement.ingest.IngestProgress;
+import com.loanmanagement.metrics.EligibilityMetrics;
+import com.loanmanagement.model.EligibilityRecord;
+import com.loanmanagement.model.ListType;
+import com.loanmanagement.model.UploadMode;
+import com.loanmanagement.persistence.WriteAheadLog;
+import com.loanmanagement.store.AccountSharding;
+import com.loanmanagement.store.CompactAccountStateStore;
+import com.loanmanagement.store.Generation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EligibilityServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private CompactAccountStateStore store;
+    private IngestPipeline pipeline;
+    private VerdictEventService verdictEvents;
+    private EligibilityService service;
+
+    @BeforeEach
+    void setUp() {
+        AccountSharding sharding = new AccountSharding(4);
+        store = new CompactAccountStateStore(sharding, false, 1000, 10);
+        pipeline = new IngestPipeline(sharding, 2, 1 << 16, 8);
+        verdictEvents = new VerdictEventService(store, new ObjectMapper(), 1000, 4, 15000);
+        service = new EligibilityService(store, pipeline, new WriteAheadLog(false, directory.toString(), false),
+            new EligibilityMetrics(true, store), verdictEvents, true, 20, "");
+    }
+
+    @AfterEach
+    void tearDown() {
+        verdictEvents.shutdown();
+        pipeline.shutdown();
+        store.shutdown();
+    }
+
+    @Test
+    void replaceReportsTheDifferenceAgainstTheCurrentList() {
+        upload(ListType.CR, UploadMode.APPEND, "1001,Kept\n1002,Old\n1003,Dropped\n");
+
+        ListUploadResponse response = upload(ListType.CR, UploadMode.REPLACE, "1001,Kept\n1002,New\n1004,Added\n");
+
+        assertThat(response.getAddedRecords()).isEqualTo(1);
+        assertThat(response.getChangedRecords()).isEqualTo(1);
+        assertThat(response.getUnchangedRecords()).isEqualTo(1);
+        assertThat(response.getRemovedRecords()).isEqualTo(1);
+        assertThat(reason("1002")).isEqualTo("New");
+        assertThat(service.checkEligibility("1003").isEligible()).isTrue();
+        assertThat(service.checkEligibility("1004").isEligible()).isFalse();
+    }
+
+    @Test
+    void replaceLeavesOtherListsAlone() {
+        upload(ListType.CR, UploadMode.APPEND, "1001,Control\n");
+        upload(ListType.STR, UploadMode.APPEND, "1001,Suspicious\n");
+
+        ListUploadResponse response = upload(ListType.CR, UploadMode.REPLACE, "2001,Control\n");
+
+        assertThat(response.getRemovedRecords()).isEqualTo(1);
+        EligibilityCheckResponse check = service.checkEligibility("1001");
+        assertThat(check.isEligible()).isFalse();
+        assertThat(check.getIneligibilityReasons())
+            .extracting(EligibilityCheckResponse.IneligibilityReason::getListType)
+            .containsExactly(ListType.STR);
+    }
+
+    @Test
+    void repeatedRowsInAReplaceFileCountOnceAndTheFirstWins() {
+        upload(ListType.FDM, UploadMode.APPEND, "1001,Listed\n");
+
+        ListUploadResponse response = upload(ListType.FDM, UploadMode.REPLACE,
+            "1001,Listed\n1001,Other\nACC-1,First\nACC-1,Second\n0042,Padded\n0042,Again\n");
+
+        assertThat(response.getUnchangedRecords()).isEqualTo(1);
+        assertThat(response.getChangedRecords()).isZero();
+        assertThat(response.getAddedRecords()).isEqualTo(2);
+        assertThat(response.getRemovedRecords()).isZero();
+        assertThat(reason("1001")).isEqualTo("Listed");
+        assertThat(reason("ACC-1")).isEqualTo("First");
+        assertThat(reason("0042")).isEqualTo("Padded");
+    }
+
+    @Test
+    void removalByReplaceMovesTheLastModifiedTime() throws InterruptedException {
+        upload(ListType.SST, UploadMode.APPEND, "1001,Support\n");
+        EligibilityService.CheckValidator before = validator("1001");
+        LocalDateTime listedAt = service.getAccountRecords("1001").get(ListType.SST).getUploadTimestamp();
+
+        Thread.sleep(5);
+        upload(ListType.SST, UploadMode.REPLACE, "2001,Support\n");
+        EligibilityService.CheckValidator after = validator("1001");
+
+        assertThat(service.checkEligibility("1001").isEligible()).isTrue();
+        assertThat(after.getLastModified()).isGreaterThan(before.getLastModified());
+        assertThat(after.getETag()).isNotEqualTo(before.getETag());
+        // The entry still reports when the account was listed
+        EligibilityRecord record = service.getAccountRecords("1001").get(ListType.SST);
+        assertThat(record.isActive()).isFalse();
+        assertThat(record.getUploadTimestamp()).isEqualTo(listedAt);
+    }
+
+    @Test
+    void conditionalChecksAnswerNotModifiedUntilTheAccountChanges() {
+        upload(ListType.CR, UploadMode.APPEND, "1001,Control\n");
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        assertThat(check("1001", get("1001"), first)).isNotNull();
+        String eTag = first.getHeader(HttpHeaders.ETAG);
+        long lastModified = first.getDateHeader(HttpHeaders.LAST_MODIFIED);
+        assertThat(eTag).startsWith("W/\"");
+
+        // Uploads that leave the account alone keep its validator
+        upload(ListType.CR, UploadMode.APPEND, "2002,Control\n");
+        MockHttpServletRequest revalidate = get("1001");
+        revalidate.addHeader(HttpHeaders.IF_NONE_MATCH, eTag);
+        MockHttpServletResponse notModified = new MockHttpServletResponse();
+        assertThat(check("1001", revalidate, notModified)).isNull();
+        assertThat(notModified.getStatus()).isEqualTo(304);
+        MockHttpServletRequest sinceLastModified = get("1001");
+        sinceLastModified.addHeader(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+        assertThat(check("1001", sinceLastModified, new MockHttpServletResponse())).isNull();
+
+        // Unknown accounts share one validator
+        assertThat(validator("3003").getETag()).isEqualTo(validator("4004").getETag());
+        assertThat(validator("3003").getLastModified()).isEqualTo(-1);
+
+        upload(ListType.STR, UploadMode.APPEND, "1001,Suspicious\n");
+        MockHttpServletRequest stale = get("1001");
+        stale.addHeader(HttpHeaders.IF_NONE_MATCH, eTag);
+        MockHttpServletResponse changed = new MockHttpServletResponse();
+        EligibilityCheckResponse response = check("1001", stale, changed);
+        assertThat(response).isNotNull();
+        assertThat(response.getIneligibilityReasons()).hasSize(2);
+        assertThat(changed.getHeader(HttpHeaders.ETAG)).isNotEqualTo(eTag);
+    }
+
+    @Test
+    void delistsNewerThanTheListingMakeTheAccountEligible() throws IOException {
+        replay(ListType.STR, 100, "1001,Suspicious\n1002,Suspicious\n");
+        replay(ListType.D_STR, 200, "1001,Reviewed\n");
+        assertThat(service.checkEligibility("1001").isEligible()).isTrue();
+        assertThat(service.checkEligibility("1002").isEligible()).isFalse();
+
+        // Listed again, but still before the delist
+        replay(ListType.STR, 150, "1001,Suspicious\n");
+        assertThat(service.checkEligibility("1001").isEligible()).isTrue();
+        replay(ListType.STR, 300, "1001,Suspicious again\n");
+        assertThat(reason("1001")).isEqualTo("Suspicious again");
+
+        // A delist for another list leaves the verdict alone
+        replay(ListType.D_CR, 400, "1002,Cleared\n");
+        assertThat(service.checkEligibility("1002").getIneligibilityReasons())
+            .extracting(EligibilityCheckResponse.IneligibilityReason::getListType)
+            .containsExactly(ListType.STR);
+    }
+
+    @Test
+    void maintainedVerdictsMatchTheListingRules() throws IOException {
+        Random random = new Random(11);
+        ListType[] listTypes = ListType.values();
+        Map<String, long[]> listedAt = new HashMap<>();
+        Map<String, long[]> delistedAt = new HashMap<>();
+        for (int upload = 0; upload < 200; upload++) {
+            ListType listType = listTypes[random.nextInt(listTypes.length)];
+            long timestamp = 1000 + upload;
+            StringBuilder rows = new StringBuilder();
+            for (int row = 0; row < 5; row++) {
+                String accountId = Integer.toString(random.nextInt(30));
+                rows.append(accountId).append(",Upload ").append(upload).append('\n');
+                Map<String, long[]> times = listType.isDelist() ? delistedAt : listedAt;
+                ListType listed = listType.isDelist() ? listType.getIneligibilityType() : listType;
+                long[] byList = times.computeIfAbsent(accountId, id -> newTimes());
+                byList[listed.ordinal()] = timestamp;
+            }
+            replay(listType, timestamp, rows.toString());
+        }
+
+        for (int i = 0; i < 30; i++) {
+            String accountId = Integer.toString(i);
+            long[] listed = listedAt.getOrDefault(accountId, newTimes());
+            long[] delisted = delistedAt.getOrDefault(accountId, newTimes());
+            List<ListType> expected = new ArrayList<>();
+            for (ListType listType : listTypes) {
+                if (!listType.isDelist() && listed[listType.ordinal()] > delisted[listType.ordinal()]) {
+                    expected.add(listType);
+                }
+            }
+            EligibilityCheckResponse check = service.checkEligibility(accountId);
+            assertThat(check.isEligible()).as(accountId).isEqualTo(expected.isEmpty());
+            if (!expected.isEmpty()) {
+                assertThat(check.getIneligibilityReasons())
+                    .extracting(EligibilityCheckResponse.IneligibilityReason::getListType)
+                    .as(accountId)
+                    .containsExactlyElementsOf(expected);
+            }
+        }
+    }
+
+    private static long[] newTimes() {
+        long[] times = new long[ListType.values().length];
+        Arrays.fill(times, Long.MIN_VALUE);
+        return times;
+    }
+
+    /**
+     * Apply an upload at a chosen time, as recovery replays a logged one
+     */
+    private void replay(ListType listType, long timestamp, String rows) throws IOException {
+        long generation;
+        try (Generation current = store.snapshot()) {
+            generation = current.getNumber() + 1;
+        }
+        byte[] file = ("AccountID,Reason\n" + rows).getBytes(StandardCharsets.UTF_8);
+        service.replayUpload(generation, listType, UploadMode.APPEND, ListFormat.CSV, timestamp,
+            new ByteArrayInputStream(file));
+    }
+
+    private ListUploadResponse upload(ListType listType, UploadMode mode, String rows) {
+        byte[] file = ("AccountID,Reason\n" + rows).getBytes(StandardCharsets.UTF_8);
+        ListUploadResponse response = service.uploadList(listType, mode, new ByteArrayInputStream(file),
+            new IngestProgress());
+        assertThat(response.isSuccess()).as(response.getMessage()).isTrue();
+        return response;
+    }
+
+    private String reason(String accountId) {
+        return service.checkEligibility(accountId).getIneligibilityReasons().get(0).getReason();
+    }
+
+    private static MockHttpServletRequest get(String accountId) {
+        return new MockHttpServletRequest("GET", "/api/loan-eligibility/check-eligibility/" + accountId);
+    }
+
+    /**
+     * A GET check as the controller makes it, with the request's conditional headers
+     */
+    private EligibilityCheckResponse check(String accountId, MockHttpServletRequest request,
+                                           MockHttpServletResponse response) {
+        ServletWebRequest webRequest = new ServletWebRequest(request, response);
+        return service.checkEligibility(accountId,
+            validator -> webRequest.checkNotModified(validator.getETag(), validator.getLastModified()));
+    }
+
+    private EligibilityService.CheckValidator validator(String accountId) {
+        AtomicReference<EligibilityService.CheckValidator> seen = new AtomicReference<>();
+        service.checkEligibility(accountId, validator -> {
+            seen.set(validator);
+            return false;
+        });
+        return seen.get();
+    }
+}
@@ -0,0 +1,148 @@
+package com.loanmanagement.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.loanmanagement.dto.RecordPage;
+import com.loanmanagement.model.EligibilityRecord;
+import com.loanmanagement.model.ListType;
+import com.loanmanagement.store.AccountSharding;
+import com.loanmanagement.store.CompactAccountStateStore;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecordExportServiceTest {
+
+    private static final RecordExportService.Filter EVERYTHING = new RecordExportService.Filter(null, null, null, null);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final CompactAccountStateStore store = new CompactAccountStateStore(new AccountSharding(4), false, 1000, 10);
+    private final RecordExportService exports = new RecordExportService(store, objectMapper, 100, 2, 300);
+
+    @AfterEach
+    void shutdown() {
+        exports.shutdown();
+        store.shutdown();
+    }
+
+    @Test
+    void cursorPagesComeFromOneGeneration() {
+        // Two records per account, so some accounts straddle a page boundary
+        write(0, 500, ListType.STR, 1000);
+        write(0, 500, ListType.CR, 1000);
+
+        RecordPage page = exports.openPage(EVERYTHING, 33);
+        long generation = page.getGeneration();
+        // Later uploads must not show up in, or shift, the open cursor
+        write(500, 800, ListType.STR, 2000);
+        write(0, 500, ListType.FDM, 2000);
+
+        List<EligibilityRecord> records = new ArrayList<>(page.getRecords());
+        int pages = 1;
+        while (page.getNextCursor() != null) {
+            page = exports.nextPage(page.getNextCursor(), 33);
+            assertThat(page.getGeneration()).isEqualTo(generation);
+            assertThat(page.getRecords().size()).isLessThanOrEqualTo(33);
+            records.addAll(page.getRecords());
+            pages++;
+        }
+
+        assertThat(pages).isEqualTo((1000 + 32) / 33);
+        Set<String> distinct = new HashSet<>();
+        for (EligibilityRecord record : records) {
+            assertThat(record.getListType()).isIn(ListType.STR, ListType.CR);
+            distinct.add(record.getAccountId() + "/" + record.getListType());
+        }
+        assertThat(distinct).hasSize(1000);
+        assertThat(exports.getOpenCursorCount()).isZero();
+        assertThat(exports.nextPage("unknown", 10)).isNull();
+    }
+
+    @Test
+    void pageSizeIsCappedAndOldestCursorsAreClosed() {
+        write(0, 300, ListType.STR, 1000);
+
+        RecordPage first = exports.openPage(EVERYTHING, 10_000);
+        assertThat(first.getRecords()).hasSize(100);
+        RecordPage second = exports.openPage(EVERYTHING, 10);
+        RecordPage third = exports.openPage(EVERYTHING, 10);
+
+        // At most two cursors stay open, so the least recently used one went
+        assertThat(exports.getOpenCursorCount()).isEqualTo(2);
+        assertThat(exports.nextPage(first.getNextCursor(), 10)).isNull();
+        assertThat(exports.nextPage(second.getNextCursor(), 10).getRecords()).hasSize(10);
+        assertThat(exports.closeCursor(third.getNextCursor())).isTrue();
+        assertThat(exports.closeCursor(third.getNextCursor())).isFalse();
+        assertThat(exports.getOpenCursorCount()).isEqualTo(1);
+    }
+
+    @Test
+    void exportsStreamTheFilteredRecords() throws IOException {
+        write(0, 200, ListType.STR, toMillis(LocalDateTime.of(2024, 1, 1, 0, 0)));
+        write(100, 300, ListType.CR, toMillis(LocalDateTime.of(2024, 6, 1, 0, 0)));
+        deactivate(0, 50, ListType.STR);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        assertThat(exports.export(EVERYTHING, output, RecordExportService.OutputFormat.NDJSON)).isEqualTo(400);
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : output.toString(StandardCharsets.UTF_8).split("\n")) {
+            lines.add(objectMapper.readTree(line));
+        }
+        assertThat(lines).hasSize(400);
+        assertThat(lines).filteredOn(line -> !line.get("active").asBoolean()).hasSize(50);
+
+        output.reset();
+        RecordExportService.Filter activeStr = new RecordExportService.Filter(Set.of(ListType.STR), true, null, null);
+        assertThat(exports.export(activeStr, output, RecordExportService.OutputFormat.CSV)).isEqualTo(150);
+        List<CSVRecord> rows = CSVFormat.DEFAULT.withFirstRecordAsHeader()
+            .parse(new StringReader(output.toString(StandardCharsets.UTF_8))).getRecords();
+        assertThat(rows).hasSize(150);
+        assertThat(rows).allSatisfy(row -> {
+            assertThat(row.get("ListType")).isEqualTo("STR");
+            assertThat(row.get("Active")).isEqualTo("true");
+        });
+
+        // The window includes its start and excludes its end
+        RecordExportService.Filter june = new RecordExportService.Filter(null, null,
+            LocalDateTime.of(2024, 6, 1, 0, 0), LocalDateTime.of(2024, 7, 1, 0, 0));
+        assertThat(exports.export(june, new ByteArrayOutputStream(), RecordExportService.OutputFormat.CSV))
+            .isEqualTo(200);
+        RecordExportService.Filter beforeJune = new RecordExportService.Filter(null, null,
+            null, LocalDateTime.of(2024, 6, 1, 0, 0));
+        assertThat(exports.export(beforeJune, new ByteArrayOutputStream(), RecordExportService.OutputFormat.CSV))
+            .isEqualTo(200);
+    }
+
+    private void write(int from, int to, ListType listType, long timestamp) {
+        store.beginGeneration();
+        for (int i = from; i < to; i++) {
+            store.update(Integer.toString(i), state -> state.with(listType, timestamp, "Reason " + listType));
+        }
+        store.publishGeneration();
+    }
+
+    private void deactivate(int from, int to, ListType listType) {
+        store.beginGeneration();
+        for (int i = from; i < to; i++) {
+            store.update(Integer.toString(i), state -> state.deactivate(listType));
+        }
+        store.publishGeneration();
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return EligibilityService.toEpochMillis(time);
+    }
+}
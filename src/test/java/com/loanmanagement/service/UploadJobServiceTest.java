@@ -0,0 +1,178 @@
+package com.loanmanagement.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.loanmanagement.dto.ListUploadResponse;
+import com.loanmanagement.dto.UploadJobStatus;
+import com.loanmanagement.ingest.IngestPipeline;
+import com.loanmanagement.ingest.IngestProgress;
+import com.loanmanagement.metrics.EligibilityMetrics;
+import com.loanmanagement.model.ListType;
+import com.loanmanagement.model.UploadMode;
+import com.loanmanagement.persistence.WriteAheadLog;
+import com.loanmanagement.store.AccountSharding;
+import com.loanmanagement.store.CompactAccountStateStore;
+import com.loanmanagement.store.Generation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UploadJobServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private CompactAccountStateStore store;
+    private IngestPipeline pipeline;
+    private VerdictEventService verdictEvents;
+    private BlockingEligibilityService service;
+    private UploadJobService jobs;
+
+    /**
+     * Holds each upload until it is cancelled, then runs it for real
+     */
+    private static class BlockingEligibilityService extends EligibilityService {
+        final CountDownLatch started = new CountDownLatch(1);
+        volatile boolean blocking = true;
+
+        BlockingEligibilityService(CompactAccountStateStore store, IngestPipeline pipeline, WriteAheadLog writeAheadLog,
+                                   VerdictEventService verdictEvents) {
+            super(store, pipeline, writeAheadLog, new EligibilityMetrics(true, store), verdictEvents, false, 20, "");
+        }
+
+        @Override
+        public ListUploadResponse uploadList(ListType listType, UploadMode mode, Path file, IngestProgress progress) {
+            started.countDown();
+            while (blocking && !progress.isCancelled()) {
+                Thread.onSpinWait();
+            }
+            return super.uploadList(listType, mode, file, progress);
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        AccountSharding sharding = new AccountSharding(4);
+        store = new CompactAccountStateStore(sharding, false, 1000, 10);
+        pipeline = new IngestPipeline(sharding, 2, 1 << 12, 8);
+        verdictEvents = new VerdictEventService(store, new ObjectMapper(), 1000, 4, 15000);
+        service = new BlockingEligibilityService(store, pipeline,
+            new WriteAheadLog(false, directory.toString(), false), verdictEvents);
+        jobs = new UploadJobService(service, 1, 10, directory.resolve("spool").toString());
+    }
+
+    @AfterEach
+    void tearDown() {
+        jobs.shutdown();
+        verdictEvents.shutdown();
+        pipeline.shutdown();
+        store.shutdown();
+    }
+
+    @Test
+    void cancelledJobsApplyNothingAndFreeTheirSlot() throws Exception {
+        UploadJobStatus running = jobs.submit(ListType.STR, UploadMode.APPEND, file("1001,Suspicious\n"));
+        assertThat(service.started.await(10, TimeUnit.SECONDS)).isTrue();
+        // Only one job runs at a time, so this one waits its turn
+        UploadJobStatus queued = jobs.submit(ListType.CR, UploadMode.APPEND, file("1002,Control\n"));
+        assertThat(jobs.getStatus(queued.getJobId()).getState()).isEqualTo("QUEUED");
+
+        jobs.cancel(queued.getJobId());
+        UploadJobStatus queuedResult = awaitFinished(queued.getJobId());
+        assertThat(queuedResult.getState()).isEqualTo("CANCELLED");
+        assertThat(queuedResult.getStartedAt()).isNull();
+        assertThat(jobs.getStatus(running.getJobId()).getState()).isEqualTo("RUNNING");
+
+        jobs.cancel(running.getJobId());
+        UploadJobStatus runningResult = awaitFinished(running.getJobId());
+        assertThat(runningResult.getState()).isEqualTo("CANCELLED");
+        assertThat(runningResult.getResult().getMessage()).isEqualTo("Upload cancelled; no records were applied");
+
+        assertThat(service.checkEligibility("1001").isEligible()).isTrue();
+        assertThat(service.checkEligibility("1002").isEligible()).isTrue();
+        try (Stream<Path> spooled = Files.list(directory.resolve("spool"))) {
+            assertThat(spooled).isEmpty();
+        }
+
+        // The slot is free again and later jobs run normally
+        service.blocking = false;
+        UploadJobStatus next = jobs.submit(ListType.CR, UploadMode.APPEND, file("1002,Control\n"));
+        assertThat(awaitFinished(next.getJobId()).getState()).isEqualTo("SUCCEEDED");
+        assertThat(service.checkEligibility("1002").isEligible()).isFalse();
+        assertThat(jobs.listJobs()).extracting(UploadJobStatus::getJobId)
+            .containsExactly(next.getJobId(), queued.getJobId(), running.getJobId());
+    }
+
+    @Test
+    void cancellingPartwayThroughAbortsTheGeneration() {
+        StringBuilder rows = new StringBuilder("AccountID,Reason\n");
+        for (int i = 0; i < 100_000; i++) {
+            rows.append(i).append(",Suspicious\n");
+        }
+        IngestProgress progress = new IngestProgress();
+        long generationBefore;
+        try (Generation generation = store.snapshot()) {
+            generationBefore = generation.getNumber();
+        }
+
+        // Cancel once a good part of the file has been read, while rows are being applied
+        InputStream input = new FilterInputStream(new ByteArrayInputStream(
+            rows.toString().getBytes(StandardCharsets.UTF_8))) {
+            long read;
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                int count = super.read(buffer, offset, length);
+                read += Math.max(count, 0);
+                if (read > 200_000) {
+                    progress.cancel();
+                }
+                return count;
+            }
+        };
+        ListUploadResponse response = service.uploadList(ListType.STR, UploadMode.APPEND, input, progress);
+
+        assertThat(response.isSuccess()).isFalse();
+        assertThat(response.getMessage()).isEqualTo("Upload cancelled; no records were applied");
+        assertThat(progress.getBytesRead()).isGreaterThan(0);
+        try (Generation generation = store.snapshot()) {
+            assertThat(generation.getNumber()).isEqualTo(generationBefore);
+            assertThat(generation.getAccountCount()).isZero();
+        }
+
+        ListUploadResponse retried = service.uploadList(ListType.STR, UploadMode.APPEND,
+            new ByteArrayInputStream(rows.toString().getBytes(StandardCharsets.UTF_8)), new IngestProgress());
+        assertThat(retried.isSuccess()).isTrue();
+        assertThat(retried.getProcessedRecords()).isEqualTo(100_000);
+    }
+
+    private UploadJobStatus awaitFinished(String jobId) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        UploadJobStatus status = jobs.getStatus(jobId);
+        while (status.getFinishedAt() == null && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            status = jobs.getStatus(jobId);
+        }
+        assertThat(status.getFinishedAt()).as("job %s finished", jobId).isNotNull();
+        return status;
+    }
+
+    private static MockMultipartFile file(String rows) {
+        return new MockMultipartFile("file", "list.csv", "text/csv",
+            ("AccountID,Reason\n" + rows).getBytes(StandardCharsets.UTF_8));
+    }
+}
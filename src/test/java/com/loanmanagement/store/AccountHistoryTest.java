@@ -0,0 +1,173 @@
+package com.loanmanagement.store;
+
+import com.loanmanagement.model.ListType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AccountHistoryTest {
+
+    private static final ListType[] LISTS = {ListType.STR, ListType.CR, ListType.MULTIPLE_ACCOUNT};
+
+    /**
+     * An event as recorded, with the listing in force after it
+     */
+    private static final class Expected {
+        final long timestamp;
+        final ListType listType;
+        final int verdictMask;
+        final String reason;
+        final long[] listedAt;
+        final String[] reasons;
+
+        Expected(long timestamp, ListType listType, int verdictMask, String reason, long[] listedAt, String[] reasons) {
+            this.timestamp = timestamp;
+            this.listType = listType;
+            this.verdictMask = verdictMask;
+            this.reason = reason;
+            this.listedAt = listedAt.clone();
+            this.reasons = reasons.clone();
+        }
+    }
+
+    @Test
+    void decodesEveryEventAcrossCheckpoints() {
+        List<Expected> expected = new ArrayList<>();
+        byte[] history = recordEvents(50, expected);
+
+        assertThat(AccountHistory.size(history)).isEqualTo(50);
+        // Deltas keep most events to a few bytes despite epoch-millis times
+        assertThat(history.length).isLessThan(50 * 8);
+
+        List<Expected> decoded = new ArrayList<>();
+        AccountHistory.forEach(history, (timestamp, listType, verdictMask, reason) ->
+            decoded.add(new Expected(timestamp, listType, verdictMask, reason, new long[0], new String[0])));
+        assertThat(decoded).hasSize(expected.size());
+        for (int i = 0; i < decoded.size(); i++) {
+            assertThat(decoded.get(i).timestamp).isEqualTo(expected.get(i).timestamp);
+            assertThat(decoded.get(i).listType).isEqualTo(expected.get(i).listType);
+            assertThat(decoded.get(i).verdictMask).isEqualTo(expected.get(i).verdictMask);
+            assertThat(decoded.get(i).reason).isEqualTo(expected.get(i).reason);
+        }
+    }
+
+    @Test
+    void pointInTimeLookupsMatchEveryEvent() {
+        List<Expected> expected = new ArrayList<>();
+        byte[] history = recordEvents(70, expected);
+
+        assertThat(AccountHistory.at(history, expected.get(0).timestamp - 1)).isNull();
+        for (int i = 0; i < expected.size(); i++) {
+            Expected event = expected.get(i);
+            long next = i + 1 < expected.size() ? expected.get(i + 1).timestamp : event.timestamp + 1000;
+            for (long asOf : new long[]{event.timestamp, (event.timestamp + next - 1) / 2, next - 1}) {
+                AccountHistory.PointInTime point = AccountHistory.at(history, asOf);
+                assertThat(point.getTimestamp()).isEqualTo(event.timestamp);
+                assertThat(point.getVerdictMask()).isEqualTo(event.verdictMask);
+                assertThat(point.isEligible()).isEqualTo(event.verdictMask == 0);
+                for (ListType listType : LISTS) {
+                    if ((event.verdictMask & (1 << listType.ordinal())) != 0) {
+                        assertThat(point.getListedAt(listType)).isEqualTo(event.listedAt[listType.ordinal()]);
+                        assertThat(point.getReason(listType)).isEqualTo(event.reasons[listType.ordinal()]);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void recordingNothingNewKeepsTheSameArray() {
+        int reason = ReasonDictionary.encode(ListType.STR, "Suspicious");
+        int mask = 1 << ListType.STR.ordinal();
+        byte[] history = AccountHistory.record(null, 1000, ListType.STR, mask, reason);
+
+        assertThat(AccountHistory.record(history, 2000, ListType.STR, mask, reason)).isSameAs(history);
+        // Delists and other lists carry no reason, so only a verdict change counts
+        assertThat(AccountHistory.record(history, 2000, ListType.D_CR, mask, -1)).isSameAs(history);
+        assertThat(AccountHistory.record(null, 1000, ListType.CR, 0, -1)).isNull();
+
+        byte[] relisted = AccountHistory.record(history, 3000, ListType.STR, mask,
+            ReasonDictionary.encode(ListType.STR, "Suspicious again"));
+        assertThat(relisted).isNotSameAs(history);
+        assertThat(AccountHistory.size(relisted)).isEqualTo(2);
+        AccountHistory.PointInTime point = AccountHistory.at(relisted, 3000);
+        assertThat(point.getReason(ListType.STR)).isEqualTo("Suspicious again");
+        assertThat(point.getListedAt(ListType.STR)).isEqualTo(3000);
+    }
+
+    @Test
+    void timeNeverStepsBackwards() {
+        int strMask = 1 << ListType.STR.ordinal();
+        byte[] history = AccountHistory.record(null, 5000, ListType.STR, strMask,
+            ReasonDictionary.encode(ListType.STR, "Listed"));
+        history = AccountHistory.record(history, 4000, ListType.D_STR, 0, -1);
+
+        List<Long> times = new ArrayList<>();
+        AccountHistory.forEach(history, (timestamp, listType, verdictMask, reason) -> times.add(timestamp));
+        assertThat(times).containsExactly(5000L, 5000L);
+        assertThat(AccountHistory.lastTimestamp(history)).isEqualTo(5000);
+        assertThat(AccountHistory.lastTimestamp(null)).isEqualTo(Long.MIN_VALUE);
+        assertThat(AccountHistory.at(history, 5000).isEligible()).isTrue();
+    }
+
+    @Test
+    void reasonsAreDictionaryCodesThatDecodeBack() {
+        int first = ReasonDictionary.encode(ListType.FDM, "Shared device");
+        int again = ReasonDictionary.encode(ListType.FDM, "Shared device");
+        assertThat(again).isEqualTo(first);
+        assertThat(ReasonDictionary.decode(ListType.FDM, first)).isEqualTo("Shared device");
+
+        int fdm = 1 << ListType.FDM.ordinal();
+        byte[] history = new AccountHistory.Builder()
+            .append(100, ListType.FDM, fdm, "Shared device")
+            .append(200, ListType.D_FDM, 0, null)
+            .append(300, ListType.FDM, fdm, "Shared device")
+            .build();
+
+        List<String> reasons = new ArrayList<>();
+        AccountHistory.forEach(history, (timestamp, listType, verdictMask, reason) -> reasons.add(reason));
+        assertThat(reasons).containsExactly("Shared device", null, "Shared device");
+        assertThat(AccountHistory.at(history, 250).isEligible()).isTrue();
+        assertThat(AccountHistory.at(history, 300).getListedAt(ListType.FDM)).isEqualTo(300);
+    }
+
+    /**
+     * Record a mix of listings, delistings and reason changes on three lists
+     */
+    private static byte[] recordEvents(int count, List<Expected> expected) {
+        byte[] history = null;
+        long timestamp = 1_700_000_000_000L;
+        int mask = 0;
+        long[] listedAt = new long[ListType.values().length];
+        String[] reasons = new String[ListType.values().length];
+        for (int i = 0; i < count; i++) {
+            timestamp += 1 + (i * 7919L) % 100_000;
+            ListType listType = LISTS[i % LISTS.length];
+            int bit = 1 << listType.ordinal();
+            // Every fifth event changes the reason of a list already in force
+            boolean relist = i % 5 == 4 && (mask & bit) != 0;
+            if (!relist) {
+                mask ^= bit;
+            }
+            String reason = null;
+            int reasonCode = -1;
+            if ((mask & bit) != 0) {
+                reason = "Reason " + (i % 7);
+                if (relist && reason.equals(reasons[listType.ordinal()])) {
+                    reason = "Reason changed " + i;
+                }
+                reasonCode = ReasonDictionary.encode(listType, reason);
+                listedAt[listType.ordinal()] = timestamp;
+                reasons[listType.ordinal()] = reason;
+            }
+            byte[] recorded = AccountHistory.record(history, timestamp, listType, mask, reasonCode);
+            assertThat(recorded).isNotSameAs(history);
+            history = recorded;
+            expected.add(new Expected(timestamp, listType, mask, reason, listedAt, reasons));
+        }
+        return history;
+    }
+}
@@ -0,0 +1,39 @@
+package com.loanmanagement.store;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AccountShardingTest {
+
+    @Test
+    void idsLandInTheSameShardAsTextOrPacked() {
+        AccountSharding sharding = new AccountSharding(7);
+        for (int i = 0; i < 10_000; i++) {
+            String accountId = String.format("%0" + (1 + i % 12) + "d", i * 7919L);
+            long key = NumericAccountId.pack(accountId);
+            assertThat(sharding.shardOf(accountId)).isEqualTo(sharding.shardOf(key)).isBetween(0, 6);
+            assertThat(sharding.shardOf("ACC-" + accountId)).isEqualTo(sharding.shardOfText("ACC-" + accountId))
+                .isBetween(0, 6);
+        }
+        // Too many digits to pack, so routed as text
+        assertThat(sharding.shardOf("123456789012345678"))
+            .isEqualTo(sharding.shardOfText("123456789012345678"));
+    }
+
+    @Test
+    void sequentialAndTextIdsSpreadEvenly() {
+        AccountSharding sharding = new AccountSharding(8);
+        int[] numeric = new int[8];
+        int[] text = new int[8];
+        for (int i = 0; i < 80_000; i++) {
+            numeric[sharding.shardOf(Integer.toString(1_000_000 + i))]++;
+            text[sharding.shardOf("ACC-" + i)]++;
+        }
+        for (int shard = 0; shard < 8; shard++) {
+            assertThat(numeric[shard]).as("numeric shard %d", shard).isBetween(9_000, 11_000);
+            assertThat(text[shard]).as("text shard %d", shard).isBetween(9_000, 11_000);
+        }
+        assertThat(new AccountSharding(0).getShardCount()).isEqualTo(Runtime.getRuntime().availableProcessors());
+    }
+}
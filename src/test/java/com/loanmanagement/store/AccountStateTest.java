@@ -0,0 +1,118 @@
+package com.loanmanagement.store;
+
+import com.loanmanagement.model.ListType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AccountStateTest {
+
+    private final CompactAccountStateStore store = new CompactAccountStateStore(new AccountSharding(4), false, 1000, 10);
+
+    @AfterEach
+    void shutdown() {
+        store.shutdown();
+    }
+
+    @Test
+    void denseSlotsMatchEntriesAddedInAnyOrder() {
+        Random random = new Random(7);
+        ListType[] listTypes = ListType.values();
+        for (int round = 0; round < 200; round++) {
+            AccountState state = AccountState.empty("1001");
+            Map<ListType, Long> timestamps = new EnumMap<>(ListType.class);
+            Map<ListType, String> reasons = new EnumMap<>(ListType.class);
+            for (int i = 0; i < 15; i++) {
+                ListType listType = listTypes[random.nextInt(listTypes.length)];
+                long timestamp = random.nextLong();
+                String reason = "Reason " + random.nextInt(5);
+                state = state.with(listType, timestamp, reason);
+                timestamps.put(listType, timestamp);
+                reasons.put(listType, reason);
+            }
+
+            int expectedMask = 0;
+            for (ListType listType : listTypes) {
+                assertThat(state.has(listType)).isEqualTo(timestamps.containsKey(listType));
+                if (timestamps.containsKey(listType)) {
+                    expectedMask |= 1 << listType.ordinal();
+                    assertThat(state.getTimestamp(listType)).isEqualTo(timestamps.get(listType));
+                    assertThat(state.getReason(listType)).isEqualTo(reasons.get(listType));
+                    assertThat(state.isActive(listType)).isTrue();
+                } else {
+                    assertThat(state.getTimestamp(listType)).isEqualTo(Long.MIN_VALUE);
+                    assertThat(state.getReason(listType)).isNull();
+                }
+            }
+            assertThat(state.getPresentMask()).isEqualTo(expectedMask);
+        }
+    }
+
+    @Test
+    void changesReturnCopiesAndLeaveTheOriginalAlone() {
+        AccountState listed = AccountState.empty("ACC-1").with(ListType.CR, 100, "Control");
+        AccountState both = listed.with(ListType.STR, 200, "Suspicious");
+        AccountState inactive = both.deactivate(ListType.CR);
+        AccountState relisted = inactive.with(ListType.CR, 300, "Control again");
+
+        assertThat(listed.has(ListType.STR)).isFalse();
+        assertThat(both.isActive(ListType.CR)).isTrue();
+        assertThat(inactive.isActive(ListType.CR)).isFalse();
+        assertThat(inactive.has(ListType.CR)).isTrue();
+        assertThat(inactive.getTimestamp(ListType.CR)).isEqualTo(100);
+        assertThat(inactive.deactivate(ListType.CR)).isSameAs(inactive);
+        assertThat(inactive.deactivate(ListType.FDM)).isSameAs(inactive);
+        // Listing again makes the entry active with the new details
+        assertThat(relisted.isActive(ListType.CR)).isTrue();
+        assertThat(relisted.getReason(ListType.CR)).isEqualTo("Control again");
+        assertThat(both.getReason(ListType.CR)).isEqualTo("Control");
+        assertThat(AccountState.empty("ACC-1").isEmpty()).isTrue();
+        assertThat(listed.estimatedBytes()).isLessThan(both.estimatedBytes());
+    }
+
+    @Test
+    void restoreRebuildsTheStateFromPersistedFields() {
+        int present = 1 << ListType.STR.ordinal() | 1 << ListType.D_STR.ordinal();
+        AccountState restored = AccountState.restore("000123", present, 0, 0,
+            new long[]{100, 200}, new String[]{"Suspicious", "Reviewed"}, null);
+
+        assertThat(restored.getReason(ListType.STR)).isEqualTo("Suspicious");
+        assertThat(restored.getTimestamp(ListType.D_STR)).isEqualTo(200);
+        assertThat(restored.isEligible()).isTrue();
+        assertThat(restored.getHistorySize()).isZero();
+        assertThatThrownBy(() -> AccountState.restore("000123", present, 0, 0,
+            new long[]{100}, new String[]{"Suspicious"}, null)).isInstanceOf(IllegalArgumentException.class);
+
+        // Without a persisted history, one is seeded from the lists in force
+        AccountState ineligible = AccountState.restore("1001", 1 << ListType.CR.ordinal(), 0,
+            1 << ListType.CR.ordinal(), new long[]{500}, new String[]{"Control"}, null);
+        assertThat(ineligible.getHistorySize()).isEqualTo(1);
+        assertThat(ineligible.verdictAt(500).getReason(ListType.CR)).isEqualTo("Control");
+    }
+
+    @Test
+    void numericAndTextIdsAreStoredApart() {
+        store.beginGeneration();
+        for (String accountId : new String[]{"123", "000123", "ACC-123", "9223372036854775807999"}) {
+            store.update(accountId, state -> state.with(ListType.SST, 100, accountId));
+        }
+        store.publishGeneration();
+
+        try (Generation generation = store.snapshot()) {
+            assertThat(generation.getAccountCount()).isEqualTo(4);
+            for (String accountId : new String[]{"123", "000123", "ACC-123", "9223372036854775807999"}) {
+                AccountState state = generation.get(accountId);
+                assertThat(state.getAccountId()).isEqualTo(accountId);
+                assertThat(state.getReason(ListType.SST)).isEqualTo(accountId);
+            }
+            assertThat(generation.get("0123")).isNull();
+            assertThat(generation.get("124")).isNull();
+        }
+    }
+}
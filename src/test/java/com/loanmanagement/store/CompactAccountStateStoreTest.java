@@ -0,0 +1,348 @@
+package com.loanmanagement.store;
+
+import com.loanmanagement.model.ListType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CompactAccountStateStoreTest {
+
+    private final CompactAccountStateStore store = new CompactAccountStateStore(new AccountSharding(4), true, 1000, 10);
+
+    @AfterEach
+    void shutdown() {
+        store.shutdown();
+    }
+
+    @Test
+    void clearLeavesAPinnedGenerationIntact() throws InterruptedException {
+        store.beginGeneration();
+        list("1001", ListType.STR, 100);
+        list("ACC-1", ListType.CR, 100);
+        store.publishGeneration();
+        Generation pinned = store.snapshot();
+
+        store.beginGeneration();
+        Generation cleared = store.clear();
+        store.beginGeneration();
+        list("2001", ListType.FDM, 200);
+        store.publishGeneration();
+        // Give the reclaimer time to release anything it wrongly considers unread
+        Thread.sleep(50);
+
+        assertThat(cleared.getAccountCount()).isZero();
+        assertThat(cleared.get("1001")).isNull();
+        assertThat(cleared.getMembership().count(ListType.STR)).isZero();
+
+        assertThat(pinned.get("1001").isEligible()).isFalse();
+        assertThat(pinned.get("ACC-1").has(ListType.CR)).isTrue();
+        assertThat(pinned.get("2001")).isNull();
+        assertThat(pinned.getAccountCount()).isEqualTo(2);
+        assertThat(pinned.getMembership().count(ListType.STR)).isEqualTo(1);
+        List<String> visible = new ArrayList<>();
+        pinned.forEach(state -> visible.add(state.getAccountId()));
+        assertThat(visible).containsExactlyInAnyOrder("1001", "ACC-1");
+        pinned.close();
+
+        try (Generation latest = store.snapshot()) {
+            assertThat(latest.get("2001").has(ListType.FDM)).isTrue();
+            assertThat(latest.get("1001")).isNull();
+            assertThat(latest.getAccountCount()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void membershipQueriesCombineLists() {
+        store.beginGeneration();
+        for (int i = 0; i < 300; i++) {
+            String accountId = i % 2 == 0 ? Integer.toString(i) : "ACC-" + i;
+            if (i % 2 == 0) {
+                list(accountId, ListType.STR, 100);
+            }
+            if (i % 3 == 0) {
+                list(accountId, ListType.CR, 100);
+            }
+        }
+        store.publishGeneration();
+
+        try (Generation generation = store.snapshot()) {
+            MembershipIndex membership = generation.getMembership();
+            assertThat(membership.count(ListType.STR)).isEqualTo(150);
+            assertThat(membership.count(ListType.CR)).isEqualTo(100);
+            assertThat(membership.count(new MembershipQuery(List.of(ListType.STR, ListType.CR), true, null)))
+                .isEqualTo(50);
+            assertThat(membership.count(new MembershipQuery(List.of(ListType.STR, ListType.CR), false, null)))
+                .isEqualTo(200);
+            MembershipQuery onlyStr = new MembershipQuery(List.of(ListType.STR), false, List.of(ListType.CR));
+            assertThat(membership.count(onlyStr)).isEqualTo(100);
+
+            Set<String> paged = new HashSet<>();
+            long position = 0;
+            do {
+                MembershipIndex.Page page = membership.page(onlyStr, position, 7);
+                assertThat(page.getAccountIds()).hasSizeLessThanOrEqualTo(7);
+                for (String accountId : page.getAccountIds()) {
+                    assertThat(paged.add(accountId)).isTrue();
+                    assertThat(Integer.parseInt(accountId) % 6).isNotZero();
+                }
+                position = page.getNext();
+            } while (position >= 0);
+            assertThat(paged).hasSize(100);
+        }
+    }
+
+    @Test
+    void verdictChangesListAccountsWhoseEligibilityFlipped() {
+        store.trackVerdictChanges(100);
+        store.beginGeneration();
+        list("1001", ListType.STR, 100);
+        list("ACC-2", ListType.STR, 100);
+        try (Generation first = publish()) {
+            assertThat(changedAccounts(first.getVerdictChanges())).containsExactlyInAnyOrder("1001", "ACC-2");
+            assertThat(first.getVerdictChanges().isEligible(0)).isFalse();
+            assertThat(first.getVerdictChanges().getTotal()).isEqualTo(2);
+        }
+
+        store.beginGeneration();
+        // Already ineligible, so another list does not change the verdict
+        list("1001", ListType.CR, 200);
+        delist("ACC-2", ListType.STR, 200);
+        try (Generation second = publish()) {
+            VerdictChanges changes = second.getVerdictChanges();
+            assertThat(changedAccounts(changes)).containsExactly("ACC-2");
+            assertThat(changes.isEligible(0)).isTrue();
+            assertThat(changes.getVerdictMask(0)).isZero();
+            assertThat(changes.isComplete()).isTrue();
+        }
+    }
+
+    @Test
+    void flipsUndoneWithinAGenerationAreNotReported() {
+        store.trackVerdictChanges(100);
+        store.beginGeneration();
+        list("1001", ListType.STR, 100);
+        store.publishGeneration();
+
+        store.beginGeneration();
+        delist("1001", ListType.STR, 200);
+        list("1001", ListType.STR, 300);
+        list("2001", ListType.FDM, 300);
+        delist("2001", ListType.FDM, 400);
+        list("3001", ListType.SST, 400);
+        try (Generation generation = publish()) {
+            VerdictChanges changes = generation.getVerdictChanges();
+            assertThat(changedAccounts(changes)).containsExactly("3001");
+            assertThat(changes.getTotal()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void limitCapsRecordedChangesButNotTheTotal() {
+        store.trackVerdictChanges(4);
+        store.beginGeneration();
+        for (int i = 0; i < 100; i++) {
+            list(Integer.toString(i), ListType.STR, 100);
+        }
+        try (Generation generation = publish()) {
+            VerdictChanges changes = generation.getVerdictChanges();
+            assertThat(changes.size()).isBetween(1, 4);
+            assertThat(changes.getTotal()).isEqualTo(100);
+            assertThat(changes.isComplete()).isFalse();
+        }
+
+        store.trackVerdictChanges(0);
+        store.beginGeneration();
+        for (int i = 0; i < 100; i++) {
+            delist(Integer.toString(i), ListType.STR, 200);
+        }
+        try (Generation generation = publish()) {
+            assertThat(generation.getVerdictChanges().size()).isZero();
+            assertThat(generation.getVerdictChanges().getTotal()).isEqualTo(100);
+        }
+    }
+
+    @Test
+    void abortRollsBackOnlyTheOpenGeneration() {
+        store.beginGeneration();
+        list("1001", ListType.STR, 100);
+        list("ACC-1", ListType.STR, 100);
+        store.publishGeneration();
+
+        long aborted = store.beginGeneration();
+        list("1001", ListType.CR, 200);
+        list("ACC-1", ListType.CR, 200);
+        list("ACC-1", ListType.FDM, 300);
+        list("2001", ListType.CR, 200);
+        list("ACC-2", ListType.CR, 200);
+        store.abortGeneration();
+
+        try (Generation generation = store.snapshot()) {
+            assertThat(generation.get("1001").has(ListType.CR)).isFalse();
+            assertThat(generation.get("ACC-1").has(ListType.CR)).isFalse();
+            assertThat(generation.get("ACC-1").has(ListType.FDM)).isFalse();
+            assertThat(generation.get("2001")).isNull();
+            assertThat(generation.get("ACC-2")).isNull();
+            assertThat(generation.getMembership().count(ListType.CR)).isZero();
+        }
+        assertThat(Arrays.stream(store.shardAccountCounts()).sum()).isEqualTo(2);
+        assertThat(store.retainedVersionCount()).isZero();
+
+        assertThat(store.beginGeneration()).isEqualTo(aborted);
+        list("2001", ListType.SST, 400);
+        try (Generation generation = publish()) {
+            assertThat(generation.getNumber()).isEqualTo(aborted);
+            assertThat(generation.get("2001").has(ListType.SST)).isTrue();
+            assertThat(generation.get("1001").has(ListType.STR)).isTrue();
+            assertThat(generation.getAccountCount()).isEqualTo(3);
+        }
+    }
+
+    @Test
+    void supersededVersionsAreReclaimedWhenTheLastReaderCloses() throws InterruptedException {
+        store.beginGeneration();
+        list("1001", ListType.STR, 100);
+        list("ACC-1", ListType.STR, 100);
+        store.publishGeneration();
+        store.beginGeneration();
+        list("1001", ListType.CR, 200);
+        store.publishGeneration();
+        // Nobody reads the first generation, so the version the second replaced goes
+        awaitRetainedVersions(0);
+
+        Generation pinned = store.snapshot();
+        store.beginGeneration();
+        list("1001", ListType.FDM, 300);
+        list("ACC-1", ListType.FDM, 300);
+        store.publishGeneration();
+        Thread.sleep(50);
+
+        assertThat(store.retainedVersionCount()).isEqualTo(2);
+        assertThat(pinned.get("1001").has(ListType.CR)).isTrue();
+        assertThat(pinned.get("1001").has(ListType.FDM)).isFalse();
+        assertThat(pinned.get("ACC-1").has(ListType.FDM)).isFalse();
+        pinned.close();
+
+        awaitRetainedVersions(0);
+        try (Generation latest = store.snapshot()) {
+            assertThat(latest.get("1001").has(ListType.FDM)).isTrue();
+            assertThat(latest.get("1001").getPrevious()).isNull();
+            assertThat(latest.get("ACC-1").getPrevious()).isNull();
+        }
+    }
+
+    @Test
+    void restoreThatFailsPartwayLeavesTheStoreEmpty() {
+        Iterable<AccountState> unreadable = () -> new Iterator<>() {
+            int next;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public AccountState next() {
+                if (next == 3) {
+                    throw new UncheckedIOException(new IOException("Snapshot is truncated"));
+                }
+                return AccountState.empty(Integer.toString(next++)).with(ListType.STR, 100, "Listed");
+            }
+        };
+        assertThatThrownBy(() -> store.restore(7, unreadable)).isInstanceOf(UncheckedIOException.class);
+
+        assertThat(Arrays.stream(store.shardAccountCounts()).sum()).isZero();
+        try (Generation generation = store.snapshot()) {
+            assertThat(generation.getNumber()).isZero();
+            assertThat(generation.get("0")).isNull();
+        }
+        Generation restored = store.restore(5, List.of(AccountState.empty("1001").with(ListType.CR, 100, "Listed")));
+        assertThat(restored.getNumber()).isEqualTo(5);
+        assertThat(restored.getAccountCount()).isEqualTo(1);
+        assertThat(restored.get("0")).isNull();
+    }
+
+    @Test
+    void restoreReplacesTheStoreInOneSwap() throws InterruptedException {
+        store.beginGeneration();
+        list("1001", ListType.STR, 100);
+        list("ACC-1", ListType.CR, 100);
+        store.publishGeneration();
+        Generation pinned = store.snapshot();
+
+        Generation restored = store.restore(4, List.of(
+            AccountState.empty("2001").with(ListType.FDM, 300, "Restored"),
+            AccountState.empty("ACC-1").with(ListType.SST, 300, "Restored")));
+        Thread.sleep(50);
+
+        assertThat(restored.getNumber()).isEqualTo(4);
+        assertThat(restored.getAccountCount()).isEqualTo(2);
+        assertThat(restored.get("1001")).isNull();
+        assertThat(restored.get("ACC-1").has(ListType.CR)).isFalse();
+        assertThat(restored.get("2001").has(ListType.FDM)).isTrue();
+        assertThat(restored.getChange().getAccounts()).isZero();
+        // The replaced generation is still whole for its reader
+        assertThat(pinned.get("1001").has(ListType.STR)).isTrue();
+        assertThat(pinned.get("ACC-1").has(ListType.CR)).isTrue();
+        assertThat(pinned.get("2001")).isNull();
+        pinned.close();
+
+        assertThatThrownBy(() -> store.restore(3, List.of(AccountState.empty("3001"))))
+            .isInstanceOf(IllegalStateException.class);
+        try (Generation latest = store.snapshot()) {
+            assertThat(latest.getNumber()).isEqualTo(4);
+            assertThat(latest.get("3001")).isNull();
+        }
+        assertThat(store.beginGeneration()).isEqualTo(5);
+        store.abortGeneration();
+    }
+
+    private void awaitRetainedVersions(long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (store.retainedVersionCount() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertThat(store.retainedVersionCount()).isEqualTo(expected);
+    }
+
+    private Generation publish() {
+        store.publishGeneration();
+        return store.snapshot();
+    }
+
+    private static List<String> changedAccounts(VerdictChanges changes) {
+        List<String> accountIds = new ArrayList<>();
+        for (int i = 0; i < changes.size(); i++) {
+            accountIds.add(changes.getAccountId(i));
+        }
+        return accountIds;
+    }
+
+    /**
+     * Put the account on the list in the open generation, as an upload would
+     */
+    private void list(String accountId, ListType listType, long timestamp) {
+        store.update(accountId, state -> {
+            AccountState listed = state.with(listType, timestamp, "Listed");
+            return listed.withVerdict(state.getVerdictMask() | 1 << listType.ordinal(), listType, timestamp);
+        });
+    }
+
+    /**
+     * Take the account off the list in the open generation, as a delist would
+     */
+    private void delist(String accountId, ListType listType, long timestamp) {
+        store.update(accountId, state -> state.deactivate(listType)
+            .withVerdict(state.getVerdictMask() & ~(1 << listType.ordinal()), listType, timestamp));
+    }
+}
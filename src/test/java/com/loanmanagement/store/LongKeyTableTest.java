@@ -0,0 +1,128 @@
+package com.loanmanagement.store;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LongKeyTableTest {
+
+    @Test
+    void storesAndReplacesStatesByKey() {
+        LongKeyTable table = new LongKeyTable();
+        long key = LongKeyTable.numericKey("1001");
+        AccountState first = AccountState.empty("1001");
+        AccountState second = AccountState.empty("1001");
+
+        table.compute(key, current -> first);
+        table.compute(key, current -> {
+            assertThat(current).isSameAs(first);
+            return second;
+        });
+
+        assertThat(table.get(key)).isSameAs(second);
+        assertThat(table.get(LongKeyTable.numericKey("01001"))).isNull();
+        assertThat(table.size()).isEqualTo(1);
+    }
+
+    @Test
+    void returningNullRemovesTheEntry() {
+        LongKeyTable table = new LongKeyTable();
+        long key = LongKeyTable.numericKey("42");
+        table.compute(key, current -> AccountState.empty("42"));
+
+        table.compute(key, current -> null);
+
+        assertThat(table.get(key)).isNull();
+        assertThat(table.size()).isZero();
+        assertThat(table.iterator().hasNext()).isFalse();
+    }
+
+    @Test
+    void keepsEveryEntryAcrossResizes() {
+        LongKeyTable table = new LongKeyTable();
+        int count = 100_000;
+        for (int i = 0; i < count; i++) {
+            String accountId = Integer.toString(i);
+            table.compute(LongKeyTable.numericKey(accountId), current -> AccountState.empty(accountId));
+        }
+
+        assertThat(table.size()).isEqualTo(count);
+        for (int i = 0; i < count; i++) {
+            String accountId = Integer.toString(i);
+            assertThat(table.get(LongKeyTable.numericKey(accountId)).getAccountId()).isEqualTo(accountId);
+        }
+        Set<String> visited = new HashSet<>();
+        for (Iterator<AccountState> states = table.iterator(); states.hasNext(); ) {
+            assertThat(visited.add(states.next().getAccountId())).isTrue();
+        }
+        assertThat(visited).hasSize(count);
+    }
+
+    @Test
+    void readersSeeEveryPublishedEntryWhileTheWriterResizes() throws InterruptedException {
+        LongKeyTable table = new LongKeyTable();
+        int count = 200_000;
+        // Highest index the writer has finished storing
+        AtomicLong stored = new AtomicLong(-1);
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> failure = new AtomicReference<>();
+
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < 4; r++) {
+            long seed = r;
+            Thread reader = new Thread(() -> {
+                long probe = seed;
+                while (!done.get() && failure.get() == null) {
+                    long high = stored.get();
+                    if (high < 0) {
+                        continue;
+                    }
+                    probe = (probe * 6364136223846793005L + 1442695040888963407L) & Long.MAX_VALUE;
+                    String accountId = Long.toString(probe % (high + 1));
+                    AccountState state = table.get(LongKeyTable.numericKey(accountId));
+                    if (state == null || !state.getAccountId().equals(accountId)) {
+                        failure.compareAndSet(null, "Lost " + accountId + " with " + (high + 1) + " stored");
+                    }
+                }
+            });
+            reader.start();
+            readers.add(reader);
+        }
+
+        for (int i = 0; i < count; i++) {
+            String accountId = Integer.toString(i);
+            table.compute(LongKeyTable.numericKey(accountId), current -> AccountState.empty(accountId));
+            stored.set(i);
+        }
+        done.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        assertThat(failure.get()).isNull();
+        assertThat(table.size()).isEqualTo(count);
+    }
+
+    @Test
+    void clearEmptiesTheTable() {
+        LongKeyTable table = new LongKeyTable();
+        for (int i = 0; i < 1000; i++) {
+            String accountId = Integer.toString(i);
+            table.compute(LongKeyTable.numericKey(accountId), current -> AccountState.empty(accountId));
+        }
+
+        table.clear();
+
+        assertThat(table.size()).isZero();
+        assertThat(table.get(LongKeyTable.numericKey("1"))).isNull();
+    }
+}
@@ -0,0 +1,146 @@
+package com.loanmanagement.store;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MembershipBitmapTest {
+
+    private static final int CONTAINER_SIZE = 1 << MembershipBitmap.CONTAINER_BITS;
+
+    @Test
+    void tracksMembersInSparseAndDenseContainers() {
+        MembershipBitmap bitmap = MembershipBitmap.EMPTY.forGeneration(1);
+        BitSet expected = new BitSet();
+        // Container 0 stays an array; container 2 grows into a bitset
+        for (int i = 0; i < 100; i++) {
+            add(bitmap, expected, i * 37);
+        }
+        for (int i = 0; i < 10_000; i++) {
+            add(bitmap, expected, 2 * CONTAINER_SIZE + i * 3);
+        }
+
+        assertThat(bitmap.cardinality()).isEqualTo(expected.cardinality());
+        assertThat(bitmap.containerCount()).isGreaterThanOrEqualTo(3);
+        assertThat(bitmap.contains(CONTAINER_SIZE)).isFalse();
+        assertMembers(bitmap, expected);
+
+        for (int i = 0; i < 10_000; i += 2) {
+            bitmap.remove(2 * CONTAINER_SIZE + i * 3);
+            expected.clear(2 * CONTAINER_SIZE + i * 3);
+        }
+        bitmap.remove(37);
+        expected.clear(37);
+        bitmap.remove(5 * CONTAINER_SIZE);
+
+        assertThat(bitmap.cardinality()).isEqualTo(expected.cardinality());
+        assertMembers(bitmap, expected);
+    }
+
+    @Test
+    void setOperationsMatchAReferenceBitSet() {
+        Random random = new Random(42);
+        BitSet expectedA = new BitSet();
+        BitSet expectedB = new BitSet();
+        MembershipBitmap a = MembershipBitmap.EMPTY.forGeneration(1);
+        MembershipBitmap b = MembershipBitmap.EMPTY.forGeneration(1);
+        // Sparse against sparse, sparse against dense, dense against dense, and one side empty
+        int[][] sizes = {{300, 500}, {200, 20_000}, {30_000, 25_000}, {1000, 0}};
+        for (int container = 0; container < sizes.length; container++) {
+            int base = container * CONTAINER_SIZE;
+            for (int i = 0; i < sizes[container][0]; i++) {
+                add(a, expectedA, base + random.nextInt(CONTAINER_SIZE));
+            }
+            for (int i = 0; i < sizes[container][1]; i++) {
+                add(b, expectedB, base + random.nextInt(CONTAINER_SIZE));
+            }
+        }
+
+        long[] words = new long[MembershipBitmap.WORDS];
+        for (int container = 0; container < sizes.length; container++) {
+            BitSet left = slice(expectedA, container);
+            BitSet right = slice(expectedB, container);
+
+            assertThat(a.load(container, words)).isTrue();
+            a.orInto(container, words);
+            b.orInto(container, words);
+            BitSet union = (BitSet) left.clone();
+            union.or(right);
+            assertThat(BitSet.valueOf(words)).isEqualTo(union);
+
+            a.load(container, words);
+            BitSet intersection = (BitSet) left.clone();
+            intersection.and(right);
+            // A false result means nothing is left; the words are only meaningful otherwise
+            if (b.andInto(container, words)) {
+                assertThat(BitSet.valueOf(words)).isEqualTo(intersection);
+            } else {
+                assertThat(intersection.isEmpty()).isTrue();
+            }
+
+            a.load(container, words);
+            b.andNotInto(container, words);
+            BitSet difference = (BitSet) left.clone();
+            difference.andNot(right);
+            assertThat(BitSet.valueOf(words)).isEqualTo(difference);
+        }
+
+        assertThat(b.load(3, words)).isFalse();
+        assertThat(a.load(sizes.length, words)).isFalse();
+    }
+
+    @Test
+    void laterGenerationsCopyContainersOnWrite() {
+        MembershipBitmap published = MembershipBitmap.EMPTY.forGeneration(1);
+        for (int i = 0; i < 5000; i++) {
+            published.add(i * 2);
+        }
+        published.add(CONTAINER_SIZE + 1);
+
+        MembershipBitmap next = published.forGeneration(2);
+        assertThat(next.forGeneration(2)).isSameAs(next);
+        next.add(1);
+        next.remove(0);
+        next.remove(CONTAINER_SIZE + 1);
+        next.add(3 * CONTAINER_SIZE);
+
+        assertThat(published.contains(0)).isTrue();
+        assertThat(published.contains(1)).isFalse();
+        assertThat(published.contains(CONTAINER_SIZE + 1)).isTrue();
+        assertThat(published.contains(3 * CONTAINER_SIZE)).isFalse();
+        assertThat(published.cardinality()).isEqualTo(5001);
+
+        assertThat(next.contains(0)).isFalse();
+        assertThat(next.contains(1)).isTrue();
+        assertThat(next.contains(CONTAINER_SIZE + 1)).isFalse();
+        assertThat(next.contains(3 * CONTAINER_SIZE)).isTrue();
+        assertThat(next.cardinality()).isEqualTo(5001);
+    }
+
+    private static void add(MembershipBitmap bitmap, BitSet expected, int ordinal) {
+        bitmap.add(ordinal);
+        expected.set(ordinal);
+    }
+
+    private static void assertMembers(MembershipBitmap bitmap, BitSet expected) {
+        long[] words = new long[MembershipBitmap.WORDS];
+        for (int container = 0; container < bitmap.containerCount(); container++) {
+            BitSet members = slice(expected, container);
+            if (bitmap.load(container, words)) {
+                assertThat(BitSet.valueOf(words)).isEqualTo(members);
+            } else {
+                assertThat(members.isEmpty()).isTrue();
+            }
+        }
+        for (int ordinal = expected.nextSetBit(0); ordinal >= 0; ordinal = expected.nextSetBit(ordinal + 1)) {
+            assertThat(bitmap.contains(ordinal)).isTrue();
+        }
+    }
+
+    private static BitSet slice(BitSet bits, int container) {
+        return bits.get(container * CONTAINER_SIZE, (container + 1) * CONTAINER_SIZE);
+    }
+}
@@ -0,0 +1,93 @@
+package com.loanmanagement.store;
+
+import com.loanmanagement.model.ListType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MembershipFilterTest {
+
+    private final CompactAccountStateStore store = new CompactAccountStateStore(new AccountSharding(4), true, 1000, 10);
+
+    @AfterEach
+    void shutdown() {
+        store.shutdown();
+    }
+
+    @Test
+    void addedIdsAreNeverRejected() {
+        MembershipFilter filter = new MembershipFilter(20_000, 10);
+        for (int i = 0; i < 20_000; i++) {
+            filter.add(hash(Integer.toString(i * 7)));
+            filter.add(hash("ACC-" + i));
+        }
+        for (int i = 0; i < 20_000; i++) {
+            assertThat(filter.mightContain(hash(Integer.toString(i * 7)))).isTrue();
+            assertThat(filter.mightContain(hash("ACC-" + i))).isTrue();
+        }
+        assertThat(filter.getInsertions()).isEqualTo(40_000);
+        assertThat(filter.getRejectedLookups()).isZero();
+    }
+
+    @Test
+    void falsePositiveRateMatchesTheEstimate() {
+        MembershipFilter filter = new MembershipFilter(50_000, 10);
+        for (int i = 0; i < 50_000; i++) {
+            filter.add(hash(Integer.toString(i)));
+        }
+        int passed = 0;
+        int lookups = 200_000;
+        for (int i = 0; i < lookups; i++) {
+            if (filter.mightContain(hash("MISSING-" + i))) {
+                passed++;
+            }
+        }
+        double observed = (double) passed / lookups;
+        double estimated = filter.getEstimatedFalsePositiveRate();
+        // Ten bits per key with seven hashes gives about 1%; blocking costs a little on top
+        assertThat(estimated).isBetween(0.002, 0.02);
+        assertThat(observed).isBetween(estimated / 2, estimated * 2);
+        assertThat(filter.getRejectedLookups()).isEqualTo(lookups - passed);
+        assertThat(filter.getSizeBytes()).isEqualTo((50_000L * 10 + 511) / 512 * 64);
+    }
+
+    @Test
+    void storeLookupsStayExactAsTheFilterGrows() {
+        MembershipFilter initial = store.getMembershipFilter();
+        // Three times the sized capacity, so the filter is rebuilt larger along the way
+        for (int batch = 0; batch < 6; batch++) {
+            store.beginGeneration();
+            for (int i = batch * 500; i < (batch + 1) * 500; i++) {
+                String accountId = i % 2 == 0 ? Integer.toString(i) : "ACC-" + i;
+                store.update(accountId, state -> state.with(ListType.CR, 100, "Control"));
+            }
+            store.publishGeneration();
+        }
+
+        MembershipFilter grown = store.getMembershipFilter();
+        assertThat(grown).isNotSameAs(initial);
+        assertThat(grown.getCapacity()).isGreaterThanOrEqualTo(3000);
+        try (Generation generation = store.snapshot()) {
+            for (int i = 0; i < 3000; i++) {
+                String accountId = i % 2 == 0 ? Integer.toString(i) : "ACC-" + i;
+                assertThat(generation.get(accountId)).as(accountId).isNotNull();
+            }
+            long rejectedBefore = grown.getRejectedLookups();
+            long falsePositivesBefore = grown.getFalsePositives();
+            for (int i = 3000; i < 6000; i++) {
+                assertThat(generation.get(Integer.toString(i))).isNull();
+                assertThat(generation.get("ACC-" + i)).isNull();
+            }
+            long rejected = grown.getRejectedLookups() - rejectedBefore;
+            assertThat(rejected + grown.getFalsePositives() - falsePositivesBefore).isEqualTo(6000);
+            assertThat(rejected).isGreaterThan(5800);
+            // Lookup counters carry over from the filter that was replaced
+            assertThat(initial.getRejectedLookups()).isEqualTo(grown.getRejectedLookups());
+        }
+    }
+
+    private static long hash(String accountId) {
+        return MembershipFilter.hash(accountId, LongKeyTable.numericKey(accountId));
+    }
+}
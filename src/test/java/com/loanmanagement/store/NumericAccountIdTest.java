@@ -0,0 +1,63 @@
+package com.loanmanagement.store;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NumericAccountIdTest {
+
+    @Test
+    void leadingZerosKeepIdsDistinct() {
+        long padded = NumericAccountId.pack("00123");
+        long plain = NumericAccountId.pack("123");
+
+        assertThat(padded).isNotEqualTo(plain);
+        assertThat(NumericAccountId.digits(padded)).isEqualTo(5);
+        assertThat(NumericAccountId.value(padded)).isEqualTo(123);
+        assertThat(NumericAccountId.toString(padded)).isEqualTo("00123");
+        assertThat(NumericAccountId.toString(plain)).isEqualTo("123");
+    }
+
+    @Test
+    void allZeroIdsRoundTrip() {
+        assertThat(NumericAccountId.toString(NumericAccountId.pack("0"))).isEqualTo("0");
+        assertThat(NumericAccountId.toString(NumericAccountId.pack("0000"))).isEqualTo("0000");
+        assertThat(NumericAccountId.pack("0")).isNotEqualTo(NumericAccountId.NONE);
+    }
+
+    @Test
+    void seventeenDigitsIsTheLongestPackedId() {
+        String largest = "99999999999999999";
+        String padded = "00000000000000001";
+
+        assertThat(NumericAccountId.toString(NumericAccountId.pack(largest))).isEqualTo(largest);
+        assertThat(NumericAccountId.toString(NumericAccountId.pack(padded))).isEqualTo(padded);
+        assertThat(NumericAccountId.pack(largest + "9")).isEqualTo(NumericAccountId.NONE);
+        assertThat(NumericAccountId.pack("1" + padded)).isEqualTo(NumericAccountId.NONE);
+    }
+
+    @Test
+    void idsWithOtherCharactersAreNotPacked() {
+        assertThat(NumericAccountId.pack("")).isEqualTo(NumericAccountId.NONE);
+        assertThat(NumericAccountId.pack("ACC123")).isEqualTo(NumericAccountId.NONE);
+        assertThat(NumericAccountId.pack("-123")).isEqualTo(NumericAccountId.NONE);
+        assertThat(NumericAccountId.pack("12 3")).isEqualTo(NumericAccountId.NONE);
+        assertThat(NumericAccountId.pack("１２３")).isEqualTo(NumericAccountId.NONE);
+    }
+
+    @Test
+    void packingByValueMatchesPackingTheString() {
+        assertThat(NumericAccountId.pack(5, 123)).isEqualTo(NumericAccountId.pack("00123"));
+        assertThat(NumericAccountId.pack(17, 99_999_999_999_999_999L))
+            .isEqualTo(NumericAccountId.pack("99999999999999999"));
+    }
+
+    @Test
+    void packingByValueRejectsValuesThatDoNotFit() {
+        assertThat(NumericAccountId.pack(3, 1000)).isEqualTo(NumericAccountId.NONE);
+        assertThat(NumericAccountId.pack(0, 0)).isEqualTo(NumericAccountId.NONE);
+        assertThat(NumericAccountId.pack(18, 1)).isEqualTo(NumericAccountId.NONE);
+        assertThat(NumericAccountId.pack(17, 100_000_000_000_000_000L)).isEqualTo(NumericAccountId.NONE);
+        assertThat(NumericAccountId.pack(4, -1)).isEqualTo(NumericAccountId.NONE);
+    }
+}
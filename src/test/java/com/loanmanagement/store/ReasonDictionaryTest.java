@@ -0,0 +1,86 @@
+package com.loanmanagement.store;
+
+import com.loanmanagement.model.ListType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReasonDictionaryTest {
+
+    // The dictionaries are process-wide, so every test uses reasons no other test has seen
+    private final String prefix = UUID.randomUUID() + " ";
+
+    @Test
+    void concurrentWritersAgreeOnOneCodePerReason() throws Exception {
+        int sizeBefore = ReasonDictionary.size(ListType.MULTIPLE_ACCOUNT);
+        Map<String, Integer> seen = new ConcurrentHashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int writer = 0; writer < 8; writer++) {
+                writers.add(executor.submit(() -> {
+                    for (int i = 0; i < 5000; i++) {
+                        String reason = prefix + (i % 300);
+                        int code = ReasonDictionary.encode(ListType.MULTIPLE_ACCOUNT, reason);
+                        Integer previous = seen.putIfAbsent(reason, code);
+                        assertThat(previous == null ? code : previous).isEqualTo(code);
+                        assertThat(ReasonDictionary.decode(ListType.MULTIPLE_ACCOUNT, code)).isEqualTo(reason);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(seen).hasSize(300);
+        assertThat(new HashSet<>(seen.values())).hasSize(300);
+        assertThat(ReasonDictionary.size(ListType.MULTIPLE_ACCOUNT)).isEqualTo(sizeBefore + 300);
+    }
+
+    @Test
+    void eachListHasItsOwnCodes() {
+        long addedBefore = ReasonDictionary.addedCount();
+        long savedBefore = ReasonDictionary.bytesSaved();
+
+        int fdm = ReasonDictionary.encode(ListType.FDM, prefix + "shared");
+        int sst = ReasonDictionary.encode(ListType.SST, prefix + "shared");
+        ReasonDictionary.encode(ListType.FDM, prefix + "shared");
+
+        assertThat(ReasonDictionary.decode(ListType.FDM, fdm)).isEqualTo(prefix + "shared");
+        assertThat(ReasonDictionary.decode(ListType.SST, sst)).isEqualTo(prefix + "shared");
+        assertThat(ReasonDictionary.encode(ListType.SST, null)).isEqualTo(ReasonDictionary.encode(ListType.SST, ""));
+        // The counters are process-wide, so only a lower bound holds
+        assertThat(ReasonDictionary.addedCount() - addedBefore).isGreaterThanOrEqualTo(2);
+        assertThat(ReasonDictionary.bytesSaved() - savedBefore)
+            .isGreaterThanOrEqualTo(ReasonDictionary.stringBytes(prefix + "shared"));
+    }
+
+    @Test
+    void accountsListedForTheSameReasonShareOneString() {
+        Set<String> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < 1000; i++) {
+            // A fresh String per row, as a parser would produce
+            String reason = new String((prefix + "Structuring").toCharArray());
+            AccountState state = AccountState.empty(Integer.toString(i)).with(ListType.STR, i, reason);
+            distinct.add(state.getReason(ListType.STR));
+        }
+        assertThat(distinct).hasSize(1);
+    }
+}
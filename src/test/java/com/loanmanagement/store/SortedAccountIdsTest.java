@@ -0,0 +1,122 @@
+package com.loanmanagement.store;
+
+import com.loanmanagement.model.ListType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SortedAccountIdsTest {
+
+    private final CompactAccountStateStore store = new CompactAccountStateStore(new AccountSharding(4), false, 1000, 10);
+
+    @AfterEach
+    void shutdown() {
+        store.shutdown();
+    }
+
+    @Test
+    void rangesMatchASortedSetAcrossManyMerges() {
+        Random random = new Random(13);
+        NavigableSet<String> expected = new TreeSet<>();
+        SortedAccountIds ids = SortedAccountIds.EMPTY;
+        // Batches of every size, landing before, between and after existing blocks
+        for (int batch = 0; batch < 40; batch++) {
+            TreeSet<String> added = new TreeSet<>();
+            int count = random.nextInt(batch % 5 == 0 ? 3000 : 200);
+            while (added.size() < count) {
+                String accountId = randomId(random);
+                if (!expected.contains(accountId)) {
+                    added.add(accountId);
+                }
+            }
+            SortedAccountIds before = ids;
+            int sizeBefore = expected.size();
+            ids = ids.withAdded(added.toArray(new String[0]));
+            expected.addAll(added);
+
+            // Earlier versions are untouched by the merge
+            assertThat(before.size()).isEqualTo(sizeBefore);
+            assertThat(ids.size()).isEqualTo(expected.size());
+            for (int query = 0; query < 20; query++) {
+                String from = random.nextInt(5) == 0 ? null : randomId(random);
+                String to = random.nextInt(5) == 0 ? null : randomId(random);
+                List<String> range = toList(ids.range(from, to));
+                if (from != null && to != null && from.compareTo(to) >= 0) {
+                    assertThat(range).isEmpty();
+                    assertThat(ids.count(from, to)).isZero();
+                    continue;
+                }
+                NavigableSet<String> window = expected;
+                if (from != null) {
+                    window = window.tailSet(from, true);
+                }
+                if (to != null) {
+                    window = window.headSet(to, false);
+                }
+                assertThat(range).containsExactlyElementsOf(window);
+                assertThat(ids.count(from, to)).isEqualTo(window.size());
+            }
+        }
+        assertThat(toList(ids.range(null, null))).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void prefixRangesCoverExactlyTheIdsWithThatPrefix() {
+        SortedAccountIds ids = SortedAccountIds.EMPTY.withAdded(new String[]{
+            "ACC", "ACC-1", "ACC-19", "ACC-2", "ACC" + Character.MAX_VALUE, "ACD", "AC" + Character.MAX_VALUE
+        });
+
+        assertThat(SortedAccountIds.prefixEnd("ACC-1")).isEqualTo("ACC-2");
+        assertThat(SortedAccountIds.prefixEnd("AC" + Character.MAX_VALUE)).isEqualTo("AD");
+        assertThat(SortedAccountIds.prefixEnd("" + Character.MAX_VALUE + Character.MAX_VALUE)).isNull();
+        assertThat(toList(ids.range("ACC-1", SortedAccountIds.prefixEnd("ACC-1")))).containsExactly("ACC-1", "ACC-19");
+        assertThat(toList(ids.range("ACC", SortedAccountIds.prefixEnd("ACC"))))
+            .containsExactly("ACC", "ACC-1", "ACC-19", "ACC-2", "ACC" + Character.MAX_VALUE);
+        String last = "AC" + Character.MAX_VALUE;
+        assertThat(ids.count(last, SortedAccountIds.prefixEnd(last))).isEqualTo(1);
+    }
+
+    @Test
+    void generationsIndexTheIdsTheyCanSee() {
+        store.beginGeneration();
+        for (int i = 0; i < 2000; i++) {
+            store.update(Integer.toString(i), state -> state.with(ListType.STR, 100, "Reason"));
+        }
+        store.publishGeneration();
+        try (Generation first = store.snapshot()) {
+            store.beginGeneration();
+            store.update("ACC-1", state -> state.with(ListType.CR, 200, "Reason"));
+            store.update("1000", state -> state.with(ListType.CR, 200, "Reason"));
+            store.publishGeneration();
+
+            try (Generation second = store.snapshot()) {
+                assertThat(first.getAccountIds().size()).isEqualTo(2000);
+                assertThat(second.getAccountIds().size()).isEqualTo(2001);
+                // "100" and "1000" to "1009"
+                assertThat(second.getAccountIds().count("100", SortedAccountIds.prefixEnd("100"))).isEqualTo(11);
+                assertThat(toList(second.getAccountIds().range("ACC", null))).containsExactly("ACC-1");
+                assertThat(first.getAccountIds().count("ACC", null)).isZero();
+            }
+        }
+    }
+
+    private static String randomId(Random random) {
+        return random.nextBoolean()
+            ? Integer.toString(random.nextInt(1_000_000))
+            : "ACC-" + Integer.toString(random.nextInt(100_000), 36);
+    }
+
+    private static List<String> toList(Iterator<String> iterator) {
+        List<String> list = new ArrayList<>();
+        iterator.forEachRemaining(list::add);
+        return list;
+    }
+}
@@ -0,0 +1,106 @@
+package com.loanmanagement.store;
+
+import com.loanmanagement.model.ListType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StoreStatisticsTest {
+
+    private final CompactAccountStateStore store = new CompactAccountStateStore(new AccountSharding(4), false, 1000, 10);
+
+    @AfterEach
+    void shutdown() {
+        store.shutdown();
+    }
+
+    @Test
+    void maintainedCountersMatchAFullRecountAfterEveryWrite() {
+        Random random = new Random(3);
+        ListType[] listTypes = ListType.values();
+        StoreStatistics before = StoreStatistics.EMPTY;
+        for (int round = 0; round < 60; round++) {
+            int action = random.nextInt(20);
+            store.beginGeneration();
+            if (action == 0) {
+                store.clear();
+            } else {
+                for (int i = 0; i < 40; i++) {
+                    String accountId = random.nextBoolean() ? Integer.toString(random.nextInt(200))
+                        : "ACC-" + random.nextInt(50);
+                    ListType listType = listTypes[random.nextInt(listTypes.length)];
+                    long timestamp = round * 100L + i;
+                    if (random.nextInt(4) == 0 && !listType.isDelist()) {
+                        store.update(accountId, state -> delist(state, listType, timestamp));
+                    } else {
+                        store.update(accountId, state -> list(state, listType, timestamp));
+                    }
+                }
+                if (action == 1) {
+                    store.abortGeneration();
+                    continue;
+                }
+                store.publishGeneration();
+            }
+
+            try (Generation generation = store.snapshot()) {
+                assertThat(generation.getStatistics()).as("round %d", round)
+                    .isEqualTo(StoreStatistics.count(generation));
+                assertThat(before.plus(generation.getChange())).isEqualTo(generation.getStatistics());
+                before = generation.getStatistics();
+            }
+        }
+    }
+
+    @Test
+    void countsDescribeRecordsAndVerdicts() {
+        store.beginGeneration();
+        store.update("1001", state -> list(list(state, ListType.STR, 100), ListType.CR, 100));
+        store.update("1002", state -> delist(list(state, ListType.STR, 100), ListType.STR, 200));
+        store.update("1003", state -> list(state, ListType.CR, 100));
+        store.publishGeneration();
+
+        try (Generation generation = store.snapshot()) {
+            StoreStatistics statistics = generation.getStatistics();
+            assertThat(statistics.getAccounts()).isEqualTo(3);
+            assertThat(statistics.getIneligibleAccounts()).isEqualTo(2);
+            assertThat(statistics.getRecords(ListType.STR)).isEqualTo(2);
+            assertThat(statistics.getActiveRecords(ListType.STR)).isEqualTo(1);
+            assertThat(statistics.getSupersededRecords(ListType.STR)).isEqualTo(1);
+            assertThat(statistics.getRecords(ListType.D_STR)).isEqualTo(1);
+            assertThat(statistics.getIneligibleAccounts(ListType.CR)).isEqualTo(2);
+            assertThat(statistics.getIneligibleAccountsByListType()).doesNotContainKey(ListType.D_CR);
+            assertThat(statistics.minus(statistics)).isEqualTo(StoreStatistics.EMPTY);
+            assertThat(statistics.plus(statistics.negate())).isEqualTo(StoreStatistics.EMPTY);
+        }
+    }
+
+    private static AccountState list(AccountState state, ListType listType, long timestamp) {
+        if (listType.isDelist()) {
+            return delist(state, listType.getIneligibilityType(), timestamp);
+        }
+        AccountState listed = state.with(listType, timestamp, "Listed " + timestamp % 3);
+        return listed.withVerdict(verdict(listed), listType, timestamp);
+    }
+
+    /**
+     * Record the delist and deactivate the entry, as a delist upload would
+     */
+    private static AccountState delist(AccountState state, ListType listType, long timestamp) {
+        AccountState delisted = state.with(listType.getDelistType(), timestamp, "Cleared").deactivate(listType);
+        return delisted.withVerdict(verdict(delisted), listType, timestamp);
+    }
+
+    private static int verdict(AccountState state) {
+        int mask = 0;
+        for (ListType listType : ListType.values()) {
+            if (!listType.isDelist() && state.isActive(listType)) {
+                mask |= 1 << listType.ordinal();
+            }
+        }
+        return mask;
+    }
+}